@@ -0,0 +1,108 @@
+package io.github.dawidkc.spring.scopes.benchmarks;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.github.dawidkc.spring.scopes.BenchmarkAccess;
+import io.github.dawidkc.spring.scopes.TaskScope;
+import io.github.dawidkc.spring.scopes.TaskScopeStorage;
+import io.github.dawidkc.spring.scopes.ThreadLocalTaskScopeStorage;
+import io.github.dawidkc.spring.scopes.jdk21.ScopedValueTaskScopeStorage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+/**
+ * Many concurrent virtual threads, each opening its own task scope with {@link TaskScope#run(Object, Runnable)} and
+ * using a task-scoped bean in it, with the current contexts kept by the given {@code storage}. All threads keep their
+ * scopes open until the last one has started, so they are all alive at the same time. One operation is the whole
+ * batch of {@code threads} threads; the {@code gc.alloc.rate.norm} metric shows the memory needed per batch.
+ * <p>
+ * Requires the {@code jdk21} profile and Java 21; run with {@code -Dthreads=1}, as the benchmark starts its own
+ * threads.
+ *
+ * @author dawidkc
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "-Xmx3g"})
+@State(Scope.Benchmark)
+public class VirtualThreadBenchmark {
+
+    @Param({"threadLocal", "scopedValue"})
+    String storage;
+
+    @Param({"1000000"})
+    int threads;
+
+    AnnotationConfigApplicationContext context;
+
+    BenchmarkConfiguration.Worker worker;
+
+    /**
+     * Starts the application context and installs the storage.
+     */
+    @Setup
+    public void setUp() {
+        context = BenchmarkConfiguration.start();
+        worker = context.getBean(BenchmarkConfiguration.WORKER, BenchmarkConfiguration.Worker.class);
+        final TaskScopeStorage taskScopeStorage = "scopedValue".equals(storage)
+                ? new ScopedValueTaskScopeStorage()
+                : new ThreadLocalTaskScopeStorage();
+        BenchmarkAccess.useStorage(taskScopeStorage);
+    }
+
+    /**
+     * Closes the application context.
+     */
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Starts the virtual threads, waits until all of them have opened their scopes, then lets them finish.
+     */
+    @Benchmark
+    public long openScopes() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(threads);
+        final CountDownLatch finish = new CountDownLatch(1);
+        final LongAdder sum = new LongAdder();
+        final Thread[] all = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            final int value = i;
+            all[i] = Thread.ofVirtual().start(() -> TaskScope.run("context", () -> {
+                sum.add(worker.work(value));
+                started.countDown();
+                awaitQuietly(finish);
+            }));
+        }
+        started.await();
+        finish.countDown();
+        for (Thread thread : all) {
+            thread.join();
+        }
+        return sum.sum();
+    }
+
+    private static void awaitQuietly(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
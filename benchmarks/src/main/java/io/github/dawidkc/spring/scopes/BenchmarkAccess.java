@@ -0,0 +1,44 @@
+package io.github.dawidkc.spring.scopes;
+
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.config.Scope;
+
+/**
+ * Access to package-private parts of the task scope, for benchmarks exercising them without an application context.
+ *
+ * @author dawidkc
+ */
+public final class BenchmarkAccess {
+
+    private BenchmarkAccess() {
+    }
+
+    /**
+     * Creates a context which is not attached to any thread.
+     */
+    public static <T> TaskScopeContext<T> newContext(final T contextObject) {
+        return new TaskScopeContext<>(contextObject);
+    }
+
+    /**
+     * Replaces the storage of the current task scope contexts.
+     */
+    public static void useStorage(final TaskScopeStorage storage) {
+        TaskScope.setStorage(storage);
+    }
+
+    /**
+     * Sets the number of the bean storages of closed contexts each thread keeps for reuse when creating the beans of
+     * the given task scope, i.e. of its application context, {@code 0} disabling the pooling.
+     */
+    public static void setContextPoolSize(final Scope scope, final int size) {
+        ((TaskScope) scope).setContextPool(size == 0 ? null : new TaskScopeContextPool(size));
+    }
+
+    /**
+     * Resolves a bean directly from the given context.
+     */
+    public static Object getBean(final TaskScopeContext<?> context, final String name, final ObjectFactory<?> factory) {
+        return context.getBean(TaskScopeSlots.slotOf(name), name, factory);
+    }
+}
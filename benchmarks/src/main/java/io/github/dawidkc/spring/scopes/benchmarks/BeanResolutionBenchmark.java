@@ -0,0 +1,139 @@
+package io.github.dawidkc.spring.scopes.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import io.github.dawidkc.spring.scopes.BenchmarkAccess;
+import io.github.dawidkc.spring.scopes.TaskScope;
+import io.github.dawidkc.spring.scopes.TaskScopeContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+/**
+ * Cost of resolving a task-scoped bean, both through the bean factory (as a scoped proxy does) and by calling
+ * {@link TaskScope#get(String, ObjectFactory)} directly. "First" variants open a fresh scope, so the bean gets created;
+ * "repeat" variants resolve an already created bean inside a long-lived scope. The "first" variants are measured with
+ * and without the pooling of the bean storage of the closed contexts.
+ *
+ * @author dawidkc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BeanResolutionBenchmark {
+
+    /**
+     * Application context shared by all benchmark threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Application {
+
+        AnnotationConfigApplicationContext context;
+
+        org.springframework.beans.factory.config.Scope scope;
+
+        final ObjectFactory<Object> factory = Object::new;
+
+        /**
+         * Number of the bean storages of closed contexts kept by each thread for reuse, {@code 0} disabling the
+         * pooling.
+         */
+        @Param({"0", "16"})
+        int poolSize;
+
+        /**
+         * Starts the application context.
+         */
+        @Setup
+        public void setUp() {
+            context = BenchmarkConfiguration.start();
+            scope = context.getBeanFactory().getRegisteredScope(TaskScope.TASK_SCOPE_NAME);
+            BenchmarkAccess.setContextPoolSize(scope, poolSize);
+        }
+
+        /**
+         * Closes the application context.
+         */
+        @TearDown
+        public void tearDown() {
+            context.close();
+        }
+    }
+
+    /**
+     * Task scope kept open by each benchmark thread for the whole iteration.
+     */
+    @State(Scope.Thread)
+    public static class OpenScope {
+
+        TaskScopeContext<String> ctx;
+
+        /**
+         * Opens the scope and resolves the beans once.
+         */
+        @Setup(Level.Iteration)
+        public void setUp(final Application application) {
+            ctx = TaskScope.create("context");
+            application.context.getBean(BenchmarkConfiguration.WORKER_TARGET);
+            application.scope.get(BenchmarkConfiguration.WORKER_TARGET, application.factory);
+        }
+
+        /**
+         * Closes the scope.
+         */
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            ctx.close();
+        }
+    }
+
+    /**
+     * Opens a scope, creates the bean through the bean factory and closes the scope.
+     */
+    @Benchmark
+    public Object firstViaBeanFactory(final Application application) {
+        try (TaskScopeContext<String> ctx = TaskScope.create("context")) {
+            return application.context.getBean(BenchmarkConfiguration.WORKER_TARGET);
+        }
+    }
+
+    /**
+     * Resolves an existing bean through the bean factory.
+     */
+    @Benchmark
+    public Object repeatViaBeanFactory(final Application application, final OpenScope openScope) {
+        return application.context.getBean(BenchmarkConfiguration.WORKER_TARGET);
+    }
+
+    /**
+     * Opens a scope, creates the bean through {@code TaskScope.get} and closes the scope.
+     */
+    @Benchmark
+    public Object firstViaScope(final Application application) {
+        try (TaskScopeContext<String> ctx = TaskScope.create("context")) {
+            return application.scope.get(BenchmarkConfiguration.WORKER_TARGET, application.factory);
+        }
+    }
+
+    /**
+     * Resolves an existing bean through {@code TaskScope.get}.
+     */
+    @Benchmark
+    public Object repeatViaScope(final Application application, final OpenScope openScope) {
+        return application.scope.get(BenchmarkConfiguration.WORKER_TARGET, application.factory);
+    }
+}
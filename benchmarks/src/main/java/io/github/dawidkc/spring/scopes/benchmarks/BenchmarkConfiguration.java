@@ -0,0 +1,116 @@
+package io.github.dawidkc.spring.scopes.benchmarks;
+
+import io.github.dawidkc.spring.scopes.TaskScopeContext;
+import io.github.dawidkc.spring.scopes.TaskScoped;
+import io.github.dawidkc.spring.scopes.aop.EnableAOPTaskScope;
+import io.github.dawidkc.spring.scopes.aop.TaskContext;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+
+/**
+ * Spring configuration shared by the benchmarks.
+ *
+ * @author dawidkc
+ */
+@Configuration
+@EnableAOPTaskScope
+@EnableAspectJAutoProxy
+public class BenchmarkConfiguration {
+
+    /**
+     * Name of the task-scoped {@link Worker} bean.
+     */
+    public static final String WORKER = "worker";
+
+    /**
+     * Name of the scoped target backing the {@link Worker} proxy.
+     */
+    public static final String WORKER_TARGET = "scopedTarget." + WORKER;
+
+    /**
+     * Creates a new, refreshed application context based on this configuration.
+     */
+    public static AnnotationConfigApplicationContext start() {
+        return new AnnotationConfigApplicationContext(BenchmarkConfiguration.class);
+    }
+
+    /**
+     * Task-scoped bean depending on the task context.
+     */
+    @Bean(WORKER)
+    @TaskScoped
+    public Worker worker(final TaskScopeContext<String> context) {
+        return new Worker(context.getContextObject());
+    }
+
+    /**
+     * Singleton bean with {@link TaskContext} annotated methods.
+     */
+    @Bean
+    public TaskContextService taskContextService() {
+        return new TaskContextService();
+    }
+
+    /**
+     * Minimal task-scoped bean.
+     */
+    public static class Worker {
+
+        private final String data;
+
+        /**
+         * Creates a worker bound to given context data.
+         */
+        public Worker(final String data) {
+            this.data = data;
+        }
+
+        /**
+         * Trivial unit of work, cheap enough for the proxy overhead to dominate.
+         */
+        public int work(final int value) {
+            return value + data.length();
+        }
+    }
+
+    /**
+     * Service with a varying number of {@link TaskContext} parameters.
+     */
+    public static class TaskContextService {
+
+        /**
+         * Baseline method, not advised.
+         */
+        public Object none(final Object a) {
+            return a;
+        }
+
+        /**
+         * Method opening one task scope.
+         */
+        public Object one(@TaskContext final Object a) {
+            return a;
+        }
+
+        /**
+         * Method opening two nested task scopes.
+         */
+        public Object two(@TaskContext final Object a, @TaskContext final Object b) {
+            return b;
+        }
+
+        /**
+         * Method opening four nested task scopes.
+         */
+        public Object four(
+                @TaskContext final Object a,
+                @TaskContext final Object b,
+                @TaskContext final Object c,
+                @TaskContext final Object d
+        ) {
+            return d;
+        }
+    }
+}
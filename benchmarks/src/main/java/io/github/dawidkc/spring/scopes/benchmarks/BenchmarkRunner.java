@@ -0,0 +1,78 @@
+package io.github.dawidkc.spring.scopes.benchmarks;
+
+import java.io.File;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the selected benchmarks with 1, 4 and all available threads, with the GC profiler enabled, and writes one JMH
+ * JSON result file per thread count.
+ * <p>
+ * Usage:
+ * <pre><code>
+ * java [-Dresults=results/current] -jar target/benchmarks.jar [JMH options...]
+ * </code></pre>
+ * The {@code results} system property points to the output directory, and the {@code threads} system property may
+ * replace the default thread counts with a comma-separated list (e.g. {@code -Dthreads=1,16,32}). Arguments are regular JMH command line options
+ * (e.g. a benchmark include pattern, {@code -f 3}, {@code -wi 5}) and are applied to every run. Thread count, profiler
+ * and result options are set by the runner.
+ *
+ * @author dawidkc
+ */
+public final class BenchmarkRunner {
+
+    private static final String DEFAULT_OUTPUT = "results/current";
+
+    private static final int FOUR_THREADS = 4;
+
+    private BenchmarkRunner() {
+    }
+
+    /**
+     * Entry point.
+     */
+    public static void main(final String[] args) throws Exception {
+        final CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListWithParams()
+                || commandLine.shouldListProfilers() || commandLine.shouldListResultFormats()) {
+            Main.main(args);
+            return;
+        }
+        final File output = new File(System.getProperty("results", DEFAULT_OUTPUT));
+        if (!output.isDirectory() && !output.mkdirs()) {
+            throw new IllegalStateException("Cannot create output directory " + output);
+        }
+        for (int threads : threadCounts()) {
+            final ChainedOptionsBuilder options = new OptionsBuilder()
+                    .parent(commandLine)
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(output, "threads-" + threads + ".json").getPath());
+            new Runner(options.build()).run();
+        }
+    }
+
+    private static SortedSet<Integer> threadCounts() {
+        final SortedSet<Integer> counts = new TreeSet<>();
+        final String threads = System.getProperty("threads");
+        if (threads != null) {
+            for (String count : threads.split(",")) {
+                counts.add(Integer.valueOf(count.trim()));
+            }
+            return counts;
+        }
+        counts.add(1);
+        counts.add(FOUR_THREADS);
+        counts.add(Runtime.getRuntime().availableProcessors());
+        return counts;
+    }
+}
@@ -0,0 +1,113 @@
+package io.github.dawidkc.spring.scopes.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import io.github.dawidkc.spring.scopes.BenchmarkAccess;
+import io.github.dawidkc.spring.scopes.TaskScopeContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.beans.factory.ObjectFactory;
+
+/**
+ * Cost of resolving the same task-scoped bean from many threads sharing one context, while the bean is being created.
+ * All threads walk through the same sequence of fresh contexts, so they all hit each context at about the same time:
+ * one thread runs the (deliberately slow) factory and the others wait for it. Meant to be run with 16+ threads, e.g.
+ * {@code -Dthreads=1,16,32}.
+ *
+ * @author dawidkc
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, batchSize = ContendedCreationBenchmark.CONTEXTS)
+@Measurement(iterations = 20, batchSize = ContendedCreationBenchmark.CONTEXTS)
+@Fork(1)
+public class ContendedCreationBenchmark {
+
+    static final int CONTEXTS = 10_000;
+
+    /**
+     * Contexts shared by all benchmark threads, re-created for each iteration.
+     */
+    @State(Scope.Benchmark)
+    public static class Shared {
+
+        @Param({"100"})
+        long creationTokens;
+
+        TaskScopeContext<?>[] contexts;
+
+        ObjectFactory<Object> factory;
+
+        /**
+         * Prepares the bean factory.
+         */
+        @Setup
+        public void setUp() {
+            factory = () -> {
+                Blackhole.consumeCPU(creationTokens);
+                return new Object();
+            };
+        }
+
+        /**
+         * Creates fresh contexts.
+         */
+        @Setup(Level.Iteration)
+        public void createContexts() {
+            contexts = new TaskScopeContext<?>[CONTEXTS];
+            for (int i = 0; i < CONTEXTS; i++) {
+                contexts[i] = BenchmarkAccess.newContext(i);
+            }
+        }
+
+        /**
+         * Checks that each bean was created exactly once.
+         */
+        @TearDown(Level.Iteration)
+        public void verify() {
+            for (TaskScopeContext<?> context : contexts) {
+                final Object bean = BenchmarkAccess.getBean(context, "bean", factory);
+                if (bean != BenchmarkAccess.getBean(context, "bean", factory)) {
+                    throw new IllegalStateException("Bean created more than once");
+                }
+            }
+        }
+    }
+
+    /**
+     * Position of a benchmark thread in the shared sequence of contexts.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        int next;
+
+        /**
+         * Starts from the first context.
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            next = 0;
+        }
+    }
+
+    /**
+     * Resolves the bean in the next context.
+     */
+    @Benchmark
+    public Object resolve(final Shared shared, final Cursor cursor) {
+        return BenchmarkAccess.getBean(shared.contexts[cursor.next++], "bean", shared.factory);
+    }
+}
@@ -0,0 +1,86 @@
+package io.github.dawidkc.spring.scopes.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import io.github.dawidkc.spring.scopes.aop.TaskContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+/**
+ * Counterpart of {@link TaskContextAspectBenchmark} for the subclass generated by the
+ * {@code TaskContextProcessor} annotation processor, which opens the task scopes of the {@link TaskContext}
+ * parameters without an AOP proxy. Zero parameters is a call of the generated class which is not overridden. The
+ * application context is started only to configure the task scope the same way.
+ *
+ * @author dawidkc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GeneratedTaskContextBenchmark {
+
+    @Param({"0", "1", "2", "4"})
+    int taskContextParams;
+
+    private AnnotationConfigApplicationContext context;
+
+    private BenchmarkConfiguration.TaskContextService service;
+
+    private final Object a = "a";
+
+    private final Object b = "b";
+
+    private final Object c = "c";
+
+    private final Object d = "d";
+
+    /**
+     * Starts the application context and creates the generated subclass.
+     */
+    @Setup
+    public void setUp() {
+        context = BenchmarkConfiguration.start();
+        service = new BenchmarkConfiguration_TaskContextService_TaskContext();
+    }
+
+    /**
+     * Closes the application context.
+     */
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Invokes the method with the configured number of {@link TaskContext} parameters.
+     */
+    @Benchmark
+    public Object wrapInTask() {
+        switch (taskContextParams) {
+            case 0:
+                return service.none(a);
+            case 1:
+                return service.one(a);
+            case 2:
+                return service.two(a, b);
+            case 4:
+                return service.four(a, b, c, d);
+            default:
+                throw new IllegalArgumentException("Unsupported number of parameters: " + taskContextParams);
+        }
+    }
+}
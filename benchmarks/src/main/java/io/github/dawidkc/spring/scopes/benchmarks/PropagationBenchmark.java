@@ -0,0 +1,78 @@
+package io.github.dawidkc.spring.scopes.benchmarks;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import io.github.dawidkc.spring.scopes.TaskScope;
+import io.github.dawidkc.spring.scopes.TaskScopeContext;
+import io.github.dawidkc.spring.scopes.TaskScopeExecutors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of propagating the task scope to a task with {@link TaskScopeExecutors}: capturing the context when wrapping
+ * and attaching/detaching it when running. The wrapped task runs on the same thread, so only the propagation itself is
+ * measured, without the hand-off to another thread.
+ *
+ * @author dawidkc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropagationBenchmark {
+
+    /**
+     * Task scope kept open by each benchmark thread for the whole iteration.
+     */
+    @State(Scope.Thread)
+    public static class OpenScope {
+
+        TaskScopeContext<String> ctx;
+
+        final Callable<Object> task = TaskScope::getCurrentContextObject;
+
+        /**
+         * Opens the scope.
+         */
+        @Setup(Level.Iteration)
+        public void setUp() {
+            ctx = TaskScope.create("context");
+        }
+
+        /**
+         * Closes the scope.
+         */
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            ctx.close();
+        }
+    }
+
+    /**
+     * Wrap and run a task within the current task scope.
+     */
+    @Benchmark
+    public Object wrapped(final OpenScope openScope) throws Exception {
+        return TaskScopeExecutors.wrap(openScope.task).call();
+    }
+
+    /**
+     * Run the task as is, for reference.
+     */
+    @Benchmark
+    public Object plain(final OpenScope openScope) throws Exception {
+        return openScope.task.call();
+    }
+}
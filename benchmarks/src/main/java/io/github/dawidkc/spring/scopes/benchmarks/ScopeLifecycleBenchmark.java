@@ -0,0 +1,72 @@
+package io.github.dawidkc.spring.scopes.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import io.github.dawidkc.spring.scopes.TaskScope;
+import io.github.dawidkc.spring.scopes.TaskScopeContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of opening and closing task scopes with {@link TaskScope#create(Object)} and {@link TaskScopeContext#close()},
+ * with no task-scoped bean being resolved.
+ *
+ * @author dawidkc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ScopeLifecycleBenchmark {
+
+    private final String contextObject = "context";
+
+    /**
+     * Number of nested scopes.
+     */
+    @State(Scope.Thread)
+    public static class Nesting {
+
+        @Param({"2", "8"})
+        int depth;
+    }
+
+    /**
+     * Single scope opened and closed.
+     */
+    @Benchmark
+    public void flat(final Blackhole blackhole) {
+        try (TaskScopeContext<String> ctx = TaskScope.create(contextObject)) {
+            blackhole.consume(ctx);
+        }
+    }
+
+    /**
+     * {@code depth} scopes opened one inside another, then closed in reverse order.
+     */
+    @Benchmark
+    public void nested(final Nesting nesting, final Blackhole blackhole) {
+        open(nesting.depth, blackhole);
+    }
+
+    private void open(final int remaining, final Blackhole blackhole) {
+        try (TaskScopeContext<String> ctx = TaskScope.create(contextObject)) {
+            if (remaining > 1) {
+                open(remaining - 1, blackhole);
+            } else {
+                blackhole.consume(ctx);
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.dawidkc.spring.scopes.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import io.github.dawidkc.spring.scopes.TaskScope;
+import io.github.dawidkc.spring.scopes.TaskScopeContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+/**
+ * Cost of a method call through the {@code @TaskScoped} proxy, compared with calling the resolved target directly.
+ *
+ * @author dawidkc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScopedProxyBenchmark {
+
+    /**
+     * Application context shared by all benchmark threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Application {
+
+        AnnotationConfigApplicationContext context;
+
+        BenchmarkConfiguration.Worker proxy;
+
+        /**
+         * Starts the application context.
+         */
+        @Setup
+        public void setUp() {
+            context = BenchmarkConfiguration.start();
+            proxy = context.getBean(BenchmarkConfiguration.WORKER, BenchmarkConfiguration.Worker.class);
+        }
+
+        /**
+         * Closes the application context.
+         */
+        @TearDown
+        public void tearDown() {
+            context.close();
+        }
+    }
+
+    /**
+     * Task scope kept open by each benchmark thread for the whole iteration.
+     */
+    @State(Scope.Thread)
+    public static class OpenScope {
+
+        TaskScopeContext<String> ctx;
+
+        BenchmarkConfiguration.Worker target;
+
+        int value;
+
+        /**
+         * Opens the scope and resolves the target once.
+         */
+        @Setup(Level.Iteration)
+        public void setUp(final Application application) {
+            ctx = TaskScope.create("context");
+            target = application.context.getBean(
+                    BenchmarkConfiguration.WORKER_TARGET, BenchmarkConfiguration.Worker.class);
+        }
+
+        /**
+         * Closes the scope.
+         */
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            ctx.close();
+        }
+    }
+
+    /**
+     * Call through the scoped proxy.
+     */
+    @Benchmark
+    public int proxy(final Application application, final OpenScope openScope) {
+        return application.proxy.work(openScope.value++);
+    }
+
+    /**
+     * Call on the already resolved target, for reference.
+     */
+    @Benchmark
+    public int direct(final OpenScope openScope) {
+        return openScope.target.work(openScope.value++);
+    }
+}
@@ -0,0 +1,84 @@
+package io.github.dawidkc.spring.scopes.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import io.github.dawidkc.spring.scopes.aop.TaskContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+/**
+ * Overhead of the {@code TaskScopeAspect} advice for methods with a varying number of {@link TaskContext} parameters.
+ * Zero parameters is a call through the same AOP proxy which is not advised.
+ *
+ * @author dawidkc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TaskContextAspectBenchmark {
+
+    @Param({"0", "1", "2", "4"})
+    int taskContextParams;
+
+    private AnnotationConfigApplicationContext context;
+
+    private BenchmarkConfiguration.TaskContextService service;
+
+    private final Object a = "a";
+
+    private final Object b = "b";
+
+    private final Object c = "c";
+
+    private final Object d = "d";
+
+    /**
+     * Starts the application context.
+     */
+    @Setup
+    public void setUp() {
+        context = BenchmarkConfiguration.start();
+        service = context.getBean(BenchmarkConfiguration.TaskContextService.class);
+    }
+
+    /**
+     * Closes the application context.
+     */
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Invokes the method with the configured number of {@link TaskContext} parameters.
+     */
+    @Benchmark
+    public Object wrapInTask() {
+        switch (taskContextParams) {
+            case 0:
+                return service.none(a);
+            case 1:
+                return service.one(a);
+            case 2:
+                return service.two(a, b);
+            case 4:
+                return service.four(a, b, c, d);
+            default:
+                throw new IllegalArgumentException("Unsupported number of parameters: " + taskContextParams);
+        }
+    }
+}
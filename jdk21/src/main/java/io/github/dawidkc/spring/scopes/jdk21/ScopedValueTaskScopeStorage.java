@@ -0,0 +1,39 @@
+package io.github.dawidkc.spring.scopes.jdk21;
+
+import java.util.concurrent.Callable;
+
+import io.github.dawidkc.spring.scopes.TaskScope;
+import io.github.dawidkc.spring.scopes.TaskScopeContext;
+import io.github.dawidkc.spring.scopes.TaskScopeStorage;
+
+/**
+ * {@link TaskScopeStorage} keeping the current context in a {@link ScopedValue}. Binding a context costs no per-thread
+ * structures, which suits large numbers of short-lived virtual threads; the binding is inherited by the subtasks of
+ * {@link java.util.concurrent.StructuredTaskScope}.
+ * <p>
+ * Contexts can only be bound to a block of code, so task scopes have to be opened with
+ * {@link TaskScope#call(Object, Callable)} or {@link TaskScope#run(Object, Runnable)}; {@link TaskScope#create(Object)}
+ * is not supported. To be chosen with {@code @EnableTaskScope(storage = ScopedValueTaskScopeStorage.class)}.
+ *
+ * @author dawidkc
+ */
+public final class ScopedValueTaskScopeStorage implements TaskScopeStorage {
+
+    private static final ScopedValue<TaskScopeContext<?>> CURRENT = ScopedValue.newInstance();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TaskScopeContext<?> current() {
+        return CURRENT.orElse(null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <R> R call(final TaskScopeContext<?> context, final Callable<R> task) throws Exception {
+        return ScopedValue.where(CURRENT, context).call(task);
+    }
+}
@@ -0,0 +1,67 @@
+package io.github.dawidkc.spring.scopes.jdk21;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.StructuredTaskScope.Subtask;
+
+import io.github.dawidkc.spring.scopes.TaskScopeExecutors;
+
+/**
+ * Structured concurrency within task scope. Subtasks forked with these methods run within the task scope current in
+ * the forking thread - the very same scope, with the beans already created in it - regardless of the
+ * {@link io.github.dawidkc.spring.scopes.TaskScopeStorage} in use:
+ * <p>
+ * <pre><code>
+ * List&lt;Result&gt; results = TaskScope.call("data", () -&gt; TaskScopes.forkAll(List.of(
+ *         () -&gt; worker.first(),
+ *         () -&gt; worker.second())));        // same task-scoped worker in both subtasks
+ * </code></pre>
+ * <p>
+ * Each running subtask keeps the context alive, so its beans are not destroyed until all subtasks are done, even if
+ * the owner closes the scope in the meantime; a subtask which has not started before the beans were destroyed fails
+ * with {@link IllegalStateException} instead of running without them.
+ *
+ * @author dawidkc
+ */
+public final class TaskScopes {
+
+    private TaskScopes() {
+    }
+
+    /**
+     * Forks the subtask in the structured task scope, to run within the current task scope.
+     *
+     * @see StructuredTaskScope#fork(Callable)
+     */
+    public static <T> Subtask<T> fork(final StructuredTaskScope<? super T> scope, final Callable<T> task) {
+        return scope.fork(TaskScopeExecutors.wrapSubtask(task));
+    }
+
+    /**
+     * Runs the subtasks concurrently, each in its own virtual thread and within the current task scope, and waits for
+     * all of them. The first failure cancels (interrupts) the remaining subtasks and is thrown.
+     *
+     * @return results of the subtasks, in order of the given tasks
+     * @throws ExecutionException    with the failure of the first failed subtask as its cause
+     * @throws InterruptedException  if interrupted while waiting, in which case all the subtasks are cancelled
+     */
+    public static <T> List<T> forkAll(final Collection<? extends Callable<T>> tasks)
+            throws InterruptedException, ExecutionException {
+        try (StructuredTaskScope.ShutdownOnFailure scope = new StructuredTaskScope.ShutdownOnFailure()) {
+            final List<Subtask<T>> subtasks = new ArrayList<>(tasks.size());
+            for (Callable<T> task : tasks) {
+                subtasks.add(fork(scope, task));
+            }
+            scope.join().throwIfFailed();
+            final List<T> results = new ArrayList<>(subtasks.size());
+            for (Subtask<T> subtask : subtasks) {
+                results.add(subtask.get());
+            }
+            return results;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+/**
+ * This module provides Java 21 extensions of the task scope functionality for Spring Framework: storage of the task
+ * scope contexts in {@link java.lang.ScopedValue}s, suitable for virtual threads. Requires {@code --enable-preview}
+ * on Java 21.
+ *
+ * @author dawidkc
+ */
+package io.github.dawidkc.spring.scopes.jdk21;
@@ -0,0 +1,156 @@
+package io.github.dawidkc.spring.scopes.jdk21;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.github.dawidkc.spring.scopes.EnableTaskScope;
+import io.github.dawidkc.spring.scopes.TaskScope;
+import io.github.dawidkc.spring.scopes.TaskScopeContext;
+import io.github.dawidkc.spring.scopes.TaskScopeExecutors;
+import io.github.dawidkc.spring.scopes.TaskScoped;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Component;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+@SpringJUnitConfig
+@ContextConfiguration(classes = {
+        ScopedValueTaskScopeStorageTest.ScopedValueConfiguration.class,
+        ScopedValueTaskScopeStorageTest.Worker.class
+})
+@DirtiesContext
+class ScopedValueTaskScopeStorageTest {
+
+    @Autowired
+    Worker worker;
+
+    @Autowired
+    TaskScopeContext<String> taskScopeContext;
+
+    @Test
+    void should_resolve_task_scoped_bean_within_task_scope() throws Exception {
+        // GIVEN a task scope bound to a scoped value
+        final String[] ids = TaskScope.call("ctx", () -> new String[]{
+                worker.getId(),
+                worker.getId(),
+                taskScopeContext.getContextObject()
+        });
+        // THEN the same bean and context object are resolved within it
+        assertThat(ids[0]).isEqualTo(ids[1]);
+        assertThat(ids[2]).isEqualTo("ctx");
+    }
+
+    @Test
+    void should_resolve_separate_beans_in_nested_task_scopes() throws Exception {
+        // GIVEN 2 nested task scopes
+        final List<String> ids = new ArrayList<>();
+        TaskScope.run("outer", () -> {
+            ids.add(worker.getId());
+            TaskScope.run("inner", () -> ids.add(worker.getId()));
+            ids.add(worker.getId());
+        });
+        // THEN the inner scope has its own bean, and the outer one is restored after it
+        assertThat(ids.get(0)).isNotEqualTo(ids.get(1));
+        assertThat(ids.get(0)).isEqualTo(ids.get(2));
+    }
+
+    @Test
+    void should_destroy_beans_when_task_scope_ends() {
+        // GIVEN a task scope which used a disposable bean
+        final int destroyed = Worker.destroyed;
+        TaskScope.run("ctx", worker::getId);
+        // THEN the bean is destroyed
+        assertThat(Worker.destroyed).isEqualTo(destroyed + 1);
+    }
+
+    @Test
+    void should_isolate_task_scopes_of_many_virtual_threads() throws Exception {
+        // GIVEN many virtual threads, each with own task scope
+        final int threads = 10_000;
+        final List<Future<Boolean>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < threads; i++) {
+                final String context = "ctx" + i;
+                results.add(executor.submit(() -> TaskScope.call(context,
+                        () -> context.equals(taskScopeContext.getContextObject())
+                                && worker.getId().equals(worker.getId()))));
+            }
+            // THEN each of them sees its own context
+            for (Future<Boolean> result : results) {
+                assertThat(result.get()).isTrue();
+            }
+        }
+    }
+
+    @Test
+    void should_propagate_task_scope_to_executor_threads() throws Exception {
+        // GIVEN a task scope and a wrapped virtual thread executor
+        try (ExecutorService executor = TaskScopeExecutors.wrap(Executors.newVirtualThreadPerTaskExecutor())) {
+            final boolean[] same = TaskScope.call("ctx", () -> {
+                final String id = worker.getId();
+                // WHEN using the bean in a submitted task
+                return new boolean[]{executor.submit(() -> worker.getId()).get().equals(id)};
+            });
+            // THEN the very same bean is used
+            assertThat(same[0]).isTrue();
+        }
+    }
+
+    @Test
+    void should_run_forked_subtasks_within_task_scope() throws Exception {
+        // GIVEN a task scope bound to a scoped value
+        final List<String> ids = TaskScope.call("ctx", () -> {
+            // WHEN forking subtasks using the bean
+            final List<String> result = new ArrayList<>(TaskScopes.forkAll(List.of(worker::getId, worker::getId)));
+            result.add(worker.getId());
+            return result;
+        });
+        // THEN they use the same bean as the parent
+        assertThat(ids).hasSize(3).containsOnly(ids.get(0));
+    }
+
+    @Test
+    void should_not_support_imperative_task_scopes() {
+        // GIVEN a scoped value storage
+        // WHEN opening a task scope without a block of code
+        // THEN it fails
+        assertThatThrownBy(() -> TaskScope.create("ctx"))
+                .isInstanceOf(UnsupportedOperationException.class)
+                .hasMessageContaining("TaskScope.call()");
+    }
+
+    @Configuration
+    @EnableTaskScope(storage = ScopedValueTaskScopeStorage.class)
+    static class ScopedValueConfiguration {
+    }
+
+    @Component
+    @TaskScoped
+    static class Worker implements DisposableBean {
+
+        static volatile int destroyed;
+
+        final String id = UUID.randomUUID().toString();
+
+        String getId() {
+            return id;
+        }
+
+        @Override
+        public void destroy() {
+            destroyed++;
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+package io.github.dawidkc.spring.scopes.jdk21;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.github.dawidkc.spring.scopes.EnableTaskScope;
+import io.github.dawidkc.spring.scopes.TaskScope;
+import io.github.dawidkc.spring.scopes.TaskScopeContext;
+import io.github.dawidkc.spring.scopes.TaskScoped;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Component;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+@SpringJUnitConfig
+@ContextConfiguration(classes = {
+        TaskScopesTest.ThreadLocalConfiguration.class,
+        TaskScopesTest.Worker.class
+})
+@DirtiesContext
+class TaskScopesTest {
+
+    @Autowired
+    Worker worker;
+
+    @Autowired
+    TaskScopeContext<String> taskScopeContext;
+
+    @Test
+    void should_run_subtasks_on_virtual_threads_within_task_scope_of_parent() throws Exception {
+        // GIVEN a task scope with a task-scoped bean
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            final String id = worker.getId();
+            // WHEN forking subtasks using the bean
+            final List<String[]> results = TaskScopes.forkAll(List.of(this::describe, this::describe));
+            // THEN they run on virtual threads, with the same context and bean
+            for (String[] result : results) {
+                assertThat(result).containsExactly("true", "ctx", id);
+            }
+        }
+    }
+
+    @Test
+    void should_cancel_sibling_subtasks_when_one_fails() throws Exception {
+        // GIVEN a task scope
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicInteger interrupted = new AtomicInteger();
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            // WHEN one of the subtasks fails while the other one waits
+            // THEN the failure is thrown
+            assertThatThrownBy(() -> TaskScopes.forkAll(List.of(
+                    () -> {
+                        started.countDown();
+                        try {
+                            Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                        } catch (InterruptedException e) {
+                            interrupted.incrementAndGet();
+                        }
+                        return "slow";
+                    },
+                    () -> {
+                        started.await();
+                        throw new IllegalStateException("failed");
+                    })))
+                    .isInstanceOf(ExecutionException.class)
+                    .hasRootCauseMessage("failed");
+        }
+        // ...AND the other subtask has been cancelled
+        assertThat(interrupted).hasValue(1);
+    }
+
+    @Test
+    void should_destroy_beans_once_when_parent_scope_is_closed() throws Exception {
+        // GIVEN subtasks using a task-scoped bean
+        final int destroyed = Worker.DESTROYED.get();
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            TaskScopes.forkAll(List.of(worker::getId, worker::getId));
+            // THEN the beans are not destroyed when the subtasks are done
+            assertThat(Worker.DESTROYED.get()).isEqualTo(destroyed);
+        }
+        // ...AND are destroyed when the parent scope is closed
+        assertThat(Worker.DESTROYED.get()).isEqualTo(destroyed + 1);
+    }
+
+    @Test
+    void should_fork_into_custom_structured_task_scope() throws Exception {
+        // GIVEN a task scope and a structured task scope completing with the first result
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx");
+             StructuredTaskScope.ShutdownOnSuccess<String> scope = new StructuredTaskScope.ShutdownOnSuccess<>()) {
+            // WHEN forking a subtask into it
+            TaskScopes.fork(scope, () -> taskScopeContext.getContextObject());
+            // THEN it runs within the task scope
+            assertThat(scope.join().result()).isEqualTo("ctx");
+        }
+    }
+
+    private String[] describe() {
+        return new String[]{
+                String.valueOf(Thread.currentThread().isVirtual()),
+                taskScopeContext.getContextObject(),
+                worker.getId()
+        };
+    }
+
+    @Configuration
+    @EnableTaskScope
+    static class ThreadLocalConfiguration {
+    }
+
+    @Component
+    @TaskScoped
+    static class Worker implements DisposableBean {
+
+        static final AtomicInteger DESTROYED = new AtomicInteger();
+
+        final String id = UUID.randomUUID().toString();
+
+        String getId() {
+            return id;
+        }
+
+        @Override
+        public void destroy() {
+            DESTROYED.incrementAndGet();
+        }
+    }
+
+}
@@ -0,0 +1,229 @@
+package io.github.dawidkc.spring.scopes.micrometer;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.github.dawidkc.spring.scopes.TaskScope;
+import io.github.dawidkc.spring.scopes.TaskScopeContext;
+import io.github.dawidkc.spring.scopes.TaskScopeListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Micrometer metrics of the task scopes:
+ * <ul>
+ * <li>{@code task.scope.opened} and {@code task.scope.closed} - counters of the task scopes opened and closed (i.e.
+ * with their beans destroyed),</li>
+ * <li>{@code task.scope.live} - gauge of the task scopes opened since the metrics have been bound, and still open,
+ * </li>
+ * <li>{@code task.scope.lifetime} - timer of the task scopes, from opening until their beans are destroyed,</li>
+ * <li>{@code task.scope.depth} - summary of the number of the task scopes active on a thread when one is opened,
+ * {@code 1} for an outermost one, i.e. of the live task scopes per thread,</li>
+ * <li>{@code task.scope.beans} - summary of the number of the beans created per task scope,</li>
+ * <li>{@code task.scope.bean.creation} - timer of the creation of the task-scoped beans, tagged with the bean name if
+ * enabled,</li>
+ * <li>{@code task.scope.destruction} - timer of the destruction callbacks, tagged with their {@code outcome}
+ * ({@code success} or {@code failure}),</li>
+ * <li>{@code task.scope.rejected} - counter of the task scopes rejected by the admission control, tagged with the
+ * {@code limit} reached ({@code global} or {@code key}).</li>
+ * </ul>
+ * <p>
+ * Binding to a registry registers a {@link TaskScopeListener} with {@link TaskScope#addListener}, so the task scopes
+ * measure themselves only once the metrics are bound; {@link #close()} removes the listeners. As each task scope
+ * reports its closing to the listeners it has reported its opening to, only the task scopes opened while the metrics
+ * are bound are counted as closed, also if they close after {@link #close()}. With Spring Boot it is
+ * enough to define the metrics as a bean:
+ * <p>
+ * <pre><code>
+ * &#64;Bean
+ * TaskScopeMetrics taskScopeMetrics() {
+ *     return new TaskScopeMetrics();
+ * }
+ * </code></pre>
+ * <p>
+ * The bean names are not used as tags by default, as there may be many task-scoped beans; the timers of each bean are
+ * cached, so enabling them costs a map lookup per created bean. For the same reason the live task scopes are not
+ * tagged with the thread, whose number is not bounded: the live task scopes of the thread opening one are recorded by
+ * {@code task.scope.depth} instead.
+ *
+ * @author dawidkc
+ */
+public class TaskScopeMetrics implements MeterBinder, AutoCloseable {
+
+    private static final String SCOPED_TARGET_PREFIX = "scopedTarget.";
+
+    private final Iterable<Tag> tags;
+
+    private final boolean beanTags;
+
+    private final List<Recorder> recorders = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates the metrics without additional tags and without the bean name tags.
+     */
+    public TaskScopeMetrics() {
+        this(Tags.empty(), false);
+    }
+
+    /**
+     * Creates the metrics.
+     *
+     * @param extraTags    tags added to all meters
+     * @param beanNameTags whether to tag the bean creation timer with the bean name
+     */
+    public TaskScopeMetrics(final Iterable<Tag> extraTags, final boolean beanNameTags) {
+        this.tags = extraTags;
+        this.beanTags = beanNameTags;
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+        final Recorder recorder = new Recorder(registry);
+        recorders.add(recorder);
+        TaskScope.addListener(recorder);
+    }
+
+    /**
+     * Stops recording the metrics; the meters stay in the registries.
+     */
+    @Override
+    public void close() {
+        for (Recorder recorder : recorders) {
+            TaskScope.removeListener(recorder);
+        }
+        recorders.clear();
+    }
+
+    /**
+     * Records the activity of the task scopes in the meters of a registry.
+     */
+    private final class Recorder implements TaskScopeListener {
+
+        private final MeterRegistry registry;
+
+        private final Counter opened;
+
+        private final Counter closed;
+
+        private final AtomicLong live = new AtomicLong();
+
+        private final Timer lifetime;
+
+        private final DistributionSummary depth;
+
+        private final DistributionSummary beans;
+
+        private final Timer beanCreation;
+
+        private final ConcurrentMap<String, Timer> beanCreationByName = new ConcurrentHashMap<>();
+
+        private final Timer destructionSuccess;
+
+        private final Timer destructionFailure;
+
+        private final Counter rejectedByGlobalLimit;
+
+        private final Counter rejectedByKeyLimit;
+
+        Recorder(final MeterRegistry meterRegistry) {
+            this.registry = meterRegistry;
+            this.opened = Counter.builder("task.scope.opened")
+                    .description("Task scopes opened")
+                    .tags(tags)
+                    .register(registry);
+            this.closed = Counter.builder("task.scope.closed")
+                    .description("Task scopes closed, with their beans destroyed")
+                    .tags(tags)
+                    .register(registry);
+            Gauge.builder("task.scope.live", live, AtomicLong::get)
+                    .description("Task scopes opened since the metrics have been bound, and still open")
+                    .tags(tags)
+                    .register(registry);
+            this.lifetime = Timer.builder("task.scope.lifetime")
+                    .description("Time from opening a task scope until its beans are destroyed")
+                    .tags(tags)
+                    .register(registry);
+            this.depth = DistributionSummary.builder("task.scope.depth")
+                    .description("Task scopes active on a thread when one is opened, including it")
+                    .tags(tags)
+                    .register(registry);
+            this.beans = DistributionSummary.builder("task.scope.beans")
+                    .description("Beans created per task scope")
+                    .tags(tags)
+                    .register(registry);
+            this.beanCreation = beanTags ? null : beanCreationTimer().register(registry);
+            this.destructionSuccess = destructionTimer("success");
+            this.destructionFailure = destructionTimer("failure");
+            this.rejectedByGlobalLimit = rejectedCounter("global");
+            this.rejectedByKeyLimit = rejectedCounter("key");
+        }
+
+        private Timer.Builder beanCreationTimer() {
+            return Timer.builder("task.scope.bean.creation")
+                    .description("Time taken by the creation of a task-scoped bean")
+                    .tags(tags);
+        }
+
+        private Timer destructionTimer(final String outcome) {
+            return Timer.builder("task.scope.destruction")
+                    .description("Time taken by the destruction callback of a task-scoped bean")
+                    .tags(tags)
+                    .tag("outcome", outcome)
+                    .register(registry);
+        }
+
+        private Counter rejectedCounter(final String limit) {
+            return Counter.builder("task.scope.rejected")
+                    .description("Task scopes rejected by the admission control")
+                    .tags(tags)
+                    .tag("limit", limit)
+                    .register(registry);
+        }
+
+        @Override
+        public void scopeOpened(final TaskScopeContext<?> context, final int scopeDepth) {
+            opened.increment();
+            live.incrementAndGet();
+            depth.record(scopeDepth);
+        }
+
+        @Override
+        public void scopeClosed(final TaskScopeContext<?> context, final long lifetimeNanos, final int beansCreated) {
+            closed.increment();
+            live.decrementAndGet();
+            lifetime.record(lifetimeNanos, TimeUnit.NANOSECONDS);
+            beans.record(beansCreated);
+        }
+
+        @Override
+        public void beanCreated(final TaskScopeContext<?> context, final String beanName, final long durationNanos) {
+            final Timer timer = beanCreation != null ? beanCreation : beanCreationByName.computeIfAbsent(beanName,
+                    name -> beanCreationTimer().tag("bean", originalBeanName(name)).register(registry));
+            timer.record(durationNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void destructionCallbackRun(final long durationNanos, final Throwable failure) {
+            (failure == null ? destructionSuccess : destructionFailure).record(durationNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void scopeRejected(final Object contextObject, final Object key) {
+            (key == null ? rejectedByGlobalLimit : rejectedByKeyLimit).increment();
+        }
+    }
+
+    private static String originalBeanName(final String beanName) {
+        return beanName.startsWith(SCOPED_TARGET_PREFIX) ? beanName.substring(SCOPED_TARGET_PREFIX.length()) : beanName;
+    }
+}
@@ -0,0 +1,8 @@
+/**
+ * This module provides Micrometer metrics of the task scopes: {@link
+ * io.github.dawidkc.spring.scopes.micrometer.TaskScopeMetrics} binds the meters fed by a
+ * {@link io.github.dawidkc.spring.scopes.TaskScopeListener} to a meter registry.
+ *
+ * @author dawidkc
+ */
+package io.github.dawidkc.spring.scopes.micrometer;
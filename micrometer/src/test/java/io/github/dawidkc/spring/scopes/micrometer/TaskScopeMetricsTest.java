@@ -0,0 +1,156 @@
+package io.github.dawidkc.spring.scopes.micrometer;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.github.dawidkc.spring.scopes.EnableTaskScope;
+import io.github.dawidkc.spring.scopes.TaskScope;
+import io.github.dawidkc.spring.scopes.TaskScopeAdmission;
+import io.github.dawidkc.spring.scopes.TaskScopeContext;
+import io.github.dawidkc.spring.scopes.TaskScoped;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.config.Scope;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Component;
+
+class TaskScopeMetricsTest {
+
+    final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    TaskScopeMetrics metrics;
+
+    @AfterEach
+    void close() {
+        metrics.close();
+    }
+
+    @Test
+    void should_record_opened_and_closed_task_scopes() {
+        // GIVEN metrics bound to a registry
+        metrics = new TaskScopeMetrics();
+        metrics.bindTo(registry);
+        // WHEN opening nested task scopes
+        try (TaskScopeContext<String> outer = TaskScope.create("outer")) {
+            TaskScope.run("inner", () -> {
+                // THEN both are live
+                assertThat(registry.get("task.scope.live").gauge().value()).isEqualTo(2);
+            });
+        }
+        // ...AND they are counted when closed
+        assertThat(registry.get("task.scope.opened").counter().count()).isEqualTo(2);
+        assertThat(registry.get("task.scope.closed").counter().count()).isEqualTo(2);
+        assertThat(registry.get("task.scope.live").gauge().value()).isZero();
+        assertThat(registry.get("task.scope.lifetime").timer().count()).isEqualTo(2);
+        // ...AND their depth is recorded
+        assertThat(registry.get("task.scope.depth").summary().max()).isEqualTo(2);
+        assertThat(registry.get("task.scope.depth").summary().totalAmount()).isEqualTo(3);
+    }
+
+    @Test
+    void should_not_count_closing_of_task_scopes_opened_before_binding() {
+        // GIVEN a task scope opened before binding the metrics
+        final TaskScopeContext<String> before = TaskScope.create("before");
+        metrics = new TaskScopeMetrics();
+        metrics.bindTo(registry);
+        // WHEN closing it AND opening another one
+        before.close();
+        TaskScope.run("after", () -> {
+            // THEN only the one opened afterwards is live
+            assertThat(registry.get("task.scope.live").gauge().value()).isEqualTo(1);
+        });
+        // ...AND counted when closed
+        assertThat(registry.get("task.scope.closed").counter().count()).isEqualTo(1);
+        assertThat(registry.get("task.scope.live").gauge().value()).isZero();
+    }
+
+    @Test
+    void should_record_rejected_task_scopes() {
+        // GIVEN metrics bound to a registry, and admission control of a single task scope
+        metrics = new TaskScopeMetrics();
+        metrics.bindTo(registry);
+        TaskScopeAdmission.install(new TaskScopeAdmission(1));
+        try {
+            // WHEN a task scope is rejected
+            TaskScope.run("first", () -> assertThatThrownBy(() -> TaskScope.create("second"))
+                    .isInstanceOf(RejectedExecutionException.class));
+        } finally {
+            TaskScopeAdmission.install(null);
+        }
+        // THEN it is counted
+        assertThat(registry.get("task.scope.rejected").tag("limit", "global").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void should_record_created_and_destroyed_beans() {
+        // GIVEN metrics bound to a registry, tagged with the bean names
+        metrics = new TaskScopeMetrics(Tags.of("application", "test"), true);
+        metrics.bindTo(registry);
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(
+                MetricsConfiguration.class, Worker.class, OtherWorker.class)) {
+            // WHEN creating beans within a task scope, one of them failing to be destroyed
+            final Scope scope = context.getBeanFactory().getRegisteredScope(TaskScope.TASK_SCOPE_NAME);
+            assertThatThrownBy(() -> TaskScope.run("ctx", () -> {
+                context.getBean(Worker.class).work();
+                context.getBean(OtherWorker.class).work();
+                scope.registerDestructionCallback("otherWorker", () -> {
+                    throw new IllegalStateException("failed");
+                });
+            })).isInstanceOf(IllegalStateException.class);
+        }
+        // THEN they are counted per task scope
+        assertThat(registry.get("task.scope.beans").tag("application", "test").summary().totalAmount())
+                .isEqualTo(2);
+        // ...AND their creation is timed per bean name
+        assertThat(registry.get("task.scope.bean.creation").tag("bean", "worker").timer().count()).isEqualTo(1);
+        assertThat(registry.get("task.scope.bean.creation").tag("bean", "otherWorker").timer().count())
+                .isEqualTo(1);
+        // ...AND their destruction is timed with its outcome
+        assertThat(registry.get("task.scope.destruction").tag("outcome", "success").timer().count()).isEqualTo(1);
+        assertThat(registry.get("task.scope.destruction").tag("outcome", "failure").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void should_stop_recording_when_closed() {
+        // GIVEN closed metrics
+        metrics = new TaskScopeMetrics();
+        metrics.bindTo(registry);
+        metrics.close();
+        // WHEN opening a task scope
+        TaskScope.run("ctx", () -> { });
+        // THEN it is not recorded
+        assertThat(registry.get("task.scope.opened").counter().count()).isZero();
+    }
+
+    @Configuration
+    @EnableTaskScope
+    static class MetricsConfiguration {
+    }
+
+    @Component("worker")
+    @TaskScoped
+    static class Worker implements DisposableBean {
+
+        public void work() {
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+
+    @Component("otherWorker")
+    @TaskScoped
+    static class OtherWorker {
+
+        public void work() {
+        }
+    }
+
+}
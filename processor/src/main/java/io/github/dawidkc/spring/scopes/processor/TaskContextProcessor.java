@@ -0,0 +1,94 @@
+package io.github.dawidkc.spring.scopes.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Annotation processor generating, for each class with methods having {@code @TaskContext} parameters, a subclass
+ * which opens the task scopes of these parameters around the methods, the same way the aspect enabled with
+ * {@code @EnableAOPTaskScope} does, but without proxies, reflection or AspectJ at runtime.
+ * <p>
+ * For a class {@code Service}, the generated class is {@code Service_TaskContext} in the same package (for a nested
+ * class {@code Outer.Service}, it is {@code Outer_Service_TaskContext}), with the constructors of the class. Its
+ * overriding methods run the methods of the class within {@code TaskScope.call}, a task scope per {@code @TaskContext}
+ * parameter, the first parameter's outermost, honouring {@code timeoutMillis}. The instances of the generated class
+ * are to be created in place of the class, e.g. in a {@code @Bean} method; as the scopes are opened by the overriding
+ * methods, they are also opened for the calls from within the class itself. Static methods get static counterparts
+ * in the generated class instead, to be called in place of them.
+ * <p>
+ * The methods must be overridable: private or final methods, and methods of final classes, are reported as errors;
+ * abstract methods, e.g. of interfaces, are left to their implementations. Checked exceptions declared by a method are
+ * rethrown as they are.
+ * <p>
+ * The processor is picked up by the compiler from the classpath; the aspect should not be enabled for the same
+ * classes, which is the case with the generated classes themselves, since their methods have no
+ * {@code @TaskContext} parameters of their own.
+ *
+ * @author dawidkc
+ */
+@SupportedAnnotationTypes(TaskContextProcessor.TASK_CONTEXT)
+public class TaskContextProcessor extends AbstractProcessor {
+
+    /**
+     * Name of the processed annotation.
+     */
+    static final String TASK_CONTEXT = "io.github.dawidkc.spring.scopes.aop.TaskContext";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        final Map<TypeElement, Set<ExecutableElement>> methods = new LinkedHashMap<>();
+        for (TypeElement annotation : annotations) {
+            for (Element parameter : roundEnv.getElementsAnnotatedWith(annotation)) {
+                final Element executable = parameter.getEnclosingElement();
+                if (executable.getKind() != ElementKind.METHOD) {
+                    error(parameter, "@TaskContext is only supported on method parameters");
+                    continue;
+                }
+                methods.computeIfAbsent((TypeElement) executable.getEnclosingElement(), type -> new LinkedHashSet<>())
+                        .add((ExecutableElement) executable);
+            }
+        }
+        methods.forEach(this::generate);
+        return false;
+    }
+
+    private void generate(final TypeElement type, final Set<ExecutableElement> methods) {
+        final TaskContextSource source = new TaskContextSource(processingEnv, type, methods);
+        final String code = source.generate();
+        if (code == null) {
+            return;
+        }
+        try {
+            final JavaFileObject file = processingEnv.getFiler().createSourceFile(source.getQualifiedName(), type);
+            try (Writer writer = file.openWriter()) {
+                writer.write(code);
+            }
+        } catch (IOException e) {
+            error(type, "Could not write " + source.getQualifiedName() + ": " + e.getMessage());
+        }
+    }
+
+    private void error(final Element element, final String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,387 @@
+package io.github.dawidkc.spring.scopes.processor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+/**
+ * Source of the class generated by {@link TaskContextProcessor} for a class, see there.
+ *
+ * @author dawidkc
+ */
+final class TaskContextSource {
+
+    private static final String SUFFIX = "_TaskContext";
+
+    private static final String TASK_SCOPE = "io.github.dawidkc.spring.scopes.TaskScope";
+
+    private static final String TIME_UNIT = "java.util.concurrent.TimeUnit";
+
+    private static final String UNDECLARED = "java.lang.reflect.UndeclaredThrowableException";
+
+    private static final String INDENT = "    ";
+
+    private static final int NESTED = 3;
+
+    private final ProcessingEnvironment env;
+
+    private final Elements elements;
+
+    private final Types types;
+
+    private final TypeElement type;
+
+    private final Set<ExecutableElement> methods;
+
+    private final String packageName;
+
+    private final String simpleName;
+
+    private final StringBuilder code = new StringBuilder();
+
+    private boolean failed;
+
+    TaskContextSource(final ProcessingEnvironment processingEnv, final TypeElement annotatedType,
+                      final Set<ExecutableElement> annotatedMethods) {
+        this.env = processingEnv;
+        this.elements = processingEnv.getElementUtils();
+        this.types = processingEnv.getTypeUtils();
+        this.type = annotatedType;
+        this.methods = annotatedMethods;
+        this.packageName = elements.getPackageOf(annotatedType).getQualifiedName().toString();
+        this.simpleName = flatName(annotatedType) + SUFFIX;
+    }
+
+    /**
+     * Returns the qualified name of the generated class.
+     */
+    String getQualifiedName() {
+        return packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+    }
+
+    /**
+     * Returns the source of the generated class, or {@code null} if there is nothing to generate or an error has been
+     * reported.
+     */
+    String generate() {
+        final List<ExecutableElement> instanceMethods = new ArrayList<>();
+        final List<ExecutableElement> staticMethods = new ArrayList<>();
+        for (ExecutableElement method : methods) {
+            final Set<Modifier> modifiers = method.getModifiers();
+            if (modifiers.contains(Modifier.ABSTRACT)) {
+                continue;
+            }
+            if (modifiers.contains(Modifier.PRIVATE)) {
+                error(method, "Private method with @TaskContext parameters cannot be overridden");
+            } else if (modifiers.contains(Modifier.STATIC)) {
+                staticMethods.add(method);
+            } else if (modifiers.contains(Modifier.FINAL)) {
+                error(method, "Final method with @TaskContext parameters cannot be overridden");
+            } else {
+                instanceMethods.add(method);
+            }
+        }
+        if (instanceMethods.isEmpty() && staticMethods.isEmpty()) {
+            return null;
+        }
+        final boolean subclass = !instanceMethods.isEmpty();
+        checkType(subclass);
+        if (failed) {
+            return null;
+        }
+        header(subclass);
+        if (subclass) {
+            constructors();
+        } else {
+            line(1, "private " + simpleName + "() {");
+            line(1, "}");
+        }
+        for (ExecutableElement method : instanceMethods) {
+            method(method);
+        }
+        for (ExecutableElement method : staticMethods) {
+            method(method);
+        }
+        line(0, "}");
+        return failed ? null : code.toString();
+    }
+
+    private void checkType(final boolean subclass) {
+        for (Element element = type; element instanceof TypeElement; element = element.getEnclosingElement()) {
+            if (element.getModifiers().contains(Modifier.PRIVATE)) {
+                error(type, "Class with @TaskContext parameters must not be private");
+                return;
+            }
+        }
+        if (type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS) {
+            error(type, "Local class with @TaskContext parameters is not supported");
+            return;
+        }
+        if (!subclass) {
+            return;
+        }
+        if (type.getKind() != ElementKind.CLASS) {
+            error(type, "Only classes can have non-abstract methods with @TaskContext parameters overridden");
+        } else if (type.getModifiers().contains(Modifier.FINAL)) {
+            error(type, "Final class with @TaskContext parameters cannot be extended");
+        } else if (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC)) {
+            error(type, "Inner class with @TaskContext parameters must be static");
+        }
+    }
+
+    private void header(final boolean subclass) {
+        if (!packageName.isEmpty()) {
+            line(0, "package " + packageName + ";");
+            line(0, "");
+        }
+        line(0, "/**");
+        line(0, " * " + (subclass ? "Subclass" : "Static methods") + " of {@link " + type.getQualifiedName()
+                + "} opening the task scopes of the");
+        line(0, " * {@code @TaskContext} parameters, generated by {@code " + TaskContextProcessor.class.getName()
+                + "}.");
+        line(0, " */");
+        final StringBuilder declaration = new StringBuilder();
+        if (type.getModifiers().contains(Modifier.PUBLIC)) {
+            declaration.append("public ");
+        }
+        if (subclass) {
+            if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+                declaration.append("abstract ");
+            }
+            declaration.append("class ").append(simpleName).append(typeParameters(type.getTypeParameters()))
+                    .append(" extends ").append(type.getQualifiedName());
+            if (!type.getTypeParameters().isEmpty()) {
+                declaration.append(type.getTypeParameters().stream()
+                        .map(parameter -> parameter.getSimpleName().toString())
+                        .collect(Collectors.joining(", ", "<", ">")));
+            }
+        } else {
+            declaration.append("final class ").append(simpleName);
+        }
+        line(0, declaration.append(" {").toString());
+    }
+
+    private void constructors() {
+        final List<ExecutableElement> constructors = ElementFilter.constructorsIn(type.getEnclosedElements()).stream()
+                .filter(constructor -> !constructor.getModifiers().contains(Modifier.PRIVATE))
+                .collect(Collectors.toList());
+        if (constructors.isEmpty()) {
+            error(type, "Class with @TaskContext parameters must have a non-private constructor");
+            return;
+        }
+        for (ExecutableElement constructor : constructors) {
+            line(0, "");
+            line(1, access(constructor) + typeParameters(constructor.getTypeParameters(), " ") + simpleName
+                    + parameters(constructor) + thrown(constructor) + " {");
+            line(2, "super(" + arguments(constructor) + ");");
+            line(1, "}");
+        }
+    }
+
+    private void method(final ExecutableElement method) {
+        final boolean isStatic = method.getModifiers().contains(Modifier.STATIC);
+        final List<String> rethrown = rethrown(method);
+        if (rethrown == null && failed) {
+            return;
+        }
+        line(0, "");
+        if (!isStatic) {
+            line(1, "@Override");
+        }
+        line(1, access(method) + (isStatic ? "static " : "") + typeParameters(method.getTypeParameters(), " ")
+                + method.getReturnType() + " " + method.getSimpleName() + parameters(method) + thrown(method) + " {");
+        final boolean isVoid = method.getReturnType().getKind() == TypeKind.VOID;
+        final String invocation = (isStatic ? type.getQualifiedName().toString() : "super") + "."
+                + method.getSimpleName() + "(" + arguments(method) + ")";
+        String call = isVoid ? "{ " + invocation + "; return null; }" : invocation;
+        final List<? extends VariableElement> parameters = method.getParameters();
+        for (int i = parameters.size() - 1; i >= 0; i--) {
+            final AnnotationMirror taskContext = taskContext(parameters.get(i));
+            if (taskContext != null) {
+                final long timeoutMillis = timeoutMillis(taskContext);
+                call = TASK_SCOPE + ".call(" + parameters.get(i).getSimpleName() + ", "
+                        + (timeoutMillis > 0 ? timeoutMillis + "L, " + TIME_UNIT + ".MILLISECONDS, " : "")
+                        + "() -> " + call + ")";
+            }
+        }
+        final String statement = (isVoid ? "" : "return ") + call + ";";
+        if (rethrown == null) {
+            line(2, statement);
+        } else {
+            final String failure = freshName(method, "e");
+            line(2, "try {");
+            line(NESTED, statement);
+            line(2, "} catch (" + String.join(" | ", rethrown) + " " + failure + ") {");
+            line(NESTED, "throw " + failure + ";");
+            line(2, "} catch (" + Exception.class.getName() + " " + failure + ") {");
+            line(NESTED, "throw new " + UNDECLARED + "(" + failure + ");");
+            line(2, "}");
+        }
+        line(1, "}");
+    }
+
+    /**
+     * Returns the exceptions to be rethrown as they are, the rest being wrapped, or {@code null} if all of them can be
+     * rethrown, i.e. the method declares {@code Exception}.
+     */
+    private List<String> rethrown(final ExecutableElement method) {
+        final TypeMirror exception = elements.getTypeElement(Exception.class.getName()).asType();
+        final TypeMirror runtimeException = elements.getTypeElement(RuntimeException.class.getName()).asType();
+        final TypeMirror error = elements.getTypeElement(Error.class.getName()).asType();
+        final List<TypeMirror> checked = new ArrayList<>();
+        for (TypeMirror thrown : method.getThrownTypes()) {
+            if (thrown.getKind() != TypeKind.DECLARED) {
+                error(method, "Method with @TaskContext parameters cannot throw a type variable");
+                return null;
+            }
+            if (types.isSubtype(exception, thrown)) {
+                return null;
+            }
+            if (types.isSubtype(thrown, runtimeException) || types.isSubtype(thrown, error)
+                    || checked.stream().anyMatch(other -> types.isSubtype(thrown, other))) {
+                continue;
+            }
+            checked.removeIf(other -> types.isSubtype(other, thrown));
+            checked.add(thrown);
+        }
+        final List<String> rethrown = new ArrayList<>();
+        rethrown.add(RuntimeException.class.getName());
+        checked.forEach(thrown -> rethrown.add(thrown.toString()));
+        return rethrown;
+    }
+
+    private static AnnotationMirror taskContext(final VariableElement parameter) {
+        for (AnnotationMirror annotation : parameter.getAnnotationMirrors()) {
+            final TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+            if (annotationType.getQualifiedName().contentEquals(TaskContextProcessor.TASK_CONTEXT)) {
+                return annotation;
+            }
+        }
+        return null;
+    }
+
+    private long timeoutMillis(final AnnotationMirror taskContext) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value
+                : elements.getElementValuesWithDefaults(taskContext).entrySet()) {
+            if (value.getKey().getSimpleName().contentEquals("timeoutMillis")) {
+                return ((Number) value.getValue().getValue()).longValue();
+            }
+        }
+        return 0;
+    }
+
+    private static String access(final ExecutableElement executable) {
+        if (executable.getModifiers().contains(Modifier.PUBLIC)) {
+            return "public ";
+        }
+        if (executable.getModifiers().contains(Modifier.PROTECTED)) {
+            return "protected ";
+        }
+        return "";
+    }
+
+    private static String typeParameters(final List<? extends TypeParameterElement> parameters) {
+        return typeParameters(parameters, "");
+    }
+
+    private static String typeParameters(final List<? extends TypeParameterElement> parameters, final String suffix) {
+        if (parameters.isEmpty()) {
+            return "";
+        }
+        return parameters.stream()
+                .map(parameter -> parameter.getSimpleName() + bounds(parameter.getBounds()))
+                .collect(Collectors.joining(", ", "<", ">")) + suffix;
+    }
+
+    private static String bounds(final List<? extends TypeMirror> bounds) {
+        final List<String> names = bounds.stream()
+                .map(TypeMirror::toString)
+                .filter(name -> !name.equals(Object.class.getName()))
+                .collect(Collectors.toList());
+        return names.isEmpty() ? "" : " extends " + String.join(" & ", names);
+    }
+
+    private static String parameters(final ExecutableElement executable) {
+        final List<? extends VariableElement> parameters = executable.getParameters();
+        final List<String> declarations = new ArrayList<>();
+        for (int i = 0; i < parameters.size(); i++) {
+            final TypeMirror parameterType = parameters.get(i).asType();
+            final String typeName = executable.isVarArgs() && i == parameters.size() - 1
+                    ? ((ArrayType) parameterType).getComponentType() + "..."
+                    : parameterType.toString();
+            declarations.add("final " + typeName + " " + parameters.get(i).getSimpleName());
+        }
+        return "(" + String.join(", ", declarations) + ")";
+    }
+
+    private static String arguments(final ExecutableElement executable) {
+        return executable.getParameters().stream()
+                .map(parameter -> parameter.getSimpleName().toString())
+                .collect(Collectors.joining(", "));
+    }
+
+    private static String thrown(final ExecutableElement executable) {
+        final List<? extends TypeMirror> thrown = executable.getThrownTypes();
+        if (thrown.isEmpty()) {
+            return "";
+        }
+        return " throws " + thrown.stream().map(TypeMirror::toString).collect(Collectors.joining(", "));
+    }
+
+    /**
+     * Returns a name not clashing with the parameters of the method.
+     */
+    private static String freshName(final ExecutableElement method, final String name) {
+        final Collection<String> taken = method.getParameters().stream()
+                .map(parameter -> parameter.getSimpleName().toString())
+                .collect(Collectors.toSet());
+        String fresh = name;
+        while (taken.contains(fresh)) {
+            fresh = fresh + "_";
+        }
+        return fresh;
+    }
+
+    private static String flatName(final TypeElement type) {
+        String name = type.getSimpleName().toString();
+        for (Element element = type.getEnclosingElement(); element instanceof TypeElement;
+             element = element.getEnclosingElement()) {
+            name = element.getSimpleName() + "_" + name;
+        }
+        return name;
+    }
+
+    private void line(final int indent, final String text) {
+        for (int i = 0; i < indent && !text.isEmpty(); i++) {
+            code.append(INDENT);
+        }
+        code.append(text).append('\n');
+    }
+
+    private void error(final Element element, final String message) {
+        failed = true;
+        env.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
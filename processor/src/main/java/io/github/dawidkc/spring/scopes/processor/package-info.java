@@ -0,0 +1,8 @@
+/**
+ * This module provides {@link io.github.dawidkc.spring.scopes.processor.TaskContextProcessor}, an annotation
+ * processor generating, at compile time, the classes opening the task scopes of the {@code @TaskContext} parameters,
+ * as an alternative to the aspect which needs neither proxies nor AspectJ at runtime.
+ *
+ * @author dawidkc
+ */
+package io.github.dawidkc.spring.scopes.processor;
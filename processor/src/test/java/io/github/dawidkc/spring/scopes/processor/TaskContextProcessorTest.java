@@ -0,0 +1,176 @@
+package io.github.dawidkc.spring.scopes.processor;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.github.dawidkc.spring.scopes.TaskScope;
+import io.github.dawidkc.spring.scopes.TaskScopeContext;
+import io.github.dawidkc.spring.scopes.TaskScopeListener;
+import io.github.dawidkc.spring.scopes.aop.EnableAOPTaskScope;
+import io.github.dawidkc.spring.scopes.aop.TaskContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+
+class TaskContextProcessorTest {
+
+    final TaskContextService<String> service = new TaskContextService_TaskContext<>("service:");
+
+    @Test
+    void should_run_method_within_task_scope() {
+        // WHEN calling a method with a @TaskContext parameter of the generated class
+        final String result = service.current("ctx");
+        // THEN it runs within a task scope with the parameter as the context
+        assertThat(result).isEqualTo("service:ctx");
+        // AND the task scope is closed afterwards
+        assertThat(TaskScope.isActive()).isFalse();
+    }
+
+    @Test
+    void should_open_task_scopes_in_parameter_order() {
+        // GIVEN a listener recording the task scopes opened
+        final List<Object> opened = Collections.synchronizedList(new ArrayList<>());
+        final TaskScopeListener listener = new TaskScopeListener() {
+            @Override
+            public void scopeOpened(final TaskScopeContext<?> context, final int depth) {
+                opened.add(context.getContextObject());
+            }
+        };
+        TaskScope.addListener(listener);
+        try {
+            // WHEN calling a method with two @TaskContext parameters
+            final Object result = service.nested("outer", 0, 42);
+            // THEN the first parameter's task scope is opened first, and the method runs within the last one
+            assertThat(opened).containsExactly("outer", 42);
+            assertThat(result).isEqualTo(42);
+        } finally {
+            TaskScope.removeListener(listener);
+        }
+    }
+
+    @Test
+    void should_not_be_advised_by_aspect() {
+        // GIVEN the generated class as a bean, with the aspect enabled
+        final List<Object> opened = Collections.synchronizedList(new ArrayList<>());
+        final TaskScopeListener listener = new TaskScopeListener() {
+            @Override
+            public void scopeOpened(final TaskScopeContext<?> context, final int depth) {
+                opened.add(context.getContextObject());
+            }
+        };
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(AopConfig.class)) {
+            TaskScope.addListener(listener);
+            // WHEN calling its method with two @TaskContext parameters
+            final Object result = context.getBean(TaskContextService.class).nested("outer", 0, 42);
+            // THEN the task scopes are opened once, by the generated class
+            assertThat(opened).containsExactly("outer", 42);
+            assertThat(result).isEqualTo(42);
+        } finally {
+            TaskScope.removeListener(listener);
+        }
+    }
+
+    @Test
+    void should_open_task_scope_on_self_invocation() {
+        // WHEN a method without @TaskContext parameters calls one with them on the same object
+        final String result = service.selfInvoking("self");
+        // THEN the task scope is opened, unlike with a proxy
+        assertThat(result).isEqualTo("service:self");
+    }
+
+    @Test
+    void should_rethrow_checked_exceptions() {
+        // WHEN the methods throw checked exceptions they declare
+        // THEN they are thrown as they are
+        assertThatThrownBy(() -> service.failing("ctx", "failed"))
+                .isExactlyInstanceOf(IOException.class)
+                .hasMessage("failed");
+        assertThatThrownBy(() -> service.failingUndeclared("ctx"))
+                .isExactlyInstanceOf(InterruptedException.class);
+        assertThat(TaskScope.isActive()).isFalse();
+    }
+
+    @Test
+    void should_support_timeouts_generics_and_static_methods() {
+        // WHEN calling a method with a timeout
+        // THEN its task scope has a deadline
+        assertThat(service.timed("ctx")).isBetween(1L, 60_000L);
+        // AND generic and varargs methods are overridden
+        assertThat(service.generic(42, "a", "b")).isEqualTo(42);
+        // AND static methods have static counterparts
+        assertThat(TaskContextService_TaskContext.staticCurrent("static")).isEqualTo("static");
+    }
+
+    @Test
+    void should_report_methods_which_cannot_be_overridden(@TempDir final Path generated) throws Exception {
+        // GIVEN a class with a final method with a @TaskContext parameter
+        final String source = "package test;\n"
+                + "import io.github.dawidkc.spring.scopes.aop.TaskContext;\n"
+                + "public class Invalid {\n"
+                + "    public final void run(@TaskContext String ctx) {\n"
+                + "    }\n"
+                + "}\n";
+        // WHEN processing it
+        final List<String> errors = process(generated, "test.Invalid", source);
+        // THEN the method is reported
+        assertThat(errors).containsExactly("Final method with @TaskContext parameters cannot be overridden");
+        // AND no class is generated
+        assertThat(Files.exists(generated.resolve("test/Invalid_TaskContext.java"))).isFalse();
+    }
+
+    @Configuration
+    @EnableAOPTaskScope
+    @EnableAspectJAutoProxy
+    static class AopConfig {
+
+        @Bean
+        TaskContextService<String> service() {
+            return new TaskContextService_TaskContext<>("bean:");
+        }
+    }
+
+    private static List<String> process(final Path generated, final String className, final String source)
+            throws Exception {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        final JavaFileObject file = new SimpleJavaFileObject(
+                URI.create("string:///" + className.replace('.', '/') + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(final boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        final String classPath = new File(TaskContext.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                .getPath();
+        final JavaCompiler.CompilationTask task = compiler.getTask(null, null, diagnostics,
+                Arrays.asList("-proc:only", "-classpath", classPath, "-s", generated.toString()), null,
+                Collections.singletonList(file));
+        task.setProcessors(Collections.singletonList(new TaskContextProcessor()));
+        task.call();
+        return diagnostics.getDiagnostics().stream()
+                .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR)
+                .map(diagnostic -> diagnostic.getMessage(null))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,51 @@
+package io.github.dawidkc.spring.scopes.processor;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import io.github.dawidkc.spring.scopes.TaskScope;
+import io.github.dawidkc.spring.scopes.aop.TaskContext;
+
+/**
+ * Class processed by {@link TaskContextProcessor} when compiling the tests.
+ */
+class TaskContextService<T extends CharSequence> {
+
+    private final String prefix;
+
+    TaskContextService(final String prefix) {
+        this.prefix = prefix;
+    }
+
+    String current(@TaskContext final T context) {
+        return prefix + TaskScope.getCurrentContextObject();
+    }
+
+    Object nested(@TaskContext final String outer, final int ignored, @TaskContext final Integer inner) {
+        return TaskScope.getCurrentContextObject();
+    }
+
+    String selfInvoking(final T context) {
+        return current(context);
+    }
+
+    void failing(@TaskContext final String context, final String message) throws IOException {
+        throw new IOException(message);
+    }
+
+    void failingUndeclared(@TaskContext final String context) throws Exception {
+        throw new InterruptedException(context);
+    }
+
+    long timed(@TaskContext(timeoutMillis = 60_000) final String context) {
+        return TaskScope.remaining(TimeUnit.MILLISECONDS);
+    }
+
+    <E> E generic(@TaskContext final E context, final String... more) {
+        return TaskScope.getCurrentContextObject();
+    }
+
+    static String staticCurrent(@TaskContext final String context) {
+        return TaskScope.getCurrentContextObject();
+    }
+}
@@ -0,0 +1,89 @@
+package io.github.dawidkc.spring.scopes.reactor;
+
+import java.util.function.Function;
+
+import io.github.dawidkc.spring.scopes.TaskScopeContext;
+import io.github.dawidkc.spring.scopes.TaskScopeSnapshot;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Hooks;
+import reactor.core.publisher.Operators;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+
+/**
+ * Propagation of the task scope through Project Reactor pipelines. The {@link TaskScopeContext} is carried in the
+ * Reactor {@link Context} of the subscription, and the hooks installed by {@link #install()} make it current on
+ * whatever thread runs the operators:
+ * <p>
+ * <pre><code>
+ * TaskScopeReactor.install();     // once, at startup
+ *
+ * try (var ctx = TaskScope.create("data")) {
+ *     Result result = Mono.fromCallable(() -&gt; worker.load())
+ *             .publishOn(Schedulers.parallel())
+ *             .map(data -&gt; worker.process(data))            // same task-scoped worker
+ *             .subscriberContext(TaskScopeReactor.withCurrentTaskScope())
+ *             .block();
+ * }
+ * </code></pre>
+ * <p>
+ * The task scope is restored with a {@link TaskScopeSnapshot}: each restoration keeps the context alive while the
+ * operator runs, and signals arriving after the task scope has been closed and its beans destroyed run without any
+ * task scope, so task-scoped beans used by them fail to resolve instead of being created in a closed scope.
+ *
+ * @author dawidkc
+ */
+public final class TaskScopeReactor {
+
+    private static final String HOOK_KEY = TaskScopeReactor.class.getName();
+
+    private TaskScopeReactor() {
+    }
+
+    /**
+     * Installs the Reactor hooks: each operator delivers its signals within the task scope found in the subscriber's
+     * {@link Context}, and tasks scheduled on Reactor's schedulers run within the task scope current when they are
+     * scheduled. Idempotent.
+     */
+    public static void install() {
+        Hooks.onEachOperator(HOOK_KEY, Operators.lift((scannable, subscriber) -> subscribe(subscriber)));
+        Schedulers.onScheduleHook(HOOK_KEY, TaskScopeReactor::schedule);
+    }
+
+    /**
+     * Removes the hooks installed by {@link #install()}.
+     */
+    public static void uninstall() {
+        Hooks.resetOnEachOperator(HOOK_KEY);
+        Schedulers.resetOnScheduleHook(HOOK_KEY);
+    }
+
+    /**
+     * Returns a function putting the task scope current at the time of this call into the Reactor {@link Context},
+     * to be passed to {@code subscriberContext(...)} of a {@code Mono} or {@code Flux}. Outside of any task scope, the
+     * function does not change the context.
+     */
+    public static Function<Context, Context> withCurrentTaskScope() {
+        final TaskScopeSnapshot snapshot = TaskScopeSnapshot.capture();
+        if (snapshot == null) {
+            return Function.identity();
+        }
+        return reactorContext -> reactorContext.put(TaskScopeSnapshot.class, snapshot);
+    }
+
+    private static <T> CoreSubscriber<? super T> subscribe(final CoreSubscriber<? super T> subscriber) {
+        final TaskScopeSnapshot snapshot = subscriber.currentContext().getOrDefault(TaskScopeSnapshot.class, null);
+        if (snapshot == null) {
+            return subscriber;
+        }
+        return new TaskScopeSubscriber<>(subscriber, snapshot);
+    }
+
+    private static Runnable schedule(final Runnable task) {
+        final TaskScopeSnapshot snapshot = TaskScopeSnapshot.capture();
+        if (snapshot == null) {
+            return task;
+        }
+        return () -> snapshot.run(task);
+    }
+}
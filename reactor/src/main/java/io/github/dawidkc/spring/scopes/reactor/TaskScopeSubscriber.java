@@ -0,0 +1,45 @@
+package io.github.dawidkc.spring.scopes.reactor;
+
+import io.github.dawidkc.spring.scopes.TaskScopeSnapshot;
+import lombok.RequiredArgsConstructor;
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.util.context.Context;
+
+/**
+ * Subscriber delivering the signals to the wrapped one within the given task scope.
+ *
+ * @author dawidkc
+ */
+@RequiredArgsConstructor
+final class TaskScopeSubscriber<T> implements CoreSubscriber<T> {
+
+    private final CoreSubscriber<? super T> actual;
+
+    private final TaskScopeSnapshot snapshot;
+
+    @Override
+    public Context currentContext() {
+        return actual.currentContext();
+    }
+
+    @Override
+    public void onSubscribe(final Subscription subscription) {
+        snapshot.run(() -> actual.onSubscribe(subscription));
+    }
+
+    @Override
+    public void onNext(final T value) {
+        snapshot.run(() -> actual.onNext(value));
+    }
+
+    @Override
+    public void onError(final Throwable throwable) {
+        snapshot.run(() -> actual.onError(throwable));
+    }
+
+    @Override
+    public void onComplete() {
+        snapshot.run(actual::onComplete);
+    }
+}
@@ -0,0 +1,8 @@
+/**
+ * This module provides the propagation of the task scopes through Project Reactor pipelines: {@link
+ * io.github.dawidkc.spring.scopes.reactor.TaskScopeReactor} installs the Reactor hooks restoring the task scope
+ * carried in the subscriber context.
+ *
+ * @author dawidkc
+ */
+package io.github.dawidkc.spring.scopes.reactor;
@@ -0,0 +1,137 @@
+package io.github.dawidkc.spring.scopes.reactor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.github.dawidkc.spring.scopes.EnableTaskScope;
+import io.github.dawidkc.spring.scopes.TaskScope;
+import io.github.dawidkc.spring.scopes.TaskScopeContext;
+import io.github.dawidkc.spring.scopes.TaskScoped;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Component;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+@SpringJUnitConfig
+@ContextConfiguration(classes = {
+        TaskScopeReactorTest.ReactorConfiguration.class,
+        TaskScopeReactorTest.Worker.class
+})
+class TaskScopeReactorTest {
+
+    final ExecutorService pool = Executors.newFixedThreadPool(2);
+
+    @Autowired
+    Worker worker;
+
+    @BeforeAll
+    static void install() {
+        TaskScopeReactor.install();
+    }
+
+    @AfterAll
+    static void uninstall() {
+        TaskScopeReactor.uninstall();
+    }
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void should_use_same_task_scoped_bean_in_operators_on_other_threads() {
+        // GIVEN a task scope with a task-scoped bean
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            final String id = worker.getId();
+            // WHEN using the bean in operators run by Reactor schedulers
+            final List<String> ids = Flux.range(0, 3)
+                    .publishOn(Schedulers.parallel())
+                    .map(i -> worker.getId())
+                    .concatWith(Mono.fromCallable(worker::getId).subscribeOn(Schedulers.boundedElastic()))
+                    .subscriberContext(TaskScopeReactor.withCurrentTaskScope())
+                    .collectList()
+                    .block(Duration.ofSeconds(5));
+            // THEN the very same bean is used
+            assertThat(ids).hasSize(4).containsOnly(id);
+        }
+    }
+
+    @Test
+    void should_restore_task_scope_from_reactor_context_on_thread_without_it() {
+        // GIVEN a pipeline carrying a task scope, whose values are emitted by a thread outside of any task scope
+        final String id;
+        final String[] emitted = new String[1];
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            id = worker.getId();
+            final Mono<String> mono = Mono.fromFuture(CompletableFuture.supplyAsync(() -> "value", pool))
+                    .map(value -> worker.getId())
+                    .subscriberContext(TaskScopeReactor.withCurrentTaskScope());
+            // WHEN subscribing to it
+            emitted[0] = mono.block(Duration.ofSeconds(5));
+        }
+        // THEN the task scope is restored for the operators
+        assertThat(emitted[0]).isEqualTo(id);
+    }
+
+    @Test
+    void should_not_resolve_task_scoped_beans_after_task_scope_is_destroyed() {
+        // GIVEN a pipeline capturing a task scope which is closed before the subscription
+        final Mono<String> mono;
+        final int destroyed;
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            worker.getId();
+            destroyed = Worker.DESTROYED.get();
+            mono = Mono.just("value")
+                    .publishOn(Schedulers.parallel())
+                    .map(value -> worker.getId())
+                    .subscriberContext(TaskScopeReactor.withCurrentTaskScope());
+        }
+        // WHEN subscribing to it
+        // THEN the bean is not resolved in the closed scope
+        assertThatThrownBy(() -> mono.block(Duration.ofSeconds(5)))
+                .hasMessageContaining("No task context available");
+        assertThat(Worker.DESTROYED.get()).isEqualTo(destroyed + 1);
+    }
+
+    @Configuration
+    @EnableTaskScope
+    static class ReactorConfiguration {
+    }
+
+    @Component
+    @TaskScoped
+    static class Worker implements DisposableBean {
+
+        static final AtomicInteger DESTROYED = new AtomicInteger();
+
+        final String id = UUID.randomUUID().toString();
+
+        String getId() {
+            return id;
+        }
+
+        @Override
+        public void destroy() {
+            DESTROYED.incrementAndGet();
+        }
+    }
+
+}
@@ -0,0 +1,66 @@
+package io.github.dawidkc.spring.scopes;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.BeanCurrentlyInCreationException;
+
+/**
+ * Placeholder of a task-scoped bean being created, stored in place of the bean while its factory runs. Other threads
+ * resolving the same bean in the same context wait for the creation to finish instead of creating another instance.
+ * <p>
+ * Waiting is guarded against deadlocks (see {@link PendingResult}): a thread which would wait (directly or through
+ * other waiting threads) for a creation owned by itself fails with {@link BeanCurrentlyInCreationException} instead.
+ * <p>
+ * A failed creation is reported to all the threads waiting for it with the very exception thrown to the creating
+ * thread, while the placeholder is removed, so that the accesses coming afterwards create the bean anew.
+ *
+ * @author dawidkc
+ */
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+final class BeanCreation extends PendingResult {
+
+    private final String name;
+
+    private Object bean;
+
+    private Throwable failure;
+
+    synchronized void complete(final Object createdBean) {
+        this.bean = createdBean;
+        done();
+    }
+
+    /**
+     * Completes the creation with the {@link RuntimeException} or {@link Error} thrown by the factory.
+     */
+    synchronized void fail(final Throwable cause) {
+        this.failure = cause;
+        done();
+    }
+
+    /**
+     * Waits for the bean to be created and returns it, or rethrows the very exception thrown by its factory.
+     */
+    Object await() {
+        awaitDone();
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw (RuntimeException) failure;
+        }
+        return bean;
+    }
+
+    @Override
+    protected RuntimeException waitingForItself() {
+        return new BeanCurrentlyInCreationException(name,
+                "Task-scoped bean creation would wait for a creation started by the same thread");
+    }
+
+    @Override
+    protected RuntimeException interrupted(final InterruptedException cause) {
+        return new BeanCreationException(name, "Interrupted while waiting for task-scoped bean creation", cause);
+    }
+}
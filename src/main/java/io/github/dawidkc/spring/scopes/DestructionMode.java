@@ -0,0 +1,26 @@
+package io.github.dawidkc.spring.scopes;
+
+/**
+ * Defines how the destruction callbacks of task-scoped beans are run when a task scope is closed. In both modes the
+ * callbacks of a single scope are run in reverse order of the bean creation, and a failing callback does not prevent
+ * the remaining ones from running.
+ *
+ * @author dawidkc
+ * @see EnableTaskScope#destructionMode()
+ */
+public enum DestructionMode {
+
+    /**
+     * Callbacks are run by the thread closing the scope, before {@link TaskScopeContext#close()} returns. The first
+     * failure is rethrown from {@code close()}, with the subsequent ones added to it as suppressed exceptions.
+     */
+    SYNC,
+
+    /**
+     * Callbacks are handed over, as one batch per closed scope, to a bounded pool of background threads (see
+     * {@link EnableTaskScope#destructionThreads()} and {@link EnableTaskScope#destructionQueueCapacity()}), and their
+     * failures are logged. When the queue is full, the batch is run by the thread closing the scope instead.
+     */
+    ASYNC
+
+}
@@ -41,12 +41,104 @@ import org.springframework.context.annotation.Import;
  *     }
  * </code></pre>
  * <p>
+ * Destruction callbacks of the task-scoped beans (e.g. {@link org.springframework.beans.factory.DisposableBean} or
+ * inferred {@code close()} methods) are run when the task scope is closed, see {@link #destructionMode()}. The
+ * attributes may also be set together with {@link io.github.dawidkc.spring.scopes.aop.EnableAOPTaskScope} by placing
+ * both annotations on the configuration class.
  *
  * @author dawidkc
  */
 @Target(ElementType.TYPE)
 @Retention(RetentionPolicy.RUNTIME)
 @Documented
-@Import(TaskScopeConfiguration.class)
+@Import({TaskScopeConfiguration.class, TaskScopeStorageRegistrar.class})
 public @interface EnableTaskScope {
+
+    /**
+     * Storage of the current task scope contexts. The storage is global: all application contexts in the JVM should
+     * use the same one.
+     */
+    Class<? extends TaskScopeStorage> storage() default ThreadLocalTaskScopeStorage.class;
+
+    /**
+     * How the destruction callbacks of the task-scoped beans are run when a task scope is closed.
+     */
+    DestructionMode destructionMode() default DestructionMode.SYNC;
+
+    /**
+     * Number of background threads running the destruction callbacks in the {@link DestructionMode#ASYNC} mode.
+     */
+    int destructionThreads() default 1;
+
+    /**
+     * Number of closed task scopes which may wait for their destruction callbacks to be run in the
+     * {@link DestructionMode#ASYNC} mode before the closing threads have to run them by themselves.
+     */
+    int destructionQueueCapacity() default 1024;
+
+    /**
+     * Number of the bean storages of closed task scope contexts each thread keeps for reuse by the next task scopes, so
+     * that creating the first bean of a task scope does not allocate the storage; {@code 0} disables the pooling. The
+     * pool is used by the task scopes whose first bean is one of the application context. The contexts themselves are
+     * not reused, see {@link TaskScopeContext}.
+     */
+    int contextPoolSize() default 0;
+
+    /**
+     * Maximum number of the context objects whose {@link TaskScoped#sticky() sticky} beans are kept by the
+     * {@link TaskScopeStickyCache}; the beans of the least recently used ones are evicted first. {@code 0} disables the
+     * cache, turning the sticky beans into regular task-scoped ones.
+     */
+    int stickyCacheSize() default 256;
+
+    /**
+     * Time in milliseconds after which the {@link TaskScoped#sticky() sticky} beans created for a context object are
+     * evicted and created anew by the next task scope; {@code 0} keeps them until they are evicted by size.
+     */
+    long stickyTimeToLiveMillis() default 0;
+
+    /**
+     * Number of background threads creating the {@link TaskScoped#eager() eager} task-scoped beans, unless
+     * {@link #eagerExecutor()} is set.
+     */
+    int eagerThreads() default 4;
+
+    /**
+     * Name of the {@link java.util.concurrent.Executor} bean creating the {@link TaskScoped#eager() eager} task-scoped
+     * beans, instead of the threads of {@link #eagerThreads()}.
+     */
+    String eagerExecutor() default "";
+
+    /**
+     * How the task scopes left open by mistake are detected. The detection follows all open task scopes, so it has a
+     * cost; it is meant for finding the leaks rather than to be always on.
+     */
+    LeakDetection leakDetection() default LeakDetection.DISABLED;
+
+    /**
+     * Time in milliseconds after which a task scope still open is reported as possibly leaked, when
+     * {@link #leakDetection()} is enabled; {@code 0} only reports the task scopes left open by a task run within a task
+     * scope.
+     */
+    long leakThresholdMillis() default 60_000;
+
+    /**
+     * Number of the task scopes opened per each one whose creation stack trace is recorded for the leak reports, when
+     * {@link #leakDetection()} is enabled; {@code 1} records all of them, {@code 0} none (only the thread is reported).
+     */
+    int leakStackSampling() default 16;
+
+    /**
+     * Whether the thread which opened a task scope with a deadline (see {@link TaskScope#create(Object, long,
+     * java.util.concurrent.TimeUnit)}) is interrupted when the deadline passes while the task scope is still open.
+     * Otherwise the task scopes exceeding their deadline only become {@link TaskScopeContext#isCancelled() cancelled}.
+     */
+    boolean interruptOnDeadline() default false;
+
+    /**
+     * Whether the {@link TaskScopeMXBean} is registered in the platform MBean server. It does not follow the task
+     * scopes until its detailed mode is switched on.
+     */
+    boolean registerMBean() default true;
+
 }
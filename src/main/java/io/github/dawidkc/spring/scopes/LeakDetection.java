@@ -0,0 +1,33 @@
+package io.github.dawidkc.spring.scopes;
+
+/**
+ * Defines how the task scopes left open by mistake (e.g. when {@link TaskScopeContext#close()} is skipped by an
+ * exception) are detected. A leaked task scope stays on the stack of its thread, keeping its beans alive; on a pooled
+ * thread, the next tasks would run within it.
+ *
+ * @author dawidkc
+ * @see EnableTaskScope#leakDetection()
+ */
+public enum LeakDetection {
+
+    /**
+     * Leaks are not detected. The task scopes left open by a task run within a task scope (e.g. by the
+     * {@link TaskScopeExecutors} wrappers or {@link TaskScope#call}) are still removed from the stack of the thread
+     * when the task is done, but they are neither reported nor closed.
+     */
+    DISABLED,
+
+    /**
+     * The task scopes open longer than {@link EnableTaskScope#leakThresholdMillis()}, and the ones left open by a task
+     * run within a task scope, are logged as warnings, along with the thread and, for a sample of them (see
+     * {@link EnableTaskScope#leakStackSampling()}), the stack trace of their creation.
+     */
+    REPORT,
+
+    /**
+     * Like {@link #REPORT}, and additionally the task scopes left open by a task run within a task scope are closed on
+     * its behalf, destroying their beans once no other task uses them.
+     */
+    UNWIND
+
+}
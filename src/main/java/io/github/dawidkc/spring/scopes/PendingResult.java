@@ -0,0 +1,110 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Result computed by the thread which created it, and awaited by the other threads needing it: a task-scoped bean
+ * being created, or the result of a {@code @TaskCached} method. Subclasses keep the result and call {@link #done()}
+ * once it is known.
+ * <p>
+ * Waiting is guarded against deadlocks: each waiting thread is recorded along with the result it waits for, and a
+ * thread which would wait (directly or through other waiting threads) for a result computed by itself fails with
+ * {@link #waitingForItself()} instead. The waits of all the kinds of results are followed together, but a cycle going
+ * through other blocking calls (e.g. waiting for a future) is not detected.
+ * <p>
+ * Only meant to be extended within the task scope support.
+ *
+ * @author dawidkc
+ */
+public abstract class PendingResult {
+
+    /**
+     * Results awaited by the threads waiting for them.
+     */
+    private static final Map<Thread, PendingResult> AWAITED = new ConcurrentHashMap<>();
+
+    private final Thread owner = Thread.currentThread();
+
+    private volatile boolean done;
+
+    /**
+     * Creates a result computed by the current thread.
+     */
+    protected PendingResult() {
+    }
+
+    /**
+     * Returns whether the result is known.
+     */
+    protected final boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Returns whether the result is computed by the current thread.
+     */
+    protected final boolean isComputedByCurrentThread() {
+        return owner == Thread.currentThread();
+    }
+
+    /**
+     * Marks the result as known, after the subclass has stored it, and wakes up the threads waiting for it.
+     */
+    protected final synchronized void done() {
+        this.done = true;
+        notifyAll();
+    }
+
+    /**
+     * Waits until the result is known.
+     *
+     * @throws RuntimeException the exception of {@link #waitingForItself()} if the result is being computed by the
+     *                          current thread, or by a thread waiting (directly or through other threads) for a result
+     *                          computed by it, or the one of {@link #interrupted(InterruptedException)} if the current
+     *                          thread is interrupted while waiting, its interrupt status being restored
+     */
+    protected final void awaitDone() {
+        if (done) {
+            return;
+        }
+        final Thread current = Thread.currentThread();
+        AWAITED.put(current, this);
+        try {
+            checkNotWaitingForItself(current);
+            synchronized (this) {
+                while (!done) {
+                    wait();
+                }
+            }
+        } catch (InterruptedException e) {
+            current.interrupt();
+            throw interrupted(e);
+        } finally {
+            AWAITED.remove(current);
+        }
+    }
+
+    /**
+     * Returns the exception thrown to a thread which would wait for a result computed by itself.
+     */
+    protected abstract RuntimeException waitingForItself();
+
+    /**
+     * Returns the exception thrown to a thread interrupted while waiting.
+     */
+    protected abstract RuntimeException interrupted(InterruptedException cause);
+
+    /**
+     * Follows the threads computing the awaited results, skipping the waits which are over already.
+     */
+    private void checkNotWaitingForItself(final Thread current) {
+        PendingResult awaited = this;
+        for (int steps = AWAITED.size(); awaited != null && !awaited.done && steps >= 0; steps--) {
+            if (awaited.owner == current) {
+                throw waitingForItself();
+            }
+            awaited = AWAITED.get(awaited.owner);
+        }
+    }
+}
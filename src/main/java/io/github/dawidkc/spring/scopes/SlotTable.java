@@ -0,0 +1,112 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Storage of task-scoped values of a single {@link TaskScopeContext}, indexed by the slots from
+ * {@link TaskScopeSlots}. Values of the bean names with no slot, or with a slot assigned after this table was created,
+ * are kept in a fallback map, which is only allocated when needed.
+ *
+ * @author dawidkc
+ */
+final class SlotTable<V> {
+
+    private final AtomicReferenceArray<V> values;
+
+    private volatile Map<String, V> fallback;
+
+    SlotTable(final int size) {
+        this.values = new AtomicReferenceArray<>(size);
+    }
+
+    V get(final int slot, final String name) {
+        if (hasSlot(slot)) {
+            return values.get(slot);
+        }
+        final Map<String, V> map = fallback;
+        return map == null ? null : map.get(name);
+    }
+
+    void put(final int slot, final String name, final V value) {
+        if (hasSlot(slot)) {
+            values.set(slot, value);
+        } else {
+            fallback().put(name, value);
+        }
+    }
+
+    /**
+     * Stores the value unless there is one already, in which case the existing value is returned.
+     */
+    V putIfAbsent(final int slot, final String name, final V value) {
+        if (!hasSlot(slot)) {
+            return fallback().putIfAbsent(name, value);
+        }
+        while (!values.compareAndSet(slot, null, value)) {
+            final V existing = values.get(slot);
+            if (existing != null) {
+                return existing;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Replaces the value only if it is still the expected one; {@code null} value removes it.
+     */
+    boolean replace(final int slot, final String name, final V expected, final V value) {
+        if (hasSlot(slot)) {
+            return values.compareAndSet(slot, expected, value);
+        }
+        final Map<String, V> map = fallback;
+        if (map == null) {
+            return false;
+        }
+        return value == null ? map.remove(name, expected) : map.replace(name, expected, value);
+    }
+
+    V remove(final int slot, final String name) {
+        if (hasSlot(slot)) {
+            return values.getAndSet(slot, null);
+        }
+        final Map<String, V> map = fallback;
+        return map == null ? null : map.remove(name);
+    }
+
+    /**
+     * Returns the number of the slots of the table.
+     */
+    int size() {
+        return values.length();
+    }
+
+    /**
+     * Removes all the values, so that the table can be reused.
+     */
+    void clear() {
+        for (int i = 0; i < values.length(); i++) {
+            values.lazySet(i, null);
+        }
+        fallback = null;
+    }
+
+    private boolean hasSlot(final int slot) {
+        return slot >= 0 && slot < values.length();
+    }
+
+    private Map<String, V> fallback() {
+        Map<String, V> map = fallback;
+        if (map == null) {
+            synchronized (this) {
+                map = fallback;
+                if (map == null) {
+                    map = new ConcurrentHashMap<>();
+                    fallback = map;
+                }
+            }
+        }
+        return map;
+    }
+}
@@ -1,10 +1,13 @@
 package io.github.dawidkc.spring.scopes;
 
-import java.util.Deque;
-import java.util.Map;
+import java.lang.reflect.UndeclaredThrowableException;
 import java.util.NoSuchElementException;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.ObjectFactory;
 import org.springframework.beans.factory.config.Scope;
@@ -21,8 +24,29 @@ public final class TaskScope implements Scope {
 
     public static final String TASK_SCOPE_NAME = "task";
 
-    private static final ThreadLocal<Deque<TaskScopeContext<?>>> CONTEXT_STACK =
-            ThreadLocal.withInitial(ConcurrentLinkedDeque::new);
+    private static volatile TaskScopeStorage storage = new ThreadLocalTaskScopeStorage();
+
+    static {
+        TaskScopeFlightRecorder.install();
+    }
+
+    @Setter(AccessLevel.PACKAGE)
+    private volatile TaskScopeDestruction destruction = TaskScopeDestruction.SYNC;
+
+    /**
+     * Cache of the sticky beans of the application context, or {@code null} if there is none.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    private volatile TaskScopeStickyCache stickyCache;
+
+    /**
+     * Pool of the bean storage of the contexts creating the beans of the application context, or {@code null} if
+     * pooling is disabled.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    private volatile TaskScopeContextPool contextPool;
 
     /**
      * Create a new task scope with provided object as the context. The intent is to use this static method within a
@@ -36,26 +60,245 @@ public final class TaskScope implements Scope {
      * // task scoped beans are unresolved here
      * </code></pre>
      *
+     * Not supported by all {@link TaskScopeStorage}s, see {@link #call(Object, Callable)} for the alternative.
+     *
      * @param contextObject any object which can be considered task context
      * @return auto-closeable {@link TaskScopeContext} object
      */
     public static <T> TaskScopeContext<T> create(final T contextObject) {
         log.debug("Creating new task scope with context {}", contextObject);
-        TaskScopeContext<T> context = new TaskScopeContext<>(contextObject);
-        CONTEXT_STACK.get().push(context);
+        return pushed(admitted(contextObject));
+    }
+
+    /**
+     * Create a new task scope like {@link #create(Object)}, with a deadline: the task scope and its children become
+     * {@link TaskScopeContext#isCancelled() cancelled} once the timeout passes, and with
+     * {@link EnableTaskScope#interruptOnDeadline()} its thread is interrupted.
+     *
+     * @param contextObject any object which can be considered task context
+     * @param timeout       time the task has to be done within
+     * @param unit          unit of the timeout
+     * @return auto-closeable {@link TaskScopeContext} object
+     */
+    public static <T> TaskScopeContext<T> create(final T contextObject, final long timeout, final TimeUnit unit) {
+        log.debug("Creating new task scope with context {} and timeout {} {}", contextObject, timeout, unit);
+        final TaskScopeContext<T> context = admitted(contextObject);
+        context.setTimeout(unit.toNanos(timeout));
+        return pushed(context);
+    }
+
+    /**
+     * Create a new task scope as a child of the current one, with provided object as the context. The child scope
+     * shares the beans marked with {@link TaskScoped#inherit()} with the current scope, and creates its own instances
+     * of the other beans:
+     * <p>
+     * <pre><code>
+     * try (var ctx = TaskScope.create("task")) {
+     *     try (var child = TaskScope.createChild("subtask")) {
+     *         // inherited beans are the same as in the enclosing scope, the others are created anew
+     *     }
+     * }
+     * </code></pre>
+     *
+     * The current scope is kept alive until the beans of the child scope are destroyed. Not supported by all
+     * {@link TaskScopeStorage}s, see {@link #callChild(Object, Callable)} for the alternative.
+     *
+     * @param contextObject any object which can be considered task context
+     * @return auto-closeable {@link TaskScopeContext} object
+     * @throws NoSuchElementException if there is no current task scope
+     */
+    public static <T> TaskScopeContext<T> createChild(final T contextObject) {
+        log.debug("Creating new child task scope with context {}", contextObject);
+        final TaskScopeContext<T> context = newChild(contextObject);
+        opened(context);
+        try {
+            storage.push(context);
+        } catch (RuntimeException | Error e) {
+            context.releaseByOwner();
+            throw e;
+        }
+        return started(context);
+    }
+
+    /**
+     * Returns a new context with the object, admitted by {@link TaskScopeAdmission}.
+     */
+    private static <T> TaskScopeContext<T> admitted(final T contextObject) {
+        final Object permit = TaskScopeAdmission.acquire(contextObject);
+        final TaskScopeContext<T> context;
+        try {
+            context = new TaskScopeContext<>(contextObject);
+        } catch (RuntimeException | Error e) {
+            TaskScopeAdmission.release(permit);
+            throw e;
+        }
+        context.setAdmissionPermit(permit);
+        return context;
+    }
+
+    /**
+     * Makes the admitted context the current one until its owner closes it; if the storage fails to, gives back the
+     * permit and releases the context, which is reported closed to the listeners notified of its opening.
+     */
+    private static <T> TaskScopeContext<T> pushed(final TaskScopeContext<T> context) {
+        try {
+            opened(context);
+            storage.push(context);
+        } catch (RuntimeException | Error e) {
+            TaskScopeAdmission.release(context.getAdmissionPermit());
+            context.setAdmissionPermit(null);
+            context.releaseByOwner();
+            throw e;
+        }
+        return started(context);
+    }
+
+    /**
+     * Sets up the context pushed onto the storage by its owner; if that fails (e.g. an MDC projection throws), undoes
+     * what has been set up, removes the context from the storage and releases it, before rethrowing the failure.
+     */
+    private static <T> TaskScopeContext<T> started(final TaskScopeContext<T> context) {
+        try {
+            context.setMdcRestore(TaskScopeMdc.attach(context));
+            TaskScopeDeadlines.watch(context);
+            TaskScopeEagerInitialization.start(context);
+        } catch (RuntimeException | Error e) {
+            unwind(context);
+            storage.pop(context);
+            try {
+                context.releaseByOwner();
+            } catch (RuntimeException | Error destructionFailure) {
+                e.addSuppressed(destructionFailure);
+            }
+            throw e;
+        }
         return context;
     }
 
+    /**
+     * Tells whether task scopes can be opened with {@link #create(Object)} and {@link #createChild(Object)}, i.e. the
+     * configured {@link TaskScopeStorage} {@link TaskScopeStorage#supportsPush() supports} it; otherwise
+     * {@link #call(Object, Callable)} has to be used.
+     */
+    public static boolean isCreateSupported() {
+        return storage.supportsPush();
+    }
+
+    /**
+     * Runs the task within a new task scope with provided object as the context. The scope is closed when the task
+     * finishes. Unlike {@link #create(Object)}, this works with all {@link TaskScopeStorage}s.
+     *
+     * @param contextObject any object which can be considered task context
+     * @param task          task to run
+     * @return result of the task
+     */
+    public static <T, R> R call(final T contextObject, final Callable<R> task) throws Exception {
+        log.debug("Creating new task scope with context {}", contextObject);
+        return callWithin(admitted(contextObject), task);
+    }
+
+    /**
+     * Runs the task within a new task scope with a deadline, see {@link #call(Object, Callable)} and
+     * {@link #create(Object, long, TimeUnit)}.
+     *
+     * @param contextObject any object which can be considered task context
+     * @param timeout       time the task has to be done within
+     * @param unit          unit of the timeout
+     * @param task          task to run
+     * @return result of the task
+     */
+    public static <T, R> R call(final T contextObject, final long timeout, final TimeUnit unit,
+                                final Callable<R> task) throws Exception {
+        log.debug("Creating new task scope with context {} and timeout {} {}", contextObject, timeout, unit);
+        final TaskScopeContext<T> context = admitted(contextObject);
+        context.setTimeout(unit.toNanos(timeout));
+        return callWithin(context, task);
+    }
+
+    /**
+     * Runs the task within a new child of the current task scope, see {@link #createChild(Object)}. The child scope is
+     * closed when the task finishes. Works with all {@link TaskScopeStorage}s.
+     *
+     * @param contextObject any object which can be considered task context
+     * @param task          task to run
+     * @return result of the task
+     * @throws NoSuchElementException if there is no current task scope
+     */
+    public static <T, R> R callChild(final T contextObject, final Callable<R> task) throws Exception {
+        log.debug("Creating new child task scope with context {}", contextObject);
+        return callWithin(newChild(contextObject), task);
+    }
+
+    private static <T> TaskScopeContext<T> newChild(final T contextObject) {
+        final TaskScopeContext<?> parent = getCurrentContext();
+        parent.retain();
+        return new TaskScopeContext<>(contextObject, parent);
+    }
+
+    /**
+     * Notifies the listeners, if there are any, that the context is being opened on the current thread.
+     */
+    private static void opened(final TaskScopeContext<?> context) {
+        final TaskScopeListener listener = TaskScopeListeners.current();
+        if (listener != null) {
+            context.opened(listener, storage.current());
+        }
+    }
+
+    private static <R> R callWithin(final TaskScopeContext<?> context, final Callable<R> task) throws Exception {
+        context.setBound(true);
+        opened(context);
+        final R result;
+        try {
+            TaskScopeDeadlines.watch(context);
+            TaskScopeEagerInitialization.start(context);
+            result = callAttached(context, task);
+        } catch (Throwable e) {
+            TaskScopeDeadlines.unwatch(context);
+            TaskScopeAdmission.release(context.getAdmissionPermit());
+            try {
+                context.releaseByOwner();
+            } catch (Throwable destructionFailure) {
+                e.addSuppressed(destructionFailure);
+            }
+            throw e;
+        }
+        TaskScopeDeadlines.unwatch(context);
+        TaskScopeAdmission.release(context.getAdmissionPermit());
+        context.releaseByOwner();
+        return result;
+    }
+
+    /**
+     * Runs the task within a new task scope with provided object as the context, see {@link #call(Object, Callable)}.
+     *
+     * @param contextObject any object which can be considered task context
+     * @param task          task to run
+     */
+    public static <T> void run(final T contextObject, final Runnable task) {
+        try {
+            call(contextObject, () -> {
+                task.run();
+                return null;
+            });
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UndeclaredThrowableException(e);
+        }
+    }
+
     /**
      * {@inheritDoc}
+     * <p>
+     * The bean factory only passes the bean name, so the storage slot of the bean is looked up by name on each call,
+     * before a single array load; the {@code @TaskScoped} proxies look it up once per bean definition instead, and
+     * skip this method once the target has been created (see {@link TaskScopeTargetSource}).
      */
     @Override
     public Object get(final String name, final ObjectFactory<?> objectFactory) {
-        final Map<String, Object> beans = getCurrentContext().getBeans();
-        if (beans.get(name) == null) {
-            beans.put(name, objectFactory.getObject());
-        }
-        return beans.get(name);
+        final int slot = TaskScopeSlots.slotOf(name);
+        return getCurrentContext().holderOf(slot, stickyCache).getBean(slot, name, objectFactory, contextPool);
     }
 
     /**
@@ -63,11 +306,13 @@ public final class TaskScope implements Scope {
      */
     @Override
     public Object remove(final String name) {
-        Runnable callback = getCurrentContext().getDestructionCallbacks().remove(name);
+        final int slot = TaskScopeSlots.slotOf(name);
+        final TaskScopeContext<?> context = getCurrentContext().holderOf(slot, stickyCache);
+        final Runnable callback = context.removeDestructionCallback(name);
         if (callback != null) {
             callback.run();
         }
-        return getCurrentContext().getBeans().remove(name);
+        return context.removeBean(slot, name);
     }
 
     /**
@@ -75,7 +320,8 @@ public final class TaskScope implements Scope {
      */
     @Override
     public void registerDestructionCallback(final String name, final Runnable runnable) {
-        getCurrentContext().getDestructionCallbacks().put(name, runnable);
+        final TaskScopeContext<?> context = getCurrentContext().holderOf(TaskScopeSlots.slotOf(name), stickyCache);
+        context.registerDestructionCallback(name, runnable, destruction);
     }
 
     /**
@@ -102,19 +348,109 @@ public final class TaskScope implements Scope {
         if (context != getCurrentContext()) {
             throw new IllegalStateException("Only currently active context may be removed");
         }
-        CONTEXT_STACK.get().pop();
-        if (CONTEXT_STACK.get().isEmpty()) {
-            CONTEXT_STACK.remove();
+        if (context.getOwner() != Thread.currentThread() || context.isBound()) {
+            throw new IllegalStateException("Only the thread which created the context may remove it");
         }
+        unwind(context);
+        storage.pop(context);
         log.debug("Task scope with context {} has been removed", context.getContextObject());
+        context.releaseByOwner();
+    }
+
+    /**
+     * Undoes what the owner thread has set up when opening the context with {@link #create(Object)}, apart from pushing
+     * it onto the storage: cancels the deadline watch, gives back the admission permit and restores the MDC entries
+     * replaced by the context. Used both when the owner closes the context and when the storage removes a context left
+     * open by a task (see {@link TaskScopeLeakDetector}), so that whatever the thread runs next is not affected by it.
+     */
+    static void unwind(final TaskScopeContext<?> context) {
+        TaskScopeDeadlines.unwatch(context);
+        TaskScopeAdmission.release(context.getAdmissionPermit());
+        context.setAdmissionPermit(null);
+        TaskScopeMdc.detach(context.getMdcRestore());
+        context.setMdcRestore(null);
+    }
+
+    /**
+     * Runs the task with the context, created and possibly still active on another thread, being the current one.
+     */
+    static <R> R callAttached(final TaskScopeContext<?> context, final Callable<R> task) throws Exception {
+        final Object mdcRestore = TaskScopeMdc.attach(context);
+        if (mdcRestore == null) {
+            return storage.call(context, task);
+        }
+        try {
+            return storage.call(context, task);
+        } finally {
+            TaskScopeMdc.detach(mdcRestore);
+        }
+    }
+
+    /**
+     * Returns the current context or {@code null} if there is none.
+     */
+    static TaskScopeContext<?> findCurrentContext() {
+        return storage.current();
+    }
+
+    static TaskScopeStorage getStorage() {
+        return storage;
+    }
+
+    static void setStorage(final TaskScopeStorage taskScopeStorage) {
+        storage = taskScopeStorage;
     }
 
     @SuppressWarnings("unchecked")
     static <T> TaskScopeContext<T> getCurrentContext() {
-        if (CONTEXT_STACK.get().isEmpty()) {
+        final TaskScopeContext<?> context = storage.current();
+        if (context == null) {
             throw new NoSuchElementException("No task context available");
         }
-        return (TaskScopeContext<T>) CONTEXT_STACK.get().peek();
+        return (TaskScopeContext<T>) context;
+    }
+
+    /**
+     * Registers the listener of the activity of all task scopes, see {@link TaskScopeListener}.
+     */
+    public static void addListener(final TaskScopeListener listener) {
+        TaskScopeListeners.add(listener);
+    }
+
+    /**
+     * Removes the listener registered with {@link #addListener(TaskScopeListener)}.
+     */
+    public static void removeListener(final TaskScopeListener listener) {
+        TaskScopeListeners.remove(listener);
+    }
+
+    /**
+     * Returns the time left until the deadline of the current task scope, or {@link Long#MAX_VALUE} if there is no
+     * deadline or no current task scope, see {@link TaskScopeContext#remaining(TimeUnit)}.
+     */
+    public static long remaining(final TimeUnit unit) {
+        final TaskScopeContext<?> context = storage.current();
+        return context == null ? Long.MAX_VALUE : context.remaining(unit);
+    }
+
+    /**
+     * Stops the task if the current task scope is cancelled, see {@link TaskScopeContext#checkCancelled()}.
+     *
+     * @throws java.util.concurrent.CancellationException if the task scope has been cancelled or its deadline has
+     *                                                    passed
+     */
+    public static void checkCancelled() {
+        final TaskScopeContext<?> context = storage.current();
+        if (context != null) {
+            context.checkCancelled();
+        }
+    }
+
+    /**
+     * Returns whether a task scope is active on the current thread.
+     */
+    public static boolean isActive() {
+        return storage.current() != null;
     }
 
     /**
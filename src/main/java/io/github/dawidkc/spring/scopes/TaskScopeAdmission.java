@@ -0,0 +1,477 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * Admission control of the task scopes: limits the number of the task scopes open at the same time, in total and per
+ * key derived from the context object (e.g. per tenant), so that a single key cannot take all the capacity:
+ * <p>
+ * <pre><code>
+ * {@literal @}Bean
+ *  TaskScopeAdmission taskScopeAdmission() {
+ *      return new TaskScopeAdmission(200)
+ *              .perKey(Order.class, Order::getTenant, 20)
+ *              .waiting(50, TimeUnit.MILLISECONDS);
+ *  }
+ * </code></pre>
+ * <p>
+ * Defined as a bean, the admission control is used as long as the application context is open; it can also be
+ * {@link #install(TaskScopeAdmission) installed} directly. Like the storage, it is global.
+ * <p>
+ * The task scopes opened with {@link TaskScope#create} and {@link TaskScope#call} take a permit, given back when they
+ * are closed by their owner, or removed from the thread after being left open by a task (see {@link LeakDetection});
+ * child task scopes run within the permit of their parent. Once a limit is reached, opening a task scope fails with
+ * {@link RejectedExecutionException}, right away or after waiting for a permit up to the configured time, and the
+ * rejection is reported to the {@link TaskScopeListener}s. In the {@link #adaptive(long, TimeUnit, int) adaptive}
+ * mode, the limits are lowered while the task scopes last longer than the target latency, and raised back while they
+ * do not.
+ * <p>
+ * The counters of the keys are updated without locking, and the ones not used for the
+ * {@link #idleKeyEviction(long, TimeUnit) idle time} are evicted, so the keys may be many; while no admission control
+ * is installed, the task scopes are not counted at all. Without a global limit, the task scopes open in total are
+ * counted with a striped counter, so that the task scopes of different keys do not contend on it. A global limit is
+ * checked exactly, against a single counter updated with compare-and-set: a striped one could only tell whether the
+ * limit has been reached by summing up all of its cells, which two threads may both find below the limit.
+ *
+ * @author dawidkc
+ */
+@Slf4j
+public final class TaskScopeAdmission implements InitializingBean, DisposableBean {
+
+    private static final double DECREASE_FACTOR = 0.9;
+
+    private static final long DEFAULT_IDLE_KEY_MINUTES = 1;
+
+    private static final int ADMITTED = 0;
+
+    private static final int GLOBAL_LIMIT = 1;
+
+    private static final int KEY_LIMIT = 2;
+
+    /**
+     * Admission control in use; like the storage, it is global.
+     */
+    private static volatile TaskScopeAdmission current;
+
+    private final Limits limits;
+
+    /**
+     * Number of the task scopes open with a permit, if there is a global limit.
+     */
+    private final AtomicInteger open = new AtomicInteger();
+
+    /**
+     * Number of the task scopes open with a permit, if there is no global limit.
+     */
+    private final LongAdder openUnlimited = new LongAdder();
+
+    private final Map<Object, KeyCounter> keys = new ConcurrentHashMap<>();
+
+    /**
+     * Current global limit of the adaptive mode, as the bits of a {@code double}.
+     */
+    private final AtomicLong adaptiveLimit;
+
+    private final AtomicLong lastEviction = new AtomicLong(System.nanoTime());
+
+    private final Object monitor = new Object();
+
+    /**
+     * Number of the threads waiting for a permit; only changed while holding the monitor.
+     */
+    private volatile int waiting;
+
+    /**
+     * Creates the admission control with the global limit, failing fast once it is reached.
+     *
+     * @param globalLimit maximum number of the task scopes open at the same time, {@code 0} for no global limit
+     */
+    public TaskScopeAdmission(final int globalLimit) {
+        this(Limits.of(globalLimit));
+    }
+
+    private TaskScopeAdmission(final Limits admissionLimits) {
+        this.limits = admissionLimits;
+        this.adaptiveLimit = new AtomicLong(Double.doubleToLongBits(admissionLimits.global));
+    }
+
+    /**
+     * Returns the admission control additionally limiting the task scopes per key of their context objects; the
+     * context objects of other types, and the ones whose key is {@code null}, are only subject to the global limit.
+     *
+     * @param type  type of the context objects the key applies to
+     * @param key   function deriving the key from the context object
+     * @param limit maximum number of the task scopes of a key open at the same time
+     */
+    @SuppressWarnings("unchecked")
+    public <T> TaskScopeAdmission perKey(final Class<T> type, final Function<? super T, ?> key, final int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Key limit must be positive: " + limit);
+        }
+        final Limits copy = limits.copy();
+        copy.keyType = Objects.requireNonNull(type, "Context object type must not be null");
+        copy.keyFunction = (Function<Object, ?>) Objects.requireNonNull(key, "Key function must not be null");
+        copy.key = limit;
+        return new TaskScopeAdmission(copy);
+    }
+
+    /**
+     * Returns the admission control waiting up to the given time for a permit once a limit is reached, instead of
+     * failing fast.
+     */
+    public TaskScopeAdmission waiting(final long timeout, final TimeUnit unit) {
+        final Limits copy = limits.copy();
+        copy.waitNanos = Math.max(0L, unit.toNanos(timeout));
+        return new TaskScopeAdmission(copy);
+    }
+
+    /**
+     * Returns the admission control adapting the limits to the latency of the task scopes: each task scope lasting
+     * longer than the target lowers them by a tenth, down to the minimum global limit, and each other one raises them
+     * slightly, up to the configured ones. The key limit is scaled along with the global one.
+     *
+     * @param targetLatency time the task scopes are expected to be closed within
+     * @param unit          unit of the target latency
+     * @param minLimit      minimum global limit
+     * @throws IllegalStateException if there is no global limit
+     */
+    public TaskScopeAdmission adaptive(final long targetLatency, final TimeUnit unit, final int minLimit) {
+        if (limits.global == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Adaptive admission control needs a global limit");
+        }
+        if (minLimit < 1 || minLimit > limits.global) {
+            throw new IllegalArgumentException("Minimum limit must be between 1 and the global limit: " + minLimit);
+        }
+        final Limits copy = limits.copy();
+        copy.targetLatencyNanos = unit.toNanos(targetLatency);
+        copy.minGlobal = minLimit;
+        return new TaskScopeAdmission(copy);
+    }
+
+    /**
+     * Returns the admission control forgetting the counters of the keys without open task scopes for the given time
+     * (by default a minute).
+     */
+    public TaskScopeAdmission idleKeyEviction(final long idleTime, final TimeUnit unit) {
+        final Limits copy = limits.copy();
+        copy.idleKeyNanos = unit.toNanos(idleTime);
+        return new TaskScopeAdmission(copy);
+    }
+
+    /**
+     * Starts using the admission control, in place of the previous one; {@code null} admits all task scopes. The task
+     * scopes admitted by the previous one give their permits back to it.
+     */
+    public static void install(final TaskScopeAdmission admission) {
+        current = admission;
+    }
+
+    /**
+     * Starts using the admission control, when defined as a bean.
+     */
+    @Override
+    public void afterPropertiesSet() {
+        install(this);
+    }
+
+    /**
+     * Stops using the admission control, if it is still in use.
+     */
+    @Override
+    public void destroy() {
+        if (current == this) {
+            current = null;
+        }
+    }
+
+    /**
+     * Takes a permit for a task scope with the context object.
+     *
+     * @return the permit to be passed to {@link #release(Object)}, or {@code null} if there is no admission control
+     * @throws RejectedExecutionException if a limit has been reached
+     */
+    static Object acquire(final Object contextObject) {
+        final TaskScopeAdmission admission = current;
+        return admission == null ? null : admission.admit(contextObject);
+    }
+
+    /**
+     * Gives back the permit taken by {@link #acquire(Object)}.
+     */
+    static void release(final Object permit) {
+        if (permit != null) {
+            ((Permit) permit).release();
+        }
+    }
+
+    /**
+     * Returns the number of the task scopes open with a permit, in total or, if the key is given, of the key.
+     */
+    int getOpen(final Object key) {
+        if (key == null) {
+            return isGloballyLimited() ? open.get() : openUnlimited.intValue();
+        }
+        final KeyCounter counter = keys.get(key);
+        return counter == null ? 0 : Math.max(counter.get(), 0);
+    }
+
+    /**
+     * Returns the current global limit, possibly lowered by the adaptive mode.
+     */
+    int getGlobalLimit() {
+        return limits.targetLatencyNanos > 0 ? (int) Double.longBitsToDouble(adaptiveLimit.get()) : limits.global;
+    }
+
+    private boolean isGloballyLimited() {
+        return limits.global != Integer.MAX_VALUE;
+    }
+
+    private Permit admit(final Object contextObject) {
+        final Object key = keyOf(contextObject);
+        final long start = System.nanoTime();
+        evictIdleKeys(start);
+        int result = tryAdmit(key);
+        if (result != ADMITTED && limits.waitNanos > 0) {
+            result = awaitAdmission(key, start + limits.waitNanos);
+        }
+        if (result != ADMITTED) {
+            final Object limitKey = result == KEY_LIMIT ? key : null;
+            final TaskScopeListener listener = TaskScopeListeners.current();
+            if (listener != null) {
+                listener.scopeRejected(contextObject, limitKey);
+            }
+            throw new RejectedExecutionException("Task scope with context " + contextObject + " rejected, "
+                    + (limitKey == null ? "global limit" : "limit of key " + limitKey) + " reached");
+        }
+        // the counter of the key cannot be evicted while the permit is held
+        return new Permit(this, key == null ? null : keys.get(key), System.nanoTime());
+    }
+
+    private Object keyOf(final Object contextObject) {
+        if (limits.keyType == null || !limits.keyType.isInstance(contextObject)) {
+            return null;
+        }
+        return limits.keyFunction.apply(contextObject);
+    }
+
+    /**
+     * Takes the global permit and the permit of the key, if any, without waiting.
+     */
+    private int tryAdmit(final Object key) {
+        final int globalLimit = getGlobalLimit();
+        if (isGloballyLimited()) {
+            int count;
+            do {
+                count = open.get();
+                if (count >= globalLimit) {
+                    return GLOBAL_LIMIT;
+                }
+            } while (!open.compareAndSet(count, count + 1));
+        } else {
+            openUnlimited.increment();
+        }
+        if (key == null) {
+            return ADMITTED;
+        }
+        final int keyLimit = keyLimit(globalLimit);
+        while (true) {
+            final KeyCounter existing = keys.get(key);
+            final KeyCounter counter = existing != null ? existing : keys.computeIfAbsent(key, k -> new KeyCounter());
+            final int result = counter.tryIncrement(keyLimit);
+            if (result > 0) {
+                return ADMITTED;
+            }
+            if (result == 0) {
+                releaseGlobal();
+                return KEY_LIMIT;
+            }
+            keys.remove(key, counter);
+        }
+    }
+
+    private int keyLimit(final int globalLimit) {
+        if (limits.targetLatencyNanos == 0) {
+            return limits.key;
+        }
+        return Math.max(1, (int) ((long) limits.key * globalLimit / limits.global));
+    }
+
+    /**
+     * Waits for the permits until the deadline. The releasing threads check for the waiting ones after giving back
+     * their permits, and the waiting ones check for the permits after announcing themselves, so no release is missed.
+     */
+    private int awaitAdmission(final Object key, final long deadline) {
+        synchronized (monitor) {
+            waiting++;
+            try {
+                while (true) {
+                    final int result = tryAdmit(key);
+                    final long remaining = deadline - System.nanoTime();
+                    if (result == ADMITTED || remaining <= 0) {
+                        return result;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(monitor, remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return tryAdmit(key);
+            } finally {
+                waiting--;
+            }
+        }
+    }
+
+    private void releaseGlobal() {
+        if (isGloballyLimited()) {
+            open.decrementAndGet();
+        } else {
+            openUnlimited.decrement();
+        }
+        if (waiting > 0) {
+            synchronized (monitor) {
+                monitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Adapts the global limit to the lifetime of a task scope.
+     */
+    private void adapt(final long lifetimeNanos) {
+        long bits;
+        double adapted;
+        do {
+            bits = adaptiveLimit.get();
+            final double limit = Double.longBitsToDouble(bits);
+            adapted = lifetimeNanos > limits.targetLatencyNanos
+                    ? Math.max(limits.minGlobal, limit * DECREASE_FACTOR)
+                    : Math.min(limits.global, limit + 1 / limit);
+        } while (!adaptiveLimit.compareAndSet(bits, Double.doubleToLongBits(adapted)));
+    }
+
+    /**
+     * Evicts the counters of the idle keys, at most once per idle time, by the thread which notices it is due.
+     */
+    private void evictIdleKeys(final long now) {
+        final long last = lastEviction.get();
+        if (keys.isEmpty() || now - last < limits.idleKeyNanos || !lastEviction.compareAndSet(last, now)) {
+            return;
+        }
+        for (Map.Entry<Object, KeyCounter> entry : keys.entrySet()) {
+            final KeyCounter counter = entry.getValue();
+            if (now - counter.lastUsedNanos >= limits.idleKeyNanos && counter.compareAndSet(0, KeyCounter.EVICTED)) {
+                keys.remove(entry.getKey(), counter);
+            }
+        }
+        log.debug("Evicted idle task scope admission keys, {} left", keys.size());
+    }
+
+    private static final class Limits implements Cloneable {
+
+        private int global;
+
+        private Class<?> keyType;
+
+        private Function<Object, ?> keyFunction;
+
+        private int key;
+
+        private long waitNanos;
+
+        private long targetLatencyNanos;
+
+        private int minGlobal;
+
+        private long idleKeyNanos;
+
+        static Limits of(final int globalLimit) {
+            if (globalLimit < 0) {
+                throw new IllegalArgumentException("Global limit must not be negative: " + globalLimit);
+            }
+            final Limits limits = new Limits();
+            limits.global = globalLimit == 0 ? Integer.MAX_VALUE : globalLimit;
+            limits.idleKeyNanos = TimeUnit.MINUTES.toNanos(DEFAULT_IDLE_KEY_MINUTES);
+            return limits;
+        }
+
+        Limits copy() {
+            try {
+                return (Limits) clone();
+            } catch (CloneNotSupportedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Number of the open task scopes of a key, or {@link #EVICTED} once it has been evicted.
+     */
+    private static final class KeyCounter extends AtomicInteger {
+
+        private static final int EVICTED = -1;
+
+        private volatile long lastUsedNanos = System.nanoTime();
+
+        /**
+         * Increments the counter if below the limit.
+         *
+         * @return {@code 1} if incremented, {@code 0} if the limit has been reached, {@code -1} if evicted
+         */
+        int tryIncrement(final int limit) {
+            while (true) {
+                final int count = get();
+                if (count == EVICTED) {
+                    return -1;
+                }
+                if (count >= limit) {
+                    return 0;
+                }
+                if (compareAndSet(count, count + 1)) {
+                    return 1;
+                }
+            }
+        }
+
+        void decrement() {
+            lastUsedNanos = System.nanoTime();
+            decrementAndGet();
+        }
+    }
+
+    private static final class Permit {
+
+        private final TaskScopeAdmission admission;
+
+        private final KeyCounter counter;
+
+        private final long admittedNanos;
+
+        Permit(final TaskScopeAdmission owner, final KeyCounter keyCounter, final long admitted) {
+            this.admission = owner;
+            this.counter = keyCounter;
+            this.admittedNanos = admitted;
+        }
+
+        void release() {
+            if (counter != null) {
+                counter.decrement();
+            }
+            admission.releaseGlobal();
+            if (admission.limits.targetLatencyNanos > 0) {
+                admission.adapt(System.nanoTime() - admittedNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Processing of a batch of elements, each one within its own task scope with the element as the context object, with
+ * bounded parallelism:
+ * <p>
+ * <pre><code>
+ * List&lt;Result&gt; results = TaskScopeBatch.map(orders, 8, pool, order -&gt; pipeline.process());
+ * </code></pre>
+ * <p>
+ * The calling thread and up to {@code parallelism - 1} tasks run by the executor (e.g. a {@code ForkJoinPool}) take the
+ * elements one by one, so at most {@code parallelism} elements are taken from the source ahead of being processed,
+ * which allows processing an {@link Iterator} of more elements than fit in memory. The task scope of each element is
+ * opened and closed by the thread processing it, also when the processing fails. Within a task scope, the task scopes
+ * of the elements are its children, see {@link TaskScope#createChild(Object)}.
+ * <p>
+ * Once the calling thread finds no elements left, the tasks which have not started yet, e.g. being queued behind
+ * other work of a saturated executor, are skipped rather than waited for, so a batch nested within the processing of
+ * an element of another batch using the same executor does not deadlock.
+ * <p>
+ * The first failure stops taking the elements; the methods return once the elements being processed are done, and
+ * throw the failure, with the failures of the other elements suppressed. The calling thread being interrupted, or the
+ * enclosing task scope being {@link TaskScopeContext#isCancelled() cancelled}, stops the batch likewise, with
+ * {@link CancellationException}.
+ *
+ * @author dawidkc
+ */
+public final class TaskScopeBatch {
+
+    private TaskScopeBatch() {
+    }
+
+    /**
+     * Runs the body for each of the elements, within its own task scope.
+     *
+     * @param items       elements, which become the context objects
+     * @param parallelism maximum number of the elements processed at the same time
+     * @param executor    executor running the processing besides the calling thread
+     * @param body        processing of an element
+     */
+    public static <T> void forEach(final Iterable<? extends T> items, final int parallelism, final Executor executor,
+                                   final Consumer<? super T> body) {
+        forEach(items.iterator(), parallelism, executor, body);
+    }
+
+    /**
+     * Runs the body for each of the elements, within its own task scope, see {@link #forEach(Iterable, int, Executor,
+     * Consumer)}. The iterator is only used by one thread at a time.
+     */
+    public static <T> void forEach(final Iterator<? extends T> items, final int parallelism, final Executor executor,
+                                   final Consumer<? super T> body) {
+        Objects.requireNonNull(body, "Body must not be null");
+        new Batch<T, Void>(items, item -> {
+            body.accept(item);
+            return null;
+        }, false).run(parallelism, executor);
+    }
+
+    /**
+     * Computes the results for the elements, each within its own task scope.
+     *
+     * @param items       elements, which become the context objects
+     * @param parallelism maximum number of the elements processed at the same time
+     * @param executor    executor running the processing besides the calling thread
+     * @param body        processing of an element
+     * @return results, in the order of the elements
+     */
+    public static <T, R> List<R> map(final Iterable<? extends T> items, final int parallelism, final Executor executor,
+                                     final Function<? super T, ? extends R> body) {
+        return map(items.iterator(), parallelism, executor, body);
+    }
+
+    /**
+     * Computes the results for the elements, each within its own task scope, see {@link #map(Iterable, int, Executor,
+     * Function)}. The iterator is only used by one thread at a time.
+     */
+    public static <T, R> List<R> map(final Iterator<? extends T> items, final int parallelism, final Executor executor,
+                                     final Function<? super T, ? extends R> body) {
+        Objects.requireNonNull(body, "Body must not be null");
+        return new Batch<T, R>(items, body, true).run(parallelism, executor);
+    }
+
+    private static final class Batch<T, R> {
+
+        private final Iterator<? extends T> items;
+
+        private final Function<? super T, ? extends R> body;
+
+        /**
+         * Results in the order of the elements, or {@code null} if not collected; guarded by the batch, like the
+         * iterator and the failure.
+         */
+        private final List<R> results;
+
+        private Throwable failure;
+
+        private CountDownLatch workers;
+
+        private List<Worker> submitted;
+
+        Batch(final Iterator<? extends T> source, final Function<? super T, ? extends R> processing,
+              final boolean collect) {
+            this.items = Objects.requireNonNull(source, "Items must not be null");
+            this.body = processing;
+            this.results = collect ? new ArrayList<>() : null;
+        }
+
+        List<R> run(final int parallelism, final Executor executor) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("Parallelism must be positive");
+            }
+            Objects.requireNonNull(executor, "Executor must not be null");
+            workers = new CountDownLatch(parallelism - 1);
+            submitted = new ArrayList<>(parallelism - 1);
+            for (int i = 1; i < parallelism; i++) {
+                final Worker worker = new Worker();
+                try {
+                    TaskScopeExecutors.execute(executor, worker);
+                    submitted.add(worker);
+                } catch (RejectedExecutionException e) {
+                    workers.countDown();
+                    failed(e);
+                }
+            }
+            work();
+            for (Worker worker : submitted) {
+                if (worker.claimed.compareAndSet(false, true)) {
+                    workers.countDown();
+                }
+            }
+            await();
+            synchronized (this) {
+                if (failure instanceof RuntimeException) {
+                    throw (RuntimeException) failure;
+                }
+                if (failure instanceof Error) {
+                    throw (Error) failure;
+                }
+                return results;
+            }
+        }
+
+        /**
+         * Processes the elements until there are none left or the batch fails.
+         */
+        private void work() {
+            try {
+                while (true) {
+                    final T item;
+                    final int index;
+                    TaskScope.checkCancelled();
+                    synchronized (this) {
+                        if (failure != null || !items.hasNext()) {
+                            return;
+                        }
+                        item = items.next();
+                        index = results == null ? -1 : results.size();
+                        if (results != null) {
+                            results.add(null);
+                        }
+                    }
+                    final R result = process(item);
+                    if (results != null) {
+                        synchronized (this) {
+                            results.set(index, result);
+                        }
+                    }
+                }
+            } catch (RuntimeException | Error e) {
+                failed(e);
+            }
+        }
+
+        private R process(final T item) {
+            try {
+                if (TaskScope.isActive()) {
+                    return TaskScope.callChild(item, () -> body.apply(item));
+                }
+                return TaskScope.call(item, () -> body.apply(item));
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new UndeclaredThrowableException(e);
+            }
+        }
+
+        private synchronized void failed(final Throwable e) {
+            if (failure == null) {
+                failure = e;
+            } else if (failure != e) {
+                failure.addSuppressed(e);
+            }
+        }
+
+        /**
+         * Waits for the workers started by the executor, stopping the batch if the calling thread is interrupted.
+         */
+        private void await() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    workers.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    failed(new CancellationException("Task scope batch interrupted"));
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Task run by the executor, processing the elements unless skipped by the calling thread before it starts.
+         */
+        private final class Worker implements Runnable {
+
+            private final AtomicBoolean claimed = new AtomicBoolean();
+
+            @Override
+            public void run() {
+                if (!claimed.compareAndSet(false, true)) {
+                    return;
+                }
+                try {
+                    work();
+                } finally {
+                    workers.countDown();
+                }
+            }
+        }
+    }
+}
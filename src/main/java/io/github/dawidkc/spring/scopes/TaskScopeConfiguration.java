@@ -1,8 +1,23 @@
 package io.github.dawidkc.spring.scopes;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import org.springframework.aop.scope.ScopedProxyFactoryBean;
+import org.springframework.beans.PropertyValue;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportAware;
+import org.springframework.core.annotation.AnnotationAttributes;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+import org.springframework.core.type.AnnotationMetadata;
 
 /**
  * Spring configuration defining task scope and providing beans.
@@ -11,21 +26,225 @@ import org.springframework.context.annotation.Configuration;
  */
 @SuppressWarnings("unused")
 @Configuration
-class TaskScopeConfiguration {
+class TaskScopeConfiguration implements ImportAware {
+
+    private static final int DEFAULT_STICKY_CACHE_SIZE = 256;
+
+    private static final int DEFAULT_EAGER_THREADS = 4;
+
+    private AnnotationAttributes enableTaskScope;
+
+    /**
+     * Reads the attributes of {@link EnableTaskScope} from the importing configuration class.
+     */
+    @Override
+    public void setImportMetadata(final AnnotationMetadata importMetadata) {
+        final Map<String, Object> attributes = importMetadata.getAnnotationAttributes(EnableTaskScope.class.getName());
+        this.enableTaskScope = AnnotationAttributes.fromMap(attributes);
+    }
 
     /**
-     * Registers the task scope.
+     * Registers the task scope, assigns storage slots to all task-scoped bean definitions (marking the ones inherited
+     * by child scopes and the sticky ones) and replaces their scoped proxies with {@link TaskScopedProxyFactoryBean}.
      */
     @Bean
     static BeanFactoryPostProcessor beanFactoryPostProcessor() {
-        return configurableListableBeanFactory ->
-                configurableListableBeanFactory.registerScope(TaskScope.TASK_SCOPE_NAME, new TaskScope());
+        return configurableListableBeanFactory -> {
+            configurableListableBeanFactory.registerScope(TaskScope.TASK_SCOPE_NAME, new TaskScope());
+            for (String name : configurableListableBeanFactory.getBeanDefinitionNames()) {
+                final BeanDefinition definition = configurableListableBeanFactory.getBeanDefinition(name);
+                if (TaskScope.TASK_SCOPE_NAME.equals(definition.getScope())) {
+                    TaskScopeSlots.register(name, flagsOf(definition));
+                }
+            }
+            for (String name : configurableListableBeanFactory.getBeanDefinitionNames()) {
+                final BeanDefinition definition = configurableListableBeanFactory.getBeanDefinition(name);
+                if (isTaskScopedProxy(configurableListableBeanFactory, definition)) {
+                    definition.setBeanClassName(TaskScopedProxyFactoryBean.class.getName());
+                }
+            }
+        };
+    }
+
+    private static int flagsOf(final BeanDefinition definition) {
+        final Map<String, Object> attributes = taskScopedAttributes(definition);
+        if (attributes == null) {
+            return 0;
+        }
+        return (Boolean.TRUE.equals(attributes.get("inherit")) ? TaskScopeSlots.INHERITED : 0)
+                | (Boolean.TRUE.equals(attributes.get("sticky")) ? TaskScopeSlots.STICKY : 0);
+    }
+
+    /**
+     * Returns the attributes of {@link TaskScoped} on the bean class or factory method, or {@code null}.
+     */
+    private static Map<String, Object> taskScopedAttributes(final BeanDefinition definition) {
+        if (!(definition instanceof AnnotatedBeanDefinition)) {
+            return null;
+        }
+        final AnnotatedBeanDefinition annotated = (AnnotatedBeanDefinition) definition;
+        final AnnotatedTypeMetadata metadata = annotated.getFactoryMethodMetadata() != null
+                ? annotated.getFactoryMethodMetadata()
+                : annotated.getMetadata();
+        return metadata.getAnnotationAttributes(TaskScoped.class.getName());
+    }
+
+    private static boolean isTaskScopedProxy(
+            final ConfigurableListableBeanFactory beanFactory,
+            final BeanDefinition definition
+    ) {
+        if (!ScopedProxyFactoryBean.class.getName().equals(definition.getBeanClassName())) {
+            return false;
+        }
+        final PropertyValue targetBeanName = definition.getPropertyValues().getPropertyValue("targetBeanName");
+        if (targetBeanName == null || !(targetBeanName.getValue() instanceof String)) {
+            return false;
+        }
+        final String target = (String) targetBeanName.getValue();
+        return beanFactory.containsBeanDefinition(target)
+                && TaskScope.TASK_SCOPE_NAME.equals(beanFactory.getBeanDefinition(target).getScope());
+    }
+
+    /**
+     * Propagates the task scope to the tasks run by the Spring executors, e.g. for {@code @Async} methods.
+     */
+    @Bean
+    static BeanPostProcessor taskScopeTaskDecoratorPostProcessor() {
+        return new TaskScopeTaskDecoratorPostProcessor();
     }
 
     /**
-     * Registers the task scope context. This object can only be resolved inside an active context.
+     * Sets up running the destruction callbacks of task-scoped beans as configured by {@link EnableTaskScope}. The
+     * background threads of {@link DestructionMode#ASYNC} mode are stopped along with the application context.
      */
     @Bean
+    TaskScopeDestruction taskScopeDestruction(final ConfigurableListableBeanFactory beanFactory) {
+        final TaskScopeDestruction destruction;
+        if (enableTaskScope != null && enableTaskScope.getEnum("destructionMode") == DestructionMode.ASYNC) {
+            destruction = TaskScopeDestruction.async(
+                    enableTaskScope.<Integer>getNumber("destructionThreads"),
+                    enableTaskScope.<Integer>getNumber("destructionQueueCapacity"));
+        } else {
+            destruction = TaskScopeDestruction.SYNC;
+        }
+        ((TaskScope) beanFactory.getRegisteredScope(TaskScope.TASK_SCOPE_NAME)).setDestruction(destruction);
+        return destruction;
+    }
+
+    /**
+     * Sets up the pooling of the bean storage of the contexts creating the beans of the application context, if enabled
+     * by {@link EnableTaskScope#contextPoolSize()}.
+     */
+    @Bean
+    TaskScopeContextPool taskScopeContextPool(final ConfigurableListableBeanFactory beanFactory) {
+        final int size = enableTaskScope == null ? 0 : enableTaskScope.<Integer>getNumber("contextPoolSize");
+        final TaskScopeContextPool pool = new TaskScopeContextPool(size);
+        ((TaskScope) beanFactory.getRegisteredScope(TaskScope.TASK_SCOPE_NAME)).setContextPool(size == 0 ? null : pool);
+        return pool;
+    }
+
+    /**
+     * Sets up the cache of the sticky task-scoped beans of the application context as configured by
+     * {@link EnableTaskScope}. The beans still cached are destroyed along with the application context, before the
+     * destruction threads are stopped.
+     */
+    @Bean
+    TaskScopeStickyCache taskScopeStickyCache(
+            final ConfigurableListableBeanFactory beanFactory,
+            final TaskScopeDestruction taskScopeDestruction
+    ) {
+        final int size = enableTaskScope == null ? DEFAULT_STICKY_CACHE_SIZE
+                : enableTaskScope.<Integer>getNumber("stickyCacheSize");
+        final long timeToLive = enableTaskScope == null ? 0L
+                : enableTaskScope.<Long>getNumber("stickyTimeToLiveMillis");
+        final TaskScopeStickyCache cache = new TaskScopeStickyCache(size, timeToLive);
+        ((TaskScope) beanFactory.getRegisteredScope(TaskScope.TASK_SCOPE_NAME)).setStickyCache(cache);
+        return cache;
+    }
+
+    /**
+     * Sets up the creation of the {@link TaskScoped#eager() eager} task-scoped beans when a task scope is opened, if
+     * there are any. The threads creating them are stopped along with the application context.
+     */
+    @Bean
+    TaskScopeEagerInitialization taskScopeEagerInitialization(final ConfigurableListableBeanFactory beanFactory) {
+        final List<String> names = new ArrayList<>();
+        for (String name : beanFactory.getBeanDefinitionNames()) {
+            final BeanDefinition definition = beanFactory.getBeanDefinition(name);
+            if (TaskScope.TASK_SCOPE_NAME.equals(definition.getScope())) {
+                final Map<String, Object> attributes = taskScopedAttributes(definition);
+                if (attributes != null && Boolean.TRUE.equals(attributes.get("eager"))) {
+                    names.add(name);
+                }
+            }
+        }
+        final String executorName = enableTaskScope == null ? "" : enableTaskScope.getString("eagerExecutor");
+        final TaskScopeEagerInitialization initialization;
+        if (names.isEmpty()) {
+            initialization = TaskScopeEagerInitialization.of(beanFactory, names, Runnable::run);
+        } else if (!executorName.isEmpty()) {
+            initialization = TaskScopeEagerInitialization.of(
+                    beanFactory, names, beanFactory.getBean(executorName, Executor.class));
+        } else {
+            initialization = TaskScopeEagerInitialization.of(beanFactory, names, enableTaskScope == null
+                    ? DEFAULT_EAGER_THREADS : enableTaskScope.<Integer>getNumber("eagerThreads"));
+        }
+        if (!names.isEmpty()) {
+            TaskScopeEagerInitialization.install(initialization);
+        }
+        return initialization;
+    }
+
+    /**
+     * Sets up the detection of the leaked task scopes as configured by {@link EnableTaskScope}, if enabled. The
+     * detection is stopped along with the application context.
+     */
+    @Bean
+    TaskScopeLeakDetector taskScopeLeakDetector() {
+        final LeakDetection mode = enableTaskScope == null ? LeakDetection.DISABLED
+                : enableTaskScope.getEnum("leakDetection");
+        final TaskScopeLeakDetector detector = mode == LeakDetection.DISABLED
+                ? new TaskScopeLeakDetector(mode, 0L, 0)
+                : new TaskScopeLeakDetector(mode, enableTaskScope.<Long>getNumber("leakThresholdMillis"),
+                        enableTaskScope.<Integer>getNumber("leakStackSampling"));
+        if (mode != LeakDetection.DISABLED) {
+            TaskScopeLeakDetector.install(detector);
+        }
+        return detector;
+    }
+
+    /**
+     * Sets up the interruption of the task scopes exceeding their deadline, if enabled by {@link EnableTaskScope}. The
+     * interruption is stopped along with the application context.
+     */
+    @Bean
+    TaskScopeDeadlines taskScopeDeadlines() {
+        final boolean interrupt = enableTaskScope != null && enableTaskScope.getBoolean("interruptOnDeadline");
+        final TaskScopeDeadlines deadlines = new TaskScopeDeadlines(interrupt);
+        if (interrupt) {
+            TaskScopeDeadlines.install(deadlines);
+        }
+        return deadlines;
+    }
+
+    /**
+     * Registers the {@link TaskScopeMXBean}, unless disabled by {@link EnableTaskScope}. It is unregistered along with
+     * the application context.
+     */
+    @Bean
+    TaskScopeIntrospection taskScopeIntrospection() {
+        final TaskScopeIntrospection introspection = new TaskScopeIntrospection();
+        if (enableTaskScope == null || enableTaskScope.getBoolean("registerMBean")) {
+            TaskScopeIntrospection.register(introspection);
+        }
+        return introspection;
+    }
+
+    /**
+     * Registers the task scope context. This object can only be resolved inside an active context. The context is
+     * closed by its owner, not as a destruction callback of the scope.
+     */
+    @Bean(destroyMethod = "")
     @TaskScoped
     <T> TaskScopeContext<T> taskScopeContext() {
         return TaskScope.getCurrentContext();
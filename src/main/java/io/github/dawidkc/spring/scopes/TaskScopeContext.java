@@ -1,50 +1,671 @@
 package io.github.dawidkc.spring.scopes;
 
 import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import org.springframework.beans.factory.ObjectFactory;
 
 /**
  * Context holder object for task scope.
+ * <p>
+ * A child context (see {@link TaskScope#createChild(Object)}) shares the beans marked with
+ * {@link TaskScoped#inherit()} with its parent, and keeps the parent alive until the child's own beans are destroyed.
+ * <p>
+ * A context must not be used after it has been closed: its context object and beans are then no longer accessible,
+ * and {@link IllegalStateException} is thrown instead. With {@link EnableTaskScope#contextPoolSize()} set, the storage
+ * of the beans of closed contexts is recycled for the next task scopes, but never the context itself, so a stale
+ * reference cannot reach another task scope.
+ * <p>
+ * A task scope may have a deadline (see {@link TaskScope#create(Object, long, TimeUnit)}) and be
+ * {@link #cancel() cancelled}; both are shared by all threads the task scope is propagated to, and reach its children,
+ * so the work of a task which is no longer needed can be {@link #checkCancelled() dropped} early.
  *
  * @see TaskScopeContext#getContextObject()
  */
-@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
 public class TaskScopeContext<T> implements Closeable {
 
     private static final AtomicLong COUNTER = new AtomicLong();
 
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<TaskScopeContext> REFERENCES =
+            AtomicIntegerFieldUpdater.newUpdater(TaskScopeContext.class, "references");
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<TaskScopeContext, SlotTable> BEANS =
+            AtomicReferenceFieldUpdater.newUpdater(TaskScopeContext.class, SlotTable.class, "beans");
+
+    /**
+     * Beans of the context, allocated when the first one is created, so that the scopes which do not use any bean do
+     * not pay for the table.
+     */
+    private volatile SlotTable<Object> beans;
+
+    /**
+     * Pool the {@link #beans} have been taken from, given back to when the context is destroyed, or {@code null}.
+     */
+    private TaskScopeContextPool pool;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<TaskScopeContext> BEANS_CREATED =
+            AtomicIntegerFieldUpdater.newUpdater(TaskScopeContext.class, "beansCreated");
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<TaskScopeContext, StickyHolder> STICKY =
+            AtomicReferenceFieldUpdater.newUpdater(TaskScopeContext.class, StickyHolder.class, "sticky");
+
+    private Map<String, DestructionCallback> destructionCallbacks;
+
+    /**
+     * Contexts holding the sticky beans of the context object, one per {@link TaskScopeStickyCache} (i.e. per
+     * application context), each retained from its cache when the first of its beans is used, or {@code null}.
+     */
+    private volatile StickyHolder sticky;
+
+    private T contextObject;
+
+    /**
+     * Context holding the inherited beans of this one, or {@code null}.
+     */
+    private TaskScopeContext<?> parent;
+
+    /**
+     * Value of {@link #references} of a closed context, once its beans have been destroyed.
+     */
+    private static final int CLOSED = -1;
+
+    private final long id = COUNTER.getAndIncrement();
+
     @Getter(AccessLevel.PACKAGE)
-    private final Map<String, Object> beans = new ConcurrentHashMap<>();
+    private Thread owner;
 
+    /**
+     * Number of the task scopes active on the owner thread including this one, if the context has been opened while
+     * a {@link TaskScopeListener} was registered, otherwise {@code 0}.
+     */
     @Getter(AccessLevel.PACKAGE)
-    private final Map<String, Runnable> destructionCallbacks = new ConcurrentHashMap<>();
+    private int depth;
 
-    private final T contextObject;
+    private long openedNanos;
 
-    private final long id = COUNTER.getAndIncrement();
+    /**
+     * Listener notified of the opening of the context, to be notified of its closing as well, so that listeners
+     * registered meanwhile do not see the closing of a task scope they have never seen opened.
+     */
+    private TaskScopeListener openListener;
+
+    /**
+     * Number of the beans created in the context, counted while a {@link TaskScopeListener} is registered.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private volatile int beansCreated;
+
+    /**
+     * Number of the parties keeping the context alive: the owner, until the context is closed, and each task which
+     * captured the context to run it on another thread, until the task is done; {@link #CLOSED} once destroyed.
+     */
+    private volatile int references = 1;
+
+    /**
+     * Whether the owner has closed the context, which may still be kept alive by the tasks it has been handed over to.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private volatile boolean closedByOwner;
+
+    /**
+     * Whether the context is bound to a block of code by {@link TaskScope#call}, so it cannot be closed explicitly.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    private boolean bound;
+
+    /**
+     * Values of the {@link TaskScopeMdc} entries of the task scope, computed once it is first made current.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    private volatile String[] mdcValues;
+
+    /**
+     * MDC entries of the owner thread replaced by the task scope, restored when the owner closes it.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    private Object mdcRestore;
+
+    /**
+     * {@link System#nanoTime()} by which the task should be done, if {@link #timed}; children inherit it.
+     */
+    private long deadlineNanos;
+
+    private boolean timed;
+
+    private volatile boolean cancelled;
+
+    /**
+     * State of {@link TaskScopeDeadlines} following the deadline of the task scope on its owner thread, if any.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    private Object deadlineWatch;
+
+    /**
+     * Permit of {@link TaskScopeAdmission} taken for the task scope, given back when its owner closes it, or
+     * {@code null}.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    @Setter(AccessLevel.PACKAGE)
+    private Object admissionPermit;
+
+    TaskScopeContext(final T object) {
+        this(object, null);
+    }
+
+    /**
+     * Creates a child of the given context, or a root context if the parent is {@code null}. The parent has to be
+     * retained for the child by the caller; it is released when the child is destroyed.
+     */
+    TaskScopeContext(final T object, final TaskScopeContext<?> parentContext) {
+        this.contextObject = object;
+        this.parent = parentContext;
+        this.owner = Thread.currentThread();
+        this.timed = parentContext != null && parentContext.timed;
+        this.deadlineNanos = timed ? parentContext.deadlineNanos : 0L;
+    }
 
     /**
      * Returns the context object provided when opening scope.
+     *
+     * @throws IllegalStateException if the context has already been closed
      */
     public T getContextObject() {
+        checkNotClosed();
         return contextObject;
     }
 
     /**
-     * Returns the unique context ID.
+     * Returns the context object, even if the context has been closed meanwhile, for the observers of the task scopes
+     * which may race with their closing.
+     */
+    T peekContextObject() {
+        return contextObject;
+    }
+
+    private void checkNotClosed() {
+        if (references == CLOSED) {
+            throw new IllegalStateException("Task scope context has already been closed");
+        }
+    }
+
+    /**
+     * Returns the unique context ID, different for each task scope.
      */
     public long getId() {
         return id;
     }
 
+    /**
+     * Sets the deadline of the task scope to the given time from now, unless it already has an earlier one.
+     */
+    void setTimeout(final long timeoutNanos) {
+        final long deadline = System.nanoTime() + timeoutNanos;
+        if (!timed || deadline - deadlineNanos < 0) {
+            this.deadlineNanos = deadline;
+            this.timed = true;
+        }
+    }
+
+    /**
+     * Returns whether the task scope has a deadline.
+     */
+    boolean hasDeadline() {
+        return timed;
+    }
+
+    /**
+     * Returns the time left until the deadline of the task scope, {@code 0} if it has passed, or
+     * {@link Long#MAX_VALUE} if there is no deadline.
+     */
+    public long remaining(final TimeUnit unit) {
+        if (!timed) {
+            return Long.MAX_VALUE;
+        }
+        final long remaining = deadlineNanos - System.nanoTime();
+        return remaining <= 0 ? 0L : unit.convert(remaining, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns whether the deadline of the task scope has passed.
+     */
+    public boolean isExpired() {
+        return timed && deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Cancels the task scope and its children. Cancellation is cooperative: the task is only expected to stop when it
+     * {@link #checkCancelled() checks} it.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    /**
+     * Returns whether the task scope, or one of its ancestors, has been cancelled, or its deadline has passed.
+     */
+    public boolean isCancelled() {
+        for (TaskScopeContext<?> context = this; context != null; context = context.parent) {
+            if (context.cancelled) {
+                return true;
+            }
+        }
+        return isExpired();
+    }
+
+    /**
+     * Stops the task if the task scope is {@link #isCancelled() cancelled}.
+     *
+     * @throws CancellationException if the task scope has been cancelled or its deadline has passed
+     */
+    public void checkCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException("Task scope with context " + contextObject
+                    + (isExpired() ? " has exceeded its deadline" : " has been cancelled"));
+        }
+    }
+
+    /**
+     * Notifies the listener that the context has been opened, within the given enclosing context, if any, and starts
+     * measuring its lifetime.
+     */
+    void opened(final TaskScopeListener listener, final TaskScopeContext<?> enclosing) {
+        this.depth = enclosing == null ? 1 : enclosing.depth + 1;
+        this.openedNanos = System.nanoTime();
+        this.openListener = listener;
+        listener.scopeOpened(this, depth);
+    }
+
+    /**
+     * Returns the parent context, or {@code null} if this is not a child context.
+     */
+    TaskScopeContext<?> getParent() {
+        return parent;
+    }
+
+    /**
+     * Returns the context holding the bean of the given slot: the topmost ancestor for the inherited beans of child
+     * contexts, the context of the given {@link TaskScopeStickyCache} (if any) for the sticky beans, otherwise this
+     * one.
+     */
+    TaskScopeContext<?> holderOf(final int slot, final TaskScopeStickyCache stickyCache) {
+        final int flags = TaskScopeSlots.flagsOf(slot);
+        if (flags == 0) {
+            return this;
+        }
+        TaskScopeContext<?> holder = this;
+        if ((flags & TaskScopeSlots.INHERITED) != 0) {
+            while (holder.parent != null) {
+                holder = holder.parent;
+            }
+        }
+        if ((flags & TaskScopeSlots.STICKY) != 0 && stickyCache != null) {
+            return holder.stickyHolder(stickyCache);
+        }
+        return holder;
+    }
+
+    private TaskScopeContext<?> stickyHolder(final TaskScopeStickyCache cache) {
+        StickyHolder head = sticky;
+        TaskScopeContext<?> holder = StickyHolder.find(head, cache);
+        if (holder != null || contextObject == null) {
+            return holder != null ? holder : this;
+        }
+        final TaskScopeContext<?> acquired = cache.acquire(contextObject);
+        if (acquired == null) {
+            return this;
+        }
+        while (!STICKY.compareAndSet(this, head, new StickyHolder(cache, acquired, head))) {
+            head = sticky;
+            holder = StickyHolder.find(head, cache);
+            if (holder != null) {
+                acquired.release();
+                return holder;
+            }
+        }
+        return acquired;
+    }
+
+    /**
+     * Returns the bean stored under given slot and name, creating it with the factory if needed, see
+     * {@link #getBean(int, String, ObjectFactory, TaskScopeContextPool)}; the storage of the beans is not pooled.
+     */
+    Object getBean(final int slot, final String name, final ObjectFactory<?> objectFactory) {
+        return getBean(slot, name, objectFactory, null);
+    }
+
+    /**
+     * Returns the bean stored under given slot and name, creating it with the factory if needed. Creation happens at
+     * most once per context and bean; concurrent callers wait for the creation in progress. The storage of the beans
+     * is taken from the given pool, if any, when the first bean is created.
+     *
+     * @throws IllegalStateException if the context has already been closed
+     */
+    Object getBean(
+            final int slot,
+            final String name,
+            final ObjectFactory<?> objectFactory,
+            final TaskScopeContextPool contextPool
+    ) {
+        checkNotClosed();
+        final SlotTable<Object> table = beans(contextPool);
+        Object bean = table.get(slot, name);
+        while (bean == null || bean instanceof BeanCreation) {
+            if (bean != null) {
+                return ((BeanCreation) bean).await();
+            }
+            final BeanCreation creation = new BeanCreation(name);
+            bean = table.putIfAbsent(slot, name, creation);
+            if (bean == null) {
+                return create(table, slot, name, objectFactory, creation);
+            }
+        }
+        return bean;
+    }
+
+    @SuppressWarnings("unchecked")
+    private SlotTable<Object> beans(final TaskScopeContextPool contextPool) {
+        final SlotTable<Object> table = beans;
+        if (table != null) {
+            return table;
+        }
+        final SlotTable<Object> created = contextPool == null
+                ? new SlotTable<>(TaskScopeSlots.count())
+                : contextPool.acquire();
+        if (BEANS.compareAndSet(this, null, created)) {
+            pool = contextPool;
+            return created;
+        }
+        if (contextPool != null) {
+            contextPool.recycle(created);
+        }
+        return beans;
+    }
+
+    private Object create(
+            final SlotTable<Object> table,
+            final int slot,
+            final String name,
+            final ObjectFactory<?> objectFactory,
+            final BeanCreation creation
+    ) {
+        final TaskScopeListener listener = TaskScopeListeners.current();
+        final long start = listener == null ? 0L : System.nanoTime();
+        final Object bean;
+        try {
+            bean = objectFactory.getObject();
+        } catch (RuntimeException | Error e) {
+            table.replace(slot, name, creation, null);
+            creation.fail(e);
+            throw e;
+        }
+        table.replace(slot, name, creation, bean);
+        creation.complete(bean);
+        if (listener != null) {
+            BEANS_CREATED.incrementAndGet(this);
+            listener.beanCreated(this, name, System.nanoTime() - start);
+        }
+        return bean;
+    }
+
+    /**
+     * Returns the bean stored under given slot and name, or {@code null} if it has not been created (yet).
+     */
+    Object findBean(final int slot, final String name) {
+        final SlotTable<Object> table = beans;
+        if (table == null) {
+            return null;
+        }
+        final Object bean = table.get(slot, name);
+        return bean instanceof BeanCreation ? null : bean;
+    }
+
+    /**
+     * Removes the bean stored under given slot and name. A bean still being created is not returned.
+     */
+    Object removeBean(final int slot, final String name) {
+        final SlotTable<Object> table = beans;
+        if (table == null) {
+            return null;
+        }
+        final Object bean = table.remove(slot, name);
+        return bean instanceof BeanCreation ? null : bean;
+    }
+
+    /**
+     * Registers the callback destroying the bean of given name, replacing the previous one registered for that name.
+     */
+    synchronized void registerDestructionCallback(
+            final String name,
+            final Runnable callback,
+            final TaskScopeDestruction destruction
+    ) {
+        if (destructionCallbacks == null) {
+            destructionCallbacks = new LinkedHashMap<>();
+        }
+        destructionCallbacks.put(name, new DestructionCallback(callback, destruction));
+    }
+
+    /**
+     * Removes and returns the callback destroying the bean of given name, or {@code null} if there is none.
+     */
+    synchronized Runnable removeDestructionCallback(final String name) {
+        final DestructionCallback removed = destructionCallbacks == null ? null : destructionCallbacks.remove(name);
+        return removed == null ? null : removed.callback;
+    }
+
+    /**
+     * Keeps the context alive until {@link #release()} is called, so that its beans are not destroyed while it is still
+     * used on another thread.
+     *
+     * @throws IllegalStateException if the context has already been closed and its beans destroyed
+     */
+    void retain() {
+        if (!tryRetain()) {
+            throw new IllegalStateException("Task scope context has already been closed");
+        }
+    }
+
+    /**
+     * Keeps the context alive until {@link #release()} is called, unless it has already been closed.
+     *
+     * @return whether the context has been retained
+     */
+    boolean tryRetain() {
+        int current;
+        do {
+            current = references;
+            if (current <= 0) {
+                return false;
+            }
+        } while (!REFERENCES.compareAndSet(this, current, current + 1));
+        return true;
+    }
+
+    /**
+     * Keeps the context alive like {@link #retain()}, provided that it is the context of the given ID.
+     *
+     * @throws IllegalStateException if the activation has already been closed and its beans destroyed
+     */
+    void retain(final long activationId) {
+        if (!tryRetain(activationId)) {
+            throw new IllegalStateException("Task scope context has already been closed");
+        }
+    }
+
+    /**
+     * Keeps the context alive like {@link #tryRetain()}, provided that it is the context of the given ID.
+     *
+     * @return whether the context has been retained
+     */
+    boolean tryRetain(final long activationId) {
+        if (!tryRetain()) {
+            return false;
+        }
+        if (id == activationId) {
+            return true;
+        }
+        release();
+        return false;
+    }
+
+    /**
+     * Releases the context kept alive by its owner, once the owner has closed it.
+     */
+    void releaseByOwner() {
+        closedByOwner = true;
+        release();
+    }
+
+    /**
+     * Releases the context kept alive by the owner or by {@link #retain()}. The last release destroys the beans.
+     */
+    void release() {
+        if (REFERENCES.decrementAndGet(this) == 0) {
+            destroy();
+        }
+    }
+
+    /**
+     * Runs the destruction callbacks in reverse order of their registration, i.e. of the bean creation, so that beans
+     * are destroyed before the beans they depend on. All callbacks are run even if some of them fail; the first
+     * failure is rethrown afterwards, with the subsequent ones suppressed in it.
+     * <p>
+     * Only called by the last {@link #release()}: every registration happened before some release, and the releases
+     * are ordered by the atomic update of the references, so no locking is needed here. The context releases its
+     * sticky beans and its parent afterwards; finally, it is marked closed and the storage of its beans is recycled, if
+     * pooling is enabled.
+     */
+    private void destroy() {
+        Throwable failure = destroyBeans();
+        StickyHolder stickyHolder = sticky;
+        sticky = null;
+        for (; stickyHolder != null; stickyHolder = stickyHolder.next) {
+            failure = release(stickyHolder.context, failure);
+        }
+        if (parent != null) {
+            failure = release(parent, failure);
+        }
+        final TaskScopeListener listener = openListener;
+        if (listener != null) {
+            openListener = null;
+            listener.scopeClosed(this, System.nanoTime() - openedNanos, beansCreated);
+        }
+        references = CLOSED;
+        final SlotTable<Object> table = beans;
+        if (table != null) {
+            beans = null;
+            if (pool != null) {
+                pool.recycle(table);
+                pool = null;
+            }
+        }
+        TaskScopeDestruction.rethrow(failure);
+    }
+
+    /**
+     * Releases the other context, adding its failure to the given one; returns the first failure.
+     */
+    private static Throwable release(final TaskScopeContext<?> context, final Throwable failure) {
+        try {
+            context.release();
+        } catch (RuntimeException | Error e) {
+            if (failure == null) {
+                return e;
+            }
+            failure.addSuppressed(e);
+        }
+        return failure;
+    }
+
+    private Throwable destroyBeans() {
+        final Map<String, DestructionCallback> registered = destructionCallbacks;
+        if (registered == null) {
+            return null;
+        }
+        destructionCallbacks = null;
+        final DestructionCallback[] callbacks = registered.values().toArray(new DestructionCallback[0]);
+        Throwable failure = null;
+        int remaining = callbacks.length;
+        while (remaining > 0) {
+            final TaskScopeDestruction destruction = callbacks[remaining - 1].destruction;
+            final List<Runnable> batch = new ArrayList<>(remaining);
+            while (remaining > 0 && callbacks[remaining - 1].destruction == destruction) {
+                remaining--;
+                batch.add(callbacks[remaining].callback);
+            }
+            try {
+                destruction.run(batch);
+            } catch (RuntimeException | Error e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        return failure;
+    }
+
+    /**
+     * Closes the task scope and runs the destruction callbacks of its beans, see {@link DestructionMode}. If the
+     * context has been handed over to other threads (see {@link TaskScopeExecutors}), the beans are destroyed once the
+     * last of the tasks using it is done.
+     *
+     * @throws IllegalStateException if the context has already been closed, is not the current one or has not been
+     *                               created by the current thread
+     */
     @Override
     public void close() {
         TaskScope.delete(this);
     }
+
+    /**
+     * Context holding the sticky beans retained from a cache, linked to the ones retained from the other caches.
+     */
+    @RequiredArgsConstructor
+    private static final class StickyHolder {
+
+        private final TaskScopeStickyCache cache;
+
+        private final TaskScopeContext<?> context;
+
+        private final StickyHolder next;
+
+        static TaskScopeContext<?> find(final StickyHolder first, final TaskScopeStickyCache cache) {
+            for (StickyHolder holder = first; holder != null; holder = holder.next) {
+                if (holder.cache == cache) {
+                    return holder.context;
+                }
+            }
+            return null;
+        }
+    }
+
+    @RequiredArgsConstructor
+    private static final class DestructionCallback {
+
+        private final Runnable callback;
+
+        private final TaskScopeDestruction destruction;
+    }
 }
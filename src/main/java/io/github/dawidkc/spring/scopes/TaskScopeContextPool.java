@@ -0,0 +1,84 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.Arrays;
+
+/**
+ * Optional pool of the bean storage of the closed {@link TaskScopeContext}s, reused by the task scopes created
+ * afterwards, so that creating the first bean of a task scope does not allocate the storage once the pool is warm. The
+ * contexts themselves are never reused, so that a reference kept after closing one cannot reach another task scope.
+ * Each thread keeps its own free list of the storage released by it, so neither recycling nor reuse needs any
+ * synchronization. Set up with {@link EnableTaskScope#contextPoolSize()}, each application context having a pool of
+ * its own: the storage is taken from the pool of the application context whose bean is created first in the task
+ * scope, and given back to it.
+ *
+ * @author dawidkc
+ */
+final class TaskScopeContextPool {
+
+    private final ThreadLocal<FreeList> freeLists = ThreadLocal.withInitial(FreeList::new);
+
+    /**
+     * Maximum number of the bean tables kept by each thread.
+     */
+    private final int capacity;
+
+    TaskScopeContextPool(final int poolCapacity) {
+        if (poolCapacity < 0) {
+            throw new IllegalArgumentException("Context pool size must not be negative: " + poolCapacity);
+        }
+        this.capacity = poolCapacity;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns a recycled bean table, or a new one if there is none.
+     */
+    SlotTable<Object> acquire() {
+        final SlotTable<Object> table = freeLists.get().poll();
+        return table != null ? table : new SlotTable<>(TaskScopeSlots.count());
+    }
+
+    /**
+     * Keeps the bean table of a destroyed context for reuse, unless the pool is full, or the table lacks some of the
+     * slots registered meanwhile.
+     */
+    void recycle(final SlotTable<Object> table) {
+        if (table.size() >= TaskScopeSlots.count()) {
+            freeLists.get().offer(table, capacity);
+        }
+    }
+
+    /**
+     * Stack of the recycled bean tables of a single thread.
+     */
+    private static final class FreeList {
+
+        @SuppressWarnings("unchecked")
+        private SlotTable<Object>[] elements = new SlotTable[0];
+
+        private int size;
+
+        SlotTable<Object> poll() {
+            if (size == 0) {
+                return null;
+            }
+            final SlotTable<Object> table = elements[--size];
+            elements[size] = null;
+            return table;
+        }
+
+        void offer(final SlotTable<Object> table, final int limit) {
+            if (size >= limit) {
+                return;
+            }
+            if (size == elements.length) {
+                elements = Arrays.copyOf(elements, Math.min(limit, Math.max(size << 1, 1)));
+            }
+            table.clear();
+            elements[size++] = table;
+        }
+    }
+}
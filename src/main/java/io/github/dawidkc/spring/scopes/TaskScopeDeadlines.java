@@ -0,0 +1,155 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.Arrays;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Interruption of the task scopes exceeding their deadline, see {@link EnableTaskScope#interruptOnDeadline()}. While a
+ * task scope with a deadline is open on its owner thread, a task is scheduled for the deadline, which cancels the task
+ * scope and interrupts the thread. The interrupt status set this way is cleared when the task scope is closed, so that
+ * it does not affect whatever the thread (e.g. a pooled one) does next.
+ * <p>
+ * Each application context enabling the interruption installs its own for as long as it is open; the task scopes are
+ * interrupted while any of them is installed.
+ *
+ * @author dawidkc
+ */
+@Slf4j
+final class TaskScopeDeadlines implements DisposableBean {
+
+    /**
+     * Interruptions in use, one per application context enabling it; the first one schedules the watches.
+     */
+    private static volatile TaskScopeDeadlines[] installed = new TaskScopeDeadlines[0];
+
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    /**
+     * Creates the interruption, along with its scheduler thread if enabled.
+     */
+    TaskScopeDeadlines(final boolean enabled) {
+        if (enabled) {
+            final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("task-scope-deadlines-");
+            threadFactory.setDaemon(true);
+            this.scheduler = new ScheduledThreadPoolExecutor(1, threadFactory);
+            this.scheduler.setRemoveOnCancelPolicy(true);
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    /**
+     * Starts using the interruption, along with the ones already in use.
+     */
+    static synchronized void install(final TaskScopeDeadlines deadlines) {
+        final TaskScopeDeadlines[] updated = Arrays.copyOf(installed, installed.length + 1);
+        updated[installed.length] = deadlines;
+        installed = updated;
+    }
+
+    private static synchronized void uninstall(final TaskScopeDeadlines deadlines) {
+        for (int i = 0; i < installed.length; i++) {
+            if (installed[i] == deadlines) {
+                final TaskScopeDeadlines[] updated = new TaskScopeDeadlines[installed.length - 1];
+                System.arraycopy(installed, 0, updated, 0, i);
+                System.arraycopy(installed, i + 1, updated, i, updated.length - i);
+                installed = updated;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Schedules the interruption of the current thread at the deadline of the context opened on it, if it has one.
+     */
+    static void watch(final TaskScopeContext<?> context) {
+        final TaskScopeDeadlines[] deadlines = installed;
+        if (deadlines.length > 0 && deadlines[0].scheduler != null && context.hasDeadline()) {
+            context.setDeadlineWatch(deadlines[0].schedule(context));
+        }
+    }
+
+    /**
+     * Cancels the interruption scheduled by {@link #watch(TaskScopeContext)}, when the context is closed by the
+     * current thread.
+     */
+    static void unwatch(final TaskScopeContext<?> context) {
+        final Object watch = context.getDeadlineWatch();
+        if (watch != null) {
+            context.setDeadlineWatch(null);
+            ((Watch) watch).done();
+        }
+    }
+
+    private Watch schedule(final TaskScopeContext<?> context) {
+        final Watch watch = new Watch(context, Thread.currentThread());
+        try {
+            watch.future = scheduler.schedule(watch, context.remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+        return watch;
+    }
+
+    /**
+     * Stops the interruption, if it is in use, and its scheduler thread.
+     */
+    @Override
+    public void destroy() {
+        uninstall(this);
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private static final class Watch implements Runnable {
+
+        private final TaskScopeContext<?> context;
+
+        private final Thread thread;
+
+        private Future<?> future;
+
+        private boolean done;
+
+        private boolean interrupted;
+
+        Watch(final TaskScopeContext<?> watchedContext, final Thread owner) {
+            this.context = watchedContext;
+            this.thread = owner;
+        }
+
+        /**
+         * Cancels the task scope and interrupts its owner, unless it has been closed in the meantime.
+         */
+        @Override
+        public synchronized void run() {
+            if (done) {
+                return;
+            }
+            log.debug("Task scope with context {} has exceeded its deadline, interrupting {}",
+                    context.peekContextObject(), thread.getName());
+            context.cancel();
+            interrupted = true;
+            thread.interrupt();
+        }
+
+        /**
+         * Called by the owner closing the task scope; clears the interrupt status set by {@link #run()}.
+         */
+        synchronized void done() {
+            done = true;
+            future.cancel(false);
+            if (interrupted) {
+                Thread.interrupted();
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Runs the destruction callbacks of the task-scoped beans when their {@link TaskScopeContext} is closed, according to
+ * the {@link DestructionMode} set on {@link EnableTaskScope}.
+ * <p>
+ * In the {@link DestructionMode#ASYNC} mode all callbacks of a closed context are handed to a bounded thread pool as
+ * one batch. When the pool queue is full, or the pool has already been shut down, the batch is run by the thread
+ * closing the context, which slows the producers of new contexts down until the pool catches up.
+ *
+ * @author dawidkc
+ */
+@Slf4j
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+final class TaskScopeDestruction implements DisposableBean {
+
+    /**
+     * Runs the callbacks by the thread closing the context.
+     */
+    static final TaskScopeDestruction SYNC = new TaskScopeDestruction(null);
+
+    private static final int SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private final ThreadPoolTaskExecutor executor;
+
+    /**
+     * Creates the destruction running the callbacks in a pool of given number of threads and queue capacity.
+     */
+    static TaskScopeDestruction async(final int threads, final int queueCapacity) {
+        final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("task-scope-destruction-");
+        executor.setDaemon(true);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(SHUTDOWN_TIMEOUT_SECONDS);
+        executor.setRejectedExecutionHandler(TaskScopeDestruction::runRejected);
+        executor.initialize();
+        return new TaskScopeDestruction(executor);
+    }
+
+    /**
+     * Runs the callbacks in the given order. Failures of the synchronous run are thrown after all callbacks have
+     * been run; failures of the asynchronous run are logged.
+     */
+    void run(final List<Runnable> callbacks) {
+        if (executor == null) {
+            rethrow(runAll(callbacks));
+        } else {
+            executor.execute(() -> {
+                final Throwable failure = runAll(callbacks);
+                if (failure != null) {
+                    log.warn("Destruction of task-scoped beans failed", failure);
+                }
+            });
+        }
+    }
+
+    /**
+     * Waits (up to 30 seconds) for the already queued callbacks to be run and stops the pool.
+     */
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Runs all callbacks and returns the first failure, with the subsequent ones suppressed in it, or {@code null}.
+     */
+    static Throwable runAll(final List<Runnable> callbacks) {
+        final TaskScopeListener listener = TaskScopeListeners.current();
+        Throwable failure = null;
+        for (Runnable callback : callbacks) {
+            final long start = listener == null ? 0L : System.nanoTime();
+            Throwable callbackFailure = null;
+            try {
+                callback.run();
+            } catch (RuntimeException | Error e) {
+                callbackFailure = e;
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+            if (listener != null) {
+                listener.destructionCallbackRun(System.nanoTime() - start, callbackFailure);
+            }
+        }
+        return failure;
+    }
+
+    static void rethrow(final Throwable failure) {
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+    }
+
+    private static void runRejected(final Runnable batch, final ThreadPoolExecutor pool) {
+        log.debug("Destruction queue is full or shut down, running destruction callbacks by the closing thread");
+        batch.run();
+    }
+}
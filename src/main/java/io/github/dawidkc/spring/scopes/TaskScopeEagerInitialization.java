@@ -0,0 +1,172 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Starts creating the {@link TaskScoped#eager() eager} task-scoped beans as soon as a task scope is opened, each one
+ * in a separate task of an executor, so that the beans doing blocking work when initialized are created concurrently.
+ * <p>
+ * Each task creates its bean within the new context, like a regular access would. A bean being created is stored in the
+ * context as a placeholder (see {@link TaskScopeContext#getBean}), so the first access by the task waits for the
+ * creation in progress instead of starting another one, and an eager bean which depends on another one waits for it
+ * the same way. A bean whose creation has not started yet is simply created by whoever needs it first, and its task
+ * finds it already there; so a dependency is always created before the beans depending on it, and the tasks waiting
+ * for each other cannot deadlock the executor. Each task keeps the context alive until it is done; the tasks starting
+ * after the owner has closed the context skip the creation, as nothing may access the bean any more, apart from the
+ * tasks the context has been handed over to. A failure is only logged by the task: the accesses already waiting for
+ * the creation fail with the very same exception, while the ones coming afterwards create the bean anew.
+ * <p>
+ * Each application context enabling the task scope installs the initialization of its own eager beans, resolved with
+ * its own bean factory, for as long as it is open; a new task scope starts all of them.
+ *
+ * @author dawidkc
+ */
+@Slf4j
+final class TaskScopeEagerInitialization implements DisposableBean {
+
+    private static final int SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    private static final int QUEUE_CAPACITY = 1024;
+
+    /**
+     * Initializations run for the new task scopes, one per application context having eager beans.
+     */
+    private static volatile TaskScopeEagerInitialization[] installed = new TaskScopeEagerInitialization[0];
+
+    private final BeanFactory beanFactory;
+
+    private final String[] beanNames;
+
+    private final Executor executor;
+
+    /**
+     * Executor created for the initialization, stopped along with it, or {@code null} if provided by the application.
+     */
+    private final ThreadPoolTaskExecutor ownExecutor;
+
+    private TaskScopeEagerInitialization(
+            final BeanFactory factory,
+            final List<String> names,
+            final Executor taskExecutor,
+            final ThreadPoolTaskExecutor createdExecutor
+    ) {
+        this.beanFactory = factory;
+        this.beanNames = names.toArray(new String[0]);
+        this.executor = taskExecutor;
+        this.ownExecutor = createdExecutor;
+    }
+
+    /**
+     * Creates the initialization of the given beans, run by the given executor.
+     */
+    static TaskScopeEagerInitialization of(
+            final BeanFactory factory,
+            final List<String> names,
+            final Executor taskExecutor
+    ) {
+        return new TaskScopeEagerInitialization(factory, names, taskExecutor, null);
+    }
+
+    /**
+     * Creates the initialization of the given beans, run by a pool of given number of threads.
+     */
+    static TaskScopeEagerInitialization of(final BeanFactory factory, final List<String> names, final int threads) {
+        final ThreadPoolTaskExecutor pool = new ThreadPoolTaskExecutor();
+        pool.setCorePoolSize(threads);
+        pool.setMaxPoolSize(threads);
+        pool.setQueueCapacity(QUEUE_CAPACITY);
+        pool.setThreadNamePrefix("task-scope-eager-");
+        pool.setDaemon(true);
+        pool.setWaitForTasksToCompleteOnShutdown(true);
+        pool.setAwaitTerminationSeconds(SHUTDOWN_TIMEOUT_SECONDS);
+        pool.initialize();
+        return new TaskScopeEagerInitialization(factory, names, pool, pool);
+    }
+
+    /**
+     * Starts running the initialization for the new task scopes, along with the ones already installed.
+     */
+    static synchronized void install(final TaskScopeEagerInitialization initialization) {
+        final TaskScopeEagerInitialization[] updated = Arrays.copyOf(installed, installed.length + 1);
+        updated[installed.length] = initialization;
+        installed = updated;
+    }
+
+    private static synchronized void uninstall(final TaskScopeEagerInitialization initialization) {
+        for (int i = 0; i < installed.length; i++) {
+            if (installed[i] == initialization) {
+                final TaskScopeEagerInitialization[] updated = new TaskScopeEagerInitialization[installed.length - 1];
+                System.arraycopy(installed, 0, updated, 0, i);
+                System.arraycopy(installed, i + 1, updated, i, updated.length - i);
+                installed = updated;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Starts creating the eager beans of all the installed initializations within the new context, if there are any.
+     */
+    static void start(final TaskScopeContext<?> context) {
+        for (TaskScopeEagerInitialization initialization : installed) {
+            initialization.startAll(context);
+        }
+    }
+
+    private void startAll(final TaskScopeContext<?> context) {
+        final long id = context.getId();
+        for (String name : beanNames) {
+            if (!context.tryRetain(id)) {
+                return;
+            }
+            try {
+                executor.execute(() -> create(context, name));
+            } catch (RejectedExecutionException e) {
+                log.debug("Eager creation of task-scoped bean {} rejected, leaving it to the first access", name);
+                release(context);
+            }
+        }
+    }
+
+    private void create(final TaskScopeContext<?> context, final String name) {
+        try {
+            if (context.isClosedByOwner()) {
+                log.debug("Task scope closed before the eager creation of task-scoped bean {}, skipping it", name);
+                return;
+            }
+            TaskScope.callAttached(context, () -> beanFactory.getBean(name));
+        } catch (Exception e) {
+            log.debug("Eager creation of task-scoped bean {} failed, leaving it to the first access", name, e);
+        } finally {
+            release(context);
+        }
+    }
+
+    private static void release(final TaskScopeContext<?> context) {
+        try {
+            context.release();
+        } catch (RuntimeException | Error e) {
+            log.warn("Destruction of task-scoped beans failed", e);
+        }
+    }
+
+    /**
+     * Stops starting the creation for the new task scopes, and stops the pool created for it, waiting (up to 30
+     * seconds) for the creations in progress.
+     */
+    @Override
+    public void destroy() {
+        uninstall(this);
+        if (ownExecutor != null) {
+            ownExecutor.shutdown();
+        }
+    }
+}
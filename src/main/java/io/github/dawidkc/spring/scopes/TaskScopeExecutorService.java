@@ -0,0 +1,108 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * {@link ExecutorService} running all tasks within the task scope current when they are submitted.
+ * <p>
+ * The futures of the submitted tasks, including the ones of {@code invokeAll} and {@code invokeAny}, release the
+ * captured context when they are cancelled before the task starts, so the tasks cancelled by {@code invokeAny} once
+ * one of them succeeds, or by the timed {@code invokeAll}, do not keep the beans of the task scope alive.
+ *
+ * @author dawidkc
+ * @see TaskScopeExecutors#wrap(ExecutorService)
+ */
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+final class TaskScopeExecutorService extends AbstractExecutorService {
+
+    private final ExecutorService delegate;
+
+    @Override
+    public void execute(final Runnable command) {
+        if (!(command instanceof ContextFuture)) {
+            TaskScopeExecutors.execute(delegate, command);
+            return;
+        }
+        try {
+            delegate.execute(command);
+        } catch (RejectedExecutionException e) {
+            release(command);
+            throw e;
+        }
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(final Callable<T> callable) {
+        return new ContextFuture<>(TaskScopeExecutors.wrap(callable));
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(final Runnable runnable, final T value) {
+        return new ContextFuture<>(TaskScopeExecutors.wrap(Executors.callable(runnable, value)));
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        final List<Runnable> notRun = delegate.shutdownNow();
+        notRun.forEach(TaskScopeExecutorService::release);
+        return notRun;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Releases the context captured by the task which is not going to be run by the delegate.
+     */
+    private static void release(final Runnable task) {
+        TaskScopeExecutors.release(task instanceof ContextFuture ? ((ContextFuture<?>) task).task : task);
+    }
+
+    /**
+     * Future of a submitted task, releasing the captured context when cancelled before the task starts.
+     */
+    private static final class ContextFuture<T> extends FutureTask<T> {
+
+        private final Callable<T> task;
+
+        ContextFuture(final Callable<T> wrapped) {
+            super(wrapped);
+            this.task = wrapped;
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                TaskScopeExecutors.release(task);
+            }
+        }
+    }
+}
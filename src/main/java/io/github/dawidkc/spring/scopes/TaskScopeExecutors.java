@@ -0,0 +1,310 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Propagation of the task scope to other threads. The wrappers capture the {@link TaskScopeContext} current at the
+ * time of wrapping (i.e. task submission) and make the very same context, along with its already created beans, current
+ * on the thread running the task, for the duration of the task:
+ * <p>
+ * <pre><code>
+ * ExecutorService executor = TaskScopeExecutors.wrap(Executors.newFixedThreadPool(4));
+ * try (var ctx = TaskScope.create("data")) {
+ *     executor.submit(() -&gt; worker.work()); // same task-scoped worker as here
+ * }
+ * </code></pre>
+ * <p>
+ * A captured context stays alive until all tasks which captured it are done, so its beans are destroyed after the
+ * last of them finishes, even if the scope has been closed by its owner in the meantime. Tasks which never run release
+ * the context as well: the wrapped executors release it when a task is rejected, cancelled before it starts, or
+ * returned by {@code shutdownNow()}. Tasks wrapped outside of any task scope are not changed. Threads running the
+ * tasks cannot close the propagated context.
+ * <p>
+ * For Spring's {@code ThreadPoolTaskExecutor} and {@code SimpleAsyncTaskExecutor}, use {@link TaskScopeTaskDecorator},
+ * which is applied automatically to such beans defined in the application context, so {@code @Async} methods run in
+ * the task scope of their caller.
+ *
+ * @author dawidkc
+ */
+public final class TaskScopeExecutors {
+
+    private TaskScopeExecutors() {
+    }
+
+    /**
+     * Wraps the runnable to run within the current task scope.
+     */
+    public static Runnable wrap(final Runnable runnable) {
+        final TaskScopeContext<?> context = TaskScope.findCurrentContext();
+        if (context == null) {
+            return runnable;
+        }
+        context.retain();
+        return new ContextRunnable(context, runnable);
+    }
+
+    /**
+     * Wraps the callable to run within the current task scope.
+     */
+    public static <V> Callable<V> wrap(final Callable<V> callable) {
+        final TaskScopeContext<?> context = TaskScope.findCurrentContext();
+        if (context == null) {
+            return callable;
+        }
+        context.retain();
+        return new ContextCallable<>(context, callable);
+    }
+
+    /**
+     * Wraps the callable to run within the current task scope, as a subtask of structured concurrency (e.g. forked in
+     * a {@code StructuredTaskScope}). Unlike {@link #wrap(Callable)}, the context is only kept alive while the subtask
+     * runs, so a subtask which is never run does not keep the beans from being destroyed; a subtask starting after the
+     * task scope has been closed fails with {@link IllegalStateException}.
+     */
+    public static <V> Callable<V> wrapSubtask(final Callable<V> callable) {
+        final TaskScopeContext<?> context = TaskScope.findCurrentContext();
+        if (context == null) {
+            return callable;
+        }
+        return new SubtaskCallable<>(context, context.getId(), callable);
+    }
+
+    /**
+     * Wraps the executor so that all tasks run within the task scope current when they are submitted.
+     */
+    public static Executor wrap(final Executor executor) {
+        return new ContextExecutor(executor);
+    }
+
+    /**
+     * Binds the executor to the current task scope: all tasks run within it, no matter which thread submits them. Suits
+     * the asynchronous stages of {@code CompletableFuture}, which are submitted by the thread completing the previous
+     * stage:
+     * <p>
+     * <pre><code>
+     * Executor executor = TaskScopeExecutors.bind(pool);
+     * CompletableFuture.supplyAsync(() -&gt; worker.load(), executor)
+     *         .thenApplyAsync(data -&gt; worker.process(data), executor);
+     * </code></pre>
+     * <p>
+     * Tasks submitted after the task scope has been closed are rejected with {@link IllegalStateException}, which
+     * completes such a stage exceptionally. Outside of any task scope, the executor is returned unchanged.
+     */
+    public static Executor bind(final Executor executor) {
+        final TaskScopeContext<?> context = TaskScope.findCurrentContext();
+        if (context == null) {
+            return executor;
+        }
+        return new BoundExecutor(executor, context, context.getId());
+    }
+
+    /**
+     * Wraps the executor service so that all tasks run within the task scope current when they are submitted.
+     */
+    public static ExecutorService wrap(final ExecutorService executorService) {
+        return new TaskScopeExecutorService(executorService);
+    }
+
+    /**
+     * Runs the wrapped task with the captured context attached. The context is retained when the task is wrapped, and
+     * that reference is released exactly once: after the first run, or by {@link #release()} if the task never starts
+     * (e.g. it has been rejected or cancelled), whichever happens first. A task started after such a release retains
+     * the context again, provided that it has not been closed in the meantime.
+     */
+    @Slf4j
+    private abstract static class ContextTask {
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<ContextTask> CLAIMED =
+                AtomicIntegerFieldUpdater.newUpdater(ContextTask.class, "claimed");
+
+        private final TaskScopeContext<?> context;
+
+        private final long activationId;
+
+        /**
+         * Whether the reference taken when wrapping the task has been claimed, by its first run or by its release.
+         */
+        private volatile int claimed;
+
+        /**
+         * Creates the task of the context retained by the caller.
+         */
+        private ContextTask(final TaskScopeContext<?> retainedContext) {
+            this.context = retainedContext;
+            this.activationId = retainedContext.getId();
+        }
+
+        /**
+         * Runs the task with the captured context being the current one, and releases the context.
+         *
+         * @throws IllegalStateException if the task has been released before it started, and the task scope has been
+         *                               closed since
+         */
+        final <V> V callAttached(final Callable<V> task) throws Exception {
+            if (!CLAIMED.compareAndSet(this, 0, 1)) {
+                context.retain(activationId);
+            }
+            try {
+                return TaskScope.callAttached(context, task);
+            } finally {
+                releaseContext();
+            }
+        }
+
+        /**
+         * Releases the captured context, unless the task has started or has been released already.
+         */
+        final void release() {
+            if (CLAIMED.compareAndSet(this, 0, 1)) {
+                releaseContext();
+            }
+        }
+
+        /**
+         * Releases the context. Failures of the destruction callbacks run by the release are logged, so that they do
+         * not fail the task.
+         */
+        private void releaseContext() {
+            try {
+                context.release();
+            } catch (RuntimeException | Error e) {
+                log.warn("Destruction of task-scoped beans failed", e);
+            }
+        }
+    }
+
+    private static final class ContextRunnable extends ContextTask implements Runnable, Callable<Void> {
+
+        private final Runnable delegate;
+
+        ContextRunnable(final TaskScopeContext<?> context, final Runnable task) {
+            super(context);
+            this.delegate = task;
+        }
+
+        @Override
+        public void run() {
+            try {
+                callAttached(this);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new UndeclaredThrowableException(e);
+            }
+        }
+
+        /**
+         * Runs the delegate, within the attached context.
+         */
+        @Override
+        public Void call() {
+            delegate.run();
+            return null;
+        }
+    }
+
+    private static final class ContextCallable<V> extends ContextTask implements Callable<V> {
+
+        private final Callable<V> delegate;
+
+        ContextCallable(final TaskScopeContext<?> context, final Callable<V> task) {
+            super(context);
+            this.delegate = task;
+        }
+
+        @Override
+        public V call() throws Exception {
+            return callAttached(delegate);
+        }
+    }
+
+    @Slf4j
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    private static final class SubtaskCallable<V> implements Callable<V> {
+
+        private final TaskScopeContext<?> context;
+
+        private final long activationId;
+
+        private final Callable<V> delegate;
+
+        @Override
+        public V call() throws Exception {
+            context.retain(activationId);
+            try {
+                return TaskScope.callAttached(context, delegate);
+            } finally {
+                try {
+                    context.release();
+                } catch (RuntimeException | Error e) {
+                    log.warn("Destruction of task-scoped beans failed", e);
+                }
+            }
+        }
+    }
+
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    private static final class ContextExecutor implements Executor {
+
+        private final Executor delegate;
+
+        @Override
+        public void execute(final Runnable command) {
+            TaskScopeExecutors.execute(delegate, command);
+        }
+    }
+
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    private static final class BoundExecutor implements Executor {
+
+        private final Executor delegate;
+
+        private final TaskScopeContext<?> context;
+
+        private final long activationId;
+
+        @Override
+        public void execute(final Runnable command) {
+            context.retain(activationId);
+            final Runnable wrapped = new ContextRunnable(context, command);
+            try {
+                delegate.execute(wrapped);
+            } catch (RejectedExecutionException e) {
+                release(wrapped);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Wraps the command and runs it with the executor, releasing the captured context if the executor rejects it.
+     */
+    static void execute(final Executor executor, final Runnable command) {
+        final Runnable wrapped = wrap(command);
+        try {
+            executor.execute(wrapped);
+        } catch (RejectedExecutionException e) {
+            release(wrapped);
+            throw e;
+        }
+    }
+
+    /**
+     * Releases the context captured by the task, if it is one of the wrappers.
+     */
+    static void release(final Object task) {
+        if (task instanceof ContextTask) {
+            ((ContextTask) task).release();
+        }
+    }
+}
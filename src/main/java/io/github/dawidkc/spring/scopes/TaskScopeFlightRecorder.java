@@ -0,0 +1,344 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.SettingControl;
+import jdk.jfr.SettingDefinition;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Java Flight Recorder events of the task scopes, recorded along with the GC, lock and I/O events of the JVM:
+ * <ul>
+ * <li>{@code io.github.dawidkc.spring.scopes.TaskScopeOpened} - a task scope has been opened (disabled by
+ * default),</li>
+ * <li>{@code io.github.dawidkc.spring.scopes.TaskScopeClosed} - the beans of a task scope have been destroyed, with
+ * its lifetime,</li>
+ * <li>{@code io.github.dawidkc.spring.scopes.TaskScopedBeanCreated} - a task-scoped bean has been created, with the
+ * time taken,</li>
+ * <li>{@code io.github.dawidkc.spring.scopes.TaskScopeDestruction} - a destruction callback has been run, with the time
+ * taken.</li>
+ * </ul>
+ * The events are enabled and disabled with the usual JFR settings. The timed ones are committed once the time is
+ * measured, so the built-in {@code threshold} setting does not apply to them; they have a {@code minimumDuration}
+ * setting instead ({@code 0 ns} by default, given like the thresholds, e.g. {@code 20 ms}). The events are recorded by
+ * a {@link TaskScopeListener} registered only while a recording is running, so otherwise the task scopes do not
+ * measure anything.
+ * <p>
+ * Installed when {@link TaskScope} is loaded, on the JVMs providing the {@code jdk.jfr} API (Java 11 and later, and
+ * Java 8 since update 262); on the others, nothing is recorded.
+ *
+ * @author dawidkc
+ */
+@Slf4j
+final class TaskScopeFlightRecorder {
+
+    private static final String CATEGORY = "Task Scope";
+
+    private static final String PREFIX = "io.github.dawidkc.spring.scopes.";
+
+    private static final String MINIMUM_DURATION = "minimumDuration";
+
+    private TaskScopeFlightRecorder() {
+    }
+
+    /**
+     * Starts following the recordings, if the {@code jdk.jfr} API is available.
+     */
+    static void install() {
+        try {
+            Class.forName("jdk.jfr.FlightRecorder", false, TaskScopeFlightRecorder.class.getClassLoader());
+            Recordings.install();
+        } catch (ClassNotFoundException | LinkageError | SecurityException e) {
+            log.debug("Java Flight Recorder is not available, task scope events are not recorded");
+        }
+    }
+
+    /**
+     * Registers the {@link Recorder} while any recording is running.
+     */
+    private static final class Recordings implements FlightRecorderListener {
+
+        private final Set<Recording> running = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        private final Recorder recorder = new Recorder();
+
+        static void install() {
+            FlightRecorder.addListener(new Recordings());
+        }
+
+        @Override
+        public void recorderInitialized(final FlightRecorder flightRecorder) {
+            for (Recording recording : flightRecorder.getRecordings()) {
+                recordingStateChanged(recording);
+            }
+        }
+
+        @Override
+        public synchronized void recordingStateChanged(final Recording recording) {
+            final boolean wasRunning = !running.isEmpty();
+            if (recording.getState() == RecordingState.RUNNING) {
+                running.add(recording);
+            } else {
+                running.remove(recording);
+            }
+            if (!wasRunning && !running.isEmpty()) {
+                TaskScope.addListener(recorder);
+            } else if (wasRunning && running.isEmpty()) {
+                TaskScope.removeListener(recorder);
+            }
+        }
+    }
+
+    /**
+     * Commits the events of the task scope activity, if they are enabled.
+     */
+    private static final class Recorder implements TaskScopeListener {
+
+        @Override
+        public void scopeOpened(final TaskScopeContext<?> context, final int depth) {
+            final Opened event = new Opened();
+            if (event.isEnabled()) {
+                event.contextId = context.getId();
+                event.contextClass = classOf(context);
+                event.depth = depth;
+                event.commit();
+            }
+        }
+
+        @Override
+        public void scopeClosed(final TaskScopeContext<?> context, final long lifetimeNanos, final int beansCreated) {
+            final Closed event = new Closed();
+            if (event.isEnabled()) {
+                event.contextId = context.getId();
+                event.contextClass = classOf(context);
+                event.depth = context.getDepth();
+                event.lifetime = lifetimeNanos;
+                event.beansCreated = beansCreated;
+                event.commit();
+            }
+        }
+
+        @Override
+        public void beanCreated(final TaskScopeContext<?> context, final String beanName, final long durationNanos) {
+            final BeanCreated event = new BeanCreated();
+            if (event.isEnabled()) {
+                event.contextId = context.getId();
+                event.beanName = beanName;
+                event.creationTime = durationNanos;
+                event.commit();
+            }
+        }
+
+        @Override
+        public void destructionCallbackRun(final long durationNanos, final Throwable failure) {
+            final Destruction event = new Destruction();
+            if (event.isEnabled()) {
+                event.callbackTime = durationNanos;
+                event.failure = failure == null ? null : failure.getClass().getName();
+                event.commit();
+            }
+        }
+
+        private static String classOf(final TaskScopeContext<?> context) {
+            final Object contextObject = context.peekContextObject();
+            return contextObject == null ? null : contextObject.getClass().getName();
+        }
+    }
+
+    @Name(PREFIX + "TaskScopeOpened")
+    @Label("Task Scope Opened")
+    @Category(CATEGORY)
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Opened extends Event {
+
+        @Label("Context Id")
+        private long contextId;
+
+        @Label("Context Class")
+        private String contextClass;
+
+        @Label("Depth")
+        @Description("Number of the task scopes active on the thread, including this one")
+        private int depth;
+    }
+
+    @Name(PREFIX + "TaskScopeClosed")
+    @Label("Task Scope Closed")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class Closed extends Event {
+
+        @Label("Context Id")
+        private long contextId;
+
+        @Label("Context Class")
+        private String contextClass;
+
+        @Label("Depth")
+        @Description("Number of the task scopes active on the opening thread, including this one")
+        private int depth;
+
+        @Label("Lifetime")
+        @Description("Time from opening the task scope until its beans have been destroyed")
+        @Timespan(Timespan.NANOSECONDS)
+        private long lifetime;
+
+        @Label("Beans Created")
+        private int beansCreated;
+
+        @Label("Minimum Duration")
+        @Name(MINIMUM_DURATION)
+        @SettingDefinition
+        boolean minimumDuration(final MinimumDuration control) {
+            return lifetime >= control.nanos;
+        }
+    }
+
+    @Name(PREFIX + "TaskScopedBeanCreated")
+    @Label("Task-Scoped Bean Created")
+    @Category(CATEGORY)
+    static final class BeanCreated extends Event {
+
+        @Label("Context Id")
+        private long contextId;
+
+        @Label("Bean Name")
+        private String beanName;
+
+        @Label("Creation Time")
+        @Timespan(Timespan.NANOSECONDS)
+        private long creationTime;
+
+        @Label("Minimum Duration")
+        @Name(MINIMUM_DURATION)
+        @SettingDefinition
+        boolean minimumDuration(final MinimumDuration control) {
+            return creationTime >= control.nanos;
+        }
+    }
+
+    @Name(PREFIX + "TaskScopeDestruction")
+    @Label("Task Scope Destruction Callback")
+    @Category(CATEGORY)
+    static final class Destruction extends Event {
+
+        @Label("Callback Time")
+        @Timespan(Timespan.NANOSECONDS)
+        private long callbackTime;
+
+        @Label("Failure")
+        @Description("Class of the exception thrown by the callback, if it failed")
+        private String failure;
+
+        @Label("Minimum Duration")
+        @Name(MINIMUM_DURATION)
+        @SettingDefinition
+        boolean minimumDuration(final MinimumDuration control) {
+            return callbackTime >= control.nanos;
+        }
+    }
+
+    /**
+     * Minimum time measured by the task scope for an event to be recorded. Of the values set by several recordings,
+     * the smallest one applies.
+     */
+    public static final class MinimumDuration extends SettingControl {
+
+        private static final String NONE = "0 ns";
+
+        private volatile String value = NONE;
+
+        private volatile long nanos;
+
+        @Override
+        public String combine(final Set<String> values) {
+            String result = null;
+            long min = Long.MAX_VALUE;
+            for (String candidate : values) {
+                final long candidateNanos = parse(candidate);
+                if (candidateNanos >= 0 && candidateNanos <= min) {
+                    min = candidateNanos;
+                    result = candidate;
+                }
+            }
+            return result == null ? NONE : result;
+        }
+
+        @Override
+        public void setValue(final String settingValue) {
+            final long parsed = parse(settingValue);
+            if (parsed >= 0) {
+                this.value = settingValue;
+                this.nanos = parsed;
+            }
+        }
+
+        @Override
+        public String getValue() {
+            return value;
+        }
+
+        /**
+         * Parses the time span, or returns {@code -1} if invalid.
+         */
+        static long parse(final String span) {
+            final String trimmed = span == null ? "" : span.trim().toLowerCase(Locale.ROOT);
+            if ("infinity".equals(trimmed)) {
+                return Long.MAX_VALUE;
+            }
+            int split = 0;
+            while (split < trimmed.length() && Character.isDigit(trimmed.charAt(split))) {
+                split++;
+            }
+            if (split == 0) {
+                return -1;
+            }
+            final long amount;
+            try {
+                amount = Long.parseLong(trimmed.substring(0, split));
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+            final TimeUnit unit = unitOf(trimmed.substring(split).trim());
+            return unit == null ? -1 : unit.toNanos(amount);
+        }
+
+        private static TimeUnit unitOf(final String unit) {
+            switch (unit) {
+                case "ns":
+                    return TimeUnit.NANOSECONDS;
+                case "us":
+                    return TimeUnit.MICROSECONDS;
+                case "ms":
+                    return TimeUnit.MILLISECONDS;
+                case "s":
+                    return TimeUnit.SECONDS;
+                case "m":
+                    return TimeUnit.MINUTES;
+                case "h":
+                    return TimeUnit.HOURS;
+                case "d":
+                    return TimeUnit.DAYS;
+                default:
+                    return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Implementation of {@link TaskScopeMXBean}. In the detailed mode, it follows the task scopes with a
+ * {@link TaskScopeListener} of the current detailed period, counting them with striped counters, and recording a sample
+ * of the open ones holding them weakly, so that a context left open by mistake does not stay reachable because
+ * of it. Otherwise no listener is registered at all. As each task scope reports its closing to the listener it has
+ * reported its opening to, a period only counts the closings of the task scopes opened within it.
+ * <p>
+ * Each application context has an introspection of its own: the first one registered takes {@value #OBJECT_NAME}, the
+ * ones registered while it is taken get an additional {@code instance} key.
+ *
+ * @author dawidkc
+ */
+@Slf4j
+final class TaskScopeIntrospection implements TaskScopeMXBean, DisposableBean {
+
+    private static final int DEPTHS = 16;
+
+    private static final int OLDEST_SCOPES = 10;
+
+    private static int instances;
+
+    /**
+     * Name the introspection is registered under, or {@code null} if it is not registered.
+     */
+    @Getter(AccessLevel.PACKAGE)
+    private ObjectName objectName;
+
+    /**
+     * Statistics of the current detailed period, or of the last one while the mode is off.
+     */
+    private volatile Period period = new Period();
+
+    private volatile int sampling = 1;
+
+    private boolean detailed;
+
+    /**
+     * Registers the introspection in the platform MBean server, under {@value #OBJECT_NAME}, or under an additional
+     * {@code instance} key if another application context has already taken that name.
+     */
+    static synchronized void register(final TaskScopeIntrospection introspection) {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                name = new ObjectName(OBJECT_NAME + ",instance=" + ++instances);
+            }
+            server.registerMBean(introspection, name);
+            introspection.objectName = name;
+        } catch (JMException e) {
+            log.warn("Task scope MBean could not be registered", e);
+        }
+    }
+
+    @Override
+    public synchronized boolean isDetailed() {
+        return detailed;
+    }
+
+    @Override
+    public synchronized void setDetailed(final boolean enabled) {
+        if (enabled == detailed) {
+            return;
+        }
+        detailed = enabled;
+        if (enabled) {
+            period = new Period();
+            TaskScope.addListener(period);
+        } else {
+            TaskScope.removeListener(period);
+            period.sampled.clear();
+        }
+    }
+
+    @Override
+    public int getSampling() {
+        return sampling;
+    }
+
+    @Override
+    public void setSampling(final int everyNth) {
+        if (everyNth < 1) {
+            throw new IllegalArgumentException("Sampling must be positive: " + everyNth);
+        }
+        this.sampling = everyNth;
+    }
+
+    @Override
+    public long getLiveScopes() {
+        return period.live.sum();
+    }
+
+    @Override
+    public long[] getDepthHistogram() {
+        final LongAdder[] depths = period.depths;
+        final long[] histogram = new long[DEPTHS];
+        for (int i = 0; i < DEPTHS; i++) {
+            histogram[i] = depths[i].sum();
+        }
+        return histogram;
+    }
+
+    @Override
+    public List<OpenScope> getOldestScopes() {
+        final long now = System.nanoTime();
+        final List<OpenScope> scopes = new ArrayList<>();
+        final Iterator<Sample> samples = period.sampled.values().iterator();
+        while (samples.hasNext()) {
+            final Sample sample = samples.next();
+            final TaskScopeContext<?> context = sample.get();
+            if (context == null) {
+                samples.remove();
+                continue;
+            }
+            final Object contextObject = context.peekContextObject();
+            final Thread owner = context.getOwner();
+            scopes.add(new OpenScope(context.getId(),
+                    contextObject == null ? null : contextObject.getClass().getName(),
+                    TimeUnit.NANOSECONDS.toMillis(now - sample.openedNanos),
+                    owner == null ? null : owner.getName(),
+                    context.getBeansCreated()));
+        }
+        return scopes.stream()
+                .sorted(Comparator.comparingLong(OpenScope::getAgeMillis).reversed())
+                .limit(OLDEST_SCOPES)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public long getBeansCreated() {
+        return period.beansCreated.sum();
+    }
+
+    @Override
+    public long getBeansDestroyed() {
+        return period.beansDestroyed.sum();
+    }
+
+    /**
+     * Stops following the task scopes and unregisters the MBean, if registered.
+     */
+    @Override
+    public void destroy() {
+        setDetailed(false);
+        synchronized (TaskScopeIntrospection.class) {
+            if (objectName == null) {
+                return;
+            }
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                log.debug("Task scope MBean could not be unregistered", e);
+            }
+            objectName = null;
+        }
+    }
+
+    /**
+     * Statistics of a single detailed period, following the task scopes opened within it.
+     */
+    private final class Period implements TaskScopeListener {
+
+        private final LongAdder live = new LongAdder();
+
+        private final LongAdder[] depths = new LongAdder[DEPTHS];
+
+        private final LongAdder beansCreated = new LongAdder();
+
+        private final LongAdder beansDestroyed = new LongAdder();
+
+        private final Map<Long, Sample> sampled = new ConcurrentHashMap<>();
+
+        Period() {
+            for (int i = 0; i < DEPTHS; i++) {
+                depths[i] = new LongAdder();
+            }
+        }
+
+        @Override
+        public void scopeOpened(final TaskScopeContext<?> context, final int depth) {
+            live.increment();
+            depths[Math.min(depth, DEPTHS) - 1].increment();
+            final int everyNth = sampling;
+            if (everyNth == 1 || ThreadLocalRandom.current().nextInt(everyNth) == 0) {
+                sampled.put(context.getId(), new Sample(context));
+            }
+        }
+
+        @Override
+        public void scopeClosed(final TaskScopeContext<?> context, final long lifetimeNanos, final int beans) {
+            live.decrement();
+            sampled.remove(context.getId());
+        }
+
+        @Override
+        public void beanCreated(final TaskScopeContext<?> context, final String beanName, final long durationNanos) {
+            beansCreated.increment();
+        }
+
+        @Override
+        public void destructionCallbackRun(final long durationNanos, final Throwable failure) {
+            beansDestroyed.increment();
+        }
+    }
+
+    /**
+     * Recorded task scope, held weakly; the samples of the task scopes left open and collected are dropped when the
+     * oldest ones are listed.
+     */
+    private static final class Sample extends WeakReference<TaskScopeContext<?>> {
+
+        private final long openedNanos = System.nanoTime();
+
+        Sample(final TaskScopeContext<?> context) {
+            super(context);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Detection of the leaked task scopes, see {@link LeakDetection}. Follows the open task scopes as a
+ * {@link TaskScopeListener}, recording the thread opening each one and, for a sample of them, the stack trace; a
+ * background thread checks them periodically and reports the ones open longer than the threshold, once each. The task
+ * scopes left open by a task are reported (and closed, if configured) when the storage removes them from the stack,
+ * see {@link ThreadLocalTaskScopeStorage}.
+ * <p>
+ * Each application context enabling the detection installs a detector of its own for as long as it is open; a task
+ * scope left open by a task is reported by all of them, and closed once if any of them {@link LeakDetection#UNWIND
+ * unwinds}.
+ *
+ * @author dawidkc
+ */
+@Slf4j
+final class TaskScopeLeakDetector implements TaskScopeListener, DisposableBean {
+
+    private static final long MIN_CHECK_PERIOD_MILLIS = 10;
+
+    /**
+     * Detectors in use, one per application context enabling the detection.
+     */
+    private static volatile TaskScopeLeakDetector[] installed = new TaskScopeLeakDetector[0];
+
+    private final LeakDetection mode;
+
+    private final long thresholdNanos;
+
+    private final int stackSampling;
+
+    private final Map<TaskScopeContext<?>, Site> open = new ConcurrentHashMap<>();
+
+    private final LongAdder leaks = new LongAdder();
+
+    private final ScheduledExecutorService checker;
+
+    /**
+     * Creates the detector.
+     *
+     * @param detection        what to do with the leaked task scopes
+     * @param thresholdMillis  time after which an open task scope is reported, {@code 0} to only report the ones left
+     *                         open by a task
+     * @param sampling         how many task scopes are opened per each one whose stack trace is recorded, {@code 0}
+     *                         to record none
+     */
+    TaskScopeLeakDetector(final LeakDetection detection, final long thresholdMillis, final int sampling) {
+        if (thresholdMillis < 0 || sampling < 0) {
+            throw new IllegalArgumentException("Leak threshold and stack sampling must not be negative");
+        }
+        this.mode = detection;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.stackSampling = sampling;
+        if (detection != LeakDetection.DISABLED && thresholdMillis > 0) {
+            final CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("task-scope-leak-detector-");
+            threadFactory.setDaemon(true);
+            final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, threadFactory);
+            final long period = Math.max(thresholdMillis / 2, MIN_CHECK_PERIOD_MILLIS);
+            executor.scheduleWithFixedDelay(this::check, period, period, TimeUnit.MILLISECONDS);
+            this.checker = executor;
+        } else {
+            this.checker = null;
+        }
+    }
+
+    /**
+     * Starts using the detector, along with the ones already in use.
+     */
+    static synchronized void install(final TaskScopeLeakDetector detector) {
+        final TaskScopeLeakDetector[] updated = Arrays.copyOf(installed, installed.length + 1);
+        updated[installed.length] = detector;
+        installed = updated;
+        TaskScope.addListener(detector);
+    }
+
+    private static synchronized void uninstall(final TaskScopeLeakDetector detector) {
+        for (int i = 0; i < installed.length; i++) {
+            if (installed[i] == detector) {
+                final TaskScopeLeakDetector[] updated = new TaskScopeLeakDetector[installed.length - 1];
+                System.arraycopy(installed, 0, updated, 0, i);
+                System.arraycopy(installed, i + 1, updated, i, updated.length - i);
+                installed = updated;
+                TaskScope.removeListener(detector);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Handles the context left open by a task, already removed from the stack of the thread: undoes what its owner
+     * has set up for it, see {@link TaskScope#unwind(TaskScopeContext)}, reports it to the detectors in use, and closes
+     * it if any of them unwinds.
+     */
+    static void leaked(final TaskScopeContext<?> context) {
+        TaskScope.unwind(context);
+        boolean reported = false;
+        boolean unwinding = false;
+        for (TaskScopeLeakDetector detector : installed) {
+            if (detector.mode != LeakDetection.DISABLED) {
+                detector.report(context);
+                reported = true;
+                unwinding |= detector.mode == LeakDetection.UNWIND;
+            }
+        }
+        if (!reported) {
+            log.debug("Task scope with context {} left open by a task, removed from the thread",
+                    context.getContextObject());
+        }
+        if (unwinding) {
+            try {
+                context.releaseByOwner();
+            } catch (RuntimeException | Error e) {
+                log.warn("Destruction of task-scoped beans failed", e);
+            }
+        }
+    }
+
+    private void report(final TaskScopeContext<?> context) {
+        final Site site = open.remove(context);
+        leaks.increment();
+        final Throwable stack = site == null ? null : site.stack;
+        if (mode == LeakDetection.UNWIND) {
+            log.warn("Task scope with context {} left open by a task, closing it", context.getContextObject(), stack);
+        } else {
+            log.warn("Task scope with context {} left open by a task, removed from the thread",
+                    context.getContextObject(), stack);
+        }
+    }
+
+    /**
+     * Reports the task scopes open longer than the threshold, and forgets the ones left open by the threads which have
+     * terminated.
+     */
+    private void check() {
+        final long now = System.nanoTime();
+        for (Map.Entry<TaskScopeContext<?>, Site> entry : open.entrySet()) {
+            final Site site = entry.getValue();
+            final Thread owner = entry.getKey().getOwner();
+            if (owner != null && !owner.isAlive()) {
+                open.remove(entry.getKey(), site);
+            } else if (!site.reported && now - site.openedNanos > thresholdNanos) {
+                site.reported = true;
+                leaks.increment();
+                log.warn("Task scope with context {} opened by thread {} has been open for {} ms, it may have leaked",
+                        entry.getKey().peekContextObject(), site.thread,
+                        TimeUnit.NANOSECONDS.toMillis(now - site.openedNanos), site.stack);
+            }
+        }
+    }
+
+    @Override
+    public void scopeOpened(final TaskScopeContext<?> context, final int depth) {
+        final boolean sampled = stackSampling > 0 && ThreadLocalRandom.current().nextInt(stackSampling) == 0;
+        open.put(context, new Site(Thread.currentThread().getName(), System.nanoTime(),
+                sampled ? new Throwable("Task scope opened here") : null));
+    }
+
+    @Override
+    public void scopeClosed(final TaskScopeContext<?> context, final long lifetimeNanos, final int beansCreated) {
+        open.remove(context);
+    }
+
+    /**
+     * Returns the recorded stack trace of opening the task scope, or {@code null} if it has not been sampled.
+     */
+    Throwable stackOf(final TaskScopeContext<?> context) {
+        final Site site = open.get(context);
+        return site == null ? null : site.stack;
+    }
+
+    /**
+     * Returns the number of the task scopes reported so far.
+     */
+    long getLeakCount() {
+        return leaks.sum();
+    }
+
+    /**
+     * Stops the detection, if the detector is in use, and its background thread.
+     */
+    @Override
+    public void destroy() {
+        uninstall(this);
+        if (checker != null) {
+            checker.shutdownNow();
+        }
+    }
+
+    private static final class Site {
+
+        private final String thread;
+
+        private final long openedNanos;
+
+        private final Throwable stack;
+
+        private volatile boolean reported;
+
+        Site(final String openingThread, final long opened, final Throwable openingStack) {
+            this.thread = openingThread;
+            this.openedNanos = opened;
+            this.stack = openingStack;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.dawidkc.spring.scopes;
+
+/**
+ * Listener of the task scope activity, e.g. to record metrics, registered with
+ * {@link TaskScope#addListener(TaskScopeListener)}. The listeners are called synchronously by the threads opening and
+ * closing the task scopes and creating and destroying their beans, so they should be fast and must not block;
+ * failures of a listener are logged and ignored. While no listener is registered, the task scopes do not measure
+ * anything.
+ *
+ * @author dawidkc
+ */
+public interface TaskScopeListener {
+
+    /**
+     * Called when a task scope is opened, i.e. created or called (also as a child).
+     *
+     * @param context the new context
+     * @param depth   number of the task scopes active on the opening thread including the new one, {@code 1} for an
+     *                outermost task scope
+     */
+    default void scopeOpened(final TaskScopeContext<?> context, final int depth) {
+    }
+
+    /**
+     * Called when the beans of a task scope have been destroyed, i.e. when it has been closed and the last task it has
+     * been handed over to is done. Only called for the task scopes opened while the listener was registered, even if it
+     * has been removed since.
+     *
+     * @param context       the destroyed context
+     * @param lifetimeNanos time from opening the task scope until it has been destroyed, in nanoseconds
+     * @param beansCreated  number of the beans created in the task scope
+     */
+    default void scopeClosed(final TaskScopeContext<?> context, final long lifetimeNanos, final int beansCreated) {
+    }
+
+    /**
+     * Called when a task-scoped bean has been created.
+     *
+     * @param context       the context holding the bean
+     * @param beanName      name of the bean, i.e. of its scoped target if the bean is proxied
+     * @param durationNanos time taken by the creation, in nanoseconds
+     */
+    default void beanCreated(final TaskScopeContext<?> context, final String beanName, final long durationNanos) {
+    }
+
+    /**
+     * Called when a destruction callback of a task-scoped bean has been run, possibly asynchronously (see
+     * {@link DestructionMode}).
+     *
+     * @param durationNanos time taken by the callback, in nanoseconds
+     * @param failure       the failure of the callback, or {@code null} if it succeeded
+     */
+    default void destructionCallbackRun(final long durationNanos, final Throwable failure) {
+    }
+
+    /**
+     * Called when opening a task scope has been rejected by {@link TaskScopeAdmission}.
+     *
+     * @param contextObject context object of the rejected task scope
+     * @param key           key whose limit has been reached, or {@code null} if it is the global limit
+     */
+    default void scopeRejected(final Object contextObject, final Object key) {
+    }
+}
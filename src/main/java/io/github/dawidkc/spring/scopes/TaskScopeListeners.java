@@ -0,0 +1,118 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.Arrays;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Registry of the {@link TaskScopeListener}s. The registered listeners are combined into a single one, read by the
+ * task scopes with a single volatile read, which is {@code null} while there are none; so the task scopes check for
+ * it before measuring anything.
+ *
+ * @author dawidkc
+ */
+final class TaskScopeListeners {
+
+    private static volatile TaskScopeListener current;
+
+    private static TaskScopeListener[] registered = new TaskScopeListener[0];
+
+    private TaskScopeListeners() {
+    }
+
+    /**
+     * Returns the listener to call, or {@code null} if there are none.
+     */
+    static TaskScopeListener current() {
+        return current;
+    }
+
+    static synchronized void add(final TaskScopeListener listener) {
+        registered = Arrays.copyOf(registered, registered.length + 1);
+        registered[registered.length - 1] = listener;
+        update();
+    }
+
+    static synchronized void remove(final TaskScopeListener listener) {
+        for (int i = 0; i < registered.length; i++) {
+            if (registered[i] == listener) {
+                final TaskScopeListener[] updated = new TaskScopeListener[registered.length - 1];
+                System.arraycopy(registered, 0, updated, 0, i);
+                System.arraycopy(registered, i + 1, updated, i, updated.length - i);
+                registered = updated;
+                update();
+                return;
+            }
+        }
+    }
+
+    private static void update() {
+        current = registered.length == 0 ? null : new Composite(registered.clone());
+    }
+
+    /**
+     * Calls all the listeners, logging their failures.
+     */
+    @Slf4j
+    @RequiredArgsConstructor
+    private static final class Composite implements TaskScopeListener {
+
+        private final TaskScopeListener[] listeners;
+
+        @Override
+        public void scopeOpened(final TaskScopeContext<?> context, final int depth) {
+            for (TaskScopeListener listener : listeners) {
+                try {
+                    listener.scopeOpened(context, depth);
+                } catch (RuntimeException e) {
+                    log.warn("Task scope listener {} failed", listener, e);
+                }
+            }
+        }
+
+        @Override
+        public void scopeClosed(final TaskScopeContext<?> context, final long lifetimeNanos, final int beansCreated) {
+            for (TaskScopeListener listener : listeners) {
+                try {
+                    listener.scopeClosed(context, lifetimeNanos, beansCreated);
+                } catch (RuntimeException e) {
+                    log.warn("Task scope listener {} failed", listener, e);
+                }
+            }
+        }
+
+        @Override
+        public void beanCreated(final TaskScopeContext<?> context, final String beanName, final long durationNanos) {
+            for (TaskScopeListener listener : listeners) {
+                try {
+                    listener.beanCreated(context, beanName, durationNanos);
+                } catch (RuntimeException e) {
+                    log.warn("Task scope listener {} failed", listener, e);
+                }
+            }
+        }
+
+        @Override
+        public void destructionCallbackRun(final long durationNanos, final Throwable failure) {
+            for (TaskScopeListener listener : listeners) {
+                try {
+                    listener.destructionCallbackRun(durationNanos, failure);
+                } catch (RuntimeException e) {
+                    log.warn("Task scope listener {} failed", listener, e);
+                }
+            }
+        }
+
+        @Override
+        public void scopeRejected(final Object contextObject, final Object key) {
+            for (TaskScopeListener listener : listeners) {
+                try {
+                    listener.scopeRejected(contextObject, key);
+                } catch (RuntimeException e) {
+                    log.warn("Task scope listener {} failed", listener, e);
+                }
+            }
+        }
+    }
+}
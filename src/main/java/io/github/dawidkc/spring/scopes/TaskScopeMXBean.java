@@ -0,0 +1,104 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.beans.ConstructorProperties;
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * Management interface of the task scopes, registered in the platform MBean server under
+ * {@value #OBJECT_NAME} (see {@link EnableTaskScope#registerMBean()}), to look into the task scopes of a running
+ * application, e.g. with JConsole. The MBeans of the application contexts started while that name is taken get an
+ * additional {@code instance} key.
+ * <p>
+ * The task scopes are only followed in the {@link #isDetailed() detailed} mode, off by default, which can be switched
+ * on and off at runtime. The statistics start from zero each time the mode is switched on, and only cover the task
+ * scopes opened since then; while the mode is off, only the closings of the task scopes opened before are counted.
+ *
+ * @author dawidkc
+ */
+public interface TaskScopeMXBean {
+
+    /**
+     * Name of the MBean.
+     */
+    String OBJECT_NAME = "io.github.dawidkc.spring.scopes:type=TaskScope";
+
+    /**
+     * Returns whether the task scopes are followed.
+     */
+    boolean isDetailed();
+
+    /**
+     * Starts or stops following the task scopes.
+     */
+    void setDetailed(boolean detailed);
+
+    /**
+     * Returns how many task scopes are opened per each one recorded for {@link #getOldestScopes()}.
+     */
+    int getSampling();
+
+    /**
+     * Sets how many task scopes are opened per each one recorded for {@link #getOldestScopes()}, {@code 1} to record
+     * all of them.
+     */
+    void setSampling(int sampling);
+
+    /**
+     * Returns the number of the task scopes opened since the detailed mode has been switched on, and still open.
+     */
+    long getLiveScopes();
+
+    /**
+     * Returns the numbers of the task scopes opened per nesting depth on their thread: the first element counts the
+     * outermost task scopes, the second the ones opened within them, and so on; the last one counts all the deeper
+     * ones.
+     */
+    long[] getDepthHistogram();
+
+    /**
+     * Returns the recorded task scopes open for the longest time, the oldest first.
+     */
+    List<OpenScope> getOldestScopes();
+
+    /**
+     * Returns the number of the task-scoped beans created.
+     */
+    long getBeansCreated();
+
+    /**
+     * Returns the number of the task-scoped beans destroyed, i.e. of the destruction callbacks run.
+     */
+    long getBeansDestroyed();
+
+    /**
+     * Open task scope, as seen by {@link #getOldestScopes()}.
+     */
+    @Getter
+    final class OpenScope {
+
+        private final long id;
+
+        private final String contextClass;
+
+        private final long ageMillis;
+
+        private final String thread;
+
+        private final int beansCreated;
+
+        /**
+         * Creates the description of a task scope.
+         */
+        @ConstructorProperties({"id", "contextClass", "ageMillis", "thread", "beansCreated"})
+        public OpenScope(final long contextId, final String contextClassName, final long age,
+                         final String threadName, final int beans) {
+            this.id = contextId;
+            this.contextClass = contextClassName;
+            this.ageMillis = age;
+            this.thread = threadName;
+            this.beansCreated = beans;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Function;
+
+import org.slf4j.MDC;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * Bridge of the task scopes to the SLF4J {@link MDC}: while a task scope is current on a thread, the MDC of the thread
+ * holds its {@link TaskScopeContext#getId() ID} and the configured projections of its context object, e.g. to have
+ * them in all log lines, or to carry a trace context kept in the context object:
+ * <p>
+ * <pre><code>
+ * {@literal @}Bean
+ *  TaskScopeMdc taskScopeMdc() {
+ *      return new TaskScopeMdc("taskScopeId")
+ *              .with("tenant", Order.class, Order::getTenant)
+ *              .with("traceId", Order.class, order -&gt; order.getTrace().getId());
+ *  }
+ * </code></pre>
+ * <p>
+ * Defined as a bean, the bridge is used as long as the application context is open; it can also be
+ * {@link #install(TaskScopeMdc) installed} directly. Like the storage, it is global.
+ * <p>
+ * The entries are put when a task scope is opened with {@link TaskScope#create} or {@link TaskScope#call}, and when it
+ * is attached to another thread (e.g. by the {@link TaskScopeExecutors} wrappers); the entries of the thread are
+ * restored exactly when it is closed or detached, so nested task scopes restore the entries of the enclosing ones. A
+ * projection not applicable to the context object (or returning {@code null}) removes its entry for the duration of the
+ * task scope. The projections are computed once per task scope, and the MDC is only changed for the entries whose
+ * values differ from the current ones. While no bridge is installed, the task scopes do not touch the MDC.
+ *
+ * @author dawidkc
+ */
+public final class TaskScopeMdc implements InitializingBean, DisposableBean {
+
+    /**
+     * Bridge in use; like the storage, it is global.
+     */
+    private static volatile TaskScopeMdc current;
+
+    private final String idKey;
+
+    private final String[] keys;
+
+    private final Projection<?>[] projections;
+
+    /**
+     * Creates the bridge putting the ID of the current task scope under the given key, or no ID if {@code null}.
+     */
+    public TaskScopeMdc(final String contextIdKey) {
+        this(contextIdKey, new String[0], new Projection<?>[0]);
+    }
+
+    private TaskScopeMdc(final String contextIdKey, final String[] mdcKeys, final Projection<?>[] mdcProjections) {
+        this.idKey = contextIdKey;
+        this.keys = mdcKeys;
+        this.projections = mdcProjections;
+    }
+
+    /**
+     * Returns the bridge additionally putting the projection of the context objects of given type under the key.
+     *
+     * @param key        MDC key
+     * @param type       type of the context objects the projection applies to
+     * @param projection function computing the value, converted to {@code String}; {@code null} puts no entry
+     */
+    public <T> TaskScopeMdc with(final String key, final Class<T> type, final Function<? super T, ?> projection) {
+        final String[] mdcKeys = Arrays.copyOf(keys, keys.length + 1);
+        mdcKeys[keys.length] = Objects.requireNonNull(key, "MDC key must not be null");
+        final Projection<?>[] mdcProjections = Arrays.copyOf(projections, projections.length + 1);
+        mdcProjections[projections.length] = new Projection<>(type, projection);
+        return new TaskScopeMdc(idKey, mdcKeys, mdcProjections);
+    }
+
+    /**
+     * Starts using the bridge, in place of the previous one; {@code null} stops bridging.
+     */
+    public static void install(final TaskScopeMdc mdc) {
+        current = mdc;
+    }
+
+    /**
+     * Starts using the bridge, when defined as a bean.
+     */
+    @Override
+    public void afterPropertiesSet() {
+        install(this);
+    }
+
+    /**
+     * Stops using the bridge, if it is still in use.
+     */
+    @Override
+    public void destroy() {
+        if (current == this) {
+            current = null;
+        }
+    }
+
+    /**
+     * Puts the entries of the context into the MDC of the current thread.
+     *
+     * @return the state to be passed to {@link #detach(Object)}, or {@code null} if there is no bridge
+     */
+    static Object attach(final TaskScopeContext<?> context) {
+        final TaskScopeMdc mdc = current;
+        return mdc == null ? null : mdc.put(context);
+    }
+
+    /**
+     * Restores the entries of the MDC of the current thread replaced by {@link #attach(TaskScopeContext)}.
+     */
+    static void detach(final Object state) {
+        if (state != null) {
+            ((Restore) state).restore();
+        }
+    }
+
+    private Restore put(final TaskScopeContext<?> context) {
+        String[] values = context.getMdcValues();
+        if (values == null || values.length != keys.length + (idKey == null ? 0 : 1)) {
+            values = valuesOf(context);
+            context.setMdcValues(values);
+        }
+        final String[] previous = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            previous[i] = replace(keyAt(i), values[i]);
+        }
+        return new Restore(this, previous);
+    }
+
+    /**
+     * Computes the values of the entries, the ID first if configured.
+     */
+    private String[] valuesOf(final TaskScopeContext<?> context) {
+        final int offset = idKey == null ? 0 : 1;
+        final String[] values = new String[keys.length + offset];
+        if (idKey != null) {
+            values[0] = Long.toString(context.getId());
+        }
+        final Object contextObject = context.getContextObject();
+        for (int i = 0; i < projections.length; i++) {
+            values[i + offset] = projections[i].apply(contextObject);
+        }
+        return values;
+    }
+
+    private String keyAt(final int index) {
+        if (idKey == null) {
+            return keys[index];
+        }
+        return index == 0 ? idKey : keys[index - 1];
+    }
+
+    /**
+     * Sets the entry, unless it already has the value, and returns the previous value.
+     */
+    private static String replace(final String key, final String value) {
+        final String previous = MDC.get(key);
+        if (!Objects.equals(previous, value)) {
+            if (value == null) {
+                MDC.remove(key);
+            } else {
+                MDC.put(key, value);
+            }
+        }
+        return previous;
+    }
+
+    private static final class Restore {
+
+        private final TaskScopeMdc mdc;
+
+        private final String[] previous;
+
+        Restore(final TaskScopeMdc bridge, final String[] previousValues) {
+            this.mdc = bridge;
+            this.previous = previousValues;
+        }
+
+        void restore() {
+            for (int i = previous.length - 1; i >= 0; i--) {
+                replace(mdc.keyAt(i), previous[i]);
+            }
+        }
+    }
+
+    private static final class Projection<T> {
+
+        private final Class<T> type;
+
+        private final Function<? super T, ?> function;
+
+        Projection(final Class<T> contextType, final Function<? super T, ?> projection) {
+            this.type = Objects.requireNonNull(contextType, "Context object type must not be null");
+            this.function = Objects.requireNonNull(projection, "Projection must not be null");
+        }
+
+        String apply(final Object contextObject) {
+            if (!type.isInstance(contextObject)) {
+                return null;
+            }
+            final Object value = function.apply(type.cast(contextObject));
+            return value == null ? null : value.toString();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Registry of dense integer slots assigned to the names of task-scoped beans. Slots are assigned when the application
+ * context is refreshed (see {@link TaskScopeConfiguration}) and let each {@link TaskScopeContext} keep its beans in
+ * flat arrays instead of maps. The {@code @TaskScoped} proxies look up the slot of their target once, whereas
+ * {@link TaskScope#get} only receives the bean name, and looks up its slot in this registry on each call.
+ * <p>
+ * The registry is global, just like the task scope contexts are: a context may be used by multiple application
+ * contexts, and a bean name must map to the same slot in all of them.
+ *
+ * @author dawidkc
+ */
+@Slf4j
+final class TaskScopeSlots {
+
+    /**
+     * Slot of the bean names which were not registered.
+     */
+    static final int NO_SLOT = -1;
+
+    /**
+     * Flag of the beans inherited by child contexts, see {@link TaskScoped#inherit()}.
+     */
+    static final int INHERITED = 1;
+
+    /**
+     * Flag of the beans kept across the task scopes of equal context objects, see {@link TaskScoped#sticky()}.
+     */
+    static final int STICKY = 2;
+
+    private static final Map<String, Integer> SLOTS = new ConcurrentHashMap<>();
+
+    private static final AtomicInteger COUNT = new AtomicInteger();
+
+    /**
+     * Flags of the bean of each slot, copied on write.
+     */
+    private static volatile byte[] flags = new byte[0];
+
+    private TaskScopeSlots() {
+    }
+
+    /**
+     * Assigns a slot to the given bean name, unless it already has one.
+     */
+    static int register(final String name) {
+        return SLOTS.computeIfAbsent(name, key -> {
+            final int slot = COUNT.getAndIncrement();
+            log.debug("Assigned slot {} to task-scoped bean {}", slot, key);
+            return slot;
+        });
+    }
+
+    /**
+     * Assigns a slot to the given bean name, unless it already has one, and marks it as inherited by child contexts.
+     */
+    static int registerInherited(final String name) {
+        return register(name, INHERITED);
+    }
+
+    /**
+     * Assigns a slot to the given bean name, unless it already has one, and adds the given flags to it.
+     */
+    static synchronized int register(final String name, final int slotFlags) {
+        final int slot = register(name);
+        if ((flagsOf(slot) & slotFlags) != slotFlags) {
+            final byte[] updated = Arrays.copyOf(flags, Math.max(flags.length, slot + 1));
+            updated[slot] |= (byte) slotFlags;
+            flags = updated;
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the flags of the bean of the given slot.
+     */
+    static int flagsOf(final int slot) {
+        final byte[] current = flags;
+        return slot >= 0 && slot < current.length ? current[slot] : 0;
+    }
+
+    /**
+     * Returns whether the bean of the given slot is inherited by child contexts.
+     */
+    static boolean isInherited(final int slot) {
+        return (flagsOf(slot) & INHERITED) != 0;
+    }
+
+    /**
+     * Returns the slot of the given bean name or {@link #NO_SLOT}.
+     */
+    static int slotOf(final String name) {
+        final Integer slot = SLOTS.get(name);
+        return slot == null ? NO_SLOT : slot;
+    }
+
+    /**
+     * Returns the number of slots assigned so far.
+     */
+    static int count() {
+        return COUNT.get();
+    }
+}
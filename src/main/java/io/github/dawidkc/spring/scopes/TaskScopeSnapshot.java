@@ -0,0 +1,73 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.lang.reflect.UndeclaredThrowableException;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Task scope captured on one thread, to be made current again on other threads for as long as it stays open. Unlike
+ * the tasks wrapped by {@link TaskScopeExecutors}, a snapshot does not keep the task scope alive: it suits integrations
+ * propagating the task scope through callbacks which may keep coming after the task is done, e.g. the signals of
+ * reactive pipelines (see the {@code spring-task-scope-reactor} module).
+ * <p>
+ * Restoring a snapshot only swaps the reference to the very same context, with the beans already created in it;
+ * nothing is created anew. Tasks run after the task scope has been closed and its beans destroyed run without any task
+ * scope, so task-scoped beans used by them fail to resolve instead of being created in a closed scope.
+ *
+ * @author dawidkc
+ */
+@Slf4j
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public final class TaskScopeSnapshot {
+
+    /**
+     * Captured context.
+     */
+    @Getter
+    private final TaskScopeContext<?> context;
+
+    private final long activationId;
+
+    /**
+     * Captures the current task scope.
+     *
+     * @return snapshot of the current task scope, or {@code null} outside of any task scope
+     */
+    public static TaskScopeSnapshot capture() {
+        final TaskScopeContext<?> context = TaskScope.findCurrentContext();
+        if (context == null) {
+            return null;
+        }
+        return new TaskScopeSnapshot(context, context.getId());
+    }
+
+    /**
+     * Runs the task with the captured context being the current one, keeping it alive while the task runs. The task
+     * runs as-is if the context is current already, or if it has been closed in the meantime.
+     */
+    public void run(final Runnable task) {
+        if (TaskScope.findCurrentContext() == context || !context.tryRetain(activationId)) {
+            task.run();
+            return;
+        }
+        try {
+            TaskScope.callAttached(context, () -> {
+                task.run();
+                return null;
+            });
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UndeclaredThrowableException(e);
+        } finally {
+            try {
+                context.release();
+            } catch (RuntimeException | Error e) {
+                log.warn("Destruction of task-scoped beans failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.Arrays;
+
+/**
+ * Stack of the task scope contexts active on a single thread. It is only ever accessed by its owning thread, so it is
+ * not synchronized. Backed by a growable array, so pushing and popping do not allocate once the array is large
+ * enough; the array is kept when the stack becomes empty, so the stack is recycled by pooled threads.
+ *
+ * @author dawidkc
+ */
+final class TaskScopeStack {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    /**
+     * Capacity above which the array is released when the stack becomes empty, so a single deeply nested task does not
+     * keep a large array on a pooled thread forever.
+     */
+    private static final int RETAINED_CAPACITY = 64;
+
+    private TaskScopeContext<?>[] elements = new TaskScopeContext<?>[INITIAL_CAPACITY];
+
+    private int size;
+
+    void push(final TaskScopeContext<?> context) {
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, size << 1);
+        }
+        elements[size++] = context;
+    }
+
+    /**
+     * Returns the top of the stack, or {@code null} if the stack is empty.
+     */
+    TaskScopeContext<?> peek() {
+        return size == 0 ? null : elements[size - 1];
+    }
+
+    /**
+     * Removes and returns the top of the stack.
+     */
+    TaskScopeContext<?> pop() {
+        final TaskScopeContext<?> context = elements[--size];
+        elements[size] = null;
+        if (size == 0 && elements.length > RETAINED_CAPACITY) {
+            elements = new TaskScopeContext<?>[INITIAL_CAPACITY];
+        }
+        return context;
+    }
+
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,214 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Cache of the {@link TaskScoped#sticky() sticky} task-scoped beans, keyed by the context object (compared with
+ * {@code equals}): the sticky beans created within a task scope are kept after it is closed, and reused by the later
+ * task scopes of an equal context object. Set up by {@link EnableTaskScope} for the beans of its application context,
+ * each application context having a cache of its own, and available as a bean, e.g. to monitor its
+ * {@link #getHitCount() hits} and {@link #getMissCount() misses} when sizing it.
+ * <p>
+ * The beans of each context object are held by a context of their own, which is kept alive by the cache and by each
+ * task scope using them. Eviction, by size (least recently used first) or by time to live (counted from the creation
+ * of the entry), drops the entry from the cache; its beans are destroyed once the last task scope using them is
+ * closed. Expired entries are evicted when the cache is next used. The entries still cached are destroyed along with
+ * the application context.
+ *
+ * @author dawidkc
+ */
+@Slf4j
+public final class TaskScopeStickyCache implements DisposableBean {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final int maxSize;
+
+    private final long timeToLiveNanos;
+
+    private final Map<Object, Entry> entries = new LinkedHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR, true);
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Whether the cache has been destroyed along with its application context, so it no longer caches anything.
+     */
+    private volatile boolean destroyed;
+
+    TaskScopeStickyCache(final int size, final long timeToLiveMillis) {
+        if (size < 0 || timeToLiveMillis < 0) {
+            throw new IllegalArgumentException("Sticky cache size and time to live must not be negative");
+        }
+        this.maxSize = size;
+        this.timeToLiveNanos = TimeUnit.MILLISECONDS.toNanos(timeToLiveMillis);
+    }
+
+    /**
+     * Returns the context holding the sticky beans of the given context object, retained for the caller, or
+     * {@code null} if the cache is disabled or destroyed.
+     */
+    TaskScopeContext<?> acquire(final Object contextObject) {
+        return maxSize == 0 || destroyed ? null : retain(contextObject);
+    }
+
+    private TaskScopeContext<?> retain(final Object contextObject) {
+        final long now = System.nanoTime();
+        final TaskScopeContext<?> context;
+        List<TaskScopeContext<?>> evicted = null;
+        synchronized (entries) {
+            final Entry entry = entries.get(contextObject);
+            if (entry != null && !entry.isExpired(now)) {
+                hits.increment();
+                context = entry.context;
+            } else {
+                misses.increment();
+                if (entry != null) {
+                    entries.remove(contextObject);
+                    evicted = evicted(null, entry);
+                }
+                context = new TaskScopeContext<>(contextObject);
+                entries.put(contextObject, new Entry(context, now));
+            }
+            context.retain();
+            evicted = evictEldest(evicted, now);
+        }
+        releaseAll(evicted);
+        return context;
+    }
+
+    /**
+     * Evicts the least recently used entries while there are too many of them or they have expired.
+     */
+    private List<TaskScopeContext<?>> evictEldest(final List<TaskScopeContext<?>> evicted, final long now) {
+        List<TaskScopeContext<?>> result = evicted;
+        final Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            final Entry eldest = iterator.next();
+            if (entries.size() <= maxSize && !eldest.isExpired(now)) {
+                break;
+            }
+            iterator.remove();
+            result = evicted(result, eldest);
+        }
+        return result;
+    }
+
+    private List<TaskScopeContext<?>> evicted(final List<TaskScopeContext<?>> evicted, final Entry entry) {
+        evictions.increment();
+        final List<TaskScopeContext<?>> result = evicted == null ? new ArrayList<>() : evicted;
+        result.add(entry.context);
+        return result;
+    }
+
+    /**
+     * Releases the contexts of the evicted entries, outside of the lock of the cache. Failures of the destruction
+     * callbacks are logged, so that they do not fail the task scope which happened to evict the entries.
+     */
+    private static void releaseAll(final List<TaskScopeContext<?>> evicted) {
+        if (evicted == null) {
+            return;
+        }
+        for (TaskScopeContext<?> context : evicted) {
+            try {
+                context.release();
+            } catch (RuntimeException | Error e) {
+                log.warn("Destruction of sticky task-scoped beans failed", e);
+            }
+        }
+    }
+
+    /**
+     * Evicts the sticky beans of the given context object, e.g. when the data they were built from has changed. The
+     * beans are destroyed once the task scopes still using them are closed.
+     */
+    public void evict(final Object contextObject) {
+        final Entry entry;
+        synchronized (entries) {
+            entry = entries.remove(contextObject);
+        }
+        if (entry != null) {
+            releaseAll(evicted(null, entry));
+        }
+    }
+
+    /**
+     * Evicts the sticky beans of all context objects.
+     */
+    public void evictAll() {
+        List<TaskScopeContext<?>> evicted = null;
+        synchronized (entries) {
+            for (Entry entry : entries.values()) {
+                evicted = evicted(evicted, entry);
+            }
+            entries.clear();
+        }
+        releaseAll(evicted);
+    }
+
+    /**
+     * Returns the number of the context objects whose sticky beans are cached.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns the number of the task scopes which reused the sticky beans of an equal context object.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of the task scopes which had to create the sticky beans anew.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of the entries evicted so far, by size, by time to live or explicitly.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Evicts all entries, and stops caching.
+     */
+    @Override
+    public void destroy() {
+        destroyed = true;
+        evictAll();
+    }
+
+    @RequiredArgsConstructor
+    private final class Entry {
+
+        private final TaskScopeContext<?> context;
+
+        private final long created;
+
+        boolean isExpired(final long now) {
+            return timeToLiveNanos > 0 && now - created >= timeToLiveNanos;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Storage of the task scope contexts current on the running thread. The storage is chosen with
+ * {@link EnableTaskScope#storage()}; {@link ThreadLocalTaskScopeStorage} is used by default.
+ * <p>
+ * A storage has to be able to bind a context for the duration of a block of code, see {@link #call}. Binding a context
+ * until it is explicitly unbound ({@link #push} and {@link #pop}), which {@link TaskScope#create(Object)} relies on, is
+ * optional: storages which do not support it only work with {@link TaskScope#call} and {@link TaskScope#run}.
+ * <p>
+ * Implementations need a public no-argument constructor and are expected to be stateless, keeping the contexts in
+ * static (i.e. thread-bound) structures: the storage is global, just like the contexts are.
+ *
+ * @author dawidkc
+ */
+public interface TaskScopeStorage {
+
+    /**
+     * Returns the current context, or {@code null} if there is none.
+     */
+    TaskScopeContext<?> current();
+
+    /**
+     * Runs the task with the given context being the current one, restoring the previous one afterwards.
+     */
+    <R> R call(TaskScopeContext<?> context, Callable<R> task) throws Exception;
+
+    /**
+     * Tells whether the storage supports {@link #push} and {@link #pop}; storages which do not only work with
+     * {@link #call}.
+     */
+    default boolean supportsPush() {
+        return false;
+    }
+
+    /**
+     * Makes the given context the current one until {@link #pop(TaskScopeContext)} is called.
+     *
+     * @throws UnsupportedOperationException if contexts can only be bound with {@link #call}
+     */
+    default void push(final TaskScopeContext<?> context) {
+        throw new UnsupportedOperationException(getClass().getSimpleName()
+                + " does not support TaskScope.create(), use TaskScope.call() or TaskScope.run() instead");
+    }
+
+    /**
+     * Restores the context current before the given one has been pushed. Only called for the current context.
+     *
+     * @throws UnsupportedOperationException if contexts can only be bound with {@link #call}
+     */
+    default void pop(final TaskScopeContext<?> context) {
+        throw new UnsupportedOperationException(getClass().getSimpleName()
+                + " does not support TaskScope.create(), use TaskScope.call() or TaskScope.run() instead");
+    }
+}
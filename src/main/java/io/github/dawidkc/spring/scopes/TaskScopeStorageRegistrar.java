@@ -0,0 +1,40 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.Map;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.context.annotation.ImportBeanDefinitionRegistrar;
+import org.springframework.core.type.AnnotationMetadata;
+
+/**
+ * Installs the {@link TaskScopeStorage} chosen with {@link EnableTaskScope#storage()}. This happens when the
+ * configuration classes are parsed, before any bean is created, so all task scopes of the application use it.
+ *
+ * @author dawidkc
+ */
+@Slf4j
+class TaskScopeStorageRegistrar implements ImportBeanDefinitionRegistrar {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void registerBeanDefinitions(
+            final AnnotationMetadata importingClassMetadata,
+            final BeanDefinitionRegistry registry
+    ) {
+        final Map<String, Object> attributes =
+                importingClassMetadata.getAnnotationAttributes(EnableTaskScope.class.getName());
+        if (attributes == null) {
+            return;
+        }
+        final Class<?> storageClass = (Class<?>) attributes.get("storage");
+        if (TaskScope.getStorage().getClass() == storageClass) {
+            return;
+        }
+        log.debug("Using {} as task scope storage", storageClass.getName());
+        TaskScope.setStorage((TaskScopeStorage) BeanUtils.instantiateClass(storageClass));
+    }
+}
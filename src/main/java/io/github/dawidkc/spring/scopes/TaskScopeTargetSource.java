@@ -0,0 +1,73 @@
+package io.github.dawidkc.spring.scopes;
+
+import org.springframework.aop.target.AbstractBeanFactoryBasedTargetSource;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.beans.factory.config.Scope;
+
+/**
+ * Target source of the {@code @TaskScoped} proxies. The target already created in the current task scope is read
+ * directly from the storage slot of the context, so a repeated call in the same scope costs a lookup of the current
+ * context and an array read. The bean factory is only asked for the target when the current context does not hold it
+ * yet, i.e. once per context and bean, or when there is no current context, to fail the usual way.
+ *
+ * @author dawidkc
+ */
+final class TaskScopeTargetSource extends AbstractBeanFactoryBasedTargetSource {
+
+    private static final long serialVersionUID = 1L;
+
+    private int slot = TaskScopeSlots.NO_SLOT;
+
+    /**
+     * Task scope registered in the bean factory, providing its sticky cache, or {@code null}.
+     */
+    private transient TaskScope scope;
+
+    /**
+     * Whether the scoped value of the target is a {@link FactoryBean}, whose product has to be obtained from the bean
+     * factory. Decided once, as a failing {@code instanceof} check of an interface is too slow for every call.
+     */
+    private boolean factoryBean;
+
+    /**
+     * Sets the name of the task-scoped target bean, and looks up its storage slot.
+     */
+    @Override
+    public void setTargetBeanName(final String name) {
+        super.setTargetBeanName(name);
+        this.slot = TaskScopeSlots.slotOf(name);
+    }
+
+    /**
+     * Sets the bean factory of the target, checks whether the target is a {@link FactoryBean} and looks up the task
+     * scope.
+     */
+    @Override
+    public void setBeanFactory(final BeanFactory beanFactory) {
+        super.setBeanFactory(beanFactory);
+        if (beanFactory instanceof ConfigurableBeanFactory) {
+            final ConfigurableBeanFactory configurable = (ConfigurableBeanFactory) beanFactory;
+            this.factoryBean = configurable.isFactoryBean(getTargetBeanName());
+            final Scope registered = configurable.getRegisteredScope(TaskScope.TASK_SCOPE_NAME);
+            this.scope = registered instanceof TaskScope ? (TaskScope) registered : null;
+        }
+    }
+
+    /**
+     * Returns the target bean of the current task scope.
+     */
+    @Override
+    public Object getTarget() {
+        final TaskScopeContext<?> context = TaskScope.findCurrentContext();
+        if (context != null && !factoryBean) {
+            final TaskScopeStickyCache stickyCache = scope == null ? null : scope.getStickyCache();
+            final Object bean = context.holderOf(slot, stickyCache).findBean(slot, getTargetBeanName());
+            if (bean != null) {
+                return bean;
+            }
+        }
+        return getBeanFactory().getBean(getTargetBeanName());
+    }
+}
@@ -0,0 +1,24 @@
+package io.github.dawidkc.spring.scopes;
+
+import org.springframework.core.task.TaskDecorator;
+
+/**
+ * Spring {@link TaskDecorator} running the decorated tasks within the task scope current when they are submitted, see
+ * {@link TaskScopeExecutors}.
+ * <p>
+ * With {@link EnableTaskScope}, the decorator is applied to all {@code ThreadPoolTaskExecutor} and
+ * {@code SimpleAsyncTaskExecutor} beans, on top of the decorators they already have, so {@code @Async} methods run in
+ * the task scope of their caller when such a bean is used as the executor.
+ *
+ * @author dawidkc
+ */
+public final class TaskScopeTaskDecorator implements TaskDecorator {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Runnable decorate(final Runnable runnable) {
+        return TaskScopeExecutors.wrap(runnable);
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Applies {@link TaskScopeTaskDecorator} to the Spring executors supporting task decorators, before they are
+ * initialized. A decorator already set on the executor is kept and runs within the propagated task scope. The
+ * rejection policy of {@code ThreadPoolTaskExecutor} is wrapped as well, so that the tasks it does not run release the
+ * captured task scope.
+ *
+ * @author dawidkc
+ */
+final class TaskScopeTaskDecoratorPostProcessor implements BeanPostProcessor {
+
+    private static final String TASK_DECORATOR = "taskDecorator";
+
+    private static final String REJECTED_EXECUTION_HANDLER = "rejectedExecutionHandler";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object postProcessBeforeInitialization(final Object bean, final String beanName) {
+        if (bean instanceof ThreadPoolTaskExecutor) {
+            ((ThreadPoolTaskExecutor) bean).setTaskDecorator(decorator(bean));
+            ((ThreadPoolTaskExecutor) bean).setRejectedExecutionHandler(rejectionHandler(bean));
+        } else if (bean instanceof SimpleAsyncTaskExecutor) {
+            ((SimpleAsyncTaskExecutor) bean).setTaskDecorator(decorator(bean));
+        }
+        return bean;
+    }
+
+    private static TaskDecorator decorator(final Object executor) {
+        final TaskDecorator existing =
+                (TaskDecorator) new DirectFieldAccessor(executor).getPropertyValue(TASK_DECORATOR);
+        final TaskScopeTaskDecorator decorator = new TaskScopeTaskDecorator();
+        if (existing == null) {
+            return decorator;
+        }
+        if (existing instanceof TaskScopeTaskDecorator) {
+            return existing;
+        }
+        return runnable -> decorator.decorate(existing.decorate(runnable));
+    }
+
+    private static RejectedExecutionHandler rejectionHandler(final Object executor) {
+        final RejectedExecutionHandler existing = (RejectedExecutionHandler)
+                new DirectFieldAccessor(executor).getPropertyValue(REJECTED_EXECUTION_HANDLER);
+        if (existing instanceof ReleasingRejectionHandler) {
+            return existing;
+        }
+        return new ReleasingRejectionHandler(existing == null ? new ThreadPoolExecutor.AbortPolicy() : existing);
+    }
+
+    /**
+     * Rejection policy releasing the task scope captured by the rejected task, see {@link TaskScopeExecutors}, once
+     * the wrapped policy has handled it: a task run by the policy has released it already, and a task queued again
+     * retains it anew when it starts. The task discarded by {@link ThreadPoolExecutor.DiscardOldestPolicy} in favour
+     * of the rejected one is released as well.
+     */
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    private static final class ReleasingRejectionHandler implements RejectedExecutionHandler {
+
+        private final RejectedExecutionHandler delegate;
+
+        @Override
+        public void rejectedExecution(final Runnable task, final ThreadPoolExecutor executor) {
+            if (delegate instanceof ThreadPoolExecutor.DiscardOldestPolicy && !executor.isShutdown()) {
+                TaskScopeExecutors.release(executor.getQueue().peek());
+            }
+            try {
+                delegate.rejectedExecution(task, executor);
+            } finally {
+                TaskScopeExecutors.release(task);
+            }
+        }
+    }
+}
@@ -11,6 +11,9 @@ import org.springframework.context.annotation.ScopedProxyMode;
 /**
  * Scope annotation for task scope. Marks a given Spring Bean as task-bound. Such bean is resolvable only when a task
  * scope is active.
+ * <p>
+ * Beans with {@link #inherit()} set are shared by the child scopes (see {@link TaskScope#createChild(Object)}) with
+ * their parent, instead of being created anew for each child.
  *
  * @author dawidkc
  */
@@ -18,4 +21,30 @@ import org.springframework.context.annotation.ScopedProxyMode;
 @Target({ElementType.TYPE, ElementType.METHOD, ElementType.PARAMETER})
 @Scope(value = TaskScope.TASK_SCOPE_NAME, proxyMode = ScopedProxyMode.TARGET_CLASS)
 public @interface TaskScoped {
+
+    /**
+     * Whether child scopes use the bean of their parent scope. Suits beans which do not depend on the context object,
+     * such as per-task caches or clients. An inherited bean is kept in, and destroyed along with, the topmost scope of
+     * the parent chain, even if it is first used by one of the child scopes.
+     */
+    boolean inherit() default false;
+
+    /**
+     * Whether the bean outlives the task scope, to be reused by the later task scopes of an equal context object, e.g.
+     * a heavy client built for a tenant when the tenant ID is the context object. Such beans are kept in the bounded
+     * {@link TaskScopeStickyCache}, shared by all the task scopes of equal context objects (so they have to be
+     * thread-safe), and destroyed when evicted from the cache rather than when a task scope is closed. Without the
+     * cache (see {@link EnableTaskScope#stickyCacheSize()}), or for a {@code null} context object, the bean is a
+     * regular task-scoped one.
+     */
+    boolean sticky() default false;
+
+    /**
+     * Whether the bean starts being created as soon as a task scope is opened, concurrently with the other eager beans
+     * and the task itself, on the executor set by {@link EnableTaskScope#eagerThreads()} or
+     * {@link EnableTaskScope#eagerExecutor()}. Suits beans doing independent blocking work when initialized. The first
+     * access waits for the creation in progress, and the eager beans depending on each other are created in their
+     * dependency order.
+     */
+    boolean eager() default false;
 }
@@ -0,0 +1,232 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.AopInfrastructureBean;
+import org.springframework.aop.framework.ProxyConfig;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.scope.DefaultScopedObject;
+import org.springframework.aop.scope.ScopedObject;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.cglib.core.SpringNamingPolicy;
+import org.springframework.cglib.proxy.Callback;
+import org.springframework.cglib.proxy.CallbackFilter;
+import org.springframework.cglib.proxy.Dispatcher;
+import org.springframework.cglib.proxy.Enhancer;
+import org.springframework.cglib.proxy.Factory;
+import org.springframework.cglib.proxy.MethodProxy;
+import org.springframework.cglib.proxy.NoOp;
+import org.springframework.objenesis.ObjenesisException;
+import org.springframework.objenesis.SpringObjenesis;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Replacement of Spring's {@code ScopedProxyFactoryBean} for the {@code @TaskScoped} beans, set up by
+ * {@link TaskScopeConfiguration} in place of the original one. The proxy resolves its target with
+ * {@link TaskScopeTargetSource} and implements {@link ScopedObject}, just like the original one.
+ * <p>
+ * Class-based proxies are dedicated CGLIB subclasses which dispatch each call of the bean's methods straight to the
+ * resolved target, skipping the interceptor chain of Spring AOP along with boxing of the arguments. Interface-based
+ * proxies are regular Spring AOP proxies, with {@link ScopedObject} implemented by an advisor matching only the methods
+ * of that interface, so that the other calls do not go through any interceptor.
+ *
+ * @author dawidkc
+ */
+final class TaskScopedProxyFactoryBean extends ProxyConfig
+        implements FactoryBean<Object>, BeanFactoryAware, AopInfrastructureBean {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final SpringObjenesis OBJENESIS = new SpringObjenesis();
+
+    private final TaskScopeTargetSource targetSource = new TaskScopeTargetSource();
+
+    private transient Object proxy;
+
+    /**
+     * Creates the factory of a class-based proxy; interface-based proxy is chosen with {@code proxyTargetClass}.
+     */
+    TaskScopedProxyFactoryBean() {
+        setProxyTargetClass(true);
+    }
+
+    /**
+     * Sets the name of the task-scoped target bean.
+     */
+    public void setTargetBeanName(final String name) {
+        targetSource.setTargetBeanName(name);
+    }
+
+    /**
+     * Creates the proxy, as soon as the bean factory is available.
+     */
+    @Override
+    public void setBeanFactory(final BeanFactory beanFactory) {
+        final ConfigurableBeanFactory configurableBeanFactory = (ConfigurableBeanFactory) beanFactory;
+        targetSource.setBeanFactory(beanFactory);
+        final Class<?> beanType = beanFactory.getType(targetSource.getTargetBeanName());
+        if (beanType == null) {
+            throw new IllegalStateException("Cannot create task-scoped proxy for bean '"
+                    + targetSource.getTargetBeanName() + "': Target type could not be determined at the time of "
+                    + "proxy creation.");
+        }
+        final ClassLoader classLoader = configurableBeanFactory.getBeanClassLoader();
+        final ScopedObject scopedObject =
+                new DefaultScopedObject(configurableBeanFactory, targetSource.getTargetBeanName());
+        if (!isProxyTargetClass() || beanType.isInterface() || Modifier.isPrivate(beanType.getModifiers())) {
+            proxy = createInterfaceProxy(beanType, scopedObject, classLoader);
+        } else {
+            proxy = createClassProxy(beanType, scopedObject, classLoader);
+        }
+    }
+
+    /**
+     * Creates a JDK proxy implementing the interfaces of the bean, through the regular Spring AOP machinery.
+     */
+    private Object createInterfaceProxy(
+            final Class<?> beanType,
+            final ScopedObject scopedObject,
+            final ClassLoader classLoader
+    ) {
+        final ProxyFactory proxyFactory = new ProxyFactory();
+        proxyFactory.copyFrom(this);
+        proxyFactory.setTargetSource(targetSource);
+        proxyFactory.setInterfaces(ClassUtils.getAllInterfacesForClass(beanType, classLoader));
+        proxyFactory.addInterface(ScopedObject.class);
+        proxyFactory.addInterface(AopInfrastructureBean.class);
+        proxyFactory.addAdvisor(new DefaultPointcutAdvisor(new ScopedObjectPointcut(), (MethodInterceptor) invocation ->
+                AopUtils.invokeJoinpointUsingReflection(
+                        scopedObject, invocation.getMethod(), invocation.getArguments())));
+        return proxyFactory.getProxy(classLoader);
+    }
+
+    /**
+     * Creates a CGLIB subclass of the bean class which dispatches each call directly to the target resolved by the
+     * target source, with no interceptor chain and no boxing of the arguments.
+     */
+    private Object createClassProxy(
+            final Class<?> beanType,
+            final ScopedObject scopedObject,
+            final ClassLoader classLoader
+    ) {
+        final Enhancer enhancer = new Enhancer();
+        enhancer.setSuperclass(beanType);
+        enhancer.setInterfaces(new Class<?>[]{ScopedObject.class, AopInfrastructureBean.class});
+        enhancer.setNamingPolicy(SpringNamingPolicy.INSTANCE);
+        enhancer.setClassLoader(classLoader);
+        enhancer.setCallbackFilter(ClassProxyCallbackFilter.INSTANCE);
+        enhancer.setCallbackTypes(ClassProxyCallbackFilter.CALLBACK_TYPES);
+        final Class<?> proxyClass = enhancer.createClass();
+        Object instance;
+        try {
+            instance = OBJENESIS.newInstance(proxyClass, true);
+        } catch (ObjenesisException e) {
+            instance = BeanUtils.instantiateClass(proxyClass);
+        }
+        ((Factory) instance).setCallbacks(new Callback[]{
+                (Dispatcher) targetSource::getTarget,
+                (Dispatcher) () -> scopedObject,
+                IdentityInterceptor.INSTANCE,
+                NoOp.INSTANCE
+        });
+        return instance;
+    }
+
+    @Override
+    public Object getObject() {
+        if (proxy == null) {
+            throw new IllegalStateException("Task-scoped proxy has not been created yet");
+        }
+        return proxy;
+    }
+
+    @Override
+    public Class<?> getObjectType() {
+        if (proxy != null) {
+            return proxy.getClass();
+        }
+        return targetSource.getTargetClass();
+    }
+
+    @Override
+    public boolean isSingleton() {
+        return true;
+    }
+
+    /**
+     * Chooses the callback of the class proxy for a method: the target for the methods of the bean, the scoped object
+     * for its own methods, identity for {@code equals} and {@code hashCode}, and the superclass for {@code finalize}.
+     */
+    private static final class ClassProxyCallbackFilter implements CallbackFilter {
+
+        static final ClassProxyCallbackFilter INSTANCE = new ClassProxyCallbackFilter();
+
+        static final Class<?>[] CALLBACK_TYPES = {
+                Dispatcher.class, Dispatcher.class, org.springframework.cglib.proxy.MethodInterceptor.class, NoOp.class
+        };
+
+        private static final int TARGET = 0;
+
+        private static final int SCOPED_OBJECT = 1;
+
+        private static final int IDENTITY = 2;
+
+        private static final int SUPER = 3;
+
+        @Override
+        public int accept(final Method method) {
+            if (method.getDeclaringClass() == ScopedObject.class) {
+                return SCOPED_OBJECT;
+            }
+            if (AopUtils.isEqualsMethod(method) || AopUtils.isHashCodeMethod(method)) {
+                return IDENTITY;
+            }
+            if (AopUtils.isFinalizeMethod(method)) {
+                return SUPER;
+            }
+            return TARGET;
+        }
+    }
+
+    /**
+     * Implements {@code equals} and {@code hashCode} of the class proxy by its identity, like Spring AOP proxies do
+     * for the proxies of the same target source.
+     */
+    private static final class IdentityInterceptor implements org.springframework.cglib.proxy.MethodInterceptor {
+
+        static final IdentityInterceptor INSTANCE = new IdentityInterceptor();
+
+        @Override
+        public Object intercept(
+                final Object object,
+                final Method method,
+                final Object[] args,
+                final MethodProxy methodProxy
+        ) {
+            if (AopUtils.isEqualsMethod(method)) {
+                return object == args[0];
+            }
+            return System.identityHashCode(object);
+        }
+    }
+
+    /**
+     * Matches the methods of {@link ScopedObject}.
+     */
+    private static final class ScopedObjectPointcut extends StaticMethodMatcherPointcut {
+
+        @Override
+        public boolean matches(final Method method, final Class<?> targetClass) {
+            return method.getDeclaringClass() == ScopedObject.class;
+        }
+    }
+}
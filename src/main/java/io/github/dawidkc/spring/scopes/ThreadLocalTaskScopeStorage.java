@@ -0,0 +1,68 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Default {@link TaskScopeStorage}, keeping a stack of contexts per thread in a {@link ThreadLocal}. Supports both
+ * {@link TaskScope#create(Object)} and {@link TaskScope#call}.
+ * <p>
+ * When a task run by {@link #call} leaves task scopes it has created open, they are removed from the stack once the
+ * task is done, so that the thread does not keep them (and their beans) and the next task does not run within them;
+ * they are handed to the leak detection, see {@link EnableTaskScope#leakDetection()}.
+ *
+ * @author dawidkc
+ */
+public final class ThreadLocalTaskScopeStorage implements TaskScopeStorage {
+
+    private static final ThreadLocal<TaskScopeStack> CONTEXT_STACK = ThreadLocal.withInitial(TaskScopeStack::new);
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TaskScopeContext<?> current() {
+        return CONTEXT_STACK.get().peek();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <R> R call(final TaskScopeContext<?> context, final Callable<R> task) throws Exception {
+        final TaskScopeStack stack = CONTEXT_STACK.get();
+        final int size = stack.size();
+        stack.push(context);
+        try {
+            return task.call();
+        } finally {
+            while (stack.size() > size + 1) {
+                TaskScopeLeakDetector.leaked(stack.pop());
+            }
+            stack.pop();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean supportsPush() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void push(final TaskScopeContext<?> context) {
+        CONTEXT_STACK.get().push(context);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void pop(final TaskScopeContext<?> context) {
+        CONTEXT_STACK.get().pop();
+    }
+}
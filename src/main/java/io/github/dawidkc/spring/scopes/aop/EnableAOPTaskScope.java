@@ -10,7 +10,8 @@ import io.github.dawidkc.spring.scopes.EnableTaskScope;
 import org.springframework.context.annotation.Import;
 
 /**
- * Enables support for the task scope initiated via AOP with {@link TaskContext}.
+ * Enables support for the task scope initiated via AOP with {@link TaskContext}, and for the methods memoized within
+ * the task scope with {@link TaskCached}.
  *
  * @author dawidkc
  * @see TaskContext
@@ -21,4 +22,10 @@ import org.springframework.context.annotation.Import;
 @EnableTaskScope
 @Import(TaskScopeAspectConfiguration.class)
 public @interface EnableAOPTaskScope {
+
+    /**
+     * Maximum number of the results of {@link TaskCached} methods kept by each task scope; the least recently used
+     * ones are evicted first.
+     */
+    int taskCacheSize() default 1024;
 }
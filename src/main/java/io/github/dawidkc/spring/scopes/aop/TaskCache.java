@@ -0,0 +1,158 @@
+package io.github.dawidkc.spring.scopes.aop;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.github.dawidkc.spring.scopes.PendingResult;
+import org.aspectj.lang.ProceedingJoinPoint;
+
+/**
+ * Results of the {@link TaskCached} methods, kept by a single task scope as a task-scoped bean, so they are dropped
+ * along with the task scope. Bounded, evicting the least recently used results. The results being computed are never
+ * evicted, so that the callers coming meanwhile still wait for them instead of invoking the method again; while more
+ * of them than the size limit are computed at once, the cache holds all of them.
+ * <p>
+ * A result being computed is stored as a pending entry, so that concurrent callers with the same key wait for it
+ * instead of invoking the method again. The method is invoked outside of the lock of the cache.
+ * <p>
+ * Waiting is guarded against deadlocks along with the creation of task-scoped beans (see {@link PendingResult}): a
+ * caller which would wait (directly or through other waiting threads) for a result being computed by itself fails with
+ * {@link IllegalStateException} instead. A cycle going through other blocking calls (e.g. waiting for a future) is not
+ * detected.
+ *
+ * @author dawidkc
+ */
+class TaskCache {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final Map<TaskCacheKey, Entry> entries = new LinkedHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR, true);
+
+    private final int maxSize;
+
+    TaskCache(final int cacheSize) {
+        if (cacheSize <= 0) {
+            throw new IllegalArgumentException("Task cache size must be positive: " + cacheSize);
+        }
+        this.maxSize = cacheSize;
+    }
+
+    /**
+     * Returns the result cached under the key, proceeding with the join point to compute it if there is none.
+     */
+    Object get(final TaskCacheKey key, final ProceedingJoinPoint proceedingJoinPoint) throws Throwable {
+        final Entry entry;
+        synchronized (entries) {
+            final Entry existing = entries.get(key);
+            if (existing != null) {
+                entry = existing;
+            } else {
+                entry = new Entry(key);
+                entries.put(key, entry);
+                evictEldest();
+            }
+        }
+        if (entry.key != key) {
+            return entry.await();
+        }
+        final Object result;
+        try {
+            result = proceedingJoinPoint.proceed();
+        } catch (Throwable e) {
+            synchronized (entries) {
+                entries.remove(key, entry);
+            }
+            entry.fail(e);
+            throw e;
+        }
+        entry.complete(result);
+        return result;
+    }
+
+    /**
+     * Evicts the least recently used results computed already while there are too many results, skipping the ones
+     * being computed. Called with the lock of the cache held.
+     */
+    private void evictEldest() {
+        final Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxSize && iterator.hasNext()) {
+            if (iterator.next().isComputed()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of the cached results, including the ones being computed.
+     */
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Result of a single key, computed by the thread which created the entry. The entry refers to the very key
+     * instance of its creator, which tells the creator apart from the other callers.
+     */
+    private static final class Entry extends PendingResult {
+
+        private final TaskCacheKey key;
+
+        private Object result;
+
+        private Throwable failure;
+
+        Entry(final TaskCacheKey cacheKey) {
+            this.key = cacheKey;
+        }
+
+        synchronized void complete(final Object value) {
+            this.result = value;
+            done();
+        }
+
+        boolean isComputed() {
+            return isDone();
+        }
+
+        synchronized void fail(final Throwable cause) {
+            this.failure = cause;
+            done();
+        }
+
+        /**
+         * Waits for the result and returns it, or rethrows the failure of the method.
+         *
+         * @throws IllegalStateException if the result is being computed by the calling thread itself, or by a thread
+         *                               waiting (directly or through other threads) for a result computed by it, or
+         *                               if the calling thread is interrupted while waiting, its interrupt status being
+         *                               restored
+         */
+        Object await() throws Throwable {
+            if (!isDone() && isComputedByCurrentThread()) {
+                throw new IllegalStateException("Recursive call of task-cached method " + key + " with the same "
+                        + "arguments");
+            }
+            awaitDone();
+            if (failure != null) {
+                throw failure;
+            }
+            return result;
+        }
+
+        @Override
+        protected RuntimeException waitingForItself() {
+            return new IllegalStateException("Call of task-cached method " + key + " would wait for a result being "
+                    + "computed by the same thread");
+        }
+
+        @Override
+        protected RuntimeException interrupted(final InterruptedException cause) {
+            return new IllegalStateException("Interrupted while waiting for task-cached method " + key, cause);
+        }
+    }
+}
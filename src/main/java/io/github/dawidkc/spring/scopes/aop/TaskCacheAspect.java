@@ -0,0 +1,47 @@
+package io.github.dawidkc.spring.scopes.aop;
+
+import io.github.dawidkc.spring.scopes.TaskScope;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.Ordered;
+
+/**
+ * Aspect declaration, configuring the use of {@code @TaskCached}.
+ * <p>
+ * The results are kept in the {@link TaskCache} of the current task scope, which the aspect refers to through its
+ * task-scoped proxy; outside of any task scope the method is invoked directly. It is applied within
+ * {@link TaskScopeAspect}, so that a method both opening a task scope and cached keeps its results in the task scope
+ * opened for it.
+ *
+ * @author dawidkc
+ */
+@Aspect
+@RequiredArgsConstructor
+class TaskCacheAspect implements Ordered {
+
+    /**
+     * Order of the aspect, the default one of the aspects.
+     */
+    static final int ORDER = Ordered.LOWEST_PRECEDENCE;
+
+    private final TaskCache cache;
+
+    @Around("@annotation(io.github.dawidkc.spring.scopes.aop.TaskCached) && execution(* *(..))")
+    public Object cached(final ProceedingJoinPoint proceedingJoinPoint) throws Throwable {
+        if (!TaskScope.isActive()) {
+            return proceedingJoinPoint.proceed();
+        }
+        final MethodSignature signature = (MethodSignature) proceedingJoinPoint.getSignature();
+        final TaskCacheKey key =
+                new TaskCacheKey(proceedingJoinPoint.getTarget(), signature.getMethod(), proceedingJoinPoint.getArgs());
+        return cache.get(key, proceedingJoinPoint);
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+}
@@ -0,0 +1,50 @@
+package io.github.dawidkc.spring.scopes.aop;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ * Key of a result of a {@link TaskCached} method: the target bean, by identity, the method and the arguments.
+ *
+ * @author dawidkc
+ */
+final class TaskCacheKey {
+
+    private final Object target;
+
+    private final Method method;
+
+    private final Object[] args;
+
+    private final int hash;
+
+    TaskCacheKey(final Object targetBean, final Method invokedMethod, final Object[] arguments) {
+        this.target = targetBean;
+        this.method = invokedMethod;
+        this.args = arguments;
+        this.hash = Arrays.deepHashCode(new Object[]{System.identityHashCode(targetBean), invokedMethod, arguments});
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof TaskCacheKey)) {
+            return false;
+        }
+        final TaskCacheKey key = (TaskCacheKey) other;
+        return hash == key.hash && target == key.target && method.equals(key.method)
+                && Arrays.deepEquals(args, key.args);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return method.getName() + Arrays.deepToString(args);
+    }
+}
@@ -0,0 +1,40 @@
+package io.github.dawidkc.spring.scopes.aop;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * When used with {@code @EnableAspectJAutoProxy} and {@code @EnableAOPTaskScope}, this annotation memoizes the results
+ * of a method within the current task scope: the method is invoked once per target bean and arguments, and the
+ * subsequent calls in the same task scope return the same result.
+ * <p>
+ * For example:
+ * <pre><code>
+ * {@literal @}Component
+ *  public class PricingService {
+ *
+ *     {@literal @}TaskCached
+ *      Price priceOf(String product) {
+ *          //...
+ *      }
+ *
+ *  }
+ * </code></pre>
+ * The results are kept by the task scope and dropped when it is closed; the number of the results kept by each task
+ * scope is limited by {@link EnableAOPTaskScope#taskCacheSize()}, the least recently used ones being evicted first.
+ * Concurrent calls with the same arguments within the same task scope (e.g. of tasks which it has been propagated to)
+ * invoke the method once, the other callers waiting for its result. Failures are not cached. Outside of any task scope
+ * the method is simply invoked.
+ * <p>
+ * The arguments are compared with {@code equals}, so they should be immutable values.
+ *
+ * @author dawidkc
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface TaskCached {
+}
@@ -22,11 +22,18 @@ import java.lang.annotation.Target;
  *  }
  * </code></pre>
  * In the above example, {@code param2} will be the value of the task context active during the execution of the
- * method.
+ * method. With {@link #timeoutMillis()}, the task scope has a deadline, see
+ * {@link io.github.dawidkc.spring.scopes.TaskScope#create(Object, long, java.util.concurrent.TimeUnit)}.
  *
  * @author dawidkc
  */
 @Retention(RetentionPolicy.RUNTIME)
 @Target({ElementType.PARAMETER})
 public @interface TaskContext {
+
+    /**
+     * Time in milliseconds the method has to be done within, {@code 0} for no deadline.
+     */
+    long timeoutMillis() default 0;
+
 }
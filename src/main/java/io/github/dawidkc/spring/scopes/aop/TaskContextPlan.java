@@ -0,0 +1,74 @@
+package io.github.dawidkc.spring.scopes.aop;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.MethodParameter;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Immutable invocation plan for a method with {@link TaskContext} parameters: indices of the parameters which open a
+ * task scope, in the order the scopes are opened (the first one is the outermost scope), and their timeouts.
+ *
+ * @author dawidkc
+ */
+@Slf4j
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+final class TaskContextPlan {
+
+    private final int[] indices;
+
+    private final long[] timeouts;
+
+    /**
+     * Creates the plan for the given method invoked on an instance of the given class. {@link TaskContext} annotations
+     * are taken from both the most specific method of the target class and the invoked method itself, so methods
+     * inherited from a superclass or declared on an interface are supported.
+     */
+    static TaskContextPlan of(final Method method, final Class<?> targetClass) {
+        final Method specificMethod = ClassUtils.getMostSpecificMethod(method, targetClass);
+        final int[] indices = new int[method.getParameterCount()];
+        final long[] timeouts = new long[indices.length];
+        int count = 0;
+        for (int i = 0; i < indices.length; i++) {
+            TaskContext taskContext = taskContextOf(specificMethod, i);
+            if (taskContext == null) {
+                taskContext = taskContextOf(method, i);
+            }
+            if (taskContext != null) {
+                timeouts[count] = taskContext.timeoutMillis();
+                indices[count++] = i;
+            }
+        }
+        log.debug("Task scope applied to args {} of {}", Arrays.toString(Arrays.copyOf(indices, count)), method);
+        return new TaskContextPlan(Arrays.copyOf(indices, count), Arrays.copyOf(timeouts, count));
+    }
+
+    private static TaskContext taskContextOf(final Method method, final int index) {
+        return new MethodParameter(method, index).getParameterAnnotation(TaskContext.class);
+    }
+
+    /**
+     * Returns the number of task scopes opened by the plan.
+     */
+    int size() {
+        return indices.length;
+    }
+
+    /**
+     * Returns the index of the argument used as the context of the {@code n}-th scope.
+     */
+    int argumentIndex(final int n) {
+        return indices[n];
+    }
+
+    /**
+     * Returns the timeout in milliseconds of the {@code n}-th scope, {@code 0} if it has no deadline.
+     */
+    long timeoutMillis(final int n) {
+        return timeouts[n];
+    }
+}
@@ -1,73 +1,118 @@
 package io.github.dawidkc.spring.scopes.aop;
 
-import java.lang.annotation.Annotation;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 import io.github.dawidkc.spring.scopes.TaskScope;
 import io.github.dawidkc.spring.scopes.TaskScopeContext;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
-import org.aspectj.lang.SoftException;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.core.MethodClassKey;
+import org.springframework.core.Ordered;
+import org.springframework.util.ConcurrentReferenceHashMap;
 
 /**
  * Aspect declaration, configuring the use of {@code @TaskContext}.
+ * <p>
+ * The {@link TaskContext} parameters of a method are looked up once per method and target class; the resulting
+ * {@link TaskContextPlan} is kept in a cache holding soft references, so it does not prevent class unloading. The task
+ * scopes are opened with {@link TaskScope#create(Object)}, allocating nothing but the contexts, unless the storage
+ * only supports {@link TaskScope#call(Object, Callable)}. The aspect is applied around {@link TaskCacheAspect}, so that
+ * the results of a method opening a task scope are cached within it.
  *
  * @author dawidkc
  */
 @Slf4j
 @Aspect
-class TaskScopeAspect {
+class TaskScopeAspect implements Ordered {
+
+    /**
+     * Order of the aspect, right before {@link TaskCacheAspect}.
+     */
+    static final int ORDER = TaskCacheAspect.ORDER - 1;
+
+    private final Map<MethodClassKey, TaskContextPlan> plans = new ConcurrentReferenceHashMap<>();
 
     @Around("execution(* *(.., @io.github.dawidkc.spring.scopes.aop.TaskContext (*), ..))")
     public Object wrapInTask(final ProceedingJoinPoint proceedingJoinPoint) throws Throwable {
         log.debug("Applying task scope to {}", proceedingJoinPoint.getSignature());
-        MethodSignature signature = (MethodSignature) proceedingJoinPoint.getSignature();
-        String methodName = signature.getMethod().getName();
-        Class<?>[] parameterTypes = signature.getMethod().getParameterTypes();
-        Annotation[][] annotations;
-        try {
-            annotations = proceedingJoinPoint.getTarget().getClass()
-                    .getDeclaredMethod(methodName, parameterTypes).getParameterAnnotations();
-        } catch (Exception e) {
-            throw new SoftException(e);
+        final TaskContextPlan plan = getPlan(proceedingJoinPoint);
+        if (TaskScope.isCreateSupported()) {
+            return proceedWithin(proceedingJoinPoint, proceedingJoinPoint.getArgs(), plan, 0);
+        }
+        return callWithin(proceedingJoinPoint, proceedingJoinPoint.getArgs(), plan, 0);
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    private TaskContextPlan getPlan(final ProceedingJoinPoint proceedingJoinPoint) {
+        final MethodSignature signature = (MethodSignature) proceedingJoinPoint.getSignature();
+        final Class<?> targetClass = AopProxyUtils.ultimateTargetClass(proceedingJoinPoint.getTarget());
+        final MethodClassKey key = new MethodClassKey(signature.getMethod(), targetClass);
+        TaskContextPlan plan = plans.get(key);
+        if (plan == null) {
+            plan = TaskContextPlan.of(signature.getMethod(), targetClass);
+            plans.put(key, plan);
         }
-        SupplierThrowingAnything<Object> delegate = buildMethodInvocationWithContext(proceedingJoinPoint, annotations);
-        return delegate.get();
+        return plan;
     }
 
-    private SupplierThrowingAnything<Object> buildMethodInvocationWithContext(
+    /**
+     * Opens the {@code n}-th scope of the plan and proceeds with the next one, invoking the method within the
+     * innermost scope.
+     */
+    private static Object proceedWithin(
             final ProceedingJoinPoint proceedingJoinPoint,
-            final Annotation[][] annotations
-    ) {
-        Object[] args = proceedingJoinPoint.getArgs();
-        SupplierThrowingAnything<Object> delegate = proceedingJoinPoint::proceed;
-        for (int i = args.length - 1; i >= 0; i--) {
-            Object arg = args[i];
-            for (Annotation annotation : annotations[i]) {
-                if (annotation.annotationType() == TaskContext.class) {
-                    log.debug("Applying task scope to arg #{}", i);
-                    delegate = wrap(delegate, arg);
-                }
-            }
+            final Object[] args,
+            final TaskContextPlan plan,
+            final int n
+    ) throws Throwable {
+        if (n == plan.size()) {
+            return proceedingJoinPoint.proceed();
+        }
+        final long timeoutMillis = plan.timeoutMillis(n);
+        try (TaskScopeContext<Object> context = timeoutMillis > 0
+                ? TaskScope.create(args[plan.argumentIndex(n)], timeoutMillis, TimeUnit.MILLISECONDS)
+                : TaskScope.create(args[plan.argumentIndex(n)])) {
+            return proceedWithin(proceedingJoinPoint, args, plan, n + 1);
         }
-        return delegate;
     }
 
-    private static <T> SupplierThrowingAnything<T> wrap(
-            final SupplierThrowingAnything<T> supplier,
-            final Object ctx
-    ) {
-        return () -> {
-            try (TaskScopeContext<Object> context = TaskScope.create(ctx)) {
-                return supplier.get();
+    /**
+     * Like {@link #proceedWithin}, binding the scopes with {@link TaskScope#call(Object, Callable)} for the storages
+     * which do not support {@link TaskScope#create(Object)}.
+     */
+    private static Object callWithin(
+            final ProceedingJoinPoint proceedingJoinPoint,
+            final Object[] args,
+            final TaskContextPlan plan,
+            final int n
+    ) throws Throwable {
+        if (n == plan.size()) {
+            return proceedingJoinPoint.proceed();
+        }
+        final Callable<Object> next = () -> {
+            try {
+                return callWithin(proceedingJoinPoint, args, plan, n + 1);
+            } catch (Exception | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new UndeclaredThrowableException(e);
             }
         };
-    }
-
-    @FunctionalInterface
-    private interface SupplierThrowingAnything<T> {
-        T get() throws Throwable;
+        final long timeoutMillis = plan.timeoutMillis(n);
+        if (timeoutMillis > 0) {
+            return TaskScope.call(args[plan.argumentIndex(n)], timeoutMillis, TimeUnit.MILLISECONDS, next);
+        }
+        return TaskScope.call(args[plan.argumentIndex(n)], next);
     }
 }
@@ -1,7 +1,12 @@
 package io.github.dawidkc.spring.scopes.aop;
 
+import java.util.Map;
+
+import io.github.dawidkc.spring.scopes.TaskScoped;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportAware;
+import org.springframework.core.type.AnnotationMetadata;
 
 /**
  * Spring configuration defining task scope and providing beans.
@@ -10,7 +15,23 @@ import org.springframework.context.annotation.Configuration;
  */
 @SuppressWarnings("unused")
 @Configuration
-class TaskScopeAspectConfiguration {
+class TaskScopeAspectConfiguration implements ImportAware {
+
+    private static final int DEFAULT_TASK_CACHE_SIZE = 1024;
+
+    private int taskCacheSize = DEFAULT_TASK_CACHE_SIZE;
+
+    /**
+     * Reads the attributes of {@link EnableAOPTaskScope} from the importing configuration class.
+     */
+    @Override
+    public void setImportMetadata(final AnnotationMetadata importMetadata) {
+        final Map<String, Object> attributes =
+                importMetadata.getAnnotationAttributes(EnableAOPTaskScope.class.getName());
+        if (attributes != null) {
+            this.taskCacheSize = (Integer) attributes.get("taskCacheSize");
+        }
+    }
 
     /**
      * Registers aspect to process {@link TaskContext} usages.
@@ -20,4 +41,21 @@ class TaskScopeAspectConfiguration {
         return new TaskScopeAspect();
     }
 
+    /**
+     * Registers aspect to process {@link TaskCached} usages.
+     */
+    @Bean
+    TaskCacheAspect taskCacheAspect(final TaskCache taskScopeCache) {
+        return new TaskCacheAspect(taskScopeCache);
+    }
+
+    /**
+     * Registers the cache of the {@link TaskCached} results, one per task scope.
+     */
+    @Bean
+    @TaskScoped
+    TaskCache taskScopeCache() {
+        return new TaskCache(taskCacheSize);
+    }
+
 }
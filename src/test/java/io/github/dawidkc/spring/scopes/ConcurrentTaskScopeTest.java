@@ -1,17 +1,26 @@
 package io.github.dawidkc.spring.scopes;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.BeanCurrentlyInCreationException;
+import org.springframework.beans.factory.ObjectFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestPropertySource;
@@ -59,4 +68,137 @@ class ConcurrentTaskScopeTest {
                 .isNotEmpty()
                 .allMatch(Boolean::booleanValue);
     }
+
+    @Test
+    void should_create_task_scoped_bean_once_when_resolved_concurrently() throws Exception {
+        // GIVEN a context shared by multiple threads
+        final TaskScopeContext<String> context = new TaskScopeContext<>("shared");
+        final AtomicInteger creations = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final ObjectFactory<Object> slowFactory = () -> {
+            creations.incrementAndGet();
+            sleep(50);
+            return new Object();
+        };
+        // WHEN the bean is resolved by all threads at once
+        final List<Future<Object>> results = IntStream.range(0, 5)
+                .mapToObj(i -> executor.submit(() -> {
+                    start.await();
+                    return context.getBean(TaskScopeSlots.NO_SLOT, "bean", slowFactory);
+                }))
+                .collect(Collectors.toList());
+        start.countDown();
+        // THEN it is created exactly once
+        final Object first = results.get(0).get(1, TimeUnit.SECONDS);
+        for (Future<Object> result : results) {
+            assertThat(result.get(1, TimeUnit.SECONDS)).isSameAs(first);
+        }
+        assertThat(creations).hasValue(1);
+    }
+
+    @Test
+    void should_allow_another_attempt_when_task_scoped_bean_creation_failed() {
+        // GIVEN a context AND a failing bean factory
+        final TaskScopeContext<String> context = new TaskScopeContext<>("ctx");
+        // WHEN the bean creation fails
+        assertThatThrownBy(() -> context.getBean(TaskScopeSlots.NO_SLOT, "bean", () -> {
+            throw new IllegalStateException("failed");
+        })).isInstanceOf(IllegalStateException.class);
+        // THEN the next resolution creates the bean again
+        final Object bean = new Object();
+        assertThat(context.getBean(TaskScopeSlots.NO_SLOT, "bean", () -> bean)).isSameAs(bean);
+    }
+
+    @Test
+    void should_fail_waiting_threads_with_exception_of_failed_creation() throws Exception {
+        // GIVEN a context AND a bean factory failing once the other threads wait for it
+        final TaskScopeContext<String> context = new TaskScopeContext<>("ctx");
+        final IllegalStateException failure = new IllegalStateException("failed");
+        final CountDownLatch creating = new CountDownLatch(1);
+        final CountDownLatch failing = new CountDownLatch(1);
+        final Future<Object> creator = executor.submit(() -> context.getBean(TaskScopeSlots.NO_SLOT, "bean", () -> {
+            creating.countDown();
+            await(failing);
+            throw failure;
+        }));
+        creating.await();
+        // WHEN the bean is resolved by other threads while it is being created
+        final List<Future<Object>> waiters = IntStream.range(0, 3)
+                .mapToObj(i -> executor.submit(() -> context.getBean(TaskScopeSlots.NO_SLOT, "bean", Object::new)))
+                .collect(Collectors.toList());
+        sleep(100);
+        failing.countDown();
+        // THEN all of them fail with the very exception thrown to the creating thread
+        final List<Throwable> failures = new ArrayList<>();
+        for (Future<Object> result : waiters) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                failures.add(e.getCause());
+            }
+        }
+        assertThatThrownBy(() -> creator.get(5, TimeUnit.SECONDS)).hasCause(failure);
+        assertThat(failures)
+                .hasSize(3)
+                .allMatch(thrown -> thrown == failure);
+    }
+
+    @Test
+    void should_resolve_task_scoped_bean_from_factory_of_another_one() {
+        // GIVEN a context with 2 beans, one depending on the other
+        final TaskScopeContext<String> context = new TaskScopeContext<>("ctx");
+        final Object dependency = new Object();
+        // WHEN creating the dependent bean
+        final Object bean = context.getBean(TaskScopeSlots.NO_SLOT, "bean",
+                () -> Arrays.asList(context.getBean(TaskScopeSlots.NO_SLOT, "dependency", () -> dependency)));
+        // THEN both beans are created
+        assertThat(bean).isEqualTo(Arrays.asList(dependency));
+        assertThat(context.getBean(TaskScopeSlots.NO_SLOT, "dependency", Object::new)).isSameAs(dependency);
+    }
+
+    @Test
+    void should_fail_instead_of_deadlocking_on_cross_thread_creation_cycle() throws Exception {
+        // GIVEN 2 beans whose factories resolve each other, created by 2 threads at the same time
+        final TaskScopeContext<String> context = new TaskScopeContext<>("ctx");
+        final CountDownLatch aStarted = new CountDownLatch(1);
+        final CountDownLatch bStarted = new CountDownLatch(1);
+        final Future<Object> a = executor.submit(() -> context.getBean(TaskScopeSlots.NO_SLOT, "a", () -> {
+            aStarted.countDown();
+            await(bStarted);
+            return context.getBean(TaskScopeSlots.NO_SLOT, "b", Object::new);
+        }));
+        final Future<Object> b = executor.submit(() -> context.getBean(TaskScopeSlots.NO_SLOT, "b", () -> {
+            bStarted.countDown();
+            await(aStarted);
+            return context.getBean(TaskScopeSlots.NO_SLOT, "a", Object::new);
+        }));
+        // THEN both creations complete AND the cycle is reported
+        final List<Throwable> failures = new ArrayList<>();
+        for (Future<Object> result : Arrays.asList(a, b)) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                failures.add(e.getCause());
+            }
+        }
+        assertThat(failures)
+                .isNotEmpty()
+                .allMatch(BeanCurrentlyInCreationException.class::isInstance);
+    }
+
+    private static void sleep(final long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
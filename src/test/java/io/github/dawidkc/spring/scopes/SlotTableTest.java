@@ -0,0 +1,47 @@
+package io.github.dawidkc.spring.scopes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class SlotTableTest {
+
+    final SlotTable<String> table = new SlotTable<>(2);
+
+    @Test
+    void should_store_values_by_slot() {
+        // WHEN storing values in slots
+        table.put(0, "a", "value-a");
+        table.put(1, "b", "value-b");
+        // THEN values are resolved by slot
+        assertThat(table.get(0, "a")).isEqualTo("value-a");
+        assertThat(table.get(1, "b")).isEqualTo("value-b");
+        // ...AND removed by slot
+        assertThat(table.remove(0, "a")).isEqualTo("value-a");
+        assertThat(table.get(0, "a")).isNull();
+        assertThat(table.get(1, "b")).isEqualTo("value-b");
+    }
+
+    @Test
+    void should_fall_back_to_names_for_values_without_slot() {
+        // WHEN storing values with no slot, or with a slot assigned after table was created
+        table.put(TaskScopeSlots.NO_SLOT, "a", "value-a");
+        table.put(5, "b", "value-b");
+        // THEN values are resolved by name
+        assertThat(table.get(TaskScopeSlots.NO_SLOT, "a")).isEqualTo("value-a");
+        assertThat(table.get(5, "b")).isEqualTo("value-b");
+        assertThat(table.get(TaskScopeSlots.NO_SLOT, "c")).isNull();
+        // ...AND removed by name
+        assertThat(table.remove(TaskScopeSlots.NO_SLOT, "a")).isEqualTo("value-a");
+        assertThat(table.get(TaskScopeSlots.NO_SLOT, "a")).isNull();
+    }
+
+    @Test
+    void should_return_null_for_missing_values() {
+        // GIVEN an empty table
+        // THEN nothing is resolved or removed
+        assertThat(table.get(0, "a")).isNull();
+        assertThat(table.get(TaskScopeSlots.NO_SLOT, "a")).isNull();
+        assertThat(table.remove(TaskScopeSlots.NO_SLOT, "a")).isNull();
+    }
+}
@@ -0,0 +1,281 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.github.dawidkc.spring.scopes.aop.EnableAOPTaskScope;
+import io.github.dawidkc.spring.scopes.aop.TaskCached;
+import io.github.dawidkc.spring.scopes.aop.TaskContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.stereotype.Component;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+@SpringJUnitConfig
+@ContextConfiguration(classes = {
+        TaskCachedTest.CacheConfiguration.class,
+        TaskCachedTest.PricingService.class
+})
+class TaskCachedTest {
+
+    final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    @Autowired
+    PricingService pricingService;
+
+    @BeforeEach
+    void reset() {
+        PricingService.INVOCATIONS.set(0);
+    }
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void should_invoke_method_once_per_arguments_within_task_scope() {
+        // GIVEN a task scope
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            // WHEN calling a cached method repeatedly
+            final String first = pricingService.priceOf("apple");
+            final String second = pricingService.priceOf("apple");
+            final String other = pricingService.priceOf("pear");
+            // THEN it is invoked once per arguments
+            assertThat(second).isSameAs(first);
+            assertThat(other).isNotEqualTo(first);
+            assertThat(PricingService.INVOCATIONS).hasValue(2);
+        }
+    }
+
+    @Test
+    void should_drop_results_when_task_scope_is_closed() {
+        // GIVEN a result cached by a closed task scope
+        final String first;
+        try (TaskScopeContext<String> ctx = TaskScope.create("first")) {
+            first = pricingService.priceOf("apple");
+        }
+        // WHEN calling the method in another task scope
+        try (TaskScopeContext<String> ctx = TaskScope.create("second")) {
+            // THEN it is invoked again
+            assertThat(pricingService.priceOf("apple")).isNotSameAs(first);
+            assertThat(PricingService.INVOCATIONS).hasValue(2);
+        }
+    }
+
+    @Test
+    void should_invoke_method_uncached_outside_task_scope() {
+        // GIVEN no active task scope
+        // WHEN calling a cached method repeatedly
+        pricingService.priceOf("apple");
+        pricingService.priceOf("apple");
+        // THEN it is invoked each time
+        assertThat(PricingService.INVOCATIONS).hasValue(2);
+    }
+
+    @Test
+    void should_evict_least_recently_used_results() {
+        // GIVEN a task scope with as many cached results as the cache can hold
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            final String apple = pricingService.priceOf("apple");
+            pricingService.priceOf("pear");
+            pricingService.priceOf("apple");
+            // WHEN caching another result
+            pricingService.priceOf("plum");
+            // THEN the least recently used result is evicted
+            assertThat(pricingService.priceOf("apple")).isSameAs(apple);
+            assertThat(PricingService.INVOCATIONS).hasValue(3);
+            pricingService.priceOf("pear");
+            assertThat(PricingService.INVOCATIONS).hasValue(4);
+        }
+    }
+
+    @Test
+    void should_not_evict_results_being_computed() throws Exception {
+        // GIVEN a task scope propagated to a task computing a result until released
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            final CountDownLatch started = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            final Future<String> computing = pool.submit(TaskScopeExecutors.wrap(
+                    () -> pricingService.awaitedPriceOf("apple", started, release)));
+            started.await();
+            // WHEN caching more results than the cache can hold meanwhile
+            pricingService.priceOf("pear");
+            pricingService.priceOf("plum");
+            pricingService.priceOf("fig");
+            release.countDown();
+            // THEN the result being computed is kept
+            final String apple = computing.get(5, TimeUnit.SECONDS);
+            assertThat(pricingService.awaitedPriceOf("apple", started, release)).isSameAs(apple);
+            assertThat(PricingService.INVOCATIONS).hasValue(4);
+        }
+    }
+
+    @Test
+    void should_not_cache_failures() {
+        // GIVEN a task scope
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            // WHEN a cached method fails
+            assertThatThrownBy(() -> pricingService.priceOf(null)).isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> pricingService.priceOf(null)).isInstanceOf(IllegalArgumentException.class);
+            // THEN it is invoked again by the next call
+            assertThat(PricingService.INVOCATIONS).hasValue(2);
+        }
+    }
+
+    @Test
+    void should_cache_results_in_task_scope_opened_by_method() {
+        // GIVEN a task scope
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            // WHEN calling a cached method opening a task scope of its own repeatedly
+            final String first = pricingService.tenantPriceOf("tenant");
+            final String second = pricingService.tenantPriceOf("tenant");
+            // THEN its results are cached by the task scopes it opens, not by the enclosing one
+            assertThat(second).isNotEqualTo(first);
+            assertThat(PricingService.INVOCATIONS).hasValue(2);
+        }
+    }
+
+    @Test
+    void should_compute_result_once_for_concurrent_callers_in_propagated_scope() throws Exception {
+        // GIVEN a task scope propagated to concurrent tasks
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            final CountDownLatch start = new CountDownLatch(1);
+            final List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(pool.submit(TaskScopeExecutors.wrap(() -> {
+                    start.await();
+                    return pricingService.slowPriceOf("apple");
+                })));
+            }
+            // WHEN they call a cached method with the same arguments at once
+            start.countDown();
+            // THEN the method is invoked once
+            final String first = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isSameAs(first);
+            }
+            assertThat(PricingService.INVOCATIONS).hasValue(1);
+        }
+    }
+
+    @Test
+    void should_fail_waiting_caller_when_interrupted() throws Exception {
+        // GIVEN a task scope propagated to a task computing a result until released
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            final CountDownLatch started = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            final Future<String> computing = pool.submit(TaskScopeExecutors.wrap(
+                    () -> pricingService.awaitedPriceOf("apple", started, release)));
+            started.await();
+            // WHEN another caller waiting for the same result is interrupted
+            final AtomicReference<Thread> waiting = new AtomicReference<>();
+            final CountDownLatch calling = new CountDownLatch(1);
+            final Future<Boolean> interrupted = pool.submit(TaskScopeExecutors.wrap(() -> {
+                waiting.set(Thread.currentThread());
+                calling.countDown();
+                assertThatThrownBy(() -> pricingService.awaitedPriceOf("apple", started, release))
+                        .isInstanceOf(IllegalStateException.class)
+                        .hasCauseInstanceOf(InterruptedException.class);
+                return Thread.currentThread().isInterrupted();
+            }));
+            calling.await();
+            waiting.get().interrupt();
+            // THEN it fails with its interrupt status restored
+            assertThat(interrupted.get(5, TimeUnit.SECONDS)).isTrue();
+            // AND the result is still computed once
+            release.countDown();
+            assertThat(computing.get(5, TimeUnit.SECONDS)).isEqualTo("apple:awaited");
+            assertThat(PricingService.INVOCATIONS).hasValue(1);
+        }
+    }
+
+    @Test
+    void should_fail_instead_of_deadlocking_when_threads_wait_for_results_of_each_other() throws Exception {
+        // GIVEN a task scope propagated to two tasks, each computing a result which needs the result of the other
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            final CountDownLatch started = new CountDownLatch(2);
+            final Future<String> first = pool.submit(TaskScopeExecutors.wrap(
+                    () -> pricingService.bundlePriceOf("apple", "pear", started)));
+            final Future<String> second = pool.submit(TaskScopeExecutors.wrap(
+                    () -> pricingService.bundlePriceOf("pear", "apple", started)));
+            // WHEN they wait for each other
+            // THEN the calls fail rather than wait forever
+            assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS))
+                    .hasRootCauseInstanceOf(IllegalStateException.class)
+                    .hasStackTraceContaining("would wait for a result being computed by the same thread");
+            assertThatThrownBy(() -> second.get(5, TimeUnit.SECONDS))
+                    .hasRootCauseInstanceOf(IllegalStateException.class);
+        }
+    }
+
+    @Configuration
+    @EnableAOPTaskScope(taskCacheSize = 2)
+    @EnableAspectJAutoProxy
+    static class CacheConfiguration {
+    }
+
+    @Component
+    static class PricingService {
+
+        static final AtomicInteger INVOCATIONS = new AtomicInteger();
+
+        @Autowired
+        PricingService self;
+
+        @TaskCached
+        public String priceOf(final String product) {
+            INVOCATIONS.incrementAndGet();
+            if (product == null) {
+                throw new IllegalArgumentException("No product");
+            }
+            return product + ":" + INVOCATIONS.get();
+        }
+
+        @TaskCached
+        public String tenantPriceOf(@TaskContext final String tenant) {
+            INVOCATIONS.incrementAndGet();
+            return tenant + ":" + TaskScope.getCurrentContext().getId();
+        }
+
+        @TaskCached
+        public String slowPriceOf(final String product) throws InterruptedException {
+            INVOCATIONS.incrementAndGet();
+            Thread.sleep(100);
+            return product + ":slow";
+        }
+
+        @TaskCached
+        public String awaitedPriceOf(final String product, final CountDownLatch started, final CountDownLatch release)
+                throws InterruptedException {
+            INVOCATIONS.incrementAndGet();
+            started.countDown();
+            release.await();
+            return product + ":awaited";
+        }
+
+        @TaskCached
+        public String bundlePriceOf(final String product, final String other, final CountDownLatch started)
+                throws InterruptedException {
+            started.countDown();
+            started.await(5, TimeUnit.SECONDS);
+            return product + "+" + self.bundlePriceOf(other, product, started);
+        }
+    }
+
+}
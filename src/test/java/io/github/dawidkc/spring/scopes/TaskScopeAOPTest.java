@@ -1,5 +1,7 @@
 package io.github.dawidkc.spring.scopes;
 
+import java.util.concurrent.TimeUnit;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 import io.github.dawidkc.spring.scopes.aop.TaskContext;
@@ -16,7 +18,9 @@ import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
 @SpringJUnitConfig
 @ContextConfiguration(classes = {
         TestConfiguration.class,
-        TaskScopeAOPTest.Service.class
+        TaskScopeAOPTest.Service.class,
+        TaskScopeAOPTest.InheritingService.class,
+        TaskScopeAOPTest.InterfaceService.class
 })
 @TestPropertySource(properties = {
         "debug=true",
@@ -26,6 +30,12 @@ class TaskScopeAOPTest {
     @Autowired
     Service service;
 
+    @Autowired
+    InheritingService inheritingService;
+
+    @Autowired
+    Api interfaceService;
+
     @Autowired
     TaskScopeContext<TestContext> context;
 
@@ -61,6 +71,61 @@ class TaskScopeAOPTest {
         assertThat(result).isEqualTo("three");
     }
 
+    @Test
+    void should_create_new_task_scope_for_inherited_method() {
+        // WHEN invoking method declared in a superclass
+        String result = inheritingService.inherited("one", "two");
+        // THEN returned context should match annotated arg
+        assertThat(result).isEqualTo("two");
+    }
+
+    @Test
+    void should_create_new_task_scope_for_method_annotated_on_interface() {
+        // WHEN invoking method with the context annotated on the interface only
+        String result = interfaceService.method("one", "two");
+        // THEN returned context should match annotated arg
+        assertThat(result).isEqualTo("one");
+    }
+
+    @Test
+    void should_create_new_task_scope_on_repeated_invocations() {
+        // WHEN invoking the same method multiple times
+        // THEN each invocation gets its own context
+        assertThat(service.method1("one", "two", "three")).isEqualTo("one");
+        assertThat(service.method1("four", "five", "six")).isEqualTo("four");
+        assertThat(service.method1c("one", "two", "three")).isEqualTo("three");
+    }
+
+    @Test
+    void should_create_task_scope_with_deadline_for_annotated_param_with_timeout() {
+        // WHEN invoking method with the context having a timeout
+        long remaining = service.timed("one");
+        // THEN the task scope has a deadline within the timeout
+        assertThat(remaining).isBetween(1L, 60_000L);
+        // AND the task scopes of the other methods have none
+        assertThat(service.untimed("one")).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    void should_bind_task_scopes_to_invocation_when_storage_does_not_support_create() {
+        // GIVEN a storage only supporting TaskScope.call()
+        final TaskScopeStorage previous = TaskScope.getStorage();
+        TaskScope.setStorage(new TaskScopeStorageTest.CountingStorage());
+        try {
+            final int calls = TaskScopeStorageTest.CountingStorage.CALLS.get();
+            // WHEN invoking methods with the context
+            String result = service.method1d("one", "two", "three");
+            long remaining = service.timed("one");
+            // THEN the task scopes are bound by the storage for the invocation
+            assertThat(result).isEqualTo("three");
+            assertThat(remaining).isBetween(1L, 60_000L);
+            assertThat(TaskScopeStorageTest.CountingStorage.CALLS.get() - calls).isEqualTo(4);
+            assertThat(TaskScope.isActive()).isFalse();
+        } finally {
+            TaskScope.setStorage(previous);
+        }
+    }
+
     @Value(staticConstructor = "of")
     static class TestContext {
         String data;
@@ -90,6 +155,14 @@ class TaskScopeAOPTest {
             return TaskScope.getCurrentContextObject();
         }
 
+        long timed(@TaskContext(timeoutMillis = 60_000) String s1) {
+            return TaskScope.remaining(TimeUnit.MILLISECONDS);
+        }
+
+        long untimed(@TaskContext String s1) {
+            return TaskScope.remaining(TimeUnit.MILLISECONDS);
+        }
+
         String method3(@TaskContext TestContext context1) {
             TestContext ctx = TaskScope.getCurrentContextObject();
             return ctx.getData();
@@ -97,4 +170,33 @@ class TaskScopeAOPTest {
 
     }
 
-}
\ No newline at end of file
+    @SuppressWarnings("unused")
+    static class BaseService {
+
+        String inherited(String s1, @TaskContext String s2) {
+            return TaskScope.getCurrentContextObject();
+        }
+
+    }
+
+    @Component
+    static class InheritingService extends BaseService {
+    }
+
+    interface Api {
+
+        String method(@TaskContext String s1, String s2);
+
+    }
+
+    @Component
+    static class InterfaceService implements Api {
+
+        @Override
+        public String method(final String s1, final String s2) {
+            return TaskScope.getCurrentContextObject();
+        }
+
+    }
+
+}
@@ -0,0 +1,244 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import lombok.Value;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+class TaskScopeAdmissionTest {
+
+    final ExecutorService pool = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void cleanup() {
+        pool.shutdownNow();
+        TaskScopeAdmission.install(null);
+    }
+
+    @Test
+    void should_reject_task_scopes_above_key_limit() {
+        // GIVEN admission control of two task scopes per tenant
+        final TaskScopeAdmission admission = new TaskScopeAdmission(0).perKey(Job.class, Job::getTenant, 2);
+        TaskScopeAdmission.install(admission);
+        final List<Object> rejected = new ArrayList<>();
+        final TaskScopeListener listener = new TaskScopeListener() {
+            @Override
+            public void scopeRejected(final Object contextObject, final Object key) {
+                rejected.add(key);
+            }
+        };
+        TaskScope.addListener(listener);
+        try (TaskScopeContext<Job> first = TaskScope.create(Job.of("acme", 1));
+             TaskScopeContext<Job> second = TaskScope.create(Job.of("acme", 2))) {
+            // WHEN opening another task scope of the tenant
+            // THEN it is rejected and reported
+            assertThatThrownBy(() -> TaskScope.create(Job.of("acme", 3)))
+                    .isInstanceOf(RejectedExecutionException.class)
+                    .hasMessageContaining("acme");
+            assertThat(rejected).containsExactly("acme");
+            // AND the task scopes of other tenants are admitted
+            TaskScope.run(Job.of("other", 1), () -> assertThat(admission.getOpen("other")).isEqualTo(1));
+            assertThat(admission.getOpen("acme")).isEqualTo(2);
+            assertThat(admission.getOpen(null)).isEqualTo(2);
+        } finally {
+            TaskScope.removeListener(listener);
+        }
+        // AND the permits are given back when the task scopes are closed
+        assertThat(admission.getOpen("acme")).isZero();
+        assertThat(admission.getOpen(null)).isZero();
+    }
+
+    @Test
+    void should_reject_task_scopes_above_global_limit_without_limiting_children() throws Exception {
+        // GIVEN admission control of a single task scope
+        final TaskScopeAdmission admission = new TaskScopeAdmission(1);
+        TaskScopeAdmission.install(admission);
+        // WHEN a task scope is open
+        TaskScope.call("first", () -> {
+            // THEN its children are admitted
+            assertThat(TaskScope.callChild("child", () -> "done")).isEqualTo("done");
+            // AND other task scopes are not
+            assertThatThrownBy(() -> TaskScope.call("second", () -> "done"))
+                    .isInstanceOf(RejectedExecutionException.class)
+                    .hasMessageContaining("global limit");
+            return null;
+        });
+        // AND the permit is given back also when the task fails
+        assertThatThrownBy(() -> TaskScope.run("failing", () -> {
+            throw new IllegalStateException("failed");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(admission.getOpen(null)).isZero();
+    }
+
+    @Test
+    void should_wait_for_permit_when_configured() throws Exception {
+        // GIVEN admission control of a single task scope, waiting for the permits
+        TaskScopeAdmission.install(new TaskScopeAdmission(1).waiting(5, TimeUnit.SECONDS));
+        final CountDownLatch opened = new CountDownLatch(1);
+        final CountDownLatch close = new CountDownLatch(1);
+        final Future<?> holder = pool.submit(() -> TaskScope.run("first", () -> {
+            opened.countDown();
+            try {
+                close.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertThat(opened.await(5, TimeUnit.SECONDS)).isTrue();
+        // WHEN another task scope is opened, and the first one closed meanwhile
+        final long start = System.nanoTime();
+        new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            close.countDown();
+        }).start();
+        // THEN it is admitted once the permit is given back
+        assertThat(TaskScope.call("second", () -> "done")).isEqualTo("done");
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(40));
+        holder.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void should_lower_limit_while_task_scopes_exceed_target_latency() {
+        // GIVEN adaptive admission control
+        final TaskScopeAdmission admission = new TaskScopeAdmission(100).adaptive(1, TimeUnit.NANOSECONDS, 10);
+        TaskScopeAdmission.install(admission);
+        // WHEN the task scopes last longer than the target latency
+        for (int i = 0; i < 100; i++) {
+            TaskScope.run("slow", () -> { });
+        }
+        // THEN the limit is lowered down to the minimum
+        assertThat(admission.getGlobalLimit()).isEqualTo(10);
+    }
+
+    @Test
+    void should_evict_idle_keys() throws Exception {
+        // GIVEN admission control evicting the idle keys right away
+        final TaskScopeAdmission admission = new TaskScopeAdmission(0)
+                .perKey(String.class, s -> s, 1)
+                .idleKeyEviction(0, TimeUnit.NANOSECONDS);
+        TaskScopeAdmission.install(admission);
+        // WHEN using many keys
+        for (int i = 0; i < 1000; i++) {
+            TaskScope.run("key" + i, () -> { });
+        }
+        // THEN their counters are not kept
+        TaskScope.run("last", () -> assertThat(admission.getOpen("last")).isEqualTo(1));
+        assertThat(admission.getOpen("key1")).isZero();
+    }
+
+    @Test
+    void should_give_permit_back_when_storage_cannot_push_task_scope() throws Exception {
+        // GIVEN admission control of a single task scope per tenant, and a storage without push support
+        final TaskScopeAdmission admission = new TaskScopeAdmission(0).perKey(Job.class, Job::getTenant, 1);
+        TaskScopeAdmission.install(admission);
+        final AtomicInteger closed = new AtomicInteger();
+        final TaskScopeListener listener = new TaskScopeListener() {
+            @Override
+            public void scopeClosed(final TaskScopeContext<?> context, final long lifetimeNanos, final int beans) {
+                closed.incrementAndGet();
+            }
+        };
+        final TaskScopeStorage previous = TaskScope.getStorage();
+        TaskScope.setStorage(new CallOnlyStorage());
+        TaskScope.addListener(listener);
+        try {
+            // WHEN opening a task scope fails
+            assertThatThrownBy(() -> TaskScope.create(Job.of("acme", 1)))
+                    .isInstanceOf(UnsupportedOperationException.class);
+            assertThatThrownBy(() -> TaskScope.create(Job.of("acme", 2), 1, TimeUnit.SECONDS))
+                    .isInstanceOf(UnsupportedOperationException.class);
+            // THEN the permits are given back and the task scopes reported closed
+            assertThat(admission.getOpen("acme")).isZero();
+            assertThat(closed).hasValue(2);
+            // AND the tenant is admitted again
+            assertThat(TaskScope.call(Job.of("acme", 3), () -> "done")).isEqualTo("done");
+        } finally {
+            TaskScope.removeListener(listener);
+            TaskScope.setStorage(previous);
+        }
+    }
+
+    @Test
+    void should_give_permit_back_when_task_scope_left_open_by_task() throws Exception {
+        // GIVEN admission control of a single task scope per tenant
+        final TaskScopeAdmission admission = new TaskScopeAdmission(0).perKey(Job.class, Job::getTenant, 1);
+        TaskScopeAdmission.install(admission);
+        // WHEN tasks on a pooled thread leave task scopes of the tenant open
+        for (int i = 0; i < 3; i++) {
+            final Job job = Job.of("acme", i);
+            pool.submit(() -> TaskScope.run("ctx", () -> TaskScope.create(job))).get(5, TimeUnit.SECONDS);
+        }
+        // THEN their permits are given back once they are removed from the thread
+        assertThat(admission.getOpen("acme")).isZero();
+        assertThat(admission.getOpen(null)).isZero();
+        // AND the tenant is still admitted
+        assertThat(TaskScope.call(Job.of("acme", 3), () -> "done")).isEqualTo("done");
+    }
+
+    @Test
+    void should_set_up_admission_control_defined_as_bean() {
+        // GIVEN an application context defining the admission control
+        try (AnnotationConfigApplicationContext context =
+                     new AnnotationConfigApplicationContext(AdmissionConfiguration.class)) {
+            // WHEN opening task scopes above the limit
+            // THEN they are rejected
+            TaskScope.run("first", () -> assertThatThrownBy(() -> TaskScope.create("second"))
+                    .isInstanceOf(RejectedExecutionException.class));
+        }
+        // AND admitted once it is closed
+        TaskScope.run("first", () -> TaskScope.create("second").close());
+    }
+
+    static class CallOnlyStorage implements TaskScopeStorage {
+
+        private final ThreadLocalTaskScopeStorage delegate = new ThreadLocalTaskScopeStorage();
+
+        @Override
+        public TaskScopeContext<?> current() {
+            return delegate.current();
+        }
+
+        @Override
+        public <R> R call(final TaskScopeContext<?> context, final Callable<R> task) throws Exception {
+            return delegate.call(context, task);
+        }
+    }
+
+    @Value(staticConstructor = "of")
+    static class Job {
+        String tenant;
+        int number;
+    }
+
+    @Configuration
+    @EnableTaskScope
+    static class AdmissionConfiguration {
+
+        @Bean
+        TaskScopeAdmission taskScopeAdmission() {
+            return new TaskScopeAdmission(1);
+        }
+
+    }
+
+}
@@ -0,0 +1,149 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class TaskScopeBatchTest {
+
+    final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void should_map_each_element_within_its_own_task_scope_in_order() {
+        // GIVEN elements
+        final List<Integer> items = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+        // WHEN mapping them in parallel
+        final List<Integer> results = TaskScopeBatch.map(items, 4, pool,
+                item -> TaskScope.<Integer>getCurrentContextObject() * 2);
+        // THEN each one is the context object of its task scope, and the results are in order
+        assertThat(results).isEqualTo(items.stream().map(item -> item * 2).collect(Collectors.toList()));
+        assertThat(TaskScope.isActive()).isFalse();
+    }
+
+    @Test
+    void should_close_task_scopes_of_elements() {
+        // GIVEN elements registering destruction callbacks
+        final AtomicInteger destroyed = new AtomicInteger();
+        // WHEN processing them
+        TaskScopeBatch.forEach(Arrays.asList("a", "b", "c"), 2, pool, item -> TaskScope.getCurrentContext()
+                .registerDestructionCallback("bean", destroyed::incrementAndGet, TaskScopeDestruction.SYNC));
+        // THEN the task scopes are closed
+        assertThat(destroyed).hasValue(3);
+    }
+
+    @Test
+    void should_not_process_more_elements_at_once_than_parallelism() {
+        // GIVEN a source of elements following how many are taken ahead of being processed
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final Iterator<Integer> source = new Iterator<Integer>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < 1000;
+            }
+
+            @Override
+            public Integer next() {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                return next++;
+            }
+        };
+        // WHEN processing them
+        TaskScopeBatch.forEach(source, 3, pool, item -> inFlight.decrementAndGet());
+        // THEN at most parallelism elements are in flight
+        assertThat(maxInFlight.get()).isBetween(1, 3);
+    }
+
+    @Test
+    void should_stop_at_first_failure() {
+        // GIVEN a failing element, and the task scopes being followed
+        final AtomicInteger processed = new AtomicInteger();
+        final AtomicInteger destroyed = new AtomicInteger();
+        // WHEN processing the elements
+        assertThatThrownBy(() -> TaskScopeBatch.forEach(IntStream.range(0, 1000).iterator(), 2, pool, item -> {
+            TaskScope.getCurrentContext()
+                    .registerDestructionCallback("bean", destroyed::incrementAndGet, TaskScopeDestruction.SYNC);
+            processed.incrementAndGet();
+            if (item == 10) {
+                throw new IllegalArgumentException("failed");
+            }
+        }))
+                // THEN the failure is thrown
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("failed");
+        // AND no more elements are processed, and all task scopes are closed
+        assertThat(processed.get()).isLessThan(1000);
+        assertThat(destroyed.get()).isEqualTo(processed.get());
+    }
+
+    @Test
+    void should_process_elements_within_children_of_current_task_scope() {
+        // GIVEN a task scope
+        try (TaskScopeContext<String> ctx = TaskScope.create("parent")) {
+            // WHEN processing the elements
+            final List<Object> parents = TaskScopeBatch.map(Arrays.asList(1, 2, 3, 4), 2, pool,
+                    item -> TaskScope.getCurrentContext().getParent().getContextObject());
+            // THEN their task scopes are children of the current one
+            assertThat(parents).containsOnly("parent");
+            assertThat(TaskScope.<String>getCurrentContextObject()).isEqualTo("parent");
+        }
+    }
+
+    @Test
+    void should_use_threads_of_executor() throws Exception {
+        // GIVEN elements blocking until all of them run at once
+        final CountDownLatch started = new CountDownLatch(3);
+        final Set<String> threads = ConcurrentHashMap.newKeySet();
+        // WHEN processing them
+        TaskScopeBatch.forEach(Arrays.asList(1, 2, 3), 3, pool, item -> {
+            threads.add(Thread.currentThread().getName());
+            started.countDown();
+            try {
+                assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        // THEN they run on the calling thread and the threads of the executor
+        assertThat(threads).hasSize(3).contains(Thread.currentThread().getName());
+    }
+
+    @Test
+    void should_not_deadlock_when_nested_batch_runs_on_saturated_executor() throws Exception {
+        // GIVEN a single-thread executor
+        final ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            // WHEN processing elements with nested batches on the same executor
+            final List<Integer> sums = single.submit(() -> TaskScopeBatch.map(Arrays.asList(1, 2, 3, 4), 2, single,
+                    item -> TaskScopeBatch.map(Arrays.asList(item, item), 2, single, nested -> nested)
+                            .stream().mapToInt(Integer::intValue).sum())).get(5, TimeUnit.SECONDS);
+            // THEN they complete, the unstarted workers being skipped
+            assertThat(sums).containsExactly(2, 4, 6, 8);
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,145 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+@SpringJUnitConfig
+@ContextConfiguration(classes = {
+        TestConfiguration.class,
+        TaskScopeChildTest.Client.class,
+        TaskScopeChildTest.Worker.class
+})
+class TaskScopeChildTest {
+
+    @Autowired
+    Client client;
+
+    @Autowired
+    Worker worker;
+
+    @Test
+    void should_share_inherited_beans_with_child_scope() {
+        // GIVEN a task scope with an inherited and a regular bean
+        try (TaskScopeContext<String> ctx = TaskScope.create("parent")) {
+            final String clientId = client.getId();
+            final String workerId = worker.getId();
+            // WHEN using them in a child scope
+            try (TaskScopeContext<String> child = TaskScope.createChild("child")) {
+                // THEN the inherited bean is the one of the parent scope
+                assertThat(client.getId()).isEqualTo(clientId);
+                // ...AND the regular bean is created anew
+                assertThat(worker.getId()).isNotEqualTo(workerId);
+            }
+        }
+    }
+
+    @Test
+    void should_share_inherited_beans_through_nested_child_scopes() {
+        // GIVEN a task scope with nested child scopes
+        try (TaskScopeContext<String> ctx = TaskScope.create("parent")) {
+            final String clientId;
+            try (TaskScopeContext<String> child = TaskScope.createChild("child")) {
+                try (TaskScopeContext<String> grandchild = TaskScope.createChild("grandchild")) {
+                    // WHEN the inherited bean is first used by the innermost scope
+                    clientId = client.getId();
+                }
+                // THEN it is shared by all of them
+                assertThat(client.getId()).isEqualTo(clientId);
+            }
+            assertThat(client.getId()).isEqualTo(clientId);
+        }
+    }
+
+    @Test
+    void should_destroy_inherited_beans_along_with_parent_scope() {
+        // GIVEN a child scope which first used an inherited bean
+        final int destroyed = Client.DESTROYED.get();
+        try (TaskScopeContext<String> ctx = TaskScope.create("parent")) {
+            try (TaskScopeContext<String> child = TaskScope.createChild("child")) {
+                client.getId();
+            }
+            // THEN the bean is not destroyed with the child scope
+            assertThat(Client.DESTROYED.get()).isEqualTo(destroyed);
+        }
+        // ...AND is destroyed with the parent scope
+        assertThat(Client.DESTROYED.get()).isEqualTo(destroyed + 1);
+    }
+
+    @Test
+    void should_not_inherit_beans_in_regular_nested_scope() {
+        // GIVEN a task scope with an inherited bean
+        try (TaskScopeContext<String> ctx = TaskScope.create("parent")) {
+            final String clientId = client.getId();
+            // WHEN using it in a nested, non-child scope
+            try (TaskScopeContext<String> nested = TaskScope.create("nested")) {
+                // THEN it is created anew
+                assertThat(client.getId()).isNotEqualTo(clientId);
+            }
+        }
+    }
+
+    @Test
+    void should_run_task_within_child_scope() throws Exception {
+        // GIVEN a task scope with an inherited bean
+        try (TaskScopeContext<String> ctx = TaskScope.create("parent")) {
+            final String clientId = client.getId();
+            // WHEN calling a task within a child scope
+            final String[] result = TaskScope.callChild("child", () -> new String[]{
+                    TaskScope.getCurrentContextObject(),
+                    client.getId()
+            });
+            // THEN it sees its own context and the inherited bean
+            assertThat(result).containsExactly("child", clientId);
+        }
+    }
+
+    @Test
+    void should_not_create_child_scope_without_current_one() {
+        // GIVEN no active task scope
+        // WHEN creating a child scope
+        // THEN it fails
+        assertThatThrownBy(() -> TaskScope.createChild("child"))
+                .isInstanceOf(NoSuchElementException.class);
+    }
+
+    @Component
+    @TaskScoped(inherit = true)
+    static class Client implements DisposableBean {
+
+        static final AtomicInteger DESTROYED = new AtomicInteger();
+
+        final String id = UUID.randomUUID().toString();
+
+        String getId() {
+            return id;
+        }
+
+        @Override
+        public void destroy() {
+            DESTROYED.incrementAndGet();
+        }
+    }
+
+    @Component
+    @TaskScoped
+    static class Worker {
+
+        final String id = UUID.randomUUID().toString();
+
+        String getId() {
+            return id;
+        }
+    }
+
+}
@@ -0,0 +1,141 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+
+class TaskScopeContextPoolTest {
+
+    final TaskScopeContextPool pool = new TaskScopeContextPool(2);
+
+    @Test
+    void should_reuse_bean_storage_but_not_context() {
+        // GIVEN a closed task scope which created a bean
+        final int slot = TaskScopeSlots.slotOf("bean");
+        final TaskScopeContext<String> first = TaskScope.create("first");
+        first.getBean(slot, "bean", () -> "first bean", pool);
+        first.close();
+        // WHEN creating another one on the same thread
+        try (TaskScopeContext<String> second = TaskScope.create("second")) {
+            // THEN it is a new context, with a new ID
+            assertThat(second).isNotSameAs(first);
+            assertThat(second.getId()).isNotEqualTo(first.getId());
+        }
+        // AND the recycled storage is handed out empty
+        final SlotTable<Object> table = pool.acquire();
+        table.put(slot, "bean", "stale bean");
+        pool.recycle(table);
+        final SlotTable<Object> reused = pool.acquire();
+        assertThat(reused).isSameAs(table);
+        assertThat(reused.get(slot, "bean")).isNull();
+    }
+
+    @Test
+    void should_fail_fast_when_using_context_after_close() {
+        // GIVEN a closed task scope, and another one open on the same thread
+        final int slot = TaskScopeSlots.slotOf("bean");
+        final TaskScopeContext<String> stale = TaskScope.create("first");
+        stale.close();
+        try (TaskScopeContext<String> live = TaskScope.create("second")) {
+            // WHEN using the stale reference
+            // THEN it fails
+            assertThatThrownBy(stale::close)
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessage("Task scope context has already been closed");
+            assertThatThrownBy(stale::getContextObject)
+                    .isInstanceOf(IllegalStateException.class);
+            assertThatThrownBy(() -> stale.getBean(slot, "bean", () -> "bean", pool))
+                    .isInstanceOf(IllegalStateException.class);
+            // ...AND the other task scope is not affected
+            assertThat(TaskScope.<String>getCurrentContextObject()).isEqualTo("second");
+            assertThat(live.findBean(slot, "bean")).isNull();
+        }
+        assertThat(TaskScope.isActive()).isFalse();
+    }
+
+    @Test
+    void should_not_see_beans_of_previous_task_scope() {
+        // GIVEN a closed task scope which created a bean
+        final int slot = TaskScopeSlots.slotOf("bean");
+        try (TaskScopeContext<String> ctx = TaskScope.create("first")) {
+            ctx.getBean(slot, "bean", () -> "first bean", pool);
+        }
+        // WHEN the context is reused
+        try (TaskScopeContext<String> ctx = TaskScope.create("second")) {
+            // THEN the bean is created anew
+            assertThat(ctx.findBean(slot, "bean")).isNull();
+            assertThat(ctx.getBean(slot, "bean", () -> "second bean", pool)).isEqualTo("second bean");
+        }
+    }
+
+    @Test
+    void should_fail_task_submitted_to_bound_executor_after_context_is_closed() {
+        // GIVEN an executor bound to a task scope which has been closed
+        final Executor executor;
+        try (TaskScopeContext<String> ctx = TaskScope.create("first")) {
+            executor = TaskScopeExecutors.bind(Runnable::run);
+        }
+        // WHEN submitting a task while another task scope is open
+        try (TaskScopeContext<String> ctx = TaskScope.create("second")) {
+            // THEN it fails rather than running within any task scope
+            assertThatThrownBy(() -> executor.execute(() -> { }))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessage("Task scope context has already been closed");
+            // ...AND the other task scope is kept alive
+            assertThat(ctx.tryRetain()).isTrue();
+            ctx.release();
+        }
+    }
+
+    @Test
+    void should_fail_subtask_started_after_context_is_closed() {
+        // GIVEN a subtask of a task scope which has been closed
+        final Callable<Object> subtask;
+        try (TaskScopeContext<String> ctx = TaskScope.create("first")) {
+            subtask = TaskScopeExecutors.wrapSubtask(TaskScope::getCurrentContextObject);
+        }
+        // WHEN starting it while another task scope is open
+        try (TaskScopeContext<String> ctx = TaskScope.create("second")) {
+            // THEN it fails
+            assertThatThrownBy(subtask::call)
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessage("Task scope context has already been closed");
+        }
+    }
+
+    @Test
+    void should_set_pool_size_of_each_application_context_with_enable_task_scope() {
+        // GIVEN an application context enabling the pooling of contexts
+        try (AnnotationConfigApplicationContext context =
+                     new AnnotationConfigApplicationContext(PoolConfiguration.class);
+             // AND another one started afterwards, not enabling it
+             AnnotationConfigApplicationContext other =
+                     new AnnotationConfigApplicationContext(PlainConfiguration.class)) {
+            // WHEN checking their pools
+            // THEN each one has its own configuration
+            assertThat(scopeOf(context).getContextPool().getCapacity()).isEqualTo(16);
+            assertThat(scopeOf(other).getContextPool()).isNull();
+        }
+    }
+
+    private static TaskScope scopeOf(final AnnotationConfigApplicationContext context) {
+        return (TaskScope) context.getBeanFactory().getRegisteredScope(TaskScope.TASK_SCOPE_NAME);
+    }
+
+    @Configuration
+    @EnableTaskScope(contextPoolSize = 16)
+    static class PoolConfiguration {
+    }
+
+    @Configuration
+    @EnableTaskScope
+    static class PlainConfiguration {
+    }
+
+}
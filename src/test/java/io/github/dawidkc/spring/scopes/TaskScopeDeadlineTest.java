@@ -0,0 +1,151 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+
+class TaskScopeDeadlineTest {
+
+    final ExecutorService pool = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void should_expose_remaining_time_of_task_scope() throws Exception {
+        // GIVEN a task scope with a timeout
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx", 50, TimeUnit.MILLISECONDS)) {
+            // THEN the remaining time is within the timeout
+            assertThat(ctx.remaining(TimeUnit.MILLISECONDS)).isBetween(0L, 50L);
+            assertThat(ctx.isExpired()).isFalse();
+            // WHEN the timeout passes
+            Thread.sleep(100);
+            // THEN the task scope is expired
+            assertThat(ctx.remaining(TimeUnit.MILLISECONDS)).isZero();
+            assertThat(ctx.isExpired()).isTrue();
+            assertThatThrownBy(TaskScope::checkCancelled)
+                    .isInstanceOf(CancellationException.class)
+                    .hasMessageContaining("deadline");
+        }
+    }
+
+    @Test
+    void should_have_no_deadline_without_timeout() {
+        // GIVEN a task scope without a timeout
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            // THEN it has no deadline
+            assertThat(ctx.remaining(TimeUnit.NANOSECONDS)).isEqualTo(Long.MAX_VALUE);
+            assertThat(ctx.isCancelled()).isFalse();
+        }
+        // AND neither outside of any task scope
+        assertThat(TaskScope.remaining(TimeUnit.NANOSECONDS)).isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    void should_inherit_deadline_in_child_task_scopes() {
+        // GIVEN a task scope with a timeout
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx", 1, TimeUnit.MINUTES)) {
+            // WHEN creating a child
+            try (TaskScopeContext<String> child = TaskScope.createChild("child")) {
+                // THEN it has the deadline of the parent
+                assertThat(child.remaining(TimeUnit.SECONDS)).isBetween(1L, 60L);
+            }
+        }
+    }
+
+    @Test
+    void should_cancel_children_and_propagated_tasks() throws Exception {
+        // GIVEN a task scope
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            // WHEN it is cancelled
+            ctx.cancel();
+            // THEN its children are cancelled
+            assertThat(TaskScope.callChild("child", () -> TaskScope.getCurrentContext().isCancelled())).isTrue();
+            // AND the tasks it has been propagated to
+            assertThat(pool.submit(TaskScopeExecutors.wrap(() -> {
+                TaskScope.checkCancelled();
+                return "done";
+            }))).failsWithin(5, TimeUnit.SECONDS).withThrowableOfType(Exception.class)
+                    .withCauseInstanceOf(CancellationException.class);
+        }
+    }
+
+    @Test
+    void should_interrupt_thread_exceeding_deadline_when_enabled() throws Exception {
+        // GIVEN an application context interrupting the task scopes exceeding their deadline
+        try (AnnotationConfigApplicationContext context =
+                     new AnnotationConfigApplicationContext(InterruptConfiguration.class)) {
+            // WHEN a task exceeds its deadline
+            // THEN it is interrupted
+            assertThatThrownBy(() -> TaskScope.call("ctx", 50, TimeUnit.MILLISECONDS, () -> {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+                return null;
+            })).isInstanceOf(InterruptedException.class);
+            // AND the thread is not interrupted afterwards
+            assertThat(Thread.currentThread().isInterrupted()).isFalse();
+            // AND the tasks finishing before the deadline are not interrupted
+            assertThat(TaskScope.call("ctx", 1, TimeUnit.MINUTES, () -> "done")).isEqualTo("done");
+            assertThat(Thread.currentThread().isInterrupted()).isFalse();
+        }
+    }
+
+    @Test
+    void should_not_interrupt_next_task_after_task_scope_with_deadline_leaked() throws Exception {
+        // GIVEN an application context interrupting the task scopes exceeding their deadline
+        try (AnnotationConfigApplicationContext context =
+                     new AnnotationConfigApplicationContext(InterruptConfiguration.class)) {
+            // WHEN a task on a pooled thread leaves a task scope with a deadline open
+            pool.submit(() -> TaskScope.run("ctx", () -> TaskScope.create("leaked", 50, TimeUnit.MILLISECONDS)))
+                    .get(5, TimeUnit.SECONDS);
+            // THEN the next task on the same thread is not interrupted at that deadline
+            final boolean interrupted = pool.submit(() -> {
+                try {
+                    Thread.sleep(200);
+                    return Thread.currentThread().isInterrupted();
+                } catch (InterruptedException e) {
+                    return true;
+                }
+            }).get(5, TimeUnit.SECONDS);
+            assertThat(interrupted).isFalse();
+        }
+    }
+
+    @Test
+    void should_keep_interrupting_when_another_application_context_disables_it() {
+        // GIVEN an application context interrupting the task scopes exceeding their deadline
+        try (AnnotationConfigApplicationContext context =
+                     new AnnotationConfigApplicationContext(InterruptConfiguration.class);
+             // AND another one not interrupting them
+             AnnotationConfigApplicationContext other =
+                     new AnnotationConfigApplicationContext(PlainConfiguration.class)) {
+            // WHEN a task exceeds its deadline
+            // THEN it is still interrupted
+            assertThatThrownBy(() -> TaskScope.call("ctx", 50, TimeUnit.MILLISECONDS, () -> {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+                return null;
+            })).isInstanceOf(InterruptedException.class);
+        }
+    }
+
+    @Configuration
+    @EnableTaskScope(interruptOnDeadline = true)
+    static class InterruptConfiguration {
+    }
+
+    @Configuration
+    @EnableTaskScope
+    static class PlainConfiguration {
+    }
+
+}
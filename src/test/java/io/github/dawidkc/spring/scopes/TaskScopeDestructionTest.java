@@ -0,0 +1,239 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.stereotype.Component;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+@SpringJUnitConfig
+@ContextConfiguration(classes = {
+        TestConfiguration.class,
+        TaskScopeDestructionTest.DestructionLog.class,
+        TaskScopeDestructionTest.Inner.class,
+        TaskScopeDestructionTest.Outer.class
+})
+class TaskScopeDestructionTest {
+
+    @Autowired
+    DestructionLog destructionLog;
+
+    @Autowired
+    Outer outer;
+
+    @Test
+    void should_destroy_task_scoped_beans_in_reverse_creation_order_when_context_is_closed() {
+        // GIVEN a task scope with a bean depending on another one
+        destructionLog.clear();
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            outer.touch();
+            // THEN nothing is destroyed while the scope is open
+            assertThat(destructionLog.get()).isEmpty();
+        }
+        // THEN both beans are destroyed on close, the dependent one first
+        assertThat(destructionLog.get()).containsExactly("outer", "inner");
+    }
+
+    @Test
+    void should_not_destroy_task_scoped_beans_of_outer_context_when_nested_one_is_closed() {
+        // GIVEN 2 nested task scopes, both using the beans
+        destructionLog.clear();
+        try (TaskScopeContext<String> ctx1 = TaskScope.create("ctx1")) {
+            outer.touch();
+            try (TaskScopeContext<String> ctx2 = TaskScope.create("ctx2")) {
+                outer.touch();
+            }
+            // THEN closing the nested scope destroys its beans only
+            assertThat(destructionLog.get()).containsExactly("outer", "inner");
+        }
+        assertThat(destructionLog.get()).containsExactly("outer", "inner", "outer", "inner");
+    }
+
+    @Test
+    void should_run_all_destruction_callbacks_and_collect_their_failures() {
+        // GIVEN a task scope with 3 callbacks, 2 of them failing
+        final List<String> run = new ArrayList<>();
+        final TaskScopeContext<String> ctx = TaskScope.create("ctx");
+        ctx.registerDestructionCallback("first", () -> {
+            run.add("first");
+            throw new IllegalStateException("first");
+        }, TaskScopeDestruction.SYNC);
+        ctx.registerDestructionCallback("second", () -> run.add("second"), TaskScopeDestruction.SYNC);
+        ctx.registerDestructionCallback("third", () -> {
+            run.add("third");
+            throw new IllegalArgumentException("third");
+        }, TaskScopeDestruction.SYNC);
+        // WHEN closing it
+        // THEN the first failure is thrown with the other one suppressed
+        assertThatThrownBy(ctx::close)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("third")
+                .satisfies(e -> assertThat(e.getSuppressed())
+                        .singleElement()
+                        .isInstanceOf(IllegalStateException.class));
+        // ...AND all callbacks have been run, in reverse order
+        assertThat(run).containsExactly("third", "second", "first");
+        // ...AND the context is closed anyway
+        assertThatThrownBy(TaskScope::getCurrentContext)
+                .hasMessageContaining("No task context available");
+    }
+
+    @Test
+    void should_not_run_callback_of_removed_bean_again_on_close() {
+        // GIVEN a task scope with a callback which has been removed
+        final List<String> run = new ArrayList<>();
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            ctx.registerDestructionCallback("bean", () -> run.add("bean"), TaskScopeDestruction.SYNC);
+            ctx.removeDestructionCallback("bean").run();
+        }
+        // THEN it is run once
+        assertThat(run).containsExactly("bean");
+    }
+
+    @Test
+    void should_run_callbacks_by_background_thread_in_async_mode() throws InterruptedException {
+        // GIVEN an asynchronous destruction
+        final TaskScopeDestruction destruction = TaskScopeDestruction.async(1, 1);
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch done = new CountDownLatch(2);
+        try {
+            // WHEN running a batch of callbacks
+            destruction.run(Arrays.asList(
+                    () -> threads.add(Thread.currentThread()),
+                    done::countDown,
+                    done::countDown));
+            // THEN they are all run in the background
+            assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(threads).singleElement().isNotSameAs(Thread.currentThread());
+        } finally {
+            destruction.destroy();
+        }
+    }
+
+    @Test
+    void should_run_callbacks_by_closing_thread_when_destruction_queue_is_full() throws InterruptedException {
+        // GIVEN an asynchronous destruction with its only thread blocked and queue full
+        final TaskScopeDestruction destruction = TaskScopeDestruction.async(1, 1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+        try {
+            destruction.run(Collections.singletonList(() -> {
+                started.countDown();
+                awaitQuietly(release);
+            }));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            destruction.run(Collections.singletonList(() -> threads.add(Thread.currentThread())));
+            // WHEN running another batch
+            destruction.run(Collections.singletonList(() -> threads.add(Thread.currentThread())));
+            // THEN it is run by the calling thread
+            assertThat(threads).containsExactly(Thread.currentThread());
+        } finally {
+            release.countDown();
+            destruction.destroy();
+        }
+        // ...AND the queued batch is still run on shutdown
+        assertThat(threads).hasSize(2);
+    }
+
+    @Test
+    void should_configure_async_destruction_with_enable_task_scope() throws InterruptedException {
+        // GIVEN an application context with asynchronous destruction
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch destroyed = new CountDownLatch(1);
+        try (AnnotationConfigApplicationContext context =
+                     new AnnotationConfigApplicationContext(AsyncConfiguration.class)) {
+            final TaskScope scope = (TaskScope) context.getBeanFactory().getRegisteredScope(TaskScope.TASK_SCOPE_NAME);
+            // WHEN closing a task scope with a destruction callback
+            try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+                scope.registerDestructionCallback("bean", () -> {
+                    threads.add(Thread.currentThread());
+                    destroyed.countDown();
+                });
+            }
+            // THEN it is run in the background
+            assertThat(destroyed.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(threads).singleElement().isNotSameAs(Thread.currentThread());
+        }
+    }
+
+    private static void awaitQuietly(final CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Configuration
+    @EnableTaskScope(destructionMode = DestructionMode.ASYNC, destructionQueueCapacity = 16)
+    @Import(DestructionLog.class)
+    static class AsyncConfiguration {
+    }
+
+    @Component
+    static class DestructionLog {
+        private final List<String> destroyed = Collections.synchronizedList(new ArrayList<>());
+
+        void add(final String name) {
+            destroyed.add(name);
+        }
+
+        List<String> get() {
+            return new ArrayList<>(destroyed);
+        }
+
+        void clear() {
+            destroyed.clear();
+        }
+    }
+
+    @Component
+    @TaskScoped
+    static class Inner implements DisposableBean {
+        @Autowired
+        DestructionLog destructionLog;
+
+        void touch() {
+        }
+
+        @Override
+        public void destroy() {
+            destructionLog.add("inner");
+        }
+    }
+
+    @Component
+    @TaskScoped
+    static class Outer implements DisposableBean {
+        final DestructionLog destructionLog;
+
+        Outer(final DestructionLog destructionLog, final Inner inner) {
+            this.destructionLog = destructionLog;
+            inner.touch();
+        }
+
+        void touch() {
+        }
+
+        @Override
+        public void destroy() {
+            destructionLog.add("outer");
+        }
+    }
+
+}
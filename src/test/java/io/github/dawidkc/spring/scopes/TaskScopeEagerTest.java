@@ -0,0 +1,283 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Component;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+@SpringJUnitConfig
+// closed after the tests, as its eager beans would otherwise be created in the task scopes of the other test classes
+@DirtiesContext
+@ContextConfiguration(classes = {
+        TaskScopeEagerTest.EagerConfiguration.class,
+        TaskScopeEagerTest.Catalog.class,
+        TaskScopeEagerTest.Inventory.class,
+        TaskScopeEagerTest.Pricing.class,
+        TaskScopeEagerTest.Worker.class
+})
+class TaskScopeEagerTest {
+
+    /**
+     * Opened by each of the two independent eager beans, which wait for each other while being created.
+     */
+    static volatile CountDownLatch bothCreating = new CountDownLatch(2);
+
+    @Autowired
+    Catalog catalog;
+
+    @Autowired
+    Inventory inventory;
+
+    @Autowired
+    Pricing pricing;
+
+    @Autowired
+    Worker worker;
+
+    @BeforeEach
+    void reset() {
+        bothCreating = new CountDownLatch(2);
+    }
+
+    @Test
+    void should_create_eager_beans_concurrently_when_task_scope_is_opened() {
+        // GIVEN two eager beans which can only be created concurrently
+        // WHEN opening a task scope
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            // THEN both are created
+            assertThat(catalog.isCreatedConcurrently()).isTrue();
+            assertThat(inventory.isCreatedConcurrently()).isTrue();
+        }
+    }
+
+    @Test
+    void should_wait_for_creation_in_progress_on_first_access() {
+        // GIVEN the counters of created beans
+        final int catalogs = Catalog.CREATED.get();
+        final int workers = Worker.CREATED.get();
+        // WHEN accessing the eager and the regular beans of a new task scope
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            catalog.getId();
+            worker.getId();
+            // THEN the eager bean is created once
+            assertThat(Catalog.CREATED.get()).isEqualTo(catalogs + 1);
+            assertThat(Worker.CREATED.get()).isEqualTo(workers + 1);
+        }
+    }
+
+    @Test
+    void should_create_eager_beans_in_dependency_order() {
+        // GIVEN an eager bean depending on another one
+        // WHEN opening a task scope
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            // THEN it uses the very dependency of the task scope
+            assertThat(pricing.getCatalogId()).isEqualTo(catalog.getId());
+        }
+    }
+
+    @Test
+    void should_keep_creating_eager_beans_when_another_application_context_has_none() throws InterruptedException {
+        // GIVEN another application context enabling the task scope, without eager beans
+        final int catalogs = Catalog.CREATED.get();
+        try (AnnotationConfigApplicationContext other = new AnnotationConfigApplicationContext(
+                PlainConfiguration.class)) {
+            // WHEN opening a task scope
+            try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+                // THEN the eager bean is created without being accessed
+                assertThat(awaitCount(Catalog.CREATED, catalogs + 1)).isTrue();
+            }
+        }
+    }
+
+    @Test
+    void should_create_eager_beans_of_all_application_contexts() throws InterruptedException {
+        // GIVEN another application context with an eager bean of its own
+        final int catalogs = Catalog.CREATED.get();
+        final int reports = Report.CREATED.get();
+        try (AnnotationConfigApplicationContext other = new AnnotationConfigApplicationContext(
+                ReportConfiguration.class)) {
+            // WHEN opening a task scope
+            try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+                // THEN the eager beans of both application contexts are created without being accessed
+                assertThat(awaitCount(Catalog.CREATED, catalogs + 1)).isTrue();
+                assertThat(awaitCount(Report.CREATED, reports + 1)).isTrue();
+            }
+        }
+    }
+
+    @Test
+    void should_skip_eager_creation_starting_after_task_scope_is_closed() {
+        // GIVEN an application context whose single eager thread is busy creating a bean
+        final int reports = Report.CREATED.get();
+        final AnnotationConfigApplicationContext other =
+                new AnnotationConfigApplicationContext(QueuedConfiguration.class);
+        Gate.open = new CountDownLatch(1);
+        try {
+            // WHEN closing a task scope before the creation of its other eager bean starts
+            try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+                assertThat(TaskScope.isActive()).isTrue();
+            }
+            Gate.open.countDown();
+        } finally {
+            other.close();
+        }
+        // THEN the other eager bean is not created
+        assertThat(Report.CREATED).hasValue(reports);
+    }
+
+    private static boolean awaitCount(final AtomicInteger counter, final int expected) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (counter.get() < expected) {
+            if (System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    @Configuration
+    @EnableTaskScope(eagerThreads = 2)
+    static class EagerConfiguration {
+    }
+
+    @Configuration
+    @EnableTaskScope
+    static class PlainConfiguration {
+    }
+
+    @Configuration
+    @EnableTaskScope(eagerThreads = 1)
+    static class ReportConfiguration {
+
+        @Bean
+        @TaskScoped(eager = true)
+        Report report() {
+            return new Report();
+        }
+    }
+
+    @Configuration
+    @EnableTaskScope(eagerThreads = 1)
+    static class QueuedConfiguration {
+
+        @Bean
+        @TaskScoped(eager = true)
+        Gate gate() throws InterruptedException {
+            return new Gate();
+        }
+
+        @Bean
+        @TaskScoped(eager = true)
+        Report queuedReport() {
+            return new Report();
+        }
+    }
+
+    static class Gate {
+
+        static volatile CountDownLatch open = new CountDownLatch(0);
+
+        Gate() throws InterruptedException {
+            open.await(5, TimeUnit.SECONDS);
+        }
+    }
+
+    static class Report {
+
+        static final AtomicInteger CREATED = new AtomicInteger();
+
+        Report() {
+            CREATED.incrementAndGet();
+        }
+    }
+
+    abstract static class SlowBean {
+
+        final String id = UUID.randomUUID().toString();
+
+        final boolean createdConcurrently;
+
+        SlowBean() {
+            bothCreating.countDown();
+            boolean concurrent;
+            try {
+                concurrent = bothCreating.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                concurrent = false;
+            }
+            this.createdConcurrently = concurrent;
+        }
+
+        String getId() {
+            return id;
+        }
+
+        boolean isCreatedConcurrently() {
+            return createdConcurrently;
+        }
+    }
+
+    @Component
+    @TaskScoped(eager = true)
+    static class Catalog extends SlowBean {
+
+        static final AtomicInteger CREATED = new AtomicInteger();
+
+        Catalog() {
+            CREATED.incrementAndGet();
+        }
+    }
+
+    @Component
+    @TaskScoped(eager = true)
+    static class Inventory extends SlowBean {
+    }
+
+    @Component
+    @TaskScoped(eager = true)
+    static class Pricing {
+
+        final String catalogId;
+
+        Pricing(final Catalog catalog) {
+            this.catalogId = catalog.getId();
+        }
+
+        String getCatalogId() {
+            return catalogId;
+        }
+    }
+
+    @Component
+    @TaskScoped
+    static class Worker {
+
+        static final AtomicInteger CREATED = new AtomicInteger();
+
+        final String id = UUID.randomUUID().toString();
+
+        Worker() {
+            CREATED.incrementAndGet();
+        }
+
+        String getId() {
+            return id;
+        }
+    }
+
+}
@@ -0,0 +1,105 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+class TaskScopeFlightRecorderTest {
+
+    static final String OPENED = "io.github.dawidkc.spring.scopes.TaskScopeOpened";
+
+    static final String CLOSED = "io.github.dawidkc.spring.scopes.TaskScopeClosed";
+
+    static final String BEAN_CREATED = "io.github.dawidkc.spring.scopes.TaskScopedBeanCreated";
+
+    static final String DESTRUCTION = "io.github.dawidkc.spring.scopes.TaskScopeDestruction";
+
+    @Test
+    void should_record_task_scope_events() throws Exception {
+        // GIVEN a recording of the task scope events
+        final int slot = TaskScopeSlots.slotOf("bean");
+        final List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(OPENED);
+            recording.enable(CLOSED);
+            recording.enable(BEAN_CREATED);
+            recording.enable(DESTRUCTION);
+            recording.start();
+            // WHEN using nested task scopes
+            try (TaskScopeContext<String> ctx = TaskScope.create("outer")) {
+                TaskScope.run(42, () -> TaskScope.getCurrentContext().getBean(slot, "bean", () -> "value"));
+                ctx.registerDestructionCallback("bean", () -> { }, TaskScopeDestruction.SYNC);
+            }
+            recording.stop();
+            events = read(recording);
+        }
+        // THEN they are recorded
+        assertThat(names(events, OPENED)).containsExactly("java.lang.String 1", "java.lang.Integer 2");
+        assertThat(names(events, CLOSED)).containsExactly("java.lang.Integer 2", "java.lang.String 1");
+        assertThat(events).filteredOn(event -> event.getEventType().getName().equals(BEAN_CREATED))
+                .extracting(event -> event.getString("beanName"))
+                .containsExactly("bean");
+        assertThat(events).filteredOn(event -> event.getEventType().getName().equals(DESTRUCTION)).hasSize(1);
+    }
+
+    @Test
+    void should_skip_events_below_minimum_duration() throws Exception {
+        // GIVEN a recording of the closed task scopes lasting at least a second
+        final List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(CLOSED).with("minimumDuration", "1 s");
+            recording.start();
+            // WHEN using a short task scope
+            TaskScope.run("ctx", () -> { });
+            recording.stop();
+            events = read(recording);
+        }
+        // THEN it is not recorded
+        assertThat(names(events, CLOSED)).isEmpty();
+    }
+
+    @Test
+    void should_not_measure_task_scopes_when_not_recording() {
+        // GIVEN no recording running
+        // WHEN opening a task scope
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            // THEN it is not measured
+            assertThat(ctx.getDepth()).isZero();
+        }
+    }
+
+    @Test
+    void should_parse_minimum_durations() {
+        assertThat(TaskScopeFlightRecorder.MinimumDuration.parse("20 ms")).isEqualTo(20_000_000L);
+        assertThat(TaskScopeFlightRecorder.MinimumDuration.parse("0 ns")).isZero();
+        assertThat(TaskScopeFlightRecorder.MinimumDuration.parse("infinity")).isEqualTo(Long.MAX_VALUE);
+        assertThat(TaskScopeFlightRecorder.MinimumDuration.parse("fast")).isEqualTo(-1);
+    }
+
+    private static List<RecordedEvent> read(final Recording recording) throws Exception {
+        final Path file = Files.createTempFile("task-scope", ".jfr");
+        try {
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static List<String> names(final List<RecordedEvent> events, final String type) {
+        return events.stream()
+                .filter(event -> event.getEventType().getName().equals(type))
+                .sorted((first, second) -> first.getStartTime().compareTo(second.getStartTime()))
+                .map(event -> event.getString("contextClass") + " " + event.getInt("depth"))
+                .collect(Collectors.toList());
+    }
+
+}
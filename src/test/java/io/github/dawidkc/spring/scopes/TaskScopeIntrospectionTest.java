@@ -0,0 +1,157 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+
+class TaskScopeIntrospectionTest {
+
+    final TaskScopeIntrospection introspection = new TaskScopeIntrospection();
+
+    @AfterEach
+    void shutdown() {
+        introspection.destroy();
+    }
+
+    @Test
+    void should_not_follow_task_scopes_unless_detailed() {
+        // GIVEN the introspection not in the detailed mode
+        // WHEN opening a task scope
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            // THEN it is not followed
+            assertThat(introspection.getLiveScopes()).isZero();
+            assertThat(introspection.getOldestScopes()).isEmpty();
+            assertThat(ctx.getDepth()).isZero();
+        }
+    }
+
+    @Test
+    void should_follow_task_scopes_in_detailed_mode() throws Exception {
+        // GIVEN the introspection in the detailed mode
+        introspection.setDetailed(true);
+        final int slot = TaskScopeSlots.slotOf("bean");
+        // WHEN opening nested task scopes and creating a bean
+        try (TaskScopeContext<String> outer = TaskScope.create("outer")) {
+            Thread.sleep(10);
+            TaskScope.run(42, () -> {
+                TaskScope.getCurrentContext().getBean(slot, "bean", () -> "value");
+                // THEN they are live
+                assertThat(introspection.getLiveScopes()).isEqualTo(2);
+                // AND the oldest one comes first
+                final List<TaskScopeMXBean.OpenScope> oldest = introspection.getOldestScopes();
+                assertThat(oldest).extracting(TaskScopeMXBean.OpenScope::getContextClass)
+                        .containsExactly(String.class.getName(), Integer.class.getName());
+                assertThat(oldest.get(0).getId()).isEqualTo(outer.getId());
+                assertThat(oldest.get(0).getThread()).isEqualTo(Thread.currentThread().getName());
+                assertThat(oldest.get(1).getBeansCreated()).isEqualTo(1);
+            });
+            outer.registerDestructionCallback("bean", () -> { }, TaskScopeDestruction.SYNC);
+        }
+        // AND counted once closed
+        assertThat(introspection.getLiveScopes()).isZero();
+        assertThat(introspection.getOldestScopes()).isEmpty();
+        assertThat(introspection.getDepthHistogram()).startsWith(1L, 1L);
+        assertThat(introspection.getBeansCreated()).isEqualTo(1);
+        assertThat(introspection.getBeansDestroyed()).isEqualTo(1);
+    }
+
+    @Test
+    void should_only_record_sampled_task_scopes() {
+        // GIVEN the introspection recording none of the task scopes in practice
+        introspection.setDetailed(true);
+        introspection.setSampling(Integer.MAX_VALUE);
+        // WHEN opening a task scope
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            // THEN it is counted, but not recorded
+            assertThat(introspection.getLiveScopes()).isEqualTo(1);
+            assertThat(introspection.getOldestScopes()).isEmpty();
+        }
+    }
+
+    @Test
+    void should_only_count_closing_of_task_scopes_opened_in_detailed_mode() throws Exception {
+        // GIVEN a task scope opened in the detailed mode
+        introspection.setDetailed(true);
+        final TaskScopeContext<String> before = TaskScope.create("before");
+        // WHEN switching the detailed mode off and on again
+        introspection.setDetailed(false);
+        introspection.setDetailed(true);
+        // AND closing the task scope opened before while another thread has one open
+        final CountDownLatch opened = new CountDownLatch(1);
+        final CountDownLatch closing = new CountDownLatch(1);
+        final Thread thread = new Thread(() -> {
+            try (TaskScopeContext<String> after = TaskScope.create("after")) {
+                opened.countDown();
+                closing.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+        opened.await();
+        before.close();
+        // THEN only the task scope opened afterwards is live
+        assertThat(introspection.getLiveScopes()).isEqualTo(1);
+        closing.countDown();
+        thread.join();
+        assertThat(introspection.getLiveScopes()).isZero();
+    }
+
+    @Test
+    void should_register_mbean_with_enable_task_scope() throws Exception {
+        // GIVEN an application context with the task scope
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name;
+        try (AnnotationConfigApplicationContext context =
+                     new AnnotationConfigApplicationContext(MBeanConfiguration.class)) {
+            name = context.getBean(TaskScopeIntrospection.class).getObjectName();
+            // WHEN switching the detailed mode on through JMX
+            final TaskScopeMXBean mbean = JMX.newMXBeanProxy(server, name, TaskScopeMXBean.class);
+            mbean.setDetailed(true);
+            // THEN the task scopes are followed
+            TaskScope.run("ctx", () -> assertThat(mbean.getLiveScopes()).isEqualTo(1));
+            TaskScope.run("ctx", () -> assertThat(mbean.getOldestScopes()).hasSize(1));
+        }
+        // AND the MBean is unregistered along with the application context
+        assertThat(server.isRegistered(name)).isFalse();
+    }
+
+    @Test
+    void should_register_mbean_of_each_application_context() throws Exception {
+        // GIVEN 2 application contexts with the task scope
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try (AnnotationConfigApplicationContext first =
+                     new AnnotationConfigApplicationContext(MBeanConfiguration.class)) {
+            final ObjectName firstName = first.getBean(TaskScopeIntrospection.class).getObjectName();
+            final ObjectName secondName;
+            try (AnnotationConfigApplicationContext second =
+                         new AnnotationConfigApplicationContext(MBeanConfiguration.class)) {
+                secondName = second.getBean(TaskScopeIntrospection.class).getObjectName();
+                // THEN each one has an MBean of its own
+                assertThat(secondName).isNotEqualTo(firstName);
+                assertThat(server.isRegistered(firstName)).isTrue();
+                assertThat(server.isRegistered(secondName)).isTrue();
+            }
+            // AND closing one leaves the MBean of the other
+            assertThat(server.isRegistered(secondName)).isFalse();
+            assertThat(server.isRegistered(firstName)).isTrue();
+        }
+    }
+
+    @Configuration
+    @EnableTaskScope
+    static class MBeanConfiguration {
+    }
+
+}
@@ -0,0 +1,154 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+
+class TaskScopeLeakDetectorTest {
+
+    final ExecutorService pool = Executors.newSingleThreadExecutor();
+
+    TaskScopeLeakDetector detector;
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+        if (detector != null) {
+            detector.destroy();
+        }
+    }
+
+    @Test
+    void should_remove_task_scope_left_open_by_task_from_pooled_thread() throws Exception {
+        // GIVEN no leak detection
+        // WHEN a propagated task leaves a task scope open
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            pool.submit(TaskScopeExecutors.wrap(() -> {
+                TaskScope.create("leaked");
+            })).get(5, TimeUnit.SECONDS);
+        }
+        // THEN the next task on the same thread does not run within any task scope
+        assertThat(pool.submit(TaskScope::isActive).get(5, TimeUnit.SECONDS)).isFalse();
+    }
+
+    @Test
+    void should_close_task_scope_left_open_by_task_when_unwinding() {
+        // GIVEN leak detection closing the leaked task scopes
+        install(new TaskScopeLeakDetector(LeakDetection.UNWIND, 0, 1));
+        final AtomicInteger destroyed = new AtomicInteger();
+        // WHEN a task leaves a task scope open
+        TaskScope.run("ctx", () -> {
+            final TaskScopeContext<String> leaked = TaskScope.create("leaked");
+            leaked.registerDestructionCallback("bean", destroyed::incrementAndGet, TaskScopeDestruction.SYNC);
+        });
+        // THEN it is reported and closed
+        assertThat(detector.getLeakCount()).isEqualTo(1);
+        assertThat(destroyed).hasValue(1);
+        assertThat(TaskScope.isActive()).isFalse();
+    }
+
+    @Test
+    void should_only_report_task_scope_left_open_by_task() {
+        // GIVEN leak detection reporting the leaked task scopes
+        install(new TaskScopeLeakDetector(LeakDetection.REPORT, 0, 1));
+        final AtomicInteger destroyed = new AtomicInteger();
+        // WHEN a task leaves a task scope open
+        TaskScope.run("ctx", () -> {
+            final TaskScopeContext<String> leaked = TaskScope.create("leaked");
+            leaked.registerDestructionCallback("bean", destroyed::incrementAndGet, TaskScopeDestruction.SYNC);
+        });
+        // THEN it is reported and removed from the thread, without being closed
+        assertThat(detector.getLeakCount()).isEqualTo(1);
+        assertThat(destroyed).hasValue(0);
+        assertThat(TaskScope.isActive()).isFalse();
+    }
+
+    @Test
+    void should_report_task_scope_open_longer_than_threshold() throws Exception {
+        // GIVEN leak detection with a threshold
+        install(new TaskScopeLeakDetector(LeakDetection.REPORT, 20, 1));
+        // WHEN a task scope is open longer than the threshold
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (detector.getLeakCount() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            // THEN it is reported once
+            assertThat(detector.getLeakCount()).isEqualTo(1);
+            Thread.sleep(100);
+            assertThat(detector.getLeakCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void should_record_stack_trace_of_sampled_task_scopes() {
+        // GIVEN leak detection recording the stack trace of every task scope
+        install(new TaskScopeLeakDetector(LeakDetection.REPORT, 0, 1));
+        // WHEN opening a task scope
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            // THEN its creation site is recorded
+            assertThat(detector.stackOf(ctx).getStackTrace())
+                    .anyMatch(element -> element.getClassName().equals(TaskScopeLeakDetectorTest.class.getName()));
+        }
+        // WHEN the stack traces are not sampled
+        install(new TaskScopeLeakDetector(LeakDetection.REPORT, 0, 0));
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            // THEN none is recorded
+            assertThat(detector.stackOf(ctx)).isNull();
+        }
+    }
+
+    @Test
+    void should_set_up_leak_detection_with_enable_task_scope() {
+        // GIVEN an application context enabling the leak detection
+        try (AnnotationConfigApplicationContext context =
+                     new AnnotationConfigApplicationContext(LeakConfiguration.class)) {
+            detector = context.getBean(TaskScopeLeakDetector.class);
+            // WHEN a task leaves a task scope open
+            TaskScope.run("ctx", () -> TaskScope.create("leaked"));
+            // THEN it is reported
+            assertThat(detector.getLeakCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void should_keep_detecting_leaks_when_another_application_context_disables_it() {
+        // GIVEN leak detection in use
+        install(new TaskScopeLeakDetector(LeakDetection.REPORT, 0, 1));
+        // WHEN another application context without leak detection is started
+        try (AnnotationConfigApplicationContext context =
+                     new AnnotationConfigApplicationContext(PlainConfiguration.class)) {
+            // AND a task leaves a task scope open
+            TaskScope.run("ctx", () -> TaskScope.create("leaked"));
+            // THEN it is still reported
+            assertThat(detector.getLeakCount()).isEqualTo(1);
+        }
+    }
+
+    private void install(final TaskScopeLeakDetector leakDetector) {
+        if (detector != null) {
+            detector.destroy();
+        }
+        detector = leakDetector;
+        TaskScopeLeakDetector.install(leakDetector);
+    }
+
+    @Configuration
+    @EnableTaskScope(leakDetection = LeakDetection.UNWIND, leakThresholdMillis = 0)
+    static class LeakConfiguration {
+    }
+
+    @Configuration
+    @EnableTaskScope
+    static class PlainConfiguration {
+    }
+
+}
@@ -0,0 +1,129 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TaskScopeListenerTest {
+
+    final RecordingListener listener = new RecordingListener();
+
+    @BeforeEach
+    void register() {
+        TaskScope.addListener(listener);
+    }
+
+    @AfterEach
+    void unregister() {
+        TaskScope.removeListener(listener);
+    }
+
+    @Test
+    void should_notify_about_opened_and_closed_task_scopes_with_their_depth() throws Exception {
+        // GIVEN nested task scopes
+        try (TaskScopeContext<String> outer = TaskScope.create("outer")) {
+            TaskScope.run("inner", () -> { });
+            TaskScope.callChild("child", () -> null);
+        }
+        // THEN each one is reported, with its depth when opened
+        assertThat(listener.events).containsExactly(
+                "opened outer 1",
+                "opened inner 2",
+                "closed inner 0",
+                "opened child 2",
+                "closed child 0",
+                "closed outer 0"
+        );
+    }
+
+    @Test
+    void should_notify_about_created_beans() {
+        // GIVEN a task scope
+        final int slot = TaskScopeSlots.slotOf("bean");
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            // WHEN creating a bean and getting it again
+            ctx.getBean(slot, "bean", () -> "value");
+            ctx.getBean(slot, "bean", () -> "other value");
+        }
+        // THEN the creation is reported once
+        assertThat(listener.events).containsExactly("opened ctx 1", "created ctx bean", "closed ctx 1");
+    }
+
+    @Test
+    void should_notify_about_destruction_callbacks_and_their_failures() {
+        // GIVEN a task scope with destruction callbacks, one of them failing
+        final TaskScopeContext<String> ctx = TaskScope.create("ctx");
+        ctx.registerDestructionCallback("ok", () -> { }, TaskScopeDestruction.SYNC);
+        ctx.registerDestructionCallback("failing", () -> {
+            throw new IllegalStateException("failed");
+        }, TaskScopeDestruction.SYNC);
+        // WHEN closing it
+        assertThatThrownBy(ctx::close).isInstanceOf(IllegalStateException.class);
+        // THEN each callback is reported with its outcome
+        assertThat(listener.events).contains("destruction ok", "destruction failed");
+    }
+
+    @Test
+    void should_ignore_failing_listener() throws Exception {
+        // GIVEN a failing listener
+        final TaskScopeListener failing = new TaskScopeListener() {
+            @Override
+            public void scopeOpened(final TaskScopeContext<?> context, final int depth) {
+                throw new IllegalStateException("failed");
+            }
+        };
+        TaskScope.addListener(failing);
+        try {
+            // WHEN opening a task scope
+            final String result = TaskScope.call("ctx", () -> "done");
+            // THEN it works, and the other listeners are notified
+            assertThat(result).isEqualTo("done");
+            assertThat(listener.events).contains("opened ctx 1");
+        } finally {
+            TaskScope.removeListener(failing);
+        }
+    }
+
+    @Test
+    void should_not_notify_removed_listener() {
+        // GIVEN a removed listener
+        TaskScope.removeListener(listener);
+        // WHEN opening a task scope
+        TaskScope.run("ctx", () -> { });
+        // THEN it is not notified
+        assertThat(listener.events).isEmpty();
+    }
+
+    static class RecordingListener implements TaskScopeListener {
+
+        final List<String> events = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void scopeOpened(final TaskScopeContext<?> context, final int depth) {
+            events.add("opened " + context.getContextObject() + " " + depth);
+        }
+
+        @Override
+        public void scopeClosed(final TaskScopeContext<?> context, final long lifetimeNanos, final int beansCreated) {
+            assertThat(lifetimeNanos).isNotNegative();
+            events.add("closed " + context.getContextObject() + " " + beansCreated);
+        }
+
+        @Override
+        public void beanCreated(final TaskScopeContext<?> context, final String beanName, final long durationNanos) {
+            events.add("created " + context.getContextObject() + " " + beanName);
+        }
+
+        @Override
+        public void destructionCallbackRun(final long durationNanos, final Throwable failure) {
+            events.add(failure == null ? "destruction ok" : "destruction failed");
+        }
+    }
+
+}
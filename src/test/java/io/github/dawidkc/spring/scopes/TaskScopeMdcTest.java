@@ -0,0 +1,168 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+class TaskScopeMdcTest {
+
+    final ExecutorService pool = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void cleanup() {
+        pool.shutdownNow();
+        TaskScopeMdc.install(null);
+        MDC.clear();
+    }
+
+    @Test
+    void should_put_id_and_projections_into_mdc_within_task_scope() {
+        // GIVEN a bridge with the ID and a projection
+        TaskScopeMdc.install(new TaskScopeMdc("scopeId").with("length", String.class, String::length));
+        // WHEN opening a task scope
+        try (TaskScopeContext<String> ctx = TaskScope.create("task")) {
+            // THEN its entries are in the MDC
+            assertThat(MDC.get("scopeId")).isEqualTo(Long.toString(ctx.getId()));
+            assertThat(MDC.get("length")).isEqualTo("4");
+        }
+        // AND removed once it is closed
+        assertThat(MDC.get("scopeId")).isNull();
+        assertThat(MDC.get("length")).isNull();
+    }
+
+    @Test
+    void should_restore_previous_mdc_entries_when_task_scope_is_closed() {
+        // GIVEN a bridge, and entries already in the MDC
+        TaskScopeMdc.install(new TaskScopeMdc(null)
+                .with("tenant", String.class, s -> s)
+                .with("number", Integer.class, i -> i));
+        MDC.put("tenant", "before");
+        MDC.put("number", "7");
+        // WHEN running within a task scope whose context object only some projections apply to
+        TaskScope.run("acme", () -> {
+            // THEN the entries are replaced or removed
+            assertThat(MDC.get("tenant")).isEqualTo("acme");
+            assertThat(MDC.get("number")).isNull();
+        });
+        // AND restored afterwards
+        assertThat(MDC.get("tenant")).isEqualTo("before");
+        assertThat(MDC.get("number")).isEqualTo("7");
+    }
+
+    @Test
+    void should_restore_entries_of_enclosing_task_scope() {
+        // GIVEN a bridge
+        TaskScopeMdc.install(new TaskScopeMdc("scopeId").with("tenant", String.class, s -> s));
+        // WHEN nesting task scopes
+        try (TaskScopeContext<String> outer = TaskScope.create("outer")) {
+            try (TaskScopeContext<String> inner = TaskScope.createChild("inner")) {
+                // THEN the entries of the inner one are used within it
+                assertThat(MDC.get("scopeId")).isEqualTo(Long.toString(inner.getId()));
+                assertThat(MDC.get("tenant")).isEqualTo("inner");
+            }
+            // AND the ones of the outer one once it is closed
+            assertThat(MDC.get("scopeId")).isEqualTo(Long.toString(outer.getId()));
+            assertThat(MDC.get("tenant")).isEqualTo("outer");
+        }
+    }
+
+    @Test
+    void should_put_entries_into_mdc_of_thread_running_propagated_task() throws Exception {
+        // GIVEN a bridge
+        TaskScopeMdc.install(new TaskScopeMdc(null).with("tenant", String.class, s -> s));
+        // WHEN a task is propagated to a pooled thread
+        try (TaskScopeContext<String> ctx = TaskScope.create("acme")) {
+            // THEN the entries are in the MDC of that thread
+            assertThat(pool.submit(TaskScopeExecutors.wrap(() -> MDC.get("tenant"))).get(5, TimeUnit.SECONDS))
+                    .isEqualTo("acme");
+        }
+        // AND removed once the task is done
+        assertThat(pool.submit(() -> MDC.get("tenant")).get(5, TimeUnit.SECONDS)).isNull();
+    }
+
+    @Test
+    void should_compute_projections_once_per_task_scope() throws Exception {
+        // GIVEN a bridge counting the projections
+        final AtomicInteger computed = new AtomicInteger();
+        TaskScopeMdc.install(new TaskScopeMdc(null).with("tenant", String.class, s -> {
+            computed.incrementAndGet();
+            return s;
+        }));
+        // WHEN the task scope is attached to several threads
+        try (TaskScopeContext<String> ctx = TaskScope.create("acme")) {
+            for (int i = 0; i < 3; i++) {
+                pool.submit(TaskScopeExecutors.wrap(() -> MDC.get("tenant"))).get(5, TimeUnit.SECONDS);
+            }
+        }
+        // THEN the projection is computed once
+        assertThat(computed).hasValue(1);
+    }
+
+    @Test
+    void should_close_task_scope_when_projection_fails() {
+        // GIVEN a bridge whose projection fails AND admission control
+        TaskScopeMdc.install(new TaskScopeMdc("scopeId").with("trace", String.class, s -> {
+            throw new IllegalStateException("no trace");
+        }));
+        final TaskScopeAdmission admission = new TaskScopeAdmission(1);
+        TaskScopeAdmission.install(admission);
+        final AtomicInteger closed = new AtomicInteger();
+        final TaskScopeListener listener = new TaskScopeListener() {
+            @Override
+            public void scopeClosed(final TaskScopeContext<?> context, final long lifetimeNanos, final int beans) {
+                closed.incrementAndGet();
+            }
+        };
+        TaskScope.addListener(listener);
+        try {
+            // WHEN opening a task scope
+            assertThatThrownBy(() -> TaskScope.create("acme"))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessage("no trace");
+            // THEN it is not left on the thread, AND its permit is given back AND it is closed
+            assertThat(TaskScope.isActive()).isFalse();
+            assertThat(admission.getOpen(null)).isZero();
+            assertThat(closed).hasValue(1);
+            assertThat(MDC.get("scopeId")).isNull();
+        } finally {
+            TaskScope.removeListener(listener);
+            TaskScopeAdmission.install(null);
+        }
+    }
+
+    @Test
+    void should_bridge_task_scopes_to_mdc_when_defined_as_bean() {
+        // GIVEN an application context defining the bridge
+        try (AnnotationConfigApplicationContext context =
+                     new AnnotationConfigApplicationContext(MdcConfiguration.class)) {
+            // WHEN running within a task scope
+            // THEN its entries are in the MDC
+            TaskScope.run("acme", () -> assertThat(MDC.get("tenant")).isEqualTo("acme"));
+        }
+        // AND the task scopes are no longer bridged once it is closed
+        TaskScope.run("acme", () -> assertThat(MDC.get("tenant")).isNull());
+    }
+
+    @Configuration
+    @EnableTaskScope
+    static class MdcConfiguration {
+
+        @Bean
+        TaskScopeMdc taskScopeMdc() {
+            return new TaskScopeMdc(null).with("tenant", String.class, s -> s);
+        }
+
+    }
+
+}
@@ -0,0 +1,370 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+@SpringJUnitConfig
+@ContextConfiguration(classes = {
+        TestConfiguration.class,
+        TaskScopePropagationTest.AsyncConfiguration.class,
+        TaskScopePropagationTest.Worker.class,
+        TaskScopePropagationTest.AsyncService.class
+})
+class TaskScopePropagationTest {
+
+    final ExecutorService executor = TaskScopeExecutors.wrap(Executors.newFixedThreadPool(2));
+
+    final ExecutorService pool = Executors.newFixedThreadPool(2);
+
+    @Autowired
+    Worker worker;
+
+    @Autowired
+    AsyncService asyncService;
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+        pool.shutdownNow();
+    }
+
+    @Test
+    void should_use_same_task_scoped_bean_in_submitted_task() throws Exception {
+        // GIVEN a task scope with a task-scoped bean
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            final String id = worker.getId();
+            // WHEN using the bean in a task submitted to the wrapped executor
+            final Future<String> result = executor.submit(() -> worker.getId());
+            final Future<Object> context = executor.submit(() -> TaskScope.getCurrentContextObject());
+            // THEN the very same bean and context are used
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo(id);
+            assertThat(context.get(5, TimeUnit.SECONDS)).isEqualTo("ctx");
+        }
+    }
+
+    @Test
+    void should_propagate_context_to_all_invoked_tasks() throws Exception {
+        // GIVEN a task scope with a task-scoped bean
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            final String id = worker.getId();
+            // WHEN invoking several tasks at once
+            final List<Future<String>> results = executor.invokeAll(Arrays.asList(worker::getId, worker::getId));
+            // THEN all of them use the same bean
+            for (Future<String> result : results) {
+                assertThat(result.get()).isEqualTo(id);
+            }
+        }
+    }
+
+    @Test
+    void should_not_propagate_anything_outside_of_task_scope() throws Exception {
+        // GIVEN no active task scope
+        final Runnable runnable = () -> { };
+        // WHEN wrapping a task
+        // THEN it is not changed
+        assertThat(TaskScopeExecutors.wrap(runnable)).isSameAs(runnable);
+        // ...AND the task runs without task scope
+        assertThatThrownBy(() -> executor.submit(() -> worker.getId()).get())
+                .hasRootCauseInstanceOf(NoSuchElementException.class);
+    }
+
+    @Test
+    void should_detach_context_from_worker_thread_after_task() throws Exception {
+        // GIVEN a single-threaded wrapped executor which ran a task within a task scope
+        final ExecutorService single = TaskScopeExecutors.wrap(Executors.newSingleThreadExecutor());
+        try {
+            try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+                single.submit(() -> worker.getId()).get();
+            }
+            // WHEN running another task outside of task scope on the same thread
+            // THEN no context is left attached
+            assertThat(single.submit(() -> TaskScope.findCurrentContext()).get()).isNull();
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    void should_destroy_beans_after_last_task_is_done() throws Exception {
+        // GIVEN a task still running within a task scope which has been closed
+        final CountDownLatch release = new CountDownLatch(1);
+        final Future<?> task;
+        final int destroyed;
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            worker.getId();
+            destroyed = Worker.DESTROYED.get();
+            task = executor.submit(() -> {
+                release.await(5, TimeUnit.SECONDS);
+                return worker.getId();
+            });
+        }
+        // THEN the beans are not destroyed until the task is done
+        assertThat(Worker.DESTROYED.get()).isEqualTo(destroyed);
+        release.countDown();
+        task.get(5, TimeUnit.SECONDS);
+        assertThat(Worker.DESTROYED.get()).isEqualTo(destroyed + 1);
+    }
+
+    @Test
+    void should_not_keep_task_scope_alive_for_subtask_which_has_not_started() throws Exception {
+        // GIVEN a subtask wrapped within a task scope which is closed before the subtask starts
+        final Callable<String> subtask;
+        final int destroyed;
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            worker.getId();
+            destroyed = Worker.DESTROYED.get();
+            subtask = TaskScopeExecutors.wrapSubtask(() -> worker.getId());
+        }
+        // THEN the beans are destroyed on close
+        assertThat(Worker.DESTROYED.get()).isEqualTo(destroyed + 1);
+        // ...AND the subtask fails when started afterwards
+        assertThatThrownBy(subtask::call)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Task scope context has already been closed");
+    }
+
+    @Test
+    void should_release_task_scope_captured_by_tasks_cancelled_by_invoke_any() throws Exception {
+        // GIVEN a single-threaded wrapped executor
+        final ExecutorService single = TaskScopeExecutors.wrap(Executors.newSingleThreadExecutor());
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            final int destroyed;
+            try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+                worker.getId();
+                destroyed = Worker.DESTROYED.get();
+                // WHEN invoking any of several tasks, none of which is done in time, so all of them are cancelled,
+                // most before they start
+                final Callable<String> task = () -> {
+                    release.await(5, TimeUnit.SECONDS);
+                    return worker.getId();
+                };
+                assertThatThrownBy(() -> single.invokeAny(Arrays.asList(task, task, task), 50, TimeUnit.MILLISECONDS))
+                        .isInstanceOf(TimeoutException.class);
+            }
+            // THEN the beans are destroyed once the task scope is closed
+            awaitDestroyed(destroyed + 1);
+        } finally {
+            release.countDown();
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    void should_release_task_scope_captured_by_cancelled_task() throws Exception {
+        // GIVEN a single-threaded wrapped executor, busy with another task
+        final ExecutorService single = TaskScopeExecutors.wrap(Executors.newSingleThreadExecutor());
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            single.submit(() -> release.await(5, TimeUnit.SECONDS));
+            final int destroyed;
+            try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+                worker.getId();
+                destroyed = Worker.DESTROYED.get();
+                // WHEN a task within a task scope is cancelled before it starts
+                assertThat(single.submit(() -> worker.getId()).cancel(false)).isTrue();
+            }
+            // THEN the beans are destroyed once the task scope is closed, without waiting for the executor
+            assertThat(Worker.DESTROYED.get()).isEqualTo(destroyed + 1);
+        } finally {
+            release.countDown();
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    void should_release_task_scope_captured_by_task_rejected_by_decorated_executor() throws Exception {
+        // GIVEN a decorated executor without a queue, busy with another task
+        final ThreadPoolTaskExecutor pool = new ThreadPoolTaskExecutor();
+        pool.setCorePoolSize(1);
+        pool.setMaxPoolSize(1);
+        pool.setQueueCapacity(0);
+        new TaskScopeTaskDecoratorPostProcessor().postProcessBeforeInitialization(pool, "pool");
+        pool.initialize();
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            pool.submit(() -> release.await(5, TimeUnit.SECONDS));
+            final int destroyed;
+            try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+                worker.getId();
+                destroyed = Worker.DESTROYED.get();
+                // WHEN a task within a task scope is rejected
+                assertThatThrownBy(() -> pool.execute(() -> worker.getId()))
+                        .isInstanceOf(TaskRejectedException.class);
+            }
+            // THEN the beans are destroyed once the task scope is closed
+            assertThat(Worker.DESTROYED.get()).isEqualTo(destroyed + 1);
+        } finally {
+            release.countDown();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void should_not_allow_worker_thread_to_close_propagated_context() throws Exception {
+        // GIVEN a task scope
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            // WHEN a task tries to close it
+            final Future<?> result = executor.submit(() -> ctx.close());
+            // THEN it fails
+            assertThatThrownBy(result::get)
+                    .hasRootCauseInstanceOf(IllegalStateException.class)
+                    .hasRootCauseMessage("Only the thread which created the context may remove it");
+        }
+    }
+
+    @Test
+    void should_run_async_method_within_task_scope_of_caller() throws Exception {
+        // GIVEN a task scope with a task-scoped bean
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            final String id = worker.getId();
+            // WHEN invoking an @Async method
+            final CompletableFuture<String[]> result = asyncService.getWorkerId();
+            // THEN it runs on another thread with the same bean
+            final String[] threadAndId = result.get(5, TimeUnit.SECONDS);
+            assertThat(threadAndId[0]).isNotEqualTo(Thread.currentThread().getName());
+            assertThat(threadAndId[1]).isEqualTo(id);
+        }
+    }
+
+    @Test
+    void should_keep_task_decorator_already_set_on_executor() throws Exception {
+        // GIVEN the executor with a custom task decorator
+        // WHEN invoking an @Async method within a task scope
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            final int decorated = AsyncConfiguration.DECORATED.get();
+            asyncService.getWorkerId().get(5, TimeUnit.SECONDS);
+            // THEN the custom decorator has been applied as well
+            assertThat(AsyncConfiguration.DECORATED.get()).isEqualTo(decorated + 1);
+        }
+    }
+
+    private static void awaitDestroyed(final int expected) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (Worker.DESTROYED.get() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(Worker.DESTROYED.get()).isEqualTo(expected);
+    }
+
+    @Test
+    void should_run_completable_future_stages_within_bound_task_scope() throws Exception {
+        // GIVEN a task scope and an executor bound to it
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            final String id = worker.getId();
+            final Executor bound = TaskScopeExecutors.bind(pool);
+            // WHEN using the bean in asynchronous stages
+            final CompletableFuture<String> result = CompletableFuture.supplyAsync(() -> "value", pool)
+                    .thenApplyAsync(value -> worker.getId(), bound)
+                    .thenApplyAsync(first -> first.equals(worker.getId()) ? first : null, bound);
+            // THEN the very same bean is used
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo(id);
+        }
+    }
+
+    @Test
+    void should_fail_completable_future_stage_submitted_after_task_scope_is_closed() throws Exception {
+        // GIVEN an executor bound to a task scope which has been closed
+        final CountDownLatch release = new CountDownLatch(1);
+        final CompletableFuture<String> result;
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            final Executor bound = TaskScopeExecutors.bind(pool);
+            result = CompletableFuture.supplyAsync(() -> {
+                awaitQuietly(release);
+                return "value";
+            }, pool).thenApplyAsync(value -> worker.getId(), bound);
+        }
+        // WHEN the stage is submitted afterwards
+        release.countDown();
+        // THEN it fails
+        assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                .hasRootCauseInstanceOf(IllegalStateException.class)
+                .hasRootCauseMessage("Task scope context has already been closed");
+    }
+
+    private static void awaitQuietly(final CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Configuration
+    @EnableAsync
+    static class AsyncConfiguration {
+
+        static final AtomicInteger DECORATED = new AtomicInteger();
+
+        @Bean
+        ThreadPoolTaskExecutor taskExecutor() {
+            final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+            executor.setCorePoolSize(2);
+            executor.setTaskDecorator(runnable -> {
+                DECORATED.incrementAndGet();
+                return runnable;
+            });
+            return executor;
+        }
+    }
+
+    @Component
+    @TaskScoped
+    static class Worker implements DisposableBean {
+
+        static final AtomicInteger DESTROYED = new AtomicInteger();
+
+        final String id = UUID.randomUUID().toString();
+
+        String getId() {
+            return id;
+        }
+
+        @Override
+        public void destroy() {
+            DESTROYED.incrementAndGet();
+        }
+    }
+
+    @Component
+    static class AsyncService {
+
+        @Autowired
+        Worker worker;
+
+        @Async
+        public CompletableFuture<String[]> getWorkerId() {
+            return CompletableFuture.completedFuture(new String[]{Thread.currentThread().getName(), worker.getId()});
+        }
+    }
+
+}
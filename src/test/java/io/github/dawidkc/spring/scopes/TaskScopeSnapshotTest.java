@@ -0,0 +1,54 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class TaskScopeSnapshotTest {
+
+    @Test
+    void should_not_capture_anything_outside_of_task_scope() {
+        // GIVEN no active task scope
+        // WHEN capturing it
+        // THEN there is nothing to restore
+        assertThat(TaskScopeSnapshot.capture()).isNull();
+    }
+
+    @Test
+    void should_run_task_within_captured_task_scope_on_other_thread() throws Exception {
+        // GIVEN a snapshot of a task scope
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            final TaskScopeSnapshot snapshot = TaskScopeSnapshot.capture();
+            assertThat(snapshot.getContext()).isSameAs(ctx);
+            // WHEN running a task with it on another thread
+            final AtomicReference<Object> seen = new AtomicReference<>();
+            CompletableFuture.runAsync(() -> snapshot.run(() -> seen.set(TaskScope.getCurrentContextObject())))
+                    .get(5, TimeUnit.SECONDS);
+            // THEN the task runs within the task scope
+            assertThat(seen.get()).isEqualTo("ctx");
+        }
+    }
+
+    @Test
+    void should_run_task_without_task_scope_once_captured_one_is_closed() {
+        // GIVEN a snapshot of a task scope which has been closed
+        final AtomicInteger destroyed = new AtomicInteger();
+        final TaskScopeSnapshot snapshot;
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            ctx.registerDestructionCallback("bean", destroyed::incrementAndGet, TaskScopeDestruction.SYNC);
+            snapshot = TaskScopeSnapshot.capture();
+        }
+        // WHEN running a task with it
+        final AtomicReference<Boolean> active = new AtomicReference<>();
+        snapshot.run(() -> active.set(TaskScope.isActive()));
+        // THEN the task runs outside of any task scope, and the beans are not destroyed again
+        assertThat(active.get()).isFalse();
+        assertThat(destroyed).hasValue(1);
+    }
+
+}
@@ -0,0 +1,107 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.lang.management.ManagementFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class TaskScopeStackTest {
+
+    static final int ITERATIONS = 100_000;
+
+    static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    final TaskScopeContext<String> ctx1 = new TaskScopeContext<>("ctx1");
+
+    final TaskScopeContext<String> ctx2 = new TaskScopeContext<>("ctx2");
+
+    @Test
+    void should_keep_contexts_in_lifo_order() {
+        // GIVEN a stack with 2 contexts
+        final TaskScopeStack stack = new TaskScopeStack();
+        stack.push(ctx1);
+        stack.push(ctx2);
+        // THEN the last pushed context is on top
+        assertThat(stack.size()).isEqualTo(2);
+        assertThat(stack.peek()).isSameAs(ctx2);
+        // ...AND popping reveals the previous one
+        stack.pop();
+        assertThat(stack.peek()).isSameAs(ctx1);
+        stack.pop();
+        assertThat(stack.peek()).isNull();
+        assertThat(stack.size()).isZero();
+    }
+
+    @Test
+    void should_grow_beyond_initial_capacity() {
+        // GIVEN a deeply nested stack
+        final TaskScopeStack stack = new TaskScopeStack();
+        final int depth = 1000;
+        for (int i = 0; i < depth; i++) {
+            stack.push(new TaskScopeContext<>(i));
+        }
+        // THEN all contexts are kept
+        assertThat(stack.size()).isEqualTo(depth);
+        for (int i = depth - 1; i >= 0; i--) {
+            assertThat(stack.peek().getContextObject()).isEqualTo(i);
+            stack.pop();
+        }
+        assertThat(stack.peek()).isNull();
+    }
+
+    @Test
+    void should_not_allocate_when_pushing_peeking_and_popping() {
+        // GIVEN a warmed-up stack
+        final TaskScopeStack stack = new TaskScopeStack();
+        pushPeekPop(stack);
+        // WHEN pushing, peeking and popping many times
+        final long before = allocatedBytes();
+        final int peeked = pushPeekPop(stack);
+        final long allocated = allocatedBytes() - before;
+        // THEN nothing is allocated per operation
+        assertThat(peeked).isEqualTo(2 * ITERATIONS);
+        assertThat(allocated).isLessThan(ITERATIONS);
+    }
+
+    @Test
+    void should_not_allocate_when_resolving_current_context() {
+        // GIVEN an open task scope
+        try (TaskScopeContext<String> ctx = TaskScope.create("ctx")) {
+            resolveCurrent(ctx);
+            // WHEN resolving the current context many times
+            final long before = allocatedBytes();
+            final int resolved = resolveCurrent(ctx);
+            final long allocated = allocatedBytes() - before;
+            // THEN nothing is allocated per operation
+            assertThat(resolved).isEqualTo(ITERATIONS);
+            assertThat(allocated).isLessThan(ITERATIONS);
+        }
+    }
+
+    private int pushPeekPop(final TaskScopeStack stack) {
+        int peeked = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            stack.push(ctx1);
+            stack.push(ctx2);
+            peeked += stack.peek() == ctx2 ? 1 : 0;
+            stack.pop();
+            peeked += stack.peek() == ctx1 ? 1 : 0;
+            stack.pop();
+        }
+        return peeked;
+    }
+
+    private static int resolveCurrent(final TaskScopeContext<String> ctx) {
+        int resolved = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            resolved += TaskScope.<String>getCurrentContext() == ctx ? 1 : 0;
+        }
+        return resolved;
+    }
+
+    private static long allocatedBytes() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,220 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Component;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+@SpringJUnitConfig
+@ContextConfiguration(classes = {
+        TaskScopeStickyTest.StickyConfiguration.class,
+        TaskScopeStickyTest.TenantClient.class,
+        TaskScopeStickyTest.Worker.class
+})
+class TaskScopeStickyTest {
+
+    @Autowired
+    TaskScopeStickyCache cache;
+
+    @Autowired
+    TenantClient client;
+
+    @Autowired
+    Worker worker;
+
+    @Autowired
+    ConfigurableListableBeanFactory beanFactory;
+
+    @BeforeEach
+    void reset() {
+        cache.evictAll();
+    }
+
+    @AfterEach
+    void evict() {
+        cache.evictAll();
+    }
+
+    @Test
+    void should_reuse_sticky_beans_in_task_scope_of_equal_context_object() {
+        // GIVEN a sticky bean used in a closed task scope
+        final String clientId;
+        final String workerId;
+        try (TaskScopeContext<String> ctx = TaskScope.create(new String("tenant"))) {
+            clientId = client.getId();
+            workerId = worker.getId();
+        }
+        // WHEN using it in a task scope of an equal context object
+        try (TaskScopeContext<String> ctx = TaskScope.create(new String("tenant"))) {
+            // THEN the sticky bean is reused
+            assertThat(client.getId()).isEqualTo(clientId);
+            // ...AND the regular bean is created anew
+            assertThat(worker.getId()).isNotEqualTo(workerId);
+        }
+    }
+
+    @Test
+    void should_not_reuse_sticky_beans_for_other_context_object() {
+        // GIVEN a sticky bean used in a closed task scope
+        final String clientId;
+        try (TaskScopeContext<String> ctx = TaskScope.create("tenant")) {
+            clientId = client.getId();
+        }
+        // WHEN using it in a task scope of another context object
+        try (TaskScopeContext<String> ctx = TaskScope.create("other")) {
+            // THEN it is created anew
+            assertThat(client.getId()).isNotEqualTo(clientId);
+        }
+    }
+
+    @Test
+    void should_destroy_sticky_beans_on_eviction_rather_than_on_close() {
+        // GIVEN sticky beans of as many context objects as the cache can hold
+        final int destroyed = TenantClient.DESTROYED.get();
+        TaskScope.run("first", client::getId);
+        TaskScope.run("second", client::getId);
+        // THEN they are not destroyed with their task scopes
+        assertThat(TenantClient.DESTROYED.get()).isEqualTo(destroyed);
+        // WHEN using the sticky bean of another context object
+        TaskScope.run("third", client::getId);
+        // THEN the least recently used one is evicted and destroyed
+        assertThat(TenantClient.DESTROYED.get()).isEqualTo(destroyed + 1);
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    void should_destroy_evicted_sticky_beans_once_last_task_scope_using_them_is_closed() {
+        // GIVEN a task scope using a sticky bean
+        final int destroyed = TenantClient.DESTROYED.get();
+        try (TaskScopeContext<String> ctx = TaskScope.create("tenant")) {
+            final String clientId = client.getId();
+            // WHEN the bean is evicted meanwhile
+            cache.evict("tenant");
+            // THEN it is still used by the task scope
+            assertThat(client.getId()).isEqualTo(clientId);
+            assertThat(TenantClient.DESTROYED.get()).isEqualTo(destroyed);
+        }
+        // ...AND is destroyed when the task scope is closed
+        assertThat(TenantClient.DESTROYED.get()).isEqualTo(destroyed + 1);
+    }
+
+    @Test
+    void should_evict_expired_sticky_beans() throws Exception {
+        // GIVEN a cache expiring its entries, with a sticky bean of a closed task scope
+        final TaskScopeStickyCache expiring = new TaskScopeStickyCache(2, 50);
+        final TaskScope scope = (TaskScope) beanFactory.getRegisteredScope(TaskScope.TASK_SCOPE_NAME);
+        scope.setStickyCache(expiring);
+        try {
+            final String clientId = TaskScope.call("tenant", client::getId);
+            // WHEN using it after it has expired
+            Thread.sleep(100);
+            // THEN it is created anew
+            assertThat(TaskScope.call("tenant", client::getId)).isNotEqualTo(clientId);
+            assertThat(expiring.getEvictionCount()).isEqualTo(1);
+        } finally {
+            scope.setStickyCache(cache);
+            expiring.destroy();
+        }
+    }
+
+    @Test
+    void should_cache_sticky_beans_of_each_application_context_separately() throws Exception {
+        // GIVEN another application context with a sticky bean and a cache of its own
+        final String clientId;
+        try (AnnotationConfigApplicationContext other = new AnnotationConfigApplicationContext(
+                ReportConfiguration.class)) {
+            // WHEN using the sticky beans of both application contexts in a task scope
+            clientId = TaskScope.call("tenant", () -> {
+                other.getBean(TenantReport.class).getId();
+                return client.getId();
+            });
+            // THEN each one is cached by its own application context
+            assertThat(cache.size()).isEqualTo(1);
+            assertThat(other.getBean(TaskScopeStickyCache.class).size()).isEqualTo(1);
+        }
+        // AND the sticky beans are still reused once the other application context is closed
+        assertThat(TaskScope.call("tenant", client::getId)).isEqualTo(clientId);
+    }
+
+    @Test
+    void should_count_hits_and_misses() {
+        // GIVEN the counters of the cache
+        final long hits = cache.getHitCount();
+        final long misses = cache.getMissCount();
+        // WHEN using sticky beans in task scopes of the same context object
+        TaskScope.run("tenant", client::getId);
+        TaskScope.run("tenant", client::getId);
+        TaskScope.run("tenant", client::getId);
+        // THEN the first one misses and the others hit
+        assertThat(cache.getMissCount()).isEqualTo(misses + 1);
+        assertThat(cache.getHitCount()).isEqualTo(hits + 2);
+    }
+
+    @Configuration
+    @EnableTaskScope(stickyCacheSize = 2)
+    static class StickyConfiguration {
+    }
+
+    @Configuration
+    @EnableTaskScope
+    static class ReportConfiguration {
+
+        @Bean
+        @TaskScoped(sticky = true)
+        TenantReport tenantReport() {
+            return new TenantReport();
+        }
+    }
+
+    static class TenantReport {
+
+        final String id = UUID.randomUUID().toString();
+
+        String getId() {
+            return id;
+        }
+    }
+
+    @Component
+    @TaskScoped(sticky = true)
+    static class TenantClient implements DisposableBean {
+
+        static final AtomicInteger DESTROYED = new AtomicInteger();
+
+        final String id = UUID.randomUUID().toString();
+
+        String getId() {
+            return id;
+        }
+
+        @Override
+        public void destroy() {
+            DESTROYED.incrementAndGet();
+        }
+    }
+
+    @Component
+    @TaskScoped
+    static class Worker {
+
+        final String id = UUID.randomUUID().toString();
+
+        String getId() {
+            return id;
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+package io.github.dawidkc.spring.scopes;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+
+class TaskScopeStorageTest {
+
+    @Test
+    void should_run_task_within_new_task_scope() throws Exception {
+        // GIVEN no active task scope
+        // WHEN calling a task within a new task scope
+        final Object result = TaskScope.call("ctx", TaskScope::getCurrentContextObject);
+        // THEN the task sees the context
+        assertThat(result).isEqualTo("ctx");
+        // ...AND the scope is closed afterwards
+        assertThat(TaskScope.findCurrentContext()).isNull();
+    }
+
+    @Test
+    void should_destroy_beans_when_task_is_done() {
+        // GIVEN a task registering a destruction callback
+        final AtomicInteger destroyed = new AtomicInteger();
+        // WHEN running it within a new task scope
+        TaskScope.run("ctx", () -> TaskScope.getCurrentContext()
+                .registerDestructionCallback("bean", destroyed::incrementAndGet, TaskScopeDestruction.SYNC));
+        // THEN the callback is run once the task is done
+        assertThat(destroyed).hasValue(1);
+    }
+
+    @Test
+    void should_not_allow_closing_context_bound_to_task() {
+        // GIVEN a task scope opened by call
+        // WHEN the task closes it
+        // THEN it fails
+        assertThatThrownBy(() -> TaskScope.run("ctx", () -> TaskScope.getCurrentContext().close()))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(TaskScope.findCurrentContext()).isNull();
+    }
+
+    @Test
+    void should_use_storage_chosen_with_enable_task_scope() throws Exception {
+        // GIVEN an application context enabling task scope with a custom storage
+        final TaskScopeStorage previous = TaskScope.getStorage();
+        try (AnnotationConfigApplicationContext context =
+                     new AnnotationConfigApplicationContext(CountingStorageConfiguration.class)) {
+            // WHEN using task scopes
+            assertThat(TaskScope.getStorage()).isInstanceOf(CountingStorage.class);
+            final int calls = CountingStorage.CALLS.get();
+            TaskScope.call("ctx", TaskScope::getCurrentContextObject);
+            // THEN the storage is used
+            assertThat(CountingStorage.CALLS).hasValue(calls + 1);
+            // ...AND the imperative scopes are not supported by it
+            assertThat(TaskScope.isCreateSupported()).isFalse();
+            assertThatThrownBy(() -> TaskScope.create("ctx"))
+                    .isInstanceOf(UnsupportedOperationException.class)
+                    .hasMessageContaining("TaskScope.call()");
+        } finally {
+            TaskScope.setStorage(previous);
+        }
+    }
+
+    @Test
+    void should_support_create_with_default_storage() {
+        // GIVEN the default storage
+        // WHEN checking if task scopes can be created
+        // THEN they can
+        assertThat(TaskScope.isCreateSupported()).isTrue();
+    }
+
+    @Configuration
+    @EnableTaskScope(storage = CountingStorage.class)
+    static class CountingStorageConfiguration {
+    }
+
+    static class CountingStorage implements TaskScopeStorage {
+
+        static final AtomicInteger CALLS = new AtomicInteger();
+
+        private final ThreadLocalTaskScopeStorage delegate = new ThreadLocalTaskScopeStorage();
+
+        @Override
+        public TaskScopeContext<?> current() {
+            return delegate.current();
+        }
+
+        @Override
+        public <R> R call(final TaskScopeContext<?> context, final Callable<R> task) throws Exception {
+            CALLS.incrementAndGet();
+            return delegate.call(context, task);
+        }
+    }
+
+}
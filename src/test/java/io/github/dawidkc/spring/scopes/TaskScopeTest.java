@@ -9,7 +9,13 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
+import org.springframework.aop.scope.ScopedObject;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.annotation.Scope;
+import org.springframework.context.annotation.ScopedProxyMode;
 import org.springframework.stereotype.Component;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestPropertySource;
@@ -19,7 +25,8 @@ import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
 @SpringJUnitConfig
 @ContextConfiguration(classes = {
         TestConfiguration.class,
-        TaskScopeTest.Service.class
+        TaskScopeTest.Service.class,
+        TaskScopeTest.InterfaceService.class
 })
 @TestPropertySource(properties = {
         "debug=true",
@@ -29,9 +36,15 @@ class TaskScopeTest {
     @Autowired
     Service service;
 
+    @Autowired
+    IdProvider interfaceService;
+
     @Autowired
     TaskScopeContext<TestContext> taskScopeContext;
 
+    @Autowired
+    ConfigurableListableBeanFactory beanFactory;
+
     @Test
     void should_result_in_error_when_no_context_available_for_task_scoped_bean() {
         // GIVEN no active task scope
@@ -169,6 +182,86 @@ class TaskScopeTest {
         ctx1.close();
     }
 
+    @Test
+    void should_assign_slots_to_task_scoped_beans() {
+        // THEN all task-scoped bean definitions have a slot
+        assertThat(TaskScopeSlots.slotOf("scopedTarget.taskScopeTest.Service")).isNotNegative();
+        assertThat(TaskScopeSlots.slotOf("scopedTarget.taskScopeContext")).isNotNegative();
+        // ...AND other beans do not
+        assertThat(TaskScopeSlots.slotOf("taskScopeTest.Service")).isEqualTo(TaskScopeSlots.NO_SLOT);
+    }
+
+    @Test
+    void should_resolve_task_scoped_bean_registered_after_refresh() {
+        // GIVEN a task-scoped bean registered dynamically
+        final RootBeanDefinition definition = new RootBeanDefinition(Service.class);
+        definition.setScope(TaskScope.TASK_SCOPE_NAME);
+        ((BeanDefinitionRegistry) beanFactory).registerBeanDefinition("dynamicService", definition);
+        // WHEN resolving it within 2 task scopes
+        Object result1, result2, result3;
+        try (TaskScopeContext<TestContext> ctx = TaskScope.create(TestContext.of("ctx"))) {
+            result1 = beanFactory.getBean("dynamicService");
+            result2 = beanFactory.getBean("dynamicService");
+        }
+        try (TaskScopeContext<TestContext> ctx = TaskScope.create(TestContext.of("ctx"))) {
+            result3 = beanFactory.getBean("dynamicService");
+        }
+        // THEN it is created once per scope
+        assertThat(TaskScopeSlots.slotOf("dynamicService")).isEqualTo(TaskScopeSlots.NO_SLOT);
+        assertThat(result1).isSameAs(result2);
+        assertThat(result1).isNotSameAs(result3);
+    }
+
+    @Test
+    void should_resolve_target_of_task_scoped_proxy_from_current_context() {
+        // GIVEN a task-scoped proxy
+        // WHEN calling it in nested task scopes
+        String result1, result2, result3;
+        try (TaskScopeContext<TestContext> ctx1 = TaskScope.create(TestContext.of("ctx1"))) {
+            result1 = service.getId();
+            try (TaskScopeContext<TestContext> ctx2 = TaskScope.create(TestContext.of("ctx2"))) {
+                result2 = service.getId();
+            }
+            result3 = service.getId();
+        }
+        // THEN it re-resolves the target whenever the current context changes
+        assertThat(result1).isNotEqualTo(result2);
+        assertThat(result1).isEqualTo(result3);
+    }
+
+    @Test
+    void should_expose_task_scoped_proxy_as_scoped_object() {
+        // GIVEN a task scope with a task-scoped bean
+        try (TaskScopeContext<TestContext> ctx = TaskScope.create(TestContext.of("ctx"))) {
+            final String id = service.getId();
+            // WHEN using the proxy as a scoped object
+            final ScopedObject scopedObject = (ScopedObject) service;
+            // THEN it gives access to the target
+            assertThat(((Service) scopedObject.getTargetObject()).getId()).isEqualTo(id);
+            // ...AND removes it from the scope, so that a new one is created
+            scopedObject.removeFromScope();
+            assertThat(service.getId()).isNotEqualTo(id);
+        }
+    }
+
+    @Test
+    void should_resolve_target_of_interface_based_task_scoped_proxy() {
+        // GIVEN an interface-based task-scoped proxy
+        String result1, result2, result3;
+        // WHEN calling it within 2 task scopes
+        try (TaskScopeContext<TestContext> ctx = TaskScope.create(TestContext.of("ctx1"))) {
+            result1 = interfaceService.getId();
+            result2 = interfaceService.getId();
+        }
+        try (TaskScopeContext<TestContext> ctx = TaskScope.create(TestContext.of("ctx2"))) {
+            result3 = interfaceService.getId();
+        }
+        // THEN the target is created once per scope
+        assertThat(interfaceService).isInstanceOf(ScopedObject.class);
+        assertThat(result1).isEqualTo(result2);
+        assertThat(result1).isNotEqualTo(result3);
+    }
+
     @Value(staticConstructor = "of")
     static class TestContext {
         String data;
@@ -185,4 +278,19 @@ class TaskScopeTest {
         }
     }
 
+    interface IdProvider {
+        String getId();
+    }
+
+    @Component
+    @Scope(value = TaskScope.TASK_SCOPE_NAME, proxyMode = ScopedProxyMode.INTERFACES)
+    static class InterfaceService implements IdProvider {
+        final String id = UUID.randomUUID().toString();
+
+        @Override
+        public String getId() {
+            return id;
+        }
+    }
+
 }